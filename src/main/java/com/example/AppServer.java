@@ -9,59 +9,274 @@ import akka.http.javadsl.ConnectHttp;
 import akka.http.javadsl.Http;
 import akka.http.javadsl.model.HttpRequest;
 import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RetryAfter;
 import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Complete;
+import akka.http.javadsl.server.ExceptionHandler;
 import akka.http.javadsl.server.Route;
+import akka.pattern.AskTimeoutException;
 import akka.stream.ActorMaterializer;
+import akka.stream.ActorMaterializerSettings;
 import akka.stream.javadsl.Flow;
+import com.example.accesslog.AccessLog;
+import com.example.accesslog.RingBufferAccessLog;
 import com.example.account.routes.AccountRoutes;
 import com.example.account.service.AccountRegistryActor;
+import com.example.account.service.AccountSharding;
+import com.example.account.service.ActorAccountStore;
+import com.example.account.store.AccountStore;
+import com.example.account.store.AccountView;
+import com.example.account.store.CasAccountStore;
+import com.example.account.utils.AccountEngine;
+import com.example.admission.InFlightLimiter;
+import com.example.admission.OverloadedException;
+import com.example.metrics.Metrics;
+import com.example.metrics.MetricsRoutes;
 import com.example.transcaction.routes.TransactionRoutes;
+import com.example.persistence.FileJournal;
+import com.example.persistence.Journal;
+import com.example.persistence.JournalFailedException;
+import com.example.persistence.RecoveredState;
+import com.example.persistence.Snapshotter;
 import com.example.transcaction.service.TransactionRegistryActor;
+import com.example.transcaction.store.TransactionHistory;
+import com.typesafe.config.ConfigFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.example.account.utils.AccountConfigs.ACCESS_LOG_BUFFER_SIZE;
+import static com.example.account.utils.AccountConfigs.ACCESS_LOG_ENABLED;
+import static com.example.account.utils.AccountConfigs.ACCESS_LOG_FILE;
+import static com.example.account.utils.AccountConfigs.ACCESS_LOG_SAMPLE_RATE;
+import static com.example.account.utils.AccountConfigs.ACCOUNT_ENGINE;
+import static com.example.account.utils.AccountConfigs.ACCOUNT_SHARDS;
+import static com.example.account.utils.AccountConfigs.ADMISSION_MAX_IN_FLIGHT_REQUESTS;
+import static com.example.account.utils.AccountConfigs.ADMISSION_RETRY_AFTER;
+import static com.example.account.utils.AccountConfigs.CLUSTER_ENABLED;
+import static com.example.account.utils.AccountConfigs.CLUSTER_SEED_NODES;
+import static com.example.account.utils.AccountConfigs.HTTP_DISPATCHER;
+import static com.example.account.utils.AccountConfigs.JOURNAL_DIRECTORY;
+import static com.example.account.utils.AccountConfigs.JOURNAL_ENABLED;
+import static com.example.account.utils.AccountConfigs.JOURNAL_MAX_BATCH_SIZE;
 import static com.example.account.utils.AccountConfigs.SERVER_ADDRESS;
 import static com.example.account.utils.AccountConfigs.SERVER_HOST;
 import static com.example.account.utils.AccountConfigs.SERVER_PORT;
+import static com.example.account.utils.AccountConfigs.SNAPSHOT_INTERVAL;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_HISTORY_MAX_ENTRIES;
 
 public class AppServer extends AllDirectives {
     
+    private static final long RETRY_AFTER_SECONDS = Math.max(1, (ADMISSION_RETRY_AFTER.toMillis() + 999) / 1000);
+    
+    private final ExceptionHandler overloadedHandler = ExceptionHandler.newBuilder()
+            .match(OverloadedException.class, e -> overloaded())
+            .match(AskTimeoutException.class, e -> overloaded())
+            .match(JournalFailedException.class, e -> unavailable())
+            .match(CompletionException.class, e -> e.getCause() instanceof JournalFailedException ? unavailable()
+                    : isOverload(e.getCause()) ? overloaded() : failWith(e))
+            .build();
+    private final ExceptionHandler failRoute = ExceptionHandler.newBuilder()
+            .match(Throwable.class, this::failWith)
+            .build();
+    
     final private LoggingAdapter logger;
     private final AccountRoutes accountRoutes;
     private final TransactionRoutes transactionRoutes;
+    private final MetricsRoutes metricsRoutes = new MetricsRoutes(Metrics.REGISTRY);
+    private final InFlightLimiter inFlightLimiter;
+    private final AccessLog accessLog;
+    
+    public AppServer(ActorSystem system,
+                     ActorRef accountRegistryActor,
+                     AccountView accountView,
+                     ActorRef transactionRegistryActor,
+                     TransactionHistory transactionHistory) {
+        this(system, accountRegistryActor, accountView, transactionRegistryActor, transactionHistory,
+                new InFlightLimiter(ADMISSION_MAX_IN_FLIGHT_REQUESTS));
+    }
     
     public AppServer(ActorSystem system,
                      ActorRef accountRegistryActor,
-                     ActorRef transactionRegistryActor) {
-        this.accountRoutes = new AccountRoutes(system, accountRegistryActor);
-        this.transactionRoutes = new TransactionRoutes(system, transactionRegistryActor);
+                     AccountView accountView,
+                     ActorRef transactionRegistryActor,
+                     TransactionHistory transactionHistory,
+                     InFlightLimiter inFlightLimiter) {
+        this(system, new ActorAccountStore(accountRegistryActor, accountView), transactionRegistryActor,
+                transactionHistory, inFlightLimiter);
+    }
+    
+    public AppServer(ActorSystem system,
+                     AccountStore accountStore,
+                     ActorRef transactionRegistryActor,
+                     TransactionHistory transactionHistory,
+                     InFlightLimiter inFlightLimiter) {
+        this(system, accountStore, transactionRegistryActor, transactionHistory, inFlightLimiter, AccessLog.DISABLED);
+    }
+    
+    public AppServer(ActorSystem system,
+                     AccountStore accountStore,
+                     ActorRef transactionRegistryActor,
+                     TransactionHistory transactionHistory,
+                     InFlightLimiter inFlightLimiter,
+                     AccessLog accessLog) {
+        this.accountRoutes = new AccountRoutes(system, accountStore);
+        this.transactionRoutes = new TransactionRoutes(system, transactionRegistryActor, transactionHistory);
+        this.inFlightLimiter = inFlightLimiter;
+        this.accessLog = accessLog;
         logger = Logging.getLogger(system, this);
     }
     
+    /**
+     * Requests beyond {@code admission.max-in-flight-requests}, and requests a registry's admission queue
+     * is too full for, are answered at once with {@code 503} and {@code Retry-After}. So are requests whose
+     * ask timed out, as they were only admitted before the service fell behind. Reads of state whose journal
+     * has failed are answered {@code 503} without {@code Retry-After}. {@code GET /metrics} is
+     * always served, so the service stays observable while it sheds load. Every response, including a
+     * rejection, is recorded in the access log.
+     */
     public Route createRoute() {
-        return route(
-                accountRoutes.routes(),
-                transactionRoutes.routes()
-        );
+        return logged(() -> route(
+                metricsRoutes.routes(),
+                handleExceptions(overloadedHandler, () -> admitted(() -> route(
+                        accountRoutes.routes(),
+                        transactionRoutes.routes()
+                )))
+        ));
     }
     
-    public static void main(String[] args) {
+    /**
+     * Hands each response to the access log once it is ready. The inner route is sealed so rejections and
+     * unhandled exceptions are logged with the response they are turned into.
+     */
+    private Route logged(Supplier<Route> inner) {
+        if (accessLog == AccessLog.DISABLED) {
+            return inner.get();
+        }
+        return extractRequest(request -> {
+            long startedAt = System.nanoTime();
+            return mapRouteResultFuture(result -> result.thenApply(done -> {
+                if (done instanceof Complete) {
+                    accessLog.record(request, ((Complete) done).getResponse(), startedAt);
+                }
+                return done;
+            }), () -> inner.get().seal());
+        });
+    }
+    
+    /**
+     * Holds a permit of the in-flight limiter until the response is ready; for a streamed response that
+     * is when it starts, so the items of a batch or an import streamed afterwards are admitted one by one
+     * by the registries' admission queues instead. Exceptions thrown while building the response are
+     * turned into a failed result so the permit is given back for them too.
+     */
+    private Route admitted(Supplier<Route> inner) {
+        return extractRequestContext(context -> {
+            if (!inFlightLimiter.tryAcquire()) {
+                return overloaded();
+            }
+            return mapRouteResultFuture(result -> result.whenComplete((done, failure) -> inFlightLimiter.release()),
+                    () -> handleExceptions(failRoute, inner));
+        });
+    }
+    
+    /**
+     * Replies composed with {@code thenApply} fail with the original exception wrapped.
+     */
+    private static boolean isOverload(Throwable failure) {
+        return failure instanceof OverloadedException || failure instanceof AskTimeoutException;
+    }
+    
+    /**
+     * The journal has failed for good, so retrying later does not help.
+     */
+    private Route unavailable() {
+        return complete(StatusCodes.SERVICE_UNAVAILABLE);
+    }
+    
+    private Route overloaded() {
+        return complete(HttpResponse.create()
+                .withStatus(StatusCodes.SERVICE_UNAVAILABLE)
+                .addHeader(RetryAfter.create(RETRY_AFTER_SECONDS)));
+    }
+    
+    public static void main(String[] args) throws IOException {
+        long startedAt = System.nanoTime();
         // Setting up the Actor System
-        ActorSystem system = ActorSystem.create("TransactionApiServer");
+        if (CLUSTER_ENABLED && (!JOURNAL_ENABLED || ACCOUNT_ENGINE != AccountEngine.ACTOR)) {
+            throw new IllegalStateException("cluster.enabled requires journal.enabled and account.engine = actor");
+        }
+        ActorSystem system = ActorSystem.create("TransactionApiServer",
+                CLUSTER_ENABLED ? ConfigFactory.load("cluster") : ConfigFactory.load());
         
         final Http http = Http.get(system);
-        final ActorMaterializer materializer = ActorMaterializer.create(system);
+        final ActorMaterializer materializer = ActorMaterializer.create(
+                ActorMaterializerSettings.create(system).withDispatcher(HTTP_DISPATCHER), system);
+        
+        // Recovering state from the journal; in a cluster every shard recovers its own
+        RecoveredState state = RecoveredState.empty(ACCOUNT_SHARDS);
+        Journal journal = Journal.IN_MEMORY;
+        if (JOURNAL_ENABLED && !CLUSTER_ENABLED) {
+            LoggingAdapter logger = Logging.getLogger(system, AppServer.class);
+            Path journalDirectory = Paths.get(JOURNAL_DIRECTORY);
+            long recoveryStartedAt = System.nanoTime();
+            state = RecoveredState.recover(journalDirectory, ACCOUNT_SHARDS, logger);
+            logger.info("[ Recovered {} accounts in {} ms: snapshot at journal position {} plus {} journal events ]",
+                    state.getAccountCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStartedAt),
+                    state.getSnapshotPosition(), state.getReplayedEvents());
+            FileJournal fileJournal = FileJournal.open(system, RecoveredState.journalFile(journalDirectory),
+                    state.getJournalLength(), JOURNAL_MAX_BATCH_SIZE);
+            Snapshotter snapshotter = SNAPSHOT_INTERVAL.isZero() ? null
+                    : Snapshotter.start(system, journalDirectory, fileJournal, SNAPSHOT_INTERVAL);
+            system.registerOnTermination(() -> {
+                if (snapshotter != null) {
+                    snapshotter.close();
+                }
+                closeJournal(system, fileJournal);
+            });
+            journal = fileJournal;
+        }
         
         // Setting Up Actors and System
-        ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(),
-                "accountRegistryActor");
+        AccountStore accountStore;
+        if (CLUSTER_ENABLED) {
+            AccountSharding.join(system, CLUSTER_SEED_NODES);
+            accountStore = new ActorAccountStore(AccountSharding.start(system, Paths.get(JOURNAL_DIRECTORY),
+                    ACCOUNT_SHARDS));
+        } else if (ACCOUNT_ENGINE == AccountEngine.CAS) {
+            accountStore = new CasAccountStore(journal, state.getAccountTables());
+        } else {
+            ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(journal, state.getAccountTables()),
+                    "accountRegistryActor");
+            accountStore = new ActorAccountStore(accountRegistryActor,
+                    new AccountView(state.getAccountTables(), journal));
+        }
         
-        ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountRegistryActor),
-                "transactionRegistryActor");
+        TransactionHistory transactionHistory = new TransactionHistory(TRANSACTION_HISTORY_MAX_ENTRIES);
+        ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountStore,
+                transactionHistory, state.getTransactionsById().values()), "transactionRegistryActor");
+        
+        AccessLog accessLog = AccessLog.DISABLED;
+        if (ACCESS_LOG_ENABLED) {
+            RingBufferAccessLog ringBufferAccessLog = RingBufferAccessLog.open(system, ACCESS_LOG_FILE,
+                    ACCESS_LOG_SAMPLE_RATE, ACCESS_LOG_BUFFER_SIZE);
+            system.registerOnTermination(ringBufferAccessLog::close);
+            accessLog = ringBufferAccessLog;
+        }
         
         // Initializing the Application Server
         AppServer server = new AppServer(
                 system,
-                accountRegistryActor,
-                transactionRegistryActor
+                accountStore,
+                transactionRegistryActor,
+                transactionHistory,
+                new InFlightLimiter(ADMISSION_MAX_IN_FLIGHT_REQUESTS),
+                accessLog
         );
         
         final Flow<HttpRequest, HttpResponse, NotUsed> routeFlow = server
@@ -72,6 +287,15 @@ public class AppServer extends AllDirectives {
                 ConnectHttp.toHost(SERVER_HOST, SERVER_PORT),
                 materializer);
         
-        server.logger.info("[ Server up at {} \n Press Ctrl-C / Ctrl-Z to Stop ]", SERVER_ADDRESS);
+        server.logger.info("[ Server up at {} after {} ms \n Press Ctrl-C / Ctrl-Z to Stop ]", SERVER_ADDRESS,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+    
+    private static void closeJournal(ActorSystem system, FileJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Logging.getLogger(system, AppServer.class).error(e, "[ Failed to close the journal ]");
+        }
     }
 }
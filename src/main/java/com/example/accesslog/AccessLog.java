@@ -0,0 +1,23 @@
+package com.example.accesslog;
+
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+
+/**
+ * Log of the requests the server answered. Requests are recorded on the request path, so an
+ * implementation only hands the request and its response over; formatting and writing happen elsewhere.
+ */
+public interface AccessLog {
+    
+    /**
+     * Access log used when it is disabled: nothing is recorded.
+     */
+    AccessLog DISABLED = (request, response, startNanos) -> {
+    };
+    
+    /**
+     * Records that {@code request}, which arrived at {@link System#nanoTime()} {@code startNanos}, was
+     * answered with {@code response}. For a streamed response that is when the response starts.
+     */
+    void record(HttpRequest request, HttpResponse response, long startNanos);
+}
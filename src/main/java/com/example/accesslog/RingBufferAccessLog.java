@@ -0,0 +1,255 @@
+package com.example.accesslog;
+
+import akka.actor.ActorSystem;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import com.example.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link AccessLog} that writes one JSON line per sampled request, such as
+ * {@code {"time":"2024-01-01T00:00:00.250Z","method":"POST","path":"/v1/transactions","status":201,"durationMicros":850,"bytes":40}},
+ * from a background thread.
+ * <p>
+ * A request thread only stores references to the request and the response in the next free slot of a
+ * bounded ring buffer, claimed with a compare-and-set; it never formats, blocks or takes a lock. When the
+ * writer falls behind and the buffer is full, the line is dropped and counted instead. Requests are
+ * sampled at {@code sampleRate} before they are recorded; server errors are always logged.
+ */
+public final class RingBufferAccessLog implements AccessLog, AutoCloseable {
+    
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    private final LoggingAdapter logger;
+    private final String loggingPrefix = "[ ACCESS LOG ] : ";
+    
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final double sampleRate;
+    private final Writer out;
+    private final boolean closeOut;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private long next;
+    private volatile long written;
+    private volatile boolean running = true;
+    
+    /**
+     * A request handed over to the writer; {@code sequence} is the position it may be claimed at, plus
+     * one once it is filled.
+     */
+    private static final class Slot {
+        volatile long sequence;
+        long timestampMillis;
+        long durationNanos;
+        HttpRequest request;
+        HttpResponse response;
+        
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+    
+    /**
+     * Writes to {@code out}, which is closed with the log. {@code capacity} is rounded up to a power of two.
+     */
+    public RingBufferAccessLog(ActorSystem system, Writer out, double sampleRate, int capacity) {
+        this(system, out, true, sampleRate, capacity);
+    }
+    
+    private RingBufferAccessLog(ActorSystem system, Writer out, boolean closeOut, double sampleRate, int capacity) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1, was " + sampleRate);
+        }
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+        this.logger = Logging.getLogger(system, this);
+        this.out = out;
+        this.closeOut = closeOut;
+        this.sampleRate = sampleRate;
+        this.slots = new Slot[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.mask = slots.length - 1;
+        Metrics.REGISTRY.counter("access_log_lines_total", "Access log lines written.", this::written);
+        Metrics.REGISTRY.counter("access_log_dropped_total",
+                "Sampled requests not logged because the access log writer fell behind.", this::dropped);
+        this.writer = new Thread(this::writeLoop, "access-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Appends to {@code file}, or writes to standard output if it is empty.
+     */
+    public static RingBufferAccessLog open(ActorSystem system, String file, double sampleRate, int capacity)
+            throws IOException {
+        if (file.isEmpty()) {
+            return new RingBufferAccessLog(system, new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                    false, sampleRate, capacity);
+        }
+        Path path = Paths.get(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return new RingBufferAccessLog(system, Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), true, sampleRate, capacity);
+    }
+    
+    @Override
+    public void record(HttpRequest request, HttpResponse response, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (sampleRate < 1 && response.status().intValue() < 500
+                && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long position = claimed.get();
+        while (true) {
+            Slot slot = slots[(int) position & mask];
+            long lag = slot.sequence - position;
+            if (lag == 0) {
+                if (claimed.compareAndSet(position, position + 1)) {
+                    slot.timestampMillis = System.currentTimeMillis();
+                    slot.durationNanos = durationNanos;
+                    slot.request = request;
+                    slot.response = response;
+                    slot.sequence = position + 1;
+                    return;
+                }
+            } else if (lag < 0) {
+                dropped.increment();
+                return;
+            }
+            position = claimed.get();
+        }
+    }
+    
+    /**
+     * Lines written so far.
+     */
+    public long written() {
+        return written;
+    }
+    
+    /**
+     * Sampled requests dropped because the buffer was full.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+    
+    /**
+     * Writes the lines still buffered and stops the writer.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (closeOut) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.error(e, "{} Failed to close the access log", loggingPrefix);
+        }
+    }
+    
+    private void writeLoop() {
+        try {
+            while (running) {
+                if (drain() == 0) {
+                    out.flush();
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+            drain();
+            out.flush();
+        } catch (IOException e) {
+            logger.error(e, "{} Failed to write the access log, requests are no longer logged", loggingPrefix);
+        }
+    }
+    
+    private int drain() throws IOException {
+        int count = 0;
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next + 1) {
+                return count;
+            }
+            format(slot);
+            slot.request = null;
+            slot.response = null;
+            slot.sequence = next + slots.length;
+            next++;
+            int length = line.length();
+            if (length > chars.length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            line.getChars(0, length, chars, 0);
+            out.write(chars, 0, length);
+            written = written + 1;
+            count++;
+        }
+    }
+    
+    private void format(Slot slot) {
+        line.setLength(0);
+        line.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(slot.timestampMillis), line);
+        line.append("\",\"method\":\"");
+        appendEscaped(slot.request.method().value());
+        line.append("\",\"path\":\"");
+        appendEscaped(slot.request.getUri().path());
+        line.append("\",\"status\":").append(slot.response.status().intValue())
+                .append(",\"durationMicros\":").append(TimeUnit.NANOSECONDS.toMicros(slot.durationNanos));
+        OptionalLong bytes = slot.response.entity().getContentLengthOption();
+        if (bytes.isPresent()) {
+            line.append(",\"bytes\":").append(bytes.getAsLong());
+        }
+        line.append("}\n");
+    }
+    
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.account.messages;
 
 import com.example.account.models.Account;
+import com.example.account.utils.Money;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.SortedMap;
 
 public interface AccountRegistryMessages {
     
@@ -18,6 +21,47 @@ public interface AccountRegistryMessages {
         }
     }
     
+    /**
+     * Creates many accounts with one message; answered with a single {@link AccountsCreated}.
+     */
+    class CreateAccounts implements Serializable {
+        private final List<Account> accounts;
+        
+        public CreateAccounts(List<Account> accounts) {
+            this.accounts = accounts;
+        }
+        
+        public List<Account> getAccounts() {
+            return accounts;
+        }
+    }
+    
+    /**
+     * Outcome of {@link CreateAccounts}: every account was created except the rejected ones, which are
+     * keyed by their index in the request.
+     */
+    class AccountsCreated implements Serializable {
+        private final int requested;
+        private final SortedMap<Integer, String> rejected;
+        
+        public AccountsCreated(int requested, SortedMap<Integer, String> rejected) {
+            this.requested = requested;
+            this.rejected = rejected;
+        }
+        
+        public int getRequested() {
+            return requested;
+        }
+        
+        public int getCreated() {
+            return requested - rejected.size();
+        }
+        
+        public SortedMap<Integer, String> getRejected() {
+            return rejected;
+        }
+    }
+    
     class GetAccount implements Serializable {
         private final String accountNumber;
         
@@ -32,15 +76,22 @@ public interface AccountRegistryMessages {
     }
     
     class Credit implements Serializable {
-        private final Double amount;
+        private final long amount;
         private final String accountNumber;
         
         public Credit(String accountNumber, Double amount) {
+            this(accountNumber, Money.toMinorUnits(amount));
+        }
+        
+        public Credit(String accountNumber, long amount) {
             this.accountNumber = accountNumber;
             this.amount = amount;
         }
         
-        public Double getAmount() {
+        /**
+         * Amount in minor units (cents).
+         */
+        public long getAmount() {
             return amount;
         }
         
@@ -50,15 +101,22 @@ public interface AccountRegistryMessages {
     }
     
     class Debit implements Serializable {
-        private final Double amount;
+        private final long amount;
         private final String accountNumber;
         
         public Debit(String accountNumber, Double amount) {
+            this(accountNumber, Money.toMinorUnits(amount));
+        }
+        
+        public Debit(String accountNumber, long amount) {
             this.accountNumber = accountNumber;
             this.amount = amount;
         }
         
-        public Double getAmount() {
+        /**
+         * Amount in minor units (cents).
+         */
+        public long getAmount() {
             return amount;
         }
         
@@ -67,31 +125,93 @@ public interface AccountRegistryMessages {
         }
     }
     
+    /**
+     * Moves {@code amount} from the source to the target account in a single command. Both accounts are
+     * checked and the balances are moved by the account layer itself, so the caller needs only one ask.
+     */
+    class Transfer implements Serializable {
+        private final String transactionId;
+        private final String sourceAccountNumber;
+        private final String targetAccountNumber;
+        private final long amount;
+        
+        public Transfer(String transactionId, String sourceAccountNumber,
+                        String targetAccountNumber, Double amount) {
+            this(transactionId, sourceAccountNumber, targetAccountNumber, Money.toMinorUnits(amount));
+        }
+        
+        public Transfer(String transactionId, String sourceAccountNumber,
+                        String targetAccountNumber, long amount) {
+            this.transactionId = transactionId;
+            this.sourceAccountNumber = sourceAccountNumber;
+            this.targetAccountNumber = targetAccountNumber;
+            this.amount = amount;
+        }
+        
+        public String getTransactionId() {
+            return transactionId;
+        }
+        
+        public String getSourceAccountNumber() {
+            return sourceAccountNumber;
+        }
+        
+        public String getTargetAccountNumber() {
+            return targetAccountNumber;
+        }
+        
+        /**
+         * Amount in minor units (cents).
+         */
+        public long getAmount() {
+            return amount;
+        }
+    }
     
+    /**
+     * Answer to a command; a command that changed nothing says why in its {@link ResultCode}.
+     */
     abstract class Response implements Serializable {
+        private final ResultCode code;
+        
+        Response(ResultCode code) {
+            this.code = code;
+        }
+        
+        public ResultCode getCode() {
+            return code;
+        }
     }
     
+    /**
+     * Carries no data, so every success is answered with the same instance.
+     */
     class SuccessResponse extends Response {
-        private final String message;
-        
-        public SuccessResponse(String message) {
-            this.message = message;
-        }
+        public static final SuccessResponse INSTANCE = new SuccessResponse();
         
-        public String getMessage() {
-            return message;
+        private SuccessResponse() {
+            super(ResultCode.SUCCESS);
         }
     }
     
     class FailureResponse extends Response {
-        private final String message;
+        private static final FailureResponse[] BY_CODE = new FailureResponse[ResultCode.values().length];
+        
+        static {
+            for (ResultCode code : ResultCode.values()) {
+                BY_CODE[code.ordinal()] = new FailureResponse(code);
+            }
+        }
         
-        public FailureResponse(String message) {
-            this.message = message;
+        private FailureResponse(ResultCode code) {
+            super(code);
         }
         
-        public String getMessage() {
-            return message;
+        /**
+         * The shared failure for {@code code}.
+         */
+        public static FailureResponse of(ResultCode code) {
+            return BY_CODE[code.ordinal()];
         }
     }
 }
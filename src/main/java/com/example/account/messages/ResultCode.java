@@ -0,0 +1,50 @@
+package com.example.account.messages;
+
+/**
+ * Outcome of an account or transaction command, carried by the registry responses instead of a message
+ * formatted per request; the routes answer each code with the same pre-encoded body.
+ */
+public enum ResultCode {
+    SUCCESS(1, "Succeeded"),
+    INSUFFICIENT_FUNDS(2, "Insufficient funds"),
+    NOT_FOUND(3, "Account not found"),
+    DUPLICATE(4, "Already exists"),
+    INVALID(5, "Invalid request"),
+    TIMED_OUT(6, "Timed out"),
+    FAILED(7, "Failed"),
+    OVERLOADED(8, "Overloaded, retry later");
+    
+    private static final ResultCode[] BY_ID = new ResultCode[values().length + 1];
+    
+    static {
+        for (ResultCode code : values()) {
+            BY_ID[code.id] = code;
+        }
+    }
+    
+    private final int id;
+    private final String description;
+    
+    ResultCode(int id, String description) {
+        this.id = id;
+        this.description = description;
+    }
+    
+    /**
+     * Stable number of the code in serialized messages, independent of the declaration order.
+     */
+    public int getId() {
+        return id;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * The code with the given {@link #getId() id}, or {@link #FAILED} for an id this node does not know.
+     */
+    public static ResultCode ofId(int id) {
+        return id > 0 && id < BY_ID.length ? BY_ID[id] : FAILED;
+    }
+}
@@ -1,21 +1,34 @@
 package com.example.account.models;
 
-public class Account {
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class Account implements Serializable {
     
     private final String accountNumber;
     private final String name;
     private final Double balance;
+    @JsonIgnore
+    private final long version;
     
     public Account() {
         this.accountNumber = "";
         this.name = "";
         this.balance = 0.0;
+        this.version = 0;
     }
     
     public Account(String accountNumber, String name, Double balance) {
+        this(accountNumber, name, balance, 0);
+    }
+    
+    public Account(String accountNumber, String name, Double balance, long version) {
         this.accountNumber = accountNumber;
         this.name = name;
         this.balance = balance;
+        this.version = version;
     }
     
     public String getAccountNumber() {
@@ -30,4 +43,32 @@ public class Account {
         return balance;
     }
     
+    /**
+     * Incremented on every credit or debit; 0 if the account did not come from an account table. Not
+     * part of the JSON representation, it is sent as the {@code ETag} instead.
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Account account = (Account) o;
+        return Objects.equals(accountNumber, account.accountNumber)
+                && Objects.equals(name, account.name)
+                && Objects.equals(balance, account.balance);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountNumber, name, balance);
+    }
+    
 }
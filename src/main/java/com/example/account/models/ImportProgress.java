@@ -0,0 +1,30 @@
+package com.example.account.models;
+
+/**
+ * Running totals of a bulk account import, reported after every batch.
+ */
+public class ImportProgress {
+    
+    private final long rows;
+    private final long created;
+    private final long rejected;
+    
+    public ImportProgress(long rows, long created, long rejected) {
+        this.rows = rows;
+        this.created = created;
+        this.rejected = rejected;
+    }
+    
+    public long getRows() {
+        return rows;
+    }
+    
+    public long getCreated() {
+        return created;
+    }
+    
+    public long getRejected() {
+        return rejected;
+    }
+    
+}
@@ -0,0 +1,30 @@
+package com.example.account.models;
+
+/**
+ * A row of a bulk account import that could not be created.
+ */
+public class ImportRejection {
+    
+    private final long row;
+    private final String accountNumber;
+    private final String message;
+    
+    public ImportRejection(long row, String accountNumber, String message) {
+        this.row = row;
+        this.accountNumber = accountNumber;
+        this.message = message;
+    }
+    
+    public long getRow() {
+        return row;
+    }
+    
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+}
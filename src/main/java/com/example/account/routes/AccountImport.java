@@ -0,0 +1,214 @@
+package com.example.account.routes;
+
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.JsonFraming;
+import akka.util.ByteString;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.account.models.ImportProgress;
+import com.example.account.models.ImportRejection;
+import com.example.account.store.AccountStore;
+import com.example.account.utils.Money;
+import com.example.admission.OverloadedException;
+import com.example.serialization.ModelCodec;
+import com.example.serialization.ModelCodec.Format;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_IMPORT_BATCH_SIZE;
+import static com.example.account.utils.AccountConfigs.ACCOUNT_IMPORT_PARALLELISM;
+
+/**
+ * Bulk account import as a stream: rows are parsed as the upload arrives, sent to the account layer
+ * {@code account.import-batch-size} at a time with at most {@code account.import-parallelism} batches
+ * in flight, and the rejected rows plus running totals are streamed back as NDJSON. A slow account layer
+ * or a slow client backpressures the upload, so memory use does not depend on the size of the upload.
+ * Every batch is admitted on its own by the account store; the rows of a batch it is too full for are
+ * rejected as overloaded and can be imported again.
+ * <p>
+ * CSV rows are {@code accountNumber,name,balance}, optionally preceded by that header line; fields may be
+ * double-quoted but must not contain line breaks. JSON input is NDJSON or a JSON array of accounts.
+ */
+final class AccountImport {
+    
+    private static final int MAX_ROW_BYTES = 64 * 1024;
+    private static final ByteString NEWLINE = ByteString.fromString("\n");
+    
+    private final AccountStore accountStore;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private static final class Row {
+        private final long number;
+        private final Account account;
+        private final String error;
+        
+        Row(long number, Account account, String error) {
+            this.number = number;
+            this.account = account;
+            this.error = error;
+        }
+    }
+    
+    private static final class BatchOutcome {
+        private final int rows;
+        private final List<ImportRejection> rejections;
+        
+        BatchOutcome(int rows, List<ImportRejection> rejections) {
+            this.rows = rows;
+            this.rejections = rejections;
+        }
+    }
+    
+    AccountImport(AccountStore accountStore) {
+        this.accountStore = accountStore;
+    }
+    
+    /**
+     * Turns the bytes of an upload into NDJSON progress: an {@link ImportRejection} per rejected row and an
+     * {@link ImportProgress} after every batch, the last of which holds the totals of the whole import.
+     */
+    Flow<ByteString, ByteString, NotUsed> flow(boolean csv) {
+        Flow<ByteString, ByteString, NotUsed> framing = csv
+                ? Framing.delimiter(NEWLINE, MAX_ROW_BYTES, FramingTruncation.ALLOW)
+                : JsonFraming.objectScanner(MAX_ROW_BYTES);
+        return Flow.of(ByteString.class)
+                .via(framing)
+                .zipWithIndex()
+                .map(row -> csv ? parseCsv(row) : parseJson(row))
+                .filter(row -> row.account != null || row.error != null)
+                .grouped(ACCOUNT_IMPORT_BATCH_SIZE)
+                .mapAsync(ACCOUNT_IMPORT_PARALLELISM, this::create)
+                .statefulMapConcat(() -> {
+                    long[] totals = new long[2];
+                    return outcome -> {
+                        totals[0] += outcome.rows;
+                        totals[1] += outcome.rejections.size();
+                        List<ByteString> lines = new ArrayList<>(outcome.rejections.size() + 1);
+                        for (ImportRejection rejection : outcome.rejections) {
+                            lines.add(toJsonLine(rejection));
+                        }
+                        lines.add(toJsonLine(new ImportProgress(totals[0], totals[0] - totals[1], totals[1])));
+                        return lines;
+                    };
+                });
+    }
+    
+    private CompletionStage<BatchOutcome> create(List<Row> rows) {
+        List<Row> valid = new ArrayList<>(rows.size());
+        List<ImportRejection> rejections = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.error == null) {
+                valid.add(row);
+            } else {
+                rejections.add(new ImportRejection(row.number, null, row.error));
+            }
+        }
+        List<Account> accounts = new ArrayList<>(valid.size());
+        for (Row row : valid) {
+            accounts.add(row.account);
+        }
+        return accountStore.createAll(accounts)
+                .handle((created, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    for (int i = 0; i < valid.size(); i++) {
+                        String reason = cause == null ? created.getRejected().get(i)
+                                : cause instanceof OverloadedException ? ResultCode.OVERLOADED.getDescription()
+                                : "Import batch failed: " + cause.getMessage();
+                        if (reason != null) {
+                            Row row = valid.get(i);
+                            rejections.add(new ImportRejection(row.number, row.account.getAccountNumber(), reason));
+                        }
+                    }
+                    rejections.sort((a, b) -> Long.compare(a.getRow(), b.getRow()));
+                    return new BatchOutcome(rows.size(), rejections);
+                });
+    }
+    
+    /**
+     * Rows are numbered from 1 by line, so blank lines and the header keep the numbering of the file.
+     */
+    private Row parseCsv(Pair<ByteString, Long> line) {
+        long number = line.second() + 1;
+        String text = line.first().utf8String().trim();
+        if (text.isEmpty() || (number == 1 && text.startsWith("accountNumber"))) {
+            return new Row(number, null, null);
+        }
+        List<String> fields = splitCsv(text);
+        if (fields.size() != 3) {
+            return new Row(number, null, "Expected accountNumber,name,balance but found " + fields.size() + " fields");
+        }
+        String balance = fields.get(2).trim();
+        Double value;
+        try {
+            value = Double.valueOf(balance);
+        } catch (NumberFormatException e) {
+            value = null;
+        }
+        if (!Money.isValid(value)) {
+            return new Row(number, null, "Invalid balance " + balance);
+        }
+        return new Row(number, new Account(fields.get(0).trim(), fields.get(1).trim(), value), null);
+    }
+    
+    private Row parseJson(Pair<ByteString, Long> object) {
+        long number = object.second() + 1;
+        try {
+            Account account = ModelCodec.readAccount(object.first(), Format.JSON);
+            if (account.getBalance() == null) {
+                return new Row(number, null, "Balance is required");
+            }
+            if (!Money.isValid(account.getBalance())) {
+                return new Row(number, null, "Invalid balance " + account.getBalance());
+            }
+            return new Row(number, account, null);
+        } catch (IOException e) {
+            return new Row(number, null, "Malformed account: " + e.getMessage());
+        }
+    }
+    
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private ByteString toJsonLine(Object value) {
+        try {
+            return ByteString.fromArray(objectMapper.writeValueAsBytes(value)).concat(NEWLINE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.account.routes;
+
+import akka.util.ByteString;
+import com.example.account.models.Account;
+import com.example.account.store.AccountStore;
+import com.example.account.store.AccountTable;
+import com.example.metrics.Metrics;
+import com.example.serialization.ModelCodec;
+import com.example.serialization.ModelCodec.Format;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Single-flight account lookups: concurrent requests for the same account share one lookup and one
+ * rendered body instead of each asking the shard and marshalling the account on its own.
+ * <p>
+ * A request only joins a lookup in flight if its result is at least as new as the account was when the
+ * request arrived, so sharing never hides a write acknowledged before the request was made; otherwise it
+ * looks the account up on its own. So does a request made without knowing the account's version, such
+ * as one to a clustered store, as any lookup in flight may have started before a write it must see.
+ */
+public final class AccountLookups {
+    
+    private final Function<String, CompletionStage<Optional<Account>>> lookup;
+    private final ConcurrentHashMap<String, CompletableFuture<Rendered>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    
+    /**
+     * An account rendered as JSON, and as CBOR once a client asks for it, or a missing account.
+     */
+    static final class Rendered {
+        private static final Rendered MISSING = new Rendered(null);
+        
+        final long version;
+        final ByteString body;
+        private final Account account;
+        private volatile ByteString cborBody;
+        
+        private Rendered(Account account) {
+            this.account = account;
+            this.version = account == null ? AccountTable.NO_VERSION : account.getVersion();
+            this.body = account == null ? null : ModelCodec.write(account, Format.JSON);
+        }
+        
+        boolean isMissing() {
+            return body == null;
+        }
+        
+        /**
+         * The body in {@code format}; requests racing for the first CBOR body may each render it.
+         */
+        ByteString body(Format format) {
+            if (format == Format.JSON) {
+                return body;
+            }
+            ByteString rendered = cborBody;
+            if (rendered == null) {
+                rendered = ModelCodec.write(account, format);
+                cborBody = rendered;
+            }
+            return rendered;
+        }
+    }
+    
+    AccountLookups(Function<String, CompletionStage<Optional<Account>>> lookup) {
+        this.lookup = lookup;
+        Metrics.REGISTRY.counter("account_lookup_requests_total", "Account lookups requested.", this::requests);
+        Metrics.REGISTRY.counter("account_lookups_total", "Account lookups made after coalescing.", this::lookups);
+        Metrics.REGISTRY.gauge("account_lookup_coalescing_ratio",
+                "Share of account lookups answered by another request's lookup.", this::coalescingRatio);
+    }
+    
+    /**
+     * The account, rendered, at a version of at least {@code minVersion}, which may be
+     * {@link AccountStore#UNKNOWN_VERSION}.
+     */
+    CompletionStage<Rendered> get(String accountNumber, long minVersion) {
+        requests.increment();
+        if (minVersion == AccountStore.UNKNOWN_VERSION) {
+            return lookUp(accountNumber, new CompletableFuture<>());
+        }
+        CompletableFuture<Rendered> flight = inFlight.get(accountNumber);
+        if (flight == null) {
+            CompletableFuture<Rendered> started = new CompletableFuture<>();
+            flight = inFlight.putIfAbsent(accountNumber, started);
+            if (flight == null) {
+                return lookUp(accountNumber, started);
+            }
+        }
+        return flight.thenCompose(rendered -> rendered.version >= minVersion
+                ? CompletableFuture.completedFuture(rendered)
+                : lookUp(accountNumber, new CompletableFuture<>()));
+    }
+    
+    /**
+     * Requests made so far, including the ones that shared another request's lookup.
+     */
+    public long requests() {
+        return requests.sum();
+    }
+    
+    /**
+     * Lookups actually made for those requests.
+     */
+    public long lookups() {
+        return lookups.sum();
+    }
+    
+    /**
+     * Share of requests answered by another request's lookup, between 0 and 1.
+     */
+    public double coalescingRatio() {
+        long requested = requests();
+        return requested == 0 ? 0 : 1 - (double) lookups() / requested;
+    }
+    
+    private CompletableFuture<Rendered> lookUp(String accountNumber, CompletableFuture<Rendered> flight) {
+        lookups.increment();
+        lookup.apply(accountNumber).whenComplete((account, failure) -> {
+            inFlight.remove(accountNumber, flight);
+            if (failure != null) {
+                flight.completeExceptionally(failure);
+                return;
+            }
+            try {
+                flight.complete(account.map(Rendered::new).orElse(Rendered.MISSING));
+            } catch (RuntimeException e) {
+                flight.completeExceptionally(e);
+            }
+        });
+        return flight;
+    }
+}
@@ -1,36 +1,54 @@
 package com.example.account.routes;
 
-import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.MediaTypes;
 import akka.http.javadsl.model.StatusCodes;
-import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.model.headers.Accept;
+import akka.http.javadsl.model.headers.ETag;
+import akka.http.javadsl.model.headers.EntityTag;
+import akka.http.javadsl.model.headers.IfNoneMatch;
 import akka.http.javadsl.server.PathMatchers;
 import akka.http.javadsl.server.Route;
-import akka.pattern.Patterns;
-import com.example.account.messages.AccountRegistryMessages.CreateAccount;
-import com.example.account.messages.AccountRegistryMessages.GetAccount;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import com.example.account.messages.AccountRegistryMessages.Response;
-import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.ResultCode;
 import com.example.account.models.Account;
+import com.example.account.store.AccountStore;
+import com.example.account.store.AccountTable;
+import com.example.account.utils.Money;
+import com.example.metrics.Metrics;
+import com.example.metrics.MetricsDirectives;
+import com.example.metrics.RouteMetrics;
+import com.example.serialization.ModelCodec;
+import com.example.serialization.ModelCodec.Format;
 
-import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 
-import static com.example.account.utils.AccountConfigs.AKKA_TIMEOUT_DURATION;
 import static com.example.account.utils.AccountConfigs.SERVICE_VERSION;
+import static com.example.account.utils.ExtraMediaTypes.APPLICATION_NDJSON;
 
-public class AccountRoutes extends AllDirectives {
+public class AccountRoutes extends MetricsDirectives {
     
-    final private ActorRef accountRegistryActor;
+    private static final RouteMetrics POST_ACCOUNT = new RouteMetrics(Metrics.REGISTRY, "post_account");
+    private static final RouteMetrics POST_ACCOUNT_IMPORT = new RouteMetrics(Metrics.REGISTRY, "post_account_import");
+    private static final RouteMetrics GET_ACCOUNT = new RouteMetrics(Metrics.REGISTRY, "get_account");
+    
+    final private AccountStore accountStore;
     final private LoggingAdapter logger;
-    private Duration timeout = Duration.ofSeconds(AKKA_TIMEOUT_DURATION);
+    private static final String ETAG_EPOCH = Long.toString(System.currentTimeMillis(), 36);
+    private final AccountImport accountImport;
+    private final AccountLookups accountLookups;
     
-    public AccountRoutes(ActorSystem system, ActorRef accountRegistryActor) {
-        this.accountRegistryActor = accountRegistryActor;
+    public AccountRoutes(ActorSystem system, AccountStore accountStore) {
+        this.accountStore = accountStore;
+        this.accountImport = new AccountImport(accountStore);
+        this.accountLookups = new AccountLookups(accountStore::get);
         logger = Logging.getLogger(system, this);
     }
     
@@ -38,6 +56,7 @@ public class AccountRoutes extends AllDirectives {
         return pathPrefix(SERVICE_VERSION, () -> route(
                 pathPrefix("accounts", () -> route(
                         postAccount(),
+                        postAccountImport(),
                         path(PathMatchers.segment(),
                                 accountNumber -> route(
                                         getAccount(accountNumber))
@@ -45,49 +64,123 @@ public class AccountRoutes extends AllDirectives {
                 )));
     }
     
+    /**
+     * Reads the account as JSON or CBOR and answers in the format the client accepts. An account without
+     * a valid balance is answered with {@code 400 Bad Request} without reaching the account layer.
+     */
     private Route postAccount() {
         return pathEnd(() ->
-                post(() ->
-                        entity(Jackson.unmarshaller(Account.class), account -> {
-                            logger.info(String.format("[ Request ] : Create New Account with details {id : %s, name: %s, balance : %s}",
-                                    account.getAccountNumber(), account.getName(), account.getBalance()));
+                post(() -> timed(POST_ACCOUNT, () -> optionalHeaderValueByType(Accept.class, accept ->
+                        entity(ModelCodec.accountUnmarshaller(), account -> {
+                            logger.debug("[ Request ] : Create New Account with details {id : {}, name: {}, balance : {}}",
+                                    account.getAccountNumber(), account.getName(), account.getBalance());
+                            if (!Money.isValid(account.getBalance())) {
+                                return complete(createdOrRejected(ResultCode.INVALID, Format.accepted(accept)));
+                            }
                             
-                            CompletionStage<Response> accountCreated = Patterns.ask(accountRegistryActor,
-                                    new CreateAccount(account), timeout)
-                                    .thenApply(Response.class::cast);
+                            CompletionStage<Response> accountCreated = accountStore.create(account);
                             
                             return onSuccess(() -> accountCreated, response -> {
-                                if (response instanceof SuccessResponse) {
-                                    logger.info(String.format("[ Response ] : New Account created with details {id : %s}",
-                                            account.getAccountNumber()));
-                                    return complete(StatusCodes.CREATED, response, Jackson.marshaller());
-                                } else {
-                                    logger.info(String.format("[ Response ] : Conflicting Account with {id : %s} already exists",
-                                            account.getAccountNumber()));
-                                    return complete(StatusCodes.CONFLICT, response, Jackson.marshaller());
-                                }
+                                logger.debug("[ Response ] : Create Account {id : {}} answered {}",
+                                        account.getAccountNumber(), response.getCode());
+                                return complete(createdOrRejected(response.getCode(), Format.accepted(accept)));
                             }).orElse(complete(StatusCodes.INTERNAL_SERVER_ERROR));
-                        })
-                ));
+                        }))
+                )));
+    }
+    
+    private static HttpResponse createdOrRejected(ResultCode code, Format format) {
+        return HttpResponse.create()
+                .withStatus(code == ResultCode.SUCCESS ? StatusCodes.CREATED
+                        : code == ResultCode.INVALID ? StatusCodes.BAD_REQUEST : StatusCodes.CONFLICT)
+                .withEntity(ResultBodies.of(code, format));
     }
     
+    /**
+     * Streams the upload (NDJSON, a JSON array or {@code text/csv}) through {@link AccountImport} and the
+     * progress back as NDJSON; uploads are not subject to the request size limit.
+     */
+    private Route postAccountImport() {
+        return path("import", () ->
+                post(() -> timed(POST_ACCOUNT_IMPORT, () -> withoutSizeLimit(() -> extractRequestEntity(entity -> {
+                    boolean csv = entity.getContentType().mediaType().equals(MediaTypes.TEXT_CSV);
+                    logger.debug("[ Request ] : Import Accounts {format : {}}", csv ? "csv" : "json");
+                    
+                    Source<ByteString, ?> progress = entity.getDataBytes().via(accountImport.flow(csv));
+                    return complete(HttpResponse.create()
+                            .withStatus(StatusCodes.OK)
+                            .withEntity(HttpEntities.createChunked(APPLICATION_NDJSON.toContentType(), progress)));
+                })))));
+    }
+    
+    /**
+     * Concurrent requests for the same account share one lookup and one rendered body through
+     * {@link AccountLookups}.
+     * <p>
+     * The account's version is sent as its {@code ETag}. A request whose {@code If-None-Match} still
+     * matches it is answered with {@code 304 Not Modified} without rendering the account; when the store's
+     * reads bypass its writes, that is decided from the version alone, before the account is even read.
+     * <p>
+     * The account is sent as CBOR to clients that accept {@code application/cbor}, as JSON otherwise.
+     */
     private Route getAccount(String accountNumber) {
-        return get(() -> {
-            logger.info(String.format("[ Request ] : Get Account details for {id : %s }", accountNumber));
-            CompletionStage<Optional<Account>> optionalAccount = Patterns.ask(accountRegistryActor,
-                    new GetAccount(accountNumber), timeout)
-                    .thenApply(Optional.class::cast);
-            return onSuccess(() -> optionalAccount,
+        return get(() -> timed(GET_ACCOUNT, () -> optionalHeaderValueByType(IfNoneMatch.class, ifNoneMatch ->
+                optionalHeaderValueByType(Accept.class, accept -> {
+            logger.debug("[ Request ] : Get Account details for {id : {} }", accountNumber);
+            long version = accountStore.versionOf(accountNumber);
+            if (accountStore.readsBypassWrites() && version != AccountTable.NO_VERSION
+                    && isNotModified(ifNoneMatch, version)) {
+                return notModified(accountNumber, version);
+            }
+            return onSuccess(() -> accountLookups.get(accountNumber, version),
                     account -> {
-                        if (account.isPresent()) {
-                            logger.info(String.format("[ Response ] : Rendering Account details for {id : %s }", accountNumber));
-                            return complete(StatusCodes.OK, account.get(), Jackson.marshaller());
-                        } else {
-                            logger.info(String.format("[ Response ] : Account {id : %s } not found", accountNumber));
+                        if (account.isMissing()) {
+                            logger.debug("[ Response ] : Account {id : {} } not found", accountNumber);
                             return complete(StatusCodes.NOT_FOUND);
                         }
+                        if (isNotModified(ifNoneMatch, account.version)) {
+                            return notModified(accountNumber, account.version);
+                        }
+                        logger.debug("[ Response ] : Rendering Account details for {id : {} }", accountNumber);
+                        Format format = Format.accepted(accept);
+                        return complete(HttpResponse.create()
+                                .withStatus(StatusCodes.OK)
+                                .addHeader(ETag.create(entityTagOf(account.version)))
+                                .withEntity(HttpEntities.create(format.getContentType(), account.body(format))));
                     }).orElse(complete(StatusCodes.INTERNAL_SERVER_ERROR));
-        });
+        }))));
+    }
+    
+    /**
+     * Requests and lookups made by {@link #getAccount(String)}, for the coalescing ratio.
+     */
+    public AccountLookups accountLookups() {
+        return accountLookups;
+    }
+    
+    private Route notModified(String accountNumber, long version) {
+        logger.debug("[ Response ] : Account {id : {} } not modified", accountNumber);
+        return complete(HttpResponse.create()
+                .withStatus(StatusCodes.NOT_MODIFIED)
+                .addHeader(ETag.create(entityTagOf(version))));
+    }
+    
+    /**
+     * The Java DSL's {@code EntityTag.matchesRange} calls itself, so the Scala DSL one it should delegate to
+     * is called directly; every Java DSL tag and range is also a Scala DSL one.
+     */
+    private static boolean isNotModified(Optional<IfNoneMatch> ifNoneMatch, long version) {
+        return ifNoneMatch.isPresent() && akka.http.scaladsl.model.headers.EntityTag.matchesRange(
+                (akka.http.scaladsl.model.headers.EntityTag) entityTagOf(version),
+                (akka.http.scaladsl.model.headers.EntityTagRange) ifNoneMatch.get().m(), true);
+    }
+    
+    /**
+     * Versions restart with the process, so the tag is prefixed with the time this class was loaded:
+     * a tag handed out before a restart never matches a version reached after it.
+     */
+    private static EntityTag entityTagOf(long version) {
+        return EntityTag.create(ETAG_EPOCH + "-" + version, false);
     }
     
 }
@@ -0,0 +1,46 @@
+package com.example.account.routes;
+
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpEntity;
+import com.example.account.messages.ResultCode;
+import com.example.serialization.ModelCodec.Format;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Bodies of the account and transaction command responses, {@code {"code":...,"message":...}}, encoded
+ * once per {@link ResultCode} and {@link Format} so answering a command neither formats nor serializes
+ * anything.
+ */
+public final class ResultBodies {
+    
+    private static final HttpEntity.Strict[][] BODIES =
+            new HttpEntity.Strict[Format.values().length][ResultCode.values().length];
+    
+    static {
+        for (Format format : Format.values()) {
+            ObjectMapper objectMapper = format == Format.CBOR ? new ObjectMapper(new CBORFactory()) : new ObjectMapper();
+            for (ResultCode code : ResultCode.values()) {
+                ObjectNode body = objectMapper.createObjectNode()
+                        .put("code", code.name())
+                        .put("message", code.getDescription());
+                try {
+                    BODIES[format.ordinal()][code.ordinal()] = HttpEntities.create(format.getContentType(),
+                            objectMapper.writeValueAsBytes(body));
+                } catch (JsonProcessingException e) {
+                    throw new ExceptionInInitializerError(e);
+                }
+            }
+        }
+    }
+    
+    private ResultBodies() {
+    }
+    
+    public static HttpEntity.Strict of(ResultCode code, Format format) {
+        return BODIES[format.ordinal()][code.ordinal()];
+    }
+    
+}
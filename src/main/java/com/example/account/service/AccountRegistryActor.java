@@ -1,145 +1,203 @@
 package com.example.account.service;
 
 import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
 import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.messages.AccountRegistryMessages.CreateAccounts;
 import com.example.account.messages.AccountRegistryMessages.Credit;
 import com.example.account.messages.AccountRegistryMessages.Debit;
-import com.example.account.messages.AccountRegistryMessages.FailureResponse;
 import com.example.account.messages.AccountRegistryMessages.GetAccount;
-import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
 import com.example.account.models.Account;
+import com.example.account.service.AccountShardActor.CommitTransfer;
+import com.example.account.service.AccountShardActor.ReleaseTransfer;
+import com.example.account.service.AccountShardActor.ReserveTransfer;
+import com.example.account.service.AccountShardActor.ForgetTransfer;
+import com.example.account.service.AccountShardActor.SettleTransfer;
+import com.example.account.store.AccountTable;
+import com.example.persistence.Journal;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
-import static com.example.account.service.AccountRegistryActor.TransactionType.CREDIT;
-import static com.example.account.service.AccountRegistryActor.TransactionType.DEBIT;
-import static com.example.account.utils.AccountConfigs.MINIMUM_BALANCE;
+import static com.example.account.utils.AccountConfigs.ACCOUNT_ACTOR_NAME;
+import static com.example.account.utils.AccountConfigs.ACCOUNT_DISPATCHER;
+import static com.example.account.utils.AccountConfigs.ACCOUNT_SHARDS;
+import static com.example.account.utils.AccountConfigs.AKKA_TIMEOUT_DURATION;
 
+/**
+ * Entry point of the account layer. Accounts are hash-partitioned over a fixed number of
+ * {@link AccountShardActor} children, so commands for different accounts are processed in
+ * parallel while commands for the same account stay ordered.
+ * <p>
+ * In a cluster the shards are Cluster Sharding entities spread over the nodes instead of children, and
+ * every node runs a registry that sends each command through the shard region to the node owning its
+ * shard, see {@link AccountSharding}.
+ */
 public class AccountRegistryActor extends AbstractActor {
     
     private LoggingAdapter logger = Logging.getLogger(getContext().getSystem(), this);
     private final String loggingPrefix = "[ ACCOUNT ] : ";
     
-    enum TransactionType {
-        CREDIT, DEBIT, QUERY;
-    }
-    
-    private final Map<String, Account> accountsById = new HashMap<>();
+    private final ActorRef[] shards;
+    private final ActorRef shardRegion;
+    private Duration timeout = Duration.ofSeconds(AKKA_TIMEOUT_DURATION);
     
     public static Props props() {
-        return Props.create(AccountRegistryActor.class);
-    }
-    
-    @Override
-    public Receive createReceive() {
-        return receiveBuilder()
-                .match(CreateAccount.class, this::processCreateAccount)
-                .match(GetAccount.class, this::getAccountDetails)
-                .match(Credit.class, this::credit)
-                .match(Debit.class, this::debit)
-                .build();
+        return props(ACCOUNT_SHARDS);
     }
     
-    private void processCreateAccount(CreateAccount account) {
-        String newAccountNumber = account.getAccount().getAccountNumber();
-        if (checkIfAccountExists(newAccountNumber)) {
-            sendFailureResponse(String.format("%s Account %s already exits.",
-                    loggingPrefix, account.getAccount().getAccountNumber()));
+    public static Props props(int numberOfShards) {
+        if (numberOfShards < 1) {
+            throw new IllegalArgumentException("Number of account shards must be positive, was " + numberOfShards);
         }
-        createAccount(account);
-    }
-    
-    private void getAccountDetails(GetAccount getAccount) {
-        getSender().tell(Optional.ofNullable(getAccount(getAccount.getAccountNumber())), getSelf());
-    }
-    
-    private void credit(Credit credit) {
-        if (checkIfAccountExists(credit.getAccountNumber())) {
-            creditBalance(credit);
-        } else {
-            sendFailureResponse(String.format("%s %s failed. Account with %s does not Exist.",
-                    loggingPrefix, CREDIT, credit.getAccountNumber()));
+        AccountTable[] accountTables = new AccountTable[numberOfShards];
+        for (int shard = 0; shard < numberOfShards; shard++) {
+            accountTables[shard] = new AccountTable();
         }
+        return props(Journal.IN_MEMORY, accountTables);
     }
     
-    private void debit(Debit debit) {
-        if (checkIfAccountExists(debit.getAccountNumber())) {
-            if (checkCreditAvailability(debit)) {
-                debitBalance(debit);
-            } else {
-                sendFailureResponse(String.format("%s %s failed. Account Id %s does not have sufficient balance.",
-                        loggingPrefix, DEBIT, debit.getAccountNumber()));
-            }
-        } else {
-            sendFailureResponse(String.format("%s %s failed. Account Id %s does not Exist.",
-                    loggingPrefix, DEBIT, debit.getAccountNumber()));
-        }
+    /**
+     * Registry with one shard per table, e.g. the tables recovered from the journal at startup. The
+     * registry and its shards run on {@code account.dispatcher}.
+     */
+    public static Props props(Journal journal, AccountTable[] accountTables) {
+        return Props.create(AccountRegistryActor.class, journal, accountTables).withDispatcher(ACCOUNT_DISPATCHER);
     }
     
-    private void createAccount(CreateAccount createAccount) {
-        addAccount(createAccount.getAccount());
-        
-        sendSuccessResponse(String.format("%s Account %s created.", loggingPrefix,
-                createAccount.getAccount().getAccountNumber()));
+    /**
+     * Registry of one cluster node, routing to {@code numberOfShards} shards through the shard region.
+     */
+    static Props props(ActorRef shardRegion, int numberOfShards) {
+        return Props.create(AccountRegistryActor.class, shardRegion, numberOfShards).withDispatcher(ACCOUNT_DISPATCHER);
     }
     
-    private boolean checkIfAccountExists(String accountNumber) {
-        return accountsById.containsKey(accountNumber);
+    public AccountRegistryActor(ActorRef shardRegion, int numberOfShards) {
+        this.shards = new ActorRef[numberOfShards];
+        this.shardRegion = shardRegion;
+        logger.info("{} Started with {} shards in the cluster", loggingPrefix, numberOfShards);
     }
     
-    private Account getAccount(String accountNumber) {
-        return accountsById.get(accountNumber);
+    public AccountRegistryActor(Journal journal, AccountTable[] accountTables) {
+        this.shardRegion = null;
+        this.shards = new ActorRef[accountTables.length];
+        for (int shard = 0; shard < accountTables.length; shard++) {
+            shards[shard] = getContext().actorOf(AccountShardActor.props(journal, accountTables[shard]),
+                    ACCOUNT_ACTOR_NAME + shard);
+        }
+        logger.info("{} Started with {} shards", loggingPrefix, accountTables.length);
     }
     
-    private void addAccount(Account account) {
-        accountsById.put(account.getAccountNumber(), account);
+    /**
+     * Shard owning the given account number for a registry of {@code numberOfShards} shards.
+     */
+    public static int shardOf(String accountNumber, int numberOfShards) {
+        return Math.floorMod(Objects.hashCode(accountNumber), numberOfShards);
     }
     
-    private void updateAccount(Account account) {
-        accountsById.put(account.getAccountNumber(), account);
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(CreateAccount.class, create -> route(create.getAccount().getAccountNumber(), create))
+                .match(CreateAccounts.class, this::createAccounts)
+                .match(GetAccount.class, get -> route(get.getAccountNumber(), get))
+                .match(Credit.class, credit -> route(credit.getAccountNumber(), credit))
+                .match(Debit.class, debit -> route(debit.getAccountNumber(), debit))
+                .match(Transfer.class, this::transfer)
+                .match(CommitTransfer.class, commit -> route(commit.getTransfer().getTargetAccountNumber(), commit))
+                .match(ReleaseTransfer.class, release -> route(release.getTransfer().getSourceAccountNumber(), release))
+                .match(SettleTransfer.class, settle -> route(settle.getTransfer().getSourceAccountNumber(), settle))
+                .match(ForgetTransfer.class, forget -> route(forget.getTransfer().getTargetAccountNumber(), forget))
+                .build();
     }
     
-    private Double getAccountBalance(String accountNumber) {
-        return getAccount(accountNumber).getBalance();
+    /**
+     * Transfers within one shard are applied atomically by that shard. Transfers spanning two shards
+     * reserve the amount on the source shard and commit it on the target shard, which replies directly
+     * to the original sender; a missing target account releases the reservation again.
+     */
+    private void transfer(Transfer transfer) {
+        int sourceShard = shardOf(transfer.getSourceAccountNumber(), shards.length);
+        if (sourceShard == shardOf(transfer.getTargetAccountNumber(), shards.length)) {
+            send(sourceShard, transfer);
+        } else {
+            send(sourceShard, new ReserveTransfer(transfer, getSender()));
+        }
     }
     
-    private void creditBalance(Credit credit) {
-        Double newBalance = credit.getAmount() + getAccountBalance(credit.getAccountNumber());
-        updateAccount(new Account(credit.getAccountNumber(),
-                getAccount(credit.getAccountNumber()).getName(),
-                newBalance));
+    /**
+     * Splits the batch by shard so every shard creates its part with a single message, and answers with
+     * the merged outcome once all shards have replied.
+     */
+    private void createAccounts(CreateAccounts createAccounts) {
+        List<Account> accounts = createAccounts.getAccounts();
+        List<List<Integer>> indicesByShard = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            indicesByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            indicesByShard.get(shardOf(accounts.get(i).getAccountNumber(), shards.length)).add(i);
+        }
         
-        sendSuccessResponse(String.format("%s %s for amount %s succeeded for Account %s ",
-                loggingPrefix, CREDIT, credit.getAmount(), credit.getAccountNumber()));
-    }
-    
-    private void debitBalance(Debit debit) {
-        Double newBalance = getAccountBalance(debit.getAccountNumber()) - debit.getAmount();
-        updateAccount(new Account(debit.getAccountNumber(),
-                getAccount(debit.getAccountNumber()).getName(),
-                newBalance));
+        List<List<Integer>> requestedIndices = new ArrayList<>();
+        List<CompletableFuture<AccountsCreated>> replies = new ArrayList<>();
+        for (int shard = 0; shard < shards.length; shard++) {
+            List<Integer> indices = indicesByShard.get(shard);
+            if (!indices.isEmpty()) {
+                List<Account> part = new ArrayList<>(indices.size());
+                for (int index : indices) {
+                    part.add(accounts.get(index));
+                }
+                requestedIndices.add(indices);
+                replies.add(ask(shard, new CreateAccounts(part))
+                        .thenApply(AccountsCreated.class::cast)
+                        .toCompletableFuture());
+            }
+        }
         
-        sendSuccessResponse(String.format("%s %s for amount %s succeeded for Account %s ",
-                loggingPrefix, DEBIT, debit.getAmount(), debit.getAccountNumber()));
-    }
-    
-    private boolean checkCreditAvailability(Debit debit) {
-        return getAccountBalance(debit.getAccountNumber()) - debit.getAmount() > MINIMUM_BALANCE;
-    }
-    
-    private void sendSuccessResponse(String message) {
-        logger.info(message);
-        getSender().tell(new SuccessResponse(message), getSelf());
+        CompletableFuture<AccountsCreated> merged = CompletableFuture
+                .allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    SortedMap<Integer, String> rejected = new TreeMap<>();
+                    for (int part = 0; part < replies.size(); part++) {
+                        List<Integer> indices = requestedIndices.get(part);
+                        replies.get(part).join().getRejected()
+                                .forEach((index, reason) -> rejected.put(indices.get(index), reason));
+                    }
+                    return new AccountsCreated(accounts.size(), rejected);
+                });
+        Patterns.pipe(merged, getContext().getDispatcher()).to(getSender());
+    }
+    
+    private void route(String accountNumber, Object message) {
+        send(shardOf(accountNumber, shards.length), message);
+    }
+    
+    private void send(int shard, Object message) {
+        if (shardRegion == null) {
+            shards[shard].forward(message, getContext());
+        } else {
+            shardRegion.forward(AccountSharding.envelope(shard, message), getContext());
+        }
     }
     
-    private void sendFailureResponse(String message) {
-        logger.error(message);
-        getSender().tell(new FailureResponse(message), getSelf());
+    private CompletionStage<Object> ask(int shard, Object message) {
+        if (shardRegion == null) {
+            return Patterns.ask(shards[shard], message, timeout);
+        }
+        return Patterns.ask(shardRegion, AccountSharding.envelope(shard, message), timeout);
     }
     
 }
@@ -0,0 +1,629 @@
+package com.example.account.service;
+
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
+import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.messages.AccountRegistryMessages.CreateAccounts;
+import com.example.account.messages.AccountRegistryMessages.Credit;
+import com.example.account.messages.AccountRegistryMessages.Debit;
+import com.example.account.messages.AccountRegistryMessages.FailureResponse;
+import com.example.account.messages.AccountRegistryMessages.GetAccount;
+import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.account.store.AccountTable;
+import com.example.account.utils.Money;
+import com.example.metrics.MessageMetrics;
+import com.example.metrics.Metrics;
+import com.example.persistence.Journal;
+import com.example.persistence.JournalEvent;
+import scala.PartialFunction;
+import scala.runtime.BoxedUnit;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_DISPATCHER;
+import static com.example.account.utils.AccountConfigs.MINIMUM_BALANCE;
+import static com.example.account.utils.Money.fromMinorUnits;
+import static com.example.account.utils.Money.toMinorUnits;
+
+/**
+ * Owns the accounts of a single shard. Every account number is routed to exactly one
+ * shard by {@link AccountRegistryActor}, so the state below is never shared between actors.
+ */
+public class AccountShardActor extends AbstractActorWithTimers {
+    
+    private LoggingAdapter logger = Logging.getLogger(getContext().getSystem(), this);
+    private final String loggingPrefix = "[ ACCOUNT ] : ";
+    
+    /**
+     * Cross-shard transfer, step one: the source shard checks the source account and reserves the
+     * amount by debiting it, then hands the transfer over to the target shard.
+     */
+    static final class ReserveTransfer implements Serializable {
+        private final Transfer transfer;
+        private final ActorRef replyTo;
+        
+        ReserveTransfer(Transfer transfer, ActorRef replyTo) {
+            this.transfer = transfer;
+            this.replyTo = replyTo;
+        }
+        
+        Transfer getTransfer() {
+            return transfer;
+        }
+        
+        ActorRef getReplyTo() {
+            return replyTo;
+        }
+    }
+    
+    /**
+     * Cross-shard transfer, step two: the target shard credits the reserved amount and replies to the
+     * original sender, or asks the source shard to release the reservation.
+     */
+    static final class CommitTransfer implements Serializable {
+        private final Transfer transfer;
+        private final ActorRef replyTo;
+        
+        CommitTransfer(Transfer transfer, ActorRef replyTo) {
+            this.transfer = transfer;
+            this.replyTo = replyTo;
+        }
+        
+        Transfer getTransfer() {
+            return transfer;
+        }
+        
+        ActorRef getReplyTo() {
+            return replyTo;
+        }
+    }
+    
+    /**
+     * Cross-shard transfer, compensation: the source shard credits the reserved amount back and
+     * reports the failure to the original sender.
+     */
+    static final class ReleaseTransfer implements Serializable {
+        private final Transfer transfer;
+        private final ActorRef replyTo;
+        private final ResultCode reason;
+        
+        ReleaseTransfer(Transfer transfer, ActorRef replyTo, ResultCode reason) {
+            this.transfer = transfer;
+            this.replyTo = replyTo;
+            this.reason = reason;
+        }
+        
+        Transfer getTransfer() {
+            return transfer;
+        }
+        
+        ActorRef getReplyTo() {
+            return replyTo;
+        }
+        
+        ResultCode getReason() {
+            return reason;
+        }
+    }
+    
+    /**
+     * Clustered cross-shard transfer, acknowledgement: the target shard has durably committed the
+     * transfer, so the source shard's reservation is no longer in flight.
+     */
+    static final class SettleTransfer implements Serializable {
+        private final Transfer transfer;
+        
+        SettleTransfer(Transfer transfer) {
+            this.transfer = transfer;
+        }
+        
+        Transfer getTransfer() {
+            return transfer;
+        }
+    }
+    
+    /**
+     * Clustered cross-shard transfer, last step: the source shard has durably settled the transfer and
+     * will not offer it again, so the target shard no longer needs to remember the commit.
+     */
+    static final class ForgetTransfer implements Serializable {
+        private final Transfer transfer;
+        
+        ForgetTransfer(Transfer transfer) {
+            this.transfer = transfer;
+        }
+        
+        Transfer getTransfer() {
+            return transfer;
+        }
+    }
+    
+    /**
+     * Cross-shard transfers of a clustered shard. Its journal only holds its own side of a transfer and
+     * its messages to other shards may be lost, so a reservation stays in flight until the target shard
+     * settles or releases it and is offered to the target shard again every {@code retryInterval}. The
+     * target shard remembers a commit until the source shard's settlement is durable, so a repeated commit
+     * is only acknowledged, and acknowledges it again every {@code retryInterval} until then.
+     */
+    static final class InFlightTransfers {
+        private final Map<String, Reservation> reservations = new LinkedHashMap<>();
+        private final Map<String, Commit> commits = new LinkedHashMap<>();
+        private final Duration retryInterval;
+        
+        private static final class Reservation {
+            private final Transfer transfer;
+            private final ActorRef replyTo;
+            private final long reservedAt;
+            
+            Reservation(Transfer transfer, ActorRef replyTo, long reservedAt) {
+                this.transfer = transfer;
+                this.replyTo = replyTo;
+                this.reservedAt = reservedAt;
+            }
+        }
+        
+        /**
+         * A commit whose settlement is not durable yet; {@code durable} is null for a recovered commit.
+         */
+        private static final class Commit {
+            private final Transfer transfer;
+            private final CompletableFuture<?> durable;
+            private final long committedAt;
+            
+            Commit(Transfer transfer, CompletableFuture<?> durable, long committedAt) {
+                this.transfer = transfer;
+                this.durable = durable;
+                this.committedAt = committedAt;
+            }
+            
+            boolean isDurable() {
+                return durable == null || durable.isDone() && !durable.isCompletedExceptionally();
+            }
+        }
+        
+        /**
+         * In-flight transfers recovered from the shard's journal, whose original senders are gone, and
+         * the commits whose source shard has not settled them durably yet.
+         */
+        InFlightTransfers(Collection<Transfer> reserved, Collection<Transfer> committed, Duration retryInterval) {
+            this.retryInterval = retryInterval;
+            for (Transfer transfer : reserved) {
+                reservations.put(transfer.getTransactionId(), new Reservation(transfer, null, Long.MIN_VALUE));
+            }
+            for (Transfer transfer : committed) {
+                commits.put(transfer.getTransactionId(), new Commit(transfer, null, Long.MIN_VALUE));
+            }
+        }
+    }
+    
+    private enum RetryTransfers {
+        INSTANCE
+    }
+    
+    private static final MessageMetrics MESSAGE_METRICS = new MessageMetrics(Metrics.REGISTRY, "account_shard",
+            CreateAccount.class, CreateAccounts.class, GetAccount.class, Credit.class, Debit.class, Transfer.class,
+            ReserveTransfer.class, CommitTransfer.class, ReleaseTransfer.class, SettleTransfer.class,
+            ForgetTransfer.class);
+    
+    private final Journal journal;
+    private final AccountTable accounts;
+    private final InFlightTransfers inFlightTransfers;
+    
+    public static Props props() {
+        return props(Journal.IN_MEMORY, new AccountTable());
+    }
+    
+    public static Props props(Journal journal, AccountTable accounts) {
+        return Props.create(AccountShardActor.class, journal, accounts).withDispatcher(ACCOUNT_DISPATCHER);
+    }
+    
+    /**
+     * Clustered shard, whose cross-shard transfers are acknowledged and retried.
+     */
+    static Props props(Journal journal, AccountTable accounts, InFlightTransfers inFlightTransfers) {
+        return Props.create(AccountShardActor.class, journal, accounts, inFlightTransfers)
+                .withDispatcher(ACCOUNT_DISPATCHER);
+    }
+    
+    public AccountShardActor(Journal journal, AccountTable accounts) {
+        this(journal, accounts, null);
+    }
+    
+    public AccountShardActor(Journal journal, AccountTable accounts, InFlightTransfers inFlightTransfers) {
+        this.journal = journal;
+        this.accounts = accounts;
+        this.inFlightTransfers = inFlightTransfers;
+    }
+    
+    @Override
+    public void preStart() {
+        if (inFlightTransfers != null) {
+            long interval = inFlightTransfers.retryInterval.toNanos();
+            getTimers().startPeriodicTimer(RetryTransfers.INSTANCE, RetryTransfers.INSTANCE,
+                    scala.concurrent.duration.Duration.create(interval, TimeUnit.NANOSECONDS));
+            retryTransfers();
+        }
+    }
+    
+    /**
+     * Times every message; {@code receive} is the behaviour built by {@link #createReceive()}.
+     */
+    @Override
+    public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object message) {
+        long startedAt = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.aroundReceive(receive, message);
+            failed = false;
+        } finally {
+            MESSAGE_METRICS.record(message, startedAt, failed);
+        }
+    }
+    
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(Object.class, message -> journal.isFailed(), this::journalFailed)
+                .match(CreateAccount.class, this::processCreateAccount)
+                .match(CreateAccounts.class, this::processCreateAccounts)
+                .match(GetAccount.class, this::getAccountDetails)
+                .match(Credit.class, this::credit)
+                .match(Debit.class, this::debit)
+                .match(Transfer.class, this::transfer)
+                .match(ReserveTransfer.class, this::reserveTransfer)
+                .match(CommitTransfer.class, this::commitTransfer)
+                .match(ReleaseTransfer.class, this::releaseTransfer)
+                .match(SettleTransfer.class, this::settleTransfer)
+                .match(ForgetTransfer.class, this::forgetTransfer)
+                .match(RetryTransfers.class, retry -> retryTransfers())
+                .build();
+    }
+    
+    private void processCreateAccount(CreateAccount account) {
+        String newAccountNumber = account.getAccount().getAccountNumber();
+        if (newAccountNumber == null || !Money.isValid(account.getAccount().getBalance())) {
+            sendFailureResponse(getSender(), ResultCode.INVALID, "CREATE");
+        } else if (checkIfAccountExists(newAccountNumber)) {
+            sendFailureResponse(getSender(), ResultCode.DUPLICATE, newAccountNumber);
+        } else {
+            createAccount(account);
+        }
+    }
+    
+    /**
+     * Only the last created account's event carries the reply: the journal makes events durable in
+     * order, so the reply is held until the whole batch is durable.
+     */
+    private void processCreateAccounts(CreateAccounts createAccounts) {
+        List<Account> newAccounts = createAccounts.getAccounts();
+        SortedMap<Integer, String> rejected = new TreeMap<>();
+        JournalEvent pending = null;
+        for (int i = 0; i < newAccounts.size(); i++) {
+            Account account = newAccounts.get(i);
+            if (account.getAccountNumber() == null || !Money.isValid(account.getBalance())) {
+                rejected.put(i, ResultCode.INVALID.getDescription());
+            } else if (checkIfAccountExists(account.getAccountNumber())) {
+                rejected.put(i, ResultCode.DUPLICATE.getDescription());
+            } else {
+                addAccount(account);
+                if (pending != null) {
+                    journal.append(pending);
+                }
+                pending = JournalEvent.accountCreated(account.getAccountNumber(), account.getName(),
+                        toMinorUnits(account.getBalance()));
+            }
+        }
+        AccountsCreated created = new AccountsCreated(newAccounts.size(), rejected);
+        logger.debug("{} {} of {} accounts created.", loggingPrefix, created.getCreated(), created.getRequested());
+        if (pending == null) {
+            getSender().tell(created, getSelf());
+        } else {
+            journal.append(pending, getSender(), created, failedCreates(newAccounts.size()), getSelf());
+        }
+    }
+    
+    private static AccountsCreated failedCreates(int requested) {
+        SortedMap<Integer, String> rejected = new TreeMap<>();
+        for (int i = 0; i < requested; i++) {
+            rejected.put(i, ResultCode.FAILED.getDescription());
+        }
+        return new AccountsCreated(requested, rejected);
+    }
+    
+    /**
+     * The journal can no longer make mutations durable, so none is applied: whoever waits for the message
+     * is answered {@code FAILED} and the shard stops instead of running ahead of its journal. A clustered
+     * commit is not answered, as its source shard keeps the reservation and offers it again.
+     */
+    private void journalFailed(Object message) {
+        ActorRef replyTo;
+        if (message instanceof ReserveTransfer) {
+            replyTo = ((ReserveTransfer) message).getReplyTo();
+        } else if (message instanceof CommitTransfer) {
+            replyTo = inFlightTransfers == null ? ((CommitTransfer) message).getReplyTo() : null;
+        } else if (message instanceof ReleaseTransfer) {
+            replyTo = ((ReleaseTransfer) message).getReplyTo();
+        } else if (message instanceof SettleTransfer || message instanceof ForgetTransfer
+                || message instanceof RetryTransfers) {
+            replyTo = null;
+        } else {
+            replyTo = getSender();
+        }
+        if (replyTo != null) {
+            replyTo.tell(message instanceof CreateAccounts
+                    ? failedCreates(((CreateAccounts) message).getAccounts().size())
+                    : FailureResponse.of(ResultCode.FAILED), getSelf());
+        }
+        logger.error("{} The journal has failed, stopping {}", loggingPrefix, getSelf().path().name());
+        getContext().stop(getSelf());
+    }
+    
+    private void getAccountDetails(GetAccount getAccount) {
+        getSender().tell(Optional.ofNullable(getAccount(getAccount.getAccountNumber())), getSelf());
+    }
+    
+    private void credit(Credit credit) {
+        if (checkIfAccountExists(credit.getAccountNumber())) {
+            creditBalance(credit);
+        } else {
+            sendFailureResponse(getSender(), ResultCode.NOT_FOUND, credit.getAccountNumber());
+        }
+    }
+    
+    private void debit(Debit debit) {
+        if (checkIfAccountExists(debit.getAccountNumber())) {
+            if (checkCreditAvailability(debit.getAccountNumber(), debit.getAmount())) {
+                debitBalance(debit);
+            } else {
+                sendFailureResponse(getSender(), ResultCode.INSUFFICIENT_FUNDS, debit.getAccountNumber());
+            }
+        } else {
+            sendFailureResponse(getSender(), ResultCode.NOT_FOUND, debit.getAccountNumber());
+        }
+    }
+    
+    /**
+     * Both accounts live on this shard, so the transfer is checked and applied in one step.
+     */
+    private void transfer(Transfer transfer) {
+        ActorRef replyTo = getSender();
+        if (!checkIfAccountExists(transfer.getSourceAccountNumber())) {
+            sendFailureResponse(replyTo, ResultCode.NOT_FOUND, transfer.getTransactionId());
+        } else if (!checkIfAccountExists(transfer.getTargetAccountNumber())) {
+            sendFailureResponse(replyTo, ResultCode.NOT_FOUND, transfer.getTransactionId());
+        } else if (!checkCreditAvailability(transfer.getSourceAccountNumber(), transfer.getAmount())) {
+            sendFailureResponse(replyTo, ResultCode.INSUFFICIENT_FUNDS, transfer.getTransactionId());
+        } else {
+            updateBalance(transfer.getSourceAccountNumber(), -transfer.getAmount());
+            updateBalance(transfer.getTargetAccountNumber(), transfer.getAmount());
+            persistAndSendSuccessResponse(JournalEvent.transferred(transfer.getTransactionId(),
+                    transfer.getSourceAccountNumber(), transfer.getTargetAccountNumber(), transfer.getAmount()),
+                    replyTo);
+        }
+    }
+    
+    private void reserveTransfer(ReserveTransfer reserve) {
+        Transfer transfer = reserve.getTransfer();
+        if (!checkIfAccountExists(transfer.getSourceAccountNumber())) {
+            sendFailureResponse(reserve.getReplyTo(), ResultCode.NOT_FOUND, transfer.getTransactionId());
+        } else if (!checkCreditAvailability(transfer.getSourceAccountNumber(), transfer.getAmount())) {
+            sendFailureResponse(reserve.getReplyTo(), ResultCode.INSUFFICIENT_FUNDS, transfer.getTransactionId());
+        } else {
+            updateBalance(transfer.getSourceAccountNumber(), -transfer.getAmount());
+            journal.append(JournalEvent.transferReserved(transfer.getTransactionId(),
+                    transfer.getSourceAccountNumber(), transfer.getTargetAccountNumber(), transfer.getAmount()));
+            if (inFlightTransfers != null) {
+                inFlightTransfers.reservations.put(transfer.getTransactionId(),
+                        new InFlightTransfers.Reservation(transfer, reserve.getReplyTo(), System.nanoTime()));
+            }
+            getContext().getParent().tell(new CommitTransfer(transfer, reserve.getReplyTo()), getSelf());
+        }
+    }
+    
+    /**
+     * A repeated commit of a clustered transfer is only acknowledged, and only once the commit is durable;
+     * until then the acknowledgement sent by {@link #persistAndSettle(JournalEvent, ActorRef, Transfer)}
+     * is still to come.
+     */
+    private void commitTransfer(CommitTransfer commit) {
+        Transfer transfer = commit.getTransfer();
+        InFlightTransfers.Commit committed = inFlightTransfers == null ? null
+                : inFlightTransfers.commits.get(transfer.getTransactionId());
+        if (committed != null) {
+            if (committed.isDurable()) {
+                getContext().getParent().tell(new SettleTransfer(transfer), getSelf());
+            }
+        } else if (checkIfAccountExists(transfer.getTargetAccountNumber())) {
+            updateBalance(transfer.getTargetAccountNumber(), transfer.getAmount());
+            JournalEvent event = JournalEvent.transferCommitted(transfer.getTransactionId(),
+                    transfer.getSourceAccountNumber(), transfer.getTargetAccountNumber(), transfer.getAmount());
+            if (inFlightTransfers == null) {
+                persistAndSendSuccessResponse(event, commit.getReplyTo());
+            } else {
+                inFlightTransfers.commits.put(transfer.getTransactionId(), new InFlightTransfers.Commit(transfer,
+                        persistAndSettle(event, commit.getReplyTo(), transfer), System.nanoTime()));
+            }
+        } else {
+            getContext().getParent().tell(new ReleaseTransfer(transfer, commit.getReplyTo(), ResultCode.NOT_FOUND),
+                    getSelf());
+        }
+    }
+    
+    /**
+     * A repeated release of a clustered transfer is ignored, so the amount is only credited back once.
+     */
+    private void releaseTransfer(ReleaseTransfer release) {
+        Transfer transfer = release.getTransfer();
+        if (inFlightTransfers != null && inFlightTransfers.reservations.remove(transfer.getTransactionId()) == null) {
+            return;
+        }
+        updateBalance(transfer.getSourceAccountNumber(), transfer.getAmount());
+        persistAndSendFailureResponse(JournalEvent.transferReleased(transfer.getTransactionId(),
+                transfer.getSourceAccountNumber(), transfer.getTargetAccountNumber(), transfer.getAmount()),
+                release.getReplyTo(), release.getReason());
+    }
+    
+    /**
+     * The target shard is only told to forget its commit once the settlement is durable, as a reservation
+     * recovered without it would be offered again. A repeated settlement is journaled again for the same
+     * reason: the first one may not be durable yet.
+     */
+    private void settleTransfer(SettleTransfer settle) {
+        Transfer transfer = settle.getTransfer();
+        if (inFlightTransfers != null) {
+            inFlightTransfers.reservations.remove(transfer.getTransactionId());
+            ActorRef self = getSelf();
+            ActorRef parent = getContext().getParent();
+            journal.append(JournalEvent.transferSettled(transfer.getTransactionId(), transfer.getSourceAccountNumber(),
+                    transfer.getTargetAccountNumber(), transfer.getAmount()), new ForgetTransfer(transfer))
+                    .thenAccept(forget -> parent.tell(forget, self));
+        }
+    }
+    
+    private void forgetTransfer(ForgetTransfer forget) {
+        Transfer transfer = forget.getTransfer();
+        if (inFlightTransfers != null && inFlightTransfers.commits.remove(transfer.getTransactionId()) != null) {
+            journal.append(JournalEvent.transferForgotten(transfer.getTransactionId(),
+                    transfer.getSourceAccountNumber(), transfer.getTargetAccountNumber(), transfer.getAmount()));
+        }
+    }
+    
+    /**
+     * Offers every reservation that has been in flight for a retry interval to its target shard again,
+     * and acknowledges every durable commit that has not been settled for a retry interval again.
+     * Answers to a recovered reservation go to dead letters, as its sender is gone.
+     */
+    private void retryTransfers() {
+        long due = System.nanoTime() - inFlightTransfers.retryInterval.toNanos();
+        for (InFlightTransfers.Reservation reservation : inFlightTransfers.reservations.values()) {
+            if (reservation.reservedAt == Long.MIN_VALUE || reservation.reservedAt - due <= 0) {
+                ActorRef replyTo = reservation.replyTo != null ? reservation.replyTo
+                        : getContext().getSystem().deadLetters();
+                getContext().getParent().tell(new CommitTransfer(reservation.transfer, replyTo), getSelf());
+            }
+        }
+        for (InFlightTransfers.Commit commit : inFlightTransfers.commits.values()) {
+            if (commit.isDurable() && (commit.committedAt == Long.MIN_VALUE || commit.committedAt - due <= 0)) {
+                getContext().getParent().tell(new SettleTransfer(commit.transfer), getSelf());
+            }
+        }
+    }
+    
+    private void createAccount(CreateAccount createAccount) {
+        Account account = createAccount.getAccount();
+        addAccount(account);
+        
+        persistAndSendSuccessResponse(JournalEvent.accountCreated(account.getAccountNumber(), account.getName(),
+                toMinorUnits(account.getBalance())), getSender());
+    }
+    
+    private boolean checkIfAccountExists(String accountNumber) {
+        return accounts.contains(accountNumber);
+    }
+    
+    /**
+     * Balances are stored as minor units, so an {@link Account} is only materialised when one is
+     * rendered back to a client.
+     */
+    private Account getAccount(String accountNumber) {
+        int slot = accounts.indexOf(accountNumber);
+        if (slot == AccountTable.NOT_FOUND) {
+            return null;
+        }
+        return new Account(accountNumber, accounts.nameAt(slot), fromMinorUnits(accounts.balanceAt(slot)),
+                accounts.versionAt(slot));
+    }
+    
+    private void addAccount(Account account) {
+        accounts.add(account.getAccountNumber(), account.getName(), toMinorUnits(account.getBalance()));
+    }
+    
+    private long getAccountBalance(String accountNumber) {
+        return accounts.balanceAt(accounts.indexOf(accountNumber));
+    }
+    
+    private void updateBalance(String accountNumber, long amount) {
+        accounts.addToBalance(accounts.indexOf(accountNumber), amount);
+    }
+    
+    private void creditBalance(Credit credit) {
+        updateBalance(credit.getAccountNumber(), credit.getAmount());
+        
+        persistAndSendSuccessResponse(JournalEvent.credited(credit.getAccountNumber(), credit.getAmount()),
+                getSender());
+    }
+    
+    private void debitBalance(Debit debit) {
+        updateBalance(debit.getAccountNumber(), -debit.getAmount());
+        
+        persistAndSendSuccessResponse(JournalEvent.debited(debit.getAccountNumber(), debit.getAmount()),
+                getSender());
+    }
+    
+    private boolean checkCreditAvailability(String accountNumber, long amount) {
+        return getAccountBalance(accountNumber) - amount > MINIMUM_BALANCE;
+    }
+    
+    /**
+     * The mutation is already applied in memory; the reply is held back by the journal until the
+     * event is durable. Outcomes are logged at debug level, so the busy path formats nothing.
+     */
+    private void persistAndSendSuccessResponse(JournalEvent event, ActorRef ref) {
+        logger.debug("{} {} succeeded: {}", loggingPrefix, event.getType(), subjectOf(event));
+        journal.append(event, ref, SuccessResponse.INSTANCE, FailureResponse.of(ResultCode.FAILED), getSelf());
+    }
+    
+    /**
+     * Like {@link #persistAndSendSuccessResponse(JournalEvent, ActorRef)}, and acknowledges the commit to
+     * the source shard once it is durable. If the journal fails first nobody is answered: the source shard
+     * keeps the reservation and offers the commit again, so the transfer is in doubt rather than failed.
+     * Returns when the event is durable.
+     */
+    private CompletableFuture<SuccessResponse> persistAndSettle(JournalEvent event, ActorRef ref, Transfer transfer) {
+        logger.debug("{} {} succeeded: {}", loggingPrefix, event.getType(), transfer.getTransactionId());
+        ActorRef self = getSelf();
+        ActorRef parent = getContext().getParent();
+        CompletableFuture<SuccessResponse> durable = journal.append(event, SuccessResponse.INSTANCE)
+                .toCompletableFuture();
+        durable.thenAccept(reply -> {
+            ref.tell(reply, self);
+            parent.tell(new SettleTransfer(transfer), self);
+        });
+        return durable;
+    }
+    
+    private void persistAndSendFailureResponse(JournalEvent event, ActorRef ref, ResultCode code) {
+        logger.debug("{} {} failed with {}: {}", loggingPrefix, event.getType(), code, subjectOf(event));
+        journal.append(event, ref, FailureResponse.of(code), FailureResponse.of(ResultCode.FAILED), getSelf());
+    }
+    
+    /**
+     * {@code subject} names the account or transaction in the log.
+     */
+    private void sendFailureResponse(ActorRef ref, ResultCode code, String subject) {
+        logger.debug("{} Rejected with {}: {}", loggingPrefix, code, subject);
+        ref.tell(FailureResponse.of(code), getSelf());
+    }
+    
+    private static String subjectOf(JournalEvent event) {
+        return event.getTransactionId() != null ? event.getTransactionId() : event.getAccountNumber();
+    }
+    
+}
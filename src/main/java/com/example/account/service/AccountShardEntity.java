@@ -0,0 +1,138 @@
+package com.example.account.service;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.cluster.sharding.ClusterSharding;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
+import com.example.account.service.AccountShardActor.CommitTransfer;
+import com.example.account.service.AccountShardActor.ForgetTransfer;
+import com.example.account.service.AccountShardActor.InFlightTransfers;
+import com.example.account.service.AccountShardActor.ReleaseTransfer;
+import com.example.account.service.AccountShardActor.SettleTransfer;
+import com.example.persistence.FileJournal;
+import com.example.persistence.JournalEvent;
+import com.example.persistence.RecoveredState;
+import com.example.persistence.Snapshotter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_DISPATCHER;
+import static com.example.account.utils.AccountConfigs.CLUSTER_TRANSFER_RETRY_INTERVAL;
+import static com.example.account.utils.AccountConfigs.JOURNAL_MAX_BATCH_SIZE;
+import static com.example.account.utils.AccountConfigs.SNAPSHOT_INTERVAL;
+
+/**
+ * One account shard as a Cluster Sharding entity, started on whichever node currently owns the shard.
+ * <p>
+ * Every shard has its own journal in {@code <journal directory>/shard-<n>}, which must be reachable from
+ * every node: the entity recovers the shard's accounts from it when it starts, runs an
+ * {@link AccountShardActor} on them and closes the journal once that actor has stopped, so the next
+ * owner starts from everything it wrote. Cross-shard transfer steps the shard sends are routed through
+ * the shard region to the shard owning the other account.
+ */
+public class AccountShardEntity extends AbstractActor {
+    
+    private LoggingAdapter logger = Logging.getLogger(getContext().getSystem(), this);
+    
+    private final Path journalDirectory;
+    private final int numberOfShards;
+    private ActorRef shard;
+    private ActorRef shardRegion;
+    private FileJournal journal;
+    private Snapshotter snapshotter;
+    
+    /**
+     * Sent by the shard region before the shard moves to another node: the shard finishes the commands
+     * it has already received before the entity stops.
+     */
+    enum HandOff {
+        INSTANCE
+    }
+    
+    static Props props(Path journalDirectory, int numberOfShards) {
+        return Props.create(AccountShardEntity.class, journalDirectory, numberOfShards).withDispatcher(ACCOUNT_DISPATCHER);
+    }
+    
+    public AccountShardEntity(Path journalDirectory, int numberOfShards) {
+        this.journalDirectory = journalDirectory;
+        this.numberOfShards = numberOfShards;
+    }
+    
+    @Override
+    public void preStart() throws IOException {
+        long startedAt = System.nanoTime();
+        Path directory = journalDirectory.resolve("shard-" + getSelf().path().name());
+        RecoveredState state = RecoveredState.recoverShard(directory, logger);
+        journal = FileJournal.open(getContext().getSystem(), RecoveredState.journalFile(directory),
+                state.getJournalLength(), JOURNAL_MAX_BATCH_SIZE);
+        if (!SNAPSHOT_INTERVAL.isZero()) {
+            snapshotter = Snapshotter.start(getContext().getSystem(), directory, journal, SNAPSHOT_INTERVAL);
+        }
+        
+        List<Transfer> reserved = transfersOf(state.getReservedTransfers());
+        InFlightTransfers inFlightTransfers = new InFlightTransfers(reserved,
+                transfersOf(state.getUnsettledCommits()), CLUSTER_TRANSFER_RETRY_INTERVAL);
+        shard = getContext().actorOf(AccountShardActor.props(journal, state.getAccountTables()[0], inFlightTransfers),
+                "accounts");
+        getContext().watch(shard);
+        shardRegion = ClusterSharding.get(getContext().getSystem()).shardRegion(AccountSharding.TYPE_NAME);
+        logger.info("[ ACCOUNT ] : Shard {} recovered {} accounts and {} transfers in flight in {} ms",
+                getSelf().path().name(), state.getAccountCount(), reserved.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+    
+    @Override
+    public void postStop() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(HandOff.class, handOff -> shard.tell(PoisonPill.getInstance(), getSelf()))
+                .match(Terminated.class, terminated -> getContext().stop(getSelf()))
+                .match(CommitTransfer.class, this::fromShard,
+                        commit -> route(commit.getTransfer().getTargetAccountNumber(), commit))
+                .match(ReleaseTransfer.class, this::fromShard,
+                        release -> route(release.getTransfer().getSourceAccountNumber(), release))
+                .match(SettleTransfer.class, this::fromShard,
+                        settle -> route(settle.getTransfer().getSourceAccountNumber(), settle))
+                .match(ForgetTransfer.class, this::fromShard,
+                        forget -> route(forget.getTransfer().getTargetAccountNumber(), forget))
+                .match(AccountSharding.Wake.class, wake -> { })
+                .matchAny(message -> shard.forward(message, getContext()))
+                .build();
+    }
+    
+    private static List<Transfer> transfersOf(Collection<JournalEvent> events) {
+        List<Transfer> transfers = new ArrayList<>();
+        for (JournalEvent event : events) {
+            transfers.add(new Transfer(event.getTransactionId(), event.getAccountNumber(),
+                    event.getTargetAccountNumber(), event.getAmount()));
+        }
+        return transfers;
+    }
+    
+    private boolean fromShard(Object message) {
+        return getSender().equals(shard);
+    }
+    
+    private void route(String accountNumber, Object message) {
+        shardRegion.forward(AccountSharding.envelope(accountNumber, numberOfShards, message), getContext());
+    }
+}
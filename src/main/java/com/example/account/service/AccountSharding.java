@@ -0,0 +1,134 @@
+package com.example.account.service;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Address;
+import akka.cluster.Cluster;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ClusterShardingSettings;
+import akka.cluster.sharding.ShardRegion;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.utils.AccountConfigs.CLUSTER_TRANSFER_RETRY_INTERVAL;
+
+/**
+ * Clustered account layer: the account shards are Cluster Sharding entities ({@link AccountShardEntity})
+ * that the cluster spreads over its nodes and moves when nodes join or leave, and every node routes
+ * commands to them through its own {@link AccountRegistryActor}.
+ * <p>
+ * An account shard is also the unit Cluster Sharding allocates, so {@code account.shards} bounds how
+ * many nodes can share the accounts; it must be the same on every node.
+ */
+public final class AccountSharding {
+    
+    public static final String TYPE_NAME = "accounts";
+    
+    private AccountSharding() {
+        
+    }
+    
+    /**
+     * A command for the shard with the given number.
+     */
+    static final class Envelope implements Serializable {
+        private final int shard;
+        private final Object message;
+        
+        Envelope(int shard, Object message) {
+            this.shard = shard;
+            this.message = message;
+        }
+        
+        int getShard() {
+            return shard;
+        }
+        
+        Object getMessage() {
+            return message;
+        }
+    }
+    
+    /**
+     * Starts a shard that is not running anywhere, e.g. after it moved, so its transfers in flight are
+     * resumed without waiting for a command.
+     */
+    enum Wake {
+        INSTANCE
+    }
+    
+    private static final class Extractor implements ShardRegion.MessageExtractor {
+        @Override
+        public String entityId(Object message) {
+            return message instanceof Envelope ? String.valueOf(((Envelope) message).shard) : null;
+        }
+        
+        @Override
+        public Object entityMessage(Object message) {
+            return ((Envelope) message).message;
+        }
+        
+        @Override
+        public String shardId(Object message) {
+            return entityId(message);
+        }
+    }
+    
+    static Envelope envelope(int shard, Object message) {
+        return new Envelope(shard, message);
+    }
+    
+    static Envelope envelope(String accountNumber, int numberOfShards, Object message) {
+        return new Envelope(AccountRegistryActor.shardOf(accountNumber, numberOfShards), message);
+    }
+    
+    /**
+     * Starts this node's part of the account layer, whose shards keep their journals below
+     * {@code journalDirectory}, and returns the registry the node's routes and transactions talk to.
+     * Every shard is woken once per {@code cluster.transfer-retry-interval}.
+     */
+    public static ActorRef start(ActorSystem system, Path journalDirectory, int numberOfShards) {
+        ClusterShardingSettings settings = ClusterShardingSettings.create(system);
+        ClusterSharding sharding = ClusterSharding.get(system);
+        ActorRef shardRegion = sharding.start(TYPE_NAME, AccountShardEntity.props(journalDirectory, numberOfShards),
+                settings, new Extractor(), sharding.defaultShardAllocationStrategy(settings),
+                AccountShardEntity.HandOff.INSTANCE);
+        long interval = CLUSTER_TRANSFER_RETRY_INTERVAL.toNanos();
+        system.scheduler().schedule(
+                scala.concurrent.duration.Duration.create(interval, TimeUnit.NANOSECONDS),
+                scala.concurrent.duration.Duration.create(interval, TimeUnit.NANOSECONDS),
+                () -> {
+                    for (int shard = 0; shard < numberOfShards; shard++) {
+                        shardRegion.tell(envelope(shard, Wake.INSTANCE), ActorRef.noSender());
+                    }
+                }, system.dispatcher());
+        return system.actorOf(AccountRegistryActor.props(shardRegion, numberOfShards), "accountRegistryActor");
+    }
+    
+    /**
+     * Joins the cluster through the given {@code host:port} seed nodes, or forms a new cluster of this
+     * node alone if there are none.
+     */
+    public static void join(ActorSystem system, List<String> seedNodes) {
+        Cluster cluster = Cluster.get(system);
+        if (seedNodes.isEmpty()) {
+            cluster.join(cluster.selfAddress());
+            return;
+        }
+        List<Address> addresses = new ArrayList<>();
+        for (String seedNode : seedNodes) {
+            int separator = seedNode.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Seed node must be host:port, was " + seedNode);
+            }
+            addresses.add(new Address(cluster.selfAddress().protocol(), system.name(),
+                    seedNode.substring(0, separator), Integer.parseInt(seedNode.substring(separator + 1))));
+        }
+        cluster.joinSeedNodes(Collections.unmodifiableList(addresses));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.account.service;
+
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.SerializerWithStringManifest;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
+import com.example.account.service.AccountShardActor.CommitTransfer;
+import com.example.account.service.AccountShardActor.ForgetTransfer;
+import com.example.account.service.AccountShardActor.ReleaseTransfer;
+import com.example.account.service.AccountShardActor.ReserveTransfer;
+import com.example.account.service.AccountShardActor.SettleTransfer;
+import com.example.serialization.BinaryReader;
+import com.example.serialization.BinaryWriter;
+import com.example.serialization.MessageSerializer;
+
+import java.io.NotSerializableException;
+
+/**
+ * Binary encoding of the messages the clustered account shards exchange: the {@link AccountSharding}
+ * envelope, whose command is written with the serializer configured for it, and the cross-shard transfer
+ * steps. Versioned per message type like {@link MessageSerializer}: readers accept newer versions and
+ * ignore appended fields. A release is written as of {@link MessageSerializer#APPENDED_RESULT_CODES}, whose
+ * reason is a message followed by a {@link com.example.account.messages.ResultCode}; every other step is
+ * still at version 1.
+ */
+public final class AccountShardingSerializer extends SerializerWithStringManifest {
+    
+    private static final String ENVELOPE = "E";
+    private static final String RESERVE = "R";
+    private static final String COMMIT = "C";
+    private static final String RELEASE = "L";
+    private static final String SETTLE = "S";
+    private static final String FORGET = "F";
+    private static final String WAKE = "W";
+    
+    private final ExtendedActorSystem system;
+    
+    public AccountShardingSerializer(ExtendedActorSystem system) {
+        this.system = system;
+    }
+    
+    @Override
+    public int identifier() {
+        return 1_786_422;
+    }
+    
+    @Override
+    public String manifest(Object message) {
+        if (message instanceof AccountSharding.Envelope) {
+            return ENVELOPE;
+        } else if (message instanceof ReserveTransfer) {
+            return RESERVE;
+        } else if (message instanceof CommitTransfer) {
+            return COMMIT;
+        } else if (message instanceof ReleaseTransfer) {
+            return RELEASE;
+        } else if (message instanceof SettleTransfer) {
+            return SETTLE;
+        } else if (message instanceof ForgetTransfer) {
+            return FORGET;
+        } else if (message instanceof AccountSharding.Wake) {
+            return WAKE;
+        }
+        throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+    }
+    
+    @Override
+    public byte[] toBinary(Object message) {
+        BinaryWriter writer = new BinaryWriter(96)
+                .writeByte(message instanceof ReleaseTransfer ? MessageSerializer.APPENDED_RESULT_CODES : 1);
+        if (message instanceof AccountSharding.Envelope) {
+            AccountSharding.Envelope envelope = (AccountSharding.Envelope) message;
+            writer.writeVarInt(envelope.getShard()).writeMessage(serialization(), envelope.getMessage());
+        } else if (message instanceof ReserveTransfer) {
+            ReserveTransfer reserve = (ReserveTransfer) message;
+            writeTransfer(writer, reserve.getTransfer()).writeActorRef(reserve.getReplyTo());
+        } else if (message instanceof CommitTransfer) {
+            CommitTransfer commit = (CommitTransfer) message;
+            writeTransfer(writer, commit.getTransfer()).writeActorRef(commit.getReplyTo());
+        } else if (message instanceof ReleaseTransfer) {
+            ReleaseTransfer release = (ReleaseTransfer) message;
+            MessageSerializer.writeCode(writeTransfer(writer, release.getTransfer()).writeActorRef(release.getReplyTo()),
+                    release.getReason());
+        } else if (message instanceof SettleTransfer) {
+            writeTransfer(writer, ((SettleTransfer) message).getTransfer());
+        } else if (message instanceof ForgetTransfer) {
+            writeTransfer(writer, ((ForgetTransfer) message).getTransfer());
+        } else if (!(message instanceof AccountSharding.Wake)) {
+            throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+        }
+        return writer.toByteArray();
+    }
+    
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        BinaryReader reader = new BinaryReader(bytes);
+        int version = reader.readByte();
+        if (version < 1) {
+            throw new NotSerializableException("Message " + manifest + " has invalid schema version " + version);
+        }
+        switch (manifest) {
+            case ENVELOPE:
+                return AccountSharding.envelope(reader.readVarInt(), reader.readMessage(serialization()));
+            case RESERVE:
+                return new ReserveTransfer(readTransfer(reader), reader.readActorRef(system));
+            case COMMIT:
+                return new CommitTransfer(readTransfer(reader), reader.readActorRef(system));
+            case RELEASE:
+                return new ReleaseTransfer(readTransfer(reader), reader.readActorRef(system),
+                        MessageSerializer.readCode(reader, version));
+            case SETTLE:
+                return new SettleTransfer(readTransfer(reader));
+            case FORGET:
+                return new ForgetTransfer(readTransfer(reader));
+            case WAKE:
+                return AccountSharding.Wake.INSTANCE;
+            default:
+                throw new NotSerializableException("Unknown message manifest " + manifest);
+        }
+    }
+    
+    private static BinaryWriter writeTransfer(BinaryWriter writer, Transfer transfer) {
+        return writer.writeString(transfer.getTransactionId())
+                .writeString(transfer.getSourceAccountNumber())
+                .writeString(transfer.getTargetAccountNumber())
+                .writeVarLong(transfer.getAmount());
+    }
+    
+    private static Transfer readTransfer(BinaryReader reader) throws NotSerializableException {
+        return new Transfer(reader.readString(), reader.readString(), reader.readString(), reader.readVarLong());
+    }
+    
+    private Serialization serialization() {
+        return SerializationExtension.get(system);
+    }
+}
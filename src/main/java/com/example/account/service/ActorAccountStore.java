@@ -0,0 +1,119 @@
+package com.example.account.service;
+
+import akka.actor.ActorRef;
+import akka.pattern.Patterns;
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
+import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.messages.AccountRegistryMessages.CreateAccounts;
+import com.example.account.messages.AccountRegistryMessages.Credit;
+import com.example.account.messages.AccountRegistryMessages.Debit;
+import com.example.account.messages.AccountRegistryMessages.GetAccount;
+import com.example.account.messages.AccountRegistryMessages.Response;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
+import com.example.account.models.Account;
+import com.example.account.store.AccountStore;
+import com.example.account.store.AccountView;
+import com.example.admission.AdmissionQueue;
+import com.example.persistence.JournalFailedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_READ_CONSISTENCY;
+import static com.example.account.utils.AccountConfigs.ADMISSION_ACCOUNT_QUEUE_SIZE;
+import static com.example.account.utils.AccountConfigs.AKKA_TIMEOUT_DURATION;
+
+/**
+ * {@link AccountStore} backed by an {@link AccountRegistryActor} and its shards, asked with a timeout.
+ * <p>
+ * Creates, import batches and lookups wait in an {@link AdmissionQueue} bounded by
+ * {@code admission.account-queue-size}, so an import batch beyond it is rejected as overloaded; transfers
+ * are already bounded by the transaction registry's queue. Unless {@code account.read-consistency} is
+ * {@code sequential}, lookups are read from the {@link AccountView} on the calling thread.
+ */
+public final class ActorAccountStore implements AccountStore {
+    
+    private final ActorRef accountRegistryActor;
+    private final AccountView accountView;
+    private final Duration timeout = Duration.ofSeconds(AKKA_TIMEOUT_DURATION);
+    private final AdmissionQueue accountQueue;
+    
+    /**
+     * Store without a view, whose lookups always ask the registry and which cannot tell versions, so
+     * concurrent lookups are not shared.
+     */
+    public ActorAccountStore(ActorRef accountRegistryActor) {
+        this(accountRegistryActor, null);
+    }
+    
+    public ActorAccountStore(ActorRef accountRegistryActor, AccountView accountView) {
+        this.accountRegistryActor = accountRegistryActor;
+        this.accountView = accountView;
+        this.accountQueue = new AdmissionQueue(accountRegistryActor, ADMISSION_ACCOUNT_QUEUE_SIZE, timeout);
+    }
+    
+    @Override
+    public CompletionStage<Response> create(Account account) {
+        return accountQueue.ask(new CreateAccount(account)).thenApply(Response.class::cast);
+    }
+    
+    @Override
+    public CompletionStage<AccountsCreated> createAll(List<Account> accounts) {
+        return accountQueue.ask(new CreateAccounts(accounts)).thenApply(AccountsCreated.class::cast);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletionStage<Optional<Account>> get(String accountNumber) {
+        if (readsBypassWrites()) {
+            try {
+                return CompletableFuture.completedFuture(accountView.get(accountNumber));
+            } catch (JournalFailedException e) {
+                CompletableFuture<Optional<Account>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+        return accountQueue.ask(new GetAccount(accountNumber)).thenApply(account -> (Optional<Account>) account);
+    }
+    
+    @Override
+    public long versionOf(String accountNumber) {
+        return accountView == null ? UNKNOWN_VERSION : accountView.versionOf(accountNumber);
+    }
+    
+    @Override
+    public boolean readsBypassWrites() {
+        return accountView != null && ACCOUNT_READ_CONSISTENCY.bypassesMailbox();
+    }
+    
+    @Override
+    public CompletionStage<Response> credit(String accountNumber, long amount) {
+        return ask(new Credit(accountNumber, amount));
+    }
+    
+    @Override
+    public CompletionStage<Response> debit(String accountNumber, long amount) {
+        return ask(new Debit(accountNumber, amount));
+    }
+    
+    @Override
+    public CompletionStage<Response> transfer(String transactionId, String sourceAccountNumber,
+                                              String targetAccountNumber, long amount) {
+        return ask(new Transfer(transactionId, sourceAccountNumber, targetAccountNumber, amount));
+    }
+    
+    /**
+     * Creates, imports and lookups waiting for the account registry, bounded by {@code admission.account-queue-size}.
+     */
+    public AdmissionQueue accountQueue() {
+        return accountQueue;
+    }
+    
+    private CompletionStage<Response> ask(Object message) {
+        return Patterns.ask(accountRegistryActor, message, timeout).thenApply(Response.class::cast);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.account.store;
+
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
+import com.example.account.messages.AccountRegistryMessages.Response;
+import com.example.account.models.Account;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The account layer as seen by the routes and the transaction registry, selected by
+ * {@code account.engine}. Mutations answer with the {@code SuccessResponse} or {@code FailureResponse}
+ * the account actors reply with, once they are durable; amounts are in minor units (cents).
+ */
+public interface AccountStore {
+    
+    /**
+     * Returned by {@link #versionOf(String)} when the store cannot tell an account's version without
+     * looking the account up.
+     */
+    long UNKNOWN_VERSION = -1;
+    
+    CompletionStage<Response> create(Account account);
+    
+    /**
+     * Creates every account it can; the rejected ones are reported by their index in {@code accounts}.
+     */
+    CompletionStage<AccountsCreated> createAll(List<Account> accounts);
+    
+    /**
+     * The account; fails with {@link com.example.persistence.JournalFailedException} if the store reads
+     * state that its failed journal may not hold.
+     */
+    CompletionStage<Optional<Account>> get(String accountNumber);
+    
+    /**
+     * Current version of the account, {@link AccountTable#NO_VERSION} if it does not exist, or
+     * {@link #UNKNOWN_VERSION}; never blocks. Throws {@link com.example.persistence.JournalFailedException} like {@link #get(String)}.
+     */
+    long versionOf(String accountNumber);
+    
+    /**
+     * Whether {@link #get(String)} reads the same state as {@link #versionOf(String)} instead of queueing
+     * behind writes, so a version that matches a client's {@code ETag} can be answered without reading
+     * the account.
+     */
+    boolean readsBypassWrites();
+    
+    CompletionStage<Response> credit(String accountNumber, long amount);
+    
+    CompletionStage<Response> debit(String accountNumber, long amount);
+    
+    /**
+     * Moves {@code amount} from the source to the target account, or neither balance if either account
+     * is missing or the source cannot cover it.
+     */
+    CompletionStage<Response> transfer(String transactionId, String sourceAccountNumber,
+                                       String targetAccountNumber, long amount);
+}
@@ -0,0 +1,234 @@
+package com.example.account.store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_READ_CONSISTENCY;
+import static com.example.account.utils.ReadConsistency.READ_YOUR_WRITES;
+
+/**
+ * Open-addressing table of accounts keyed by account number. Balances are kept as primitive
+ * {@code long} minor units in a parallel array, so crediting or debiting an existing account
+ * is an in-place update that allocates nothing.
+ * <p>
+ * Every instance is written by a single shard actor only. {@link #read(String, Reader)} may be called
+ * from any thread at the same time: an account number is stored after its name and balance, and a
+ * resize publishes the new arrays only once they are complete, so readers never see a partial account.
+ * With {@code account.read-consistency = read-your-writes} balances are stored with volatile writes, so
+ * a read sees every update made before it started; otherwise with cheaper ordered writes.
+ * <p>
+ * Every account also has a version, which starts at 1 and is incremented after each balance update.
+ * Readers load the version before the balance, so a version is never paired with an older balance than
+ * the one it was written after.
+ */
+public final class AccountTable {
+    
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final boolean VOLATILE_BALANCE_WRITES = ACCOUNT_READ_CONSISTENCY == READ_YOUR_WRITES;
+    
+    public static final int NOT_FOUND = -1;
+    public static final long NO_VERSION = 0;
+    
+    /**
+     * Receives an account read by {@link #read(String, Reader)}.
+     */
+    public interface Reader<T> {
+        T read(String accountNumber, String name, long balance, long version);
+    }
+    
+    private static final class Slots {
+        private final AtomicReferenceArray<String> accountNumbers;
+        private final AtomicReferenceArray<String> names;
+        private final AtomicLongArray balances;
+        private final AtomicLongArray versions;
+        private final int mask;
+        
+        Slots(int capacity) {
+            accountNumbers = new AtomicReferenceArray<>(capacity);
+            names = new AtomicReferenceArray<>(capacity);
+            balances = new AtomicLongArray(capacity);
+            versions = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+        
+        int indexOf(String accountNumber) {
+            for (int slot = hash(accountNumber) & mask; ; slot = (slot + 1) & mask) {
+                String candidate = accountNumbers.get(slot);
+                if (candidate == null) {
+                    return NOT_FOUND;
+                }
+                if (candidate.equals(accountNumber)) {
+                    return slot;
+                }
+            }
+        }
+        
+        int freeSlotOf(String accountNumber) {
+            int slot = hash(accountNumber) & mask;
+            while (accountNumbers.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+        
+        void store(int slot, String accountNumber, String name, long balance, long version) {
+            names.lazySet(slot, name);
+            balances.lazySet(slot, balance);
+            versions.lazySet(slot, version);
+            accountNumbers.set(slot, accountNumber);
+        }
+    }
+    
+    private volatile Slots slots;
+    private int size;
+    private int resizeThreshold;
+    
+    public AccountTable() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public AccountTable(int expectedAccounts) {
+        allocate(tableSizeFor(expectedAccounts));
+    }
+    
+    /**
+     * Slot of the given account, or {@link #NOT_FOUND}. Slots change on resize, so they are only
+     * meaningful to the writer.
+     */
+    public int indexOf(String accountNumber) {
+        if (accountNumber == null) {
+            return NOT_FOUND;
+        }
+        return slots.indexOf(accountNumber);
+    }
+    
+    public boolean contains(String accountNumber) {
+        return indexOf(accountNumber) != NOT_FOUND;
+    }
+    
+    /**
+     * Reads the account from any thread and passes it to {@code reader}; returns null if the account
+     * does not exist.
+     */
+    public <T> T read(String accountNumber, Reader<T> reader) {
+        if (accountNumber == null) {
+            return null;
+        }
+        Slots current = slots;
+        int slot = current.indexOf(accountNumber);
+        if (slot == NOT_FOUND) {
+            return null;
+        }
+        long version = current.versions.get(slot);
+        return reader.read(accountNumber, current.names.get(slot), current.balances.get(slot), version);
+    }
+    
+    /**
+     * Current version of the account from any thread, or {@link #NO_VERSION} if the account does not
+     * exist; cheaper than {@link #read(String, Reader)} when only the version is needed.
+     */
+    public long versionOf(String accountNumber) {
+        if (accountNumber == null) {
+            return NO_VERSION;
+        }
+        Slots current = slots;
+        int slot = current.indexOf(accountNumber);
+        return slot == NOT_FOUND ? NO_VERSION : current.versions.get(slot);
+    }
+    
+    /**
+     * Adds a new account and returns its slot, or {@link #NOT_FOUND} if the account already exists.
+     */
+    public int add(String accountNumber, String name, long balance) {
+        if (accountNumber == null) {
+            throw new IllegalArgumentException("Account number must not be null");
+        }
+        if (size >= resizeThreshold) {
+            resize();
+        }
+        Slots current = slots;
+        int slot = hash(accountNumber) & current.mask;
+        for (String candidate; (candidate = current.accountNumbers.get(slot)) != null; slot = (slot + 1) & current.mask) {
+            if (candidate.equals(accountNumber)) {
+                return NOT_FOUND;
+            }
+        }
+        current.store(slot, accountNumber, name, balance, 1);
+        size++;
+        return slot;
+    }
+    
+    /**
+     * Number of slots; occupied slots are the ones whose {@link #accountNumberAt(int)} is not null.
+     */
+    public int capacity() {
+        return slots.mask + 1;
+    }
+    
+    public String accountNumberAt(int slot) {
+        return slots.accountNumbers.get(slot);
+    }
+    
+    public String nameAt(int slot) {
+        return slots.names.get(slot);
+    }
+    
+    public long balanceAt(int slot) {
+        return slots.balances.get(slot);
+    }
+    
+    public long versionAt(int slot) {
+        return slots.versions.get(slot);
+    }
+    
+    public void addToBalance(int slot, long amount) {
+        Slots current = slots;
+        long balance = current.balances.get(slot) + amount;
+        long version = current.versions.get(slot) + 1;
+        if (VOLATILE_BALANCE_WRITES) {
+            current.balances.set(slot, balance);
+            current.versions.set(slot, version);
+        } else {
+            current.balances.lazySet(slot, balance);
+            current.versions.lazySet(slot, version);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private void resize() {
+        Slots old = slots;
+        Slots resized = new Slots((old.mask + 1) << 1);
+        for (int slot = 0; slot <= old.mask; slot++) {
+            String accountNumber = old.accountNumbers.get(slot);
+            if (accountNumber != null) {
+                resized.store(resized.freeSlotOf(accountNumber), accountNumber, old.names.get(slot),
+                        old.balances.get(slot), old.versions.get(slot));
+            }
+        }
+        slots = resized;
+        resizeThreshold = (int) ((resized.mask + 1) * LOAD_FACTOR);
+    }
+    
+    private void allocate(int capacity) {
+        slots = new Slots(capacity);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    private static int tableSizeFor(int expectedAccounts) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedAccounts / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(DEFAULT_CAPACITY, capacity);
+    }
+    
+    /**
+     * Account numbers are frequently sequential, so the String hash is mixed before masking to keep
+     * linear probe sequences short.
+     */
+    private static int hash(String accountNumber) {
+        int h = accountNumber.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.account.store;
+
+import com.example.account.models.Account;
+import com.example.account.service.AccountRegistryActor;
+import com.example.persistence.Journal;
+import com.example.persistence.JournalFailedException;
+
+import java.util.Optional;
+
+import static com.example.account.utils.Money.fromMinorUnits;
+
+/**
+ * Read-only view over the {@link AccountTable}s of all shards, so account lookups can be answered on the
+ * calling thread without a message to the owning shard. Lookups never block and never wait behind the
+ * writes queued in a shard's mailbox.
+ * <p>
+ * The shards apply a write to their tables before its journal event is durable, so a lookup may see a
+ * write whose client is still waiting for it. Once the journal has failed, the tables may hold writes that
+ * were answered {@code FAILED}, so every lookup throws {@link JournalFailedException} instead.
+ */
+public final class AccountView {
+    
+    private final AccountTable[] accountTables;
+    private final Journal journal;
+    
+    /**
+     * View over tables whose writes are not journaled.
+     */
+    public AccountView(AccountTable[] accountTables) {
+        this(accountTables, Journal.IN_MEMORY);
+    }
+    
+    public AccountView(AccountTable[] accountTables, Journal journal) {
+        this.accountTables = accountTables;
+        this.journal = journal;
+    }
+    
+    public Optional<Account> get(String accountNumber) {
+        checkJournal();
+        if (accountNumber == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(tableOf(accountNumber).read(accountNumber,
+                (number, name, balance, version) -> new Account(number, name, fromMinorUnits(balance), version)));
+    }
+    
+    /**
+     * Current version of the account, or {@link AccountTable#NO_VERSION} if it does not exist.
+     */
+    public long versionOf(String accountNumber) {
+        checkJournal();
+        if (accountNumber == null) {
+            return AccountTable.NO_VERSION;
+        }
+        return tableOf(accountNumber).versionOf(accountNumber);
+    }
+    
+    private void checkJournal() {
+        if (journal.isFailed()) {
+            throw new JournalFailedException();
+        }
+    }
+    
+    private AccountTable tableOf(String accountNumber) {
+        return accountTables[AccountRegistryActor.shardOf(accountNumber, accountTables.length)];
+    }
+}
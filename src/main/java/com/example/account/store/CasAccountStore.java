@@ -0,0 +1,268 @@
+package com.example.account.store;
+
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
+import com.example.account.messages.AccountRegistryMessages.FailureResponse;
+import com.example.account.messages.AccountRegistryMessages.Response;
+import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.account.utils.Money;
+import com.example.persistence.Journal;
+import com.example.persistence.JournalEvent;
+import com.example.persistence.JournalFailedException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Supplier;
+
+import static com.example.account.utils.AccountConfigs.MINIMUM_BALANCE;
+import static com.example.account.utils.Money.fromMinorUnits;
+import static com.example.account.utils.Money.toMinorUnits;
+
+/**
+ * {@link AccountStore} that applies every operation on the calling thread, without actors. Each account
+ * is a cell whose balance is updated by compare-and-set, so credits and debits of different accounts
+ * never wait for each other and those of one account only retry while another one is applied.
+ * <p>
+ * A transfer holds the locks of the stripes of both accounts, taken in stripe order so two transfers in
+ * opposite directions cannot deadlock, so its debit and credit are never interleaved with another
+ * transfer of the same accounts. With a durable journal every mutation also holds its accounts' stripe
+ * locks until its event is appended, so events reach the journal in the order they were applied and a
+ * debit is never made durable before the credit it relied on.
+ * <p>
+ * Like {@link AccountTable}, the version of an account is incremented after each balance update and read
+ * before the balance, so a version is never paired with an older balance.
+ */
+public final class CasAccountStore implements AccountStore {
+    
+    private static final int STRIPES = 1024;
+    
+    private final ConcurrentHashMap<String, Cell> cells;
+    private final Object[] stripes = new Object[STRIPES];
+    private final Journal journal;
+    private final boolean ordered;
+    
+    private static final class Cell {
+        private static final AtomicLongFieldUpdater<Cell> BALANCE = AtomicLongFieldUpdater.newUpdater(Cell.class, "balance");
+        private static final AtomicLongFieldUpdater<Cell> VERSION = AtomicLongFieldUpdater.newUpdater(Cell.class, "version");
+        
+        private final String name;
+        private volatile long balance;
+        private volatile long version;
+        
+        Cell(String name, long balance, long version) {
+            this.name = name;
+            this.balance = balance;
+            this.version = version;
+        }
+        
+        void add(long amount) {
+            BALANCE.getAndAdd(this, amount);
+            VERSION.incrementAndGet(this);
+        }
+        
+        /**
+         * Subtracts {@code amount} unless that would leave no more than the minimum balance.
+         */
+        boolean tryDebit(long amount) {
+            for (long current = balance; current - amount > MINIMUM_BALANCE; current = balance) {
+                if (BALANCE.compareAndSet(this, current, current - amount)) {
+                    VERSION.incrementAndGet(this);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    public CasAccountStore(Journal journal) {
+        this(journal, new AccountTable[0]);
+    }
+    
+    /**
+     * Store holding the accounts of the given tables, e.g. the ones recovered from the journal at startup.
+     */
+    public CasAccountStore(Journal journal, AccountTable[] accountTables) {
+        int accounts = 0;
+        for (AccountTable table : accountTables) {
+            accounts += table.size();
+        }
+        this.cells = new ConcurrentHashMap<>(Math.max(16, (int) (accounts / 0.75f) + 1));
+        for (AccountTable table : accountTables) {
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                String accountNumber = table.accountNumberAt(slot);
+                if (accountNumber != null) {
+                    cells.put(accountNumber, new Cell(table.nameAt(slot), table.balanceAt(slot), table.versionAt(slot)));
+                }
+            }
+        }
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripes[stripe] = new Object();
+        }
+        this.journal = journal;
+        this.ordered = journal != Journal.IN_MEMORY;
+    }
+    
+    @Override
+    public CompletionStage<Response> create(Account account) {
+        String accountNumber = account.getAccountNumber();
+        if (accountNumber == null || !Money.isValid(account.getBalance())) {
+            return failed(ResultCode.INVALID);
+        }
+        if (journal.isFailed()) {
+            return failed(ResultCode.FAILED);
+        }
+        return locked(accountNumber, () -> {
+            if (cells.putIfAbsent(accountNumber, new Cell(account.getName(), toMinorUnits(account.getBalance()), 1)) != null) {
+                return failed(ResultCode.DUPLICATE);
+            }
+            return succeeded(JournalEvent.accountCreated(accountNumber, account.getName(),
+                    toMinorUnits(account.getBalance())));
+        });
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletionStage<AccountsCreated> createAll(List<Account> accounts) {
+        CompletableFuture<Response>[] created = new CompletableFuture[accounts.size()];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = create(accounts.get(i)).toCompletableFuture();
+        }
+        return CompletableFuture.allOf(created).thenApply(done -> {
+            SortedMap<Integer, String> rejected = new TreeMap<>();
+            for (int i = 0; i < created.length; i++) {
+                Response response = created[i].join();
+                if (response instanceof FailureResponse) {
+                    rejected.put(i, response.getCode().getDescription());
+                }
+            }
+            return new AccountsCreated(accounts.size(), rejected);
+        });
+    }
+    
+    @Override
+    public CompletionStage<Optional<Account>> get(String accountNumber) {
+        if (journal.isFailed()) {
+            CompletableFuture<Optional<Account>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new JournalFailedException());
+            return failed;
+        }
+        Cell cell = accountNumber == null ? null : cells.get(accountNumber);
+        if (cell == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        long version = cell.version;
+        return CompletableFuture.completedFuture(Optional.of(new Account(accountNumber, cell.name,
+                fromMinorUnits(cell.balance), version)));
+    }
+    
+    @Override
+    public long versionOf(String accountNumber) {
+        if (journal.isFailed()) {
+            throw new JournalFailedException();
+        }
+        Cell cell = accountNumber == null ? null : cells.get(accountNumber);
+        return cell == null ? AccountTable.NO_VERSION : cell.version;
+    }
+    
+    @Override
+    public boolean readsBypassWrites() {
+        return true;
+    }
+    
+    @Override
+    public CompletionStage<Response> credit(String accountNumber, long amount) {
+        Cell cell = accountNumber == null ? null : cells.get(accountNumber);
+        if (cell == null) {
+            return failed(ResultCode.NOT_FOUND);
+        }
+        if (journal.isFailed()) {
+            return failed(ResultCode.FAILED);
+        }
+        return locked(accountNumber, () -> {
+            cell.add(amount);
+            return succeeded(JournalEvent.credited(accountNumber, amount));
+        });
+    }
+    
+    @Override
+    public CompletionStage<Response> debit(String accountNumber, long amount) {
+        Cell cell = accountNumber == null ? null : cells.get(accountNumber);
+        if (cell == null) {
+            return failed(ResultCode.NOT_FOUND);
+        }
+        if (journal.isFailed()) {
+            return failed(ResultCode.FAILED);
+        }
+        return locked(accountNumber, () -> {
+            if (!cell.tryDebit(amount)) {
+                return failed(ResultCode.INSUFFICIENT_FUNDS);
+            }
+            return succeeded(JournalEvent.debited(accountNumber, amount));
+        });
+    }
+    
+    @Override
+    public CompletionStage<Response> transfer(String transactionId, String sourceAccountNumber,
+                                              String targetAccountNumber, long amount) {
+        Cell source = sourceAccountNumber == null ? null : cells.get(sourceAccountNumber);
+        Cell target = targetAccountNumber == null ? null : cells.get(targetAccountNumber);
+        if (source == null) {
+            return failed(ResultCode.NOT_FOUND);
+        }
+        if (target == null) {
+            return failed(ResultCode.NOT_FOUND);
+        }
+        if (journal.isFailed()) {
+            return failed(ResultCode.FAILED);
+        }
+        int first = stripeOf(sourceAccountNumber);
+        int second = stripeOf(targetAccountNumber);
+        synchronized (stripes[Math.min(first, second)]) {
+            synchronized (stripes[Math.max(first, second)]) {
+                if (!source.tryDebit(amount)) {
+                    return failed(ResultCode.INSUFFICIENT_FUNDS);
+                }
+                target.add(amount);
+                return succeeded(JournalEvent.transferred(transactionId, sourceAccountNumber, targetAccountNumber, amount));
+            }
+        }
+    }
+    
+    /**
+     * Runs a single-account mutation under its stripe lock if events have to reach a durable journal in
+     * the order they are applied, and lock-free otherwise.
+     */
+    private CompletionStage<Response> locked(String accountNumber, Supplier<CompletionStage<Response>> mutation) {
+        if (!ordered) {
+            return mutation.get();
+        }
+        synchronized (stripes[stripeOf(accountNumber)]) {
+            return mutation.get();
+        }
+    }
+    
+    /**
+     * A mutation whose event cannot be made durable because the journal failed meanwhile is answered
+     * {@code FAILED}.
+     */
+    private CompletionStage<Response> succeeded(JournalEvent event) {
+        return journal.<Response>append(event, SuccessResponse.INSTANCE)
+                .exceptionally(e -> FailureResponse.of(ResultCode.FAILED));
+    }
+    
+    private static CompletionStage<Response> failed(ResultCode code) {
+        return CompletableFuture.completedFuture(FailureResponse.of(code));
+    }
+    
+    private static int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -3,10 +3,14 @@ package com.example.account.utils;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 public class AccountConfigs {
     
     private AccountConfigs() {
-    
+        
     }
     
     private static final Config CONF = ConfigFactory.load();
@@ -16,6 +20,50 @@ public class AccountConfigs {
     public static final String SERVER_HOST = CONF.getString("http.host");
     public static final Integer SERVER_PORT = CONF.getInt("http.port");
     public static final String SERVER_ADDRESS = SERVER_HOST + ":" + SERVER_PORT;
+    public static final String HTTP_DISPATCHER = CONF.getString("http.dispatcher");
     public static final String ACCOUNT_ACTOR_NAME = "account_";
-    public static final Double MINIMUM_BALANCE = 0.0;
+    public static final AccountEngine ACCOUNT_ENGINE = AccountEngine.fromConfig(CONF.getString("account.engine"));
+    public static final Integer ACCOUNT_SHARDS = CONF.getInt("account.shards");
+    public static final Integer ACCOUNT_IMPORT_BATCH_SIZE = CONF.getInt("account.import-batch-size");
+    public static final Integer ACCOUNT_IMPORT_PARALLELISM = CONF.getInt("account.import-parallelism");
+    public static final ReadConsistency ACCOUNT_READ_CONSISTENCY =
+            ReadConsistency.fromConfig(CONF.getString("account.read-consistency"));
+    public static final String ACCOUNT_DISPATCHER = CONF.getString("account.dispatcher");
+    public static final Integer TRANSACTION_BATCH_PARALLELISM = CONF.getInt("transaction.batch-parallelism");
+    public static final Duration TRANSACTION_DEDUP_WINDOW = CONF.getDuration("transaction.dedup-window");
+    public static final Integer TRANSACTION_DEDUP_MAX_ENTRIES = CONF.getInt("transaction.dedup-max-entries");
+    public static final Integer TRANSACTION_HISTORY_MAX_ENTRIES = CONF.getInt("transaction.history-max-entries");
+    public static final Duration TRANSACTION_TRANSFER_TIMEOUT = CONF.getDuration("transaction.transfer-timeout");
+    public static final String TRANSACTION_DISPATCHER = CONF.getString("transaction.dispatcher");
+    //Admission Configs
+    public static final Integer ADMISSION_MAX_IN_FLIGHT_REQUESTS = CONF.getInt("admission.max-in-flight-requests");
+    public static final Integer ADMISSION_ACCOUNT_QUEUE_SIZE = CONF.getInt("admission.account-queue-size");
+    public static final Integer ADMISSION_TRANSACTION_QUEUE_SIZE = CONF.getInt("admission.transaction-queue-size");
+    public static final Duration ADMISSION_RETRY_AFTER = CONF.getDuration("admission.retry-after");
+    //Journal Configs
+    public static final Boolean JOURNAL_ENABLED = CONF.getBoolean("journal.enabled");
+    public static final String JOURNAL_DIRECTORY = CONF.getString("journal.directory");
+    public static final Integer JOURNAL_MAX_BATCH_SIZE = CONF.getInt("journal.max-batch-size");
+    public static final Duration SNAPSHOT_INTERVAL = CONF.getDuration("journal.snapshot-interval");
+    //Cluster Configs
+    public static final Boolean CLUSTER_ENABLED = CONF.getBoolean("cluster.enabled");
+    public static final List<String> CLUSTER_SEED_NODES = splitList(CONF.getString("cluster.seed-nodes"));
+    public static final Duration CLUSTER_TRANSFER_RETRY_INTERVAL = CONF.getDuration("cluster.transfer-retry-interval");
+    //Access Log Configs
+    public static final Boolean ACCESS_LOG_ENABLED = CONF.getBoolean("access-log.enabled");
+    public static final String ACCESS_LOG_FILE = CONF.getString("access-log.file");
+    public static final Double ACCESS_LOG_SAMPLE_RATE = CONF.getDouble("access-log.sample-rate");
+    public static final Integer ACCESS_LOG_BUFFER_SIZE = CONF.getInt("access-log.buffer-size");
+    // Minimum balance in minor units (cents)
+    public static final Long MINIMUM_BALANCE = 0L;
+    
+    private static List<String> splitList(String values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values.split(",")) {
+            if (!value.trim().isEmpty()) {
+                list.add(value.trim());
+            }
+        }
+        return list;
+    }
 }
@@ -0,0 +1,26 @@
+package com.example.account.utils;
+
+import java.util.Locale;
+
+/**
+ * Implementation of the account layer, configured by {@code account.engine}.
+ */
+public enum AccountEngine {
+    
+    /**
+     * Accounts are hash-partitioned over shard actors, which apply every mutation one message at a time.
+     */
+    ACTOR,
+    
+    /**
+     * Accounts are updated in place by the calling thread with compare-and-set, without any actors.
+     */
+    CAS;
+    
+    /**
+     * Parses the configured name, e.g. {@code cas}.
+     */
+    public static AccountEngine fromConfig(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.account.utils;
+
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.HttpCharsets;
+import akka.http.javadsl.model.MediaType;
+import akka.http.javadsl.model.MediaTypes;
+
+/**
+ * Media types used by the streaming endpoints that akka-http does not predefine.
+ */
+public class ExtraMediaTypes {
+    
+    private ExtraMediaTypes() {
+        
+    }
+    
+    /**
+     * Newline delimited JSON: one JSON document per line.
+     */
+    public static final MediaType.WithFixedCharset APPLICATION_NDJSON =
+            MediaTypes.applicationWithFixedCharset("x-ndjson", HttpCharsets.UTF_8, "ndjson");
+    
+    public static boolean isNdjson(ContentType contentType) {
+        return contentType.mediaType().subType().equals(APPLICATION_NDJSON.subType());
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.account.utils;
+
+/**
+ * Conversions between the decimal amounts of the JSON API and the {@code long} minor units
+ * (cents) the account layer computes with.
+ */
+public class Money {
+    
+    private Money() {
+        
+    }
+    
+    public static final int MINOR_UNITS_PER_UNIT = 100;
+    
+    /**
+     * Largest balance or amount accepted, in units; far enough below {@code Long.MAX_VALUE} minor units
+     * that balances cannot overflow.
+     */
+    public static final double MAX_AMOUNT = 1e15;
+    
+    /**
+     * Whether {@code amount} can be held by the account layer: present, finite and at most
+     * {@link #MAX_AMOUNT} either way. Balances and amounts are checked with this when a request is decoded
+     * and again before an account is created, so {@link #toMinorUnits(Double)} never fails on them.
+     */
+    public static boolean isValid(Double amount) {
+        return amount != null && Math.abs(amount) <= MAX_AMOUNT;
+    }
+    
+    public static long toMinorUnits(Double amount) {
+        if (!isValid(amount)) {
+            throw new IllegalArgumentException("Not a valid amount: " + amount);
+        }
+        return Math.round(amount * MINOR_UNITS_PER_UNIT);
+    }
+    
+    public static Double fromMinorUnits(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS_PER_UNIT;
+    }
+}
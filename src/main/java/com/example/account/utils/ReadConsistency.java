@@ -0,0 +1,40 @@
+package com.example.account.utils;
+
+import java.util.Locale;
+
+/**
+ * How {@code GET /accounts/{id}} reads an account, configured by {@code account.read-consistency}.
+ * <p>
+ * The modes that bypass the mailbox read uncommitted state: a shard applies a write before its journal
+ * event is durable, so a read may see a write that is not acknowledged yet. If the journal then fails,
+ * that write is answered {@code FAILED} and reads are answered {@code 503} from then on.
+ */
+public enum ReadConsistency {
+    
+    /**
+     * Reads are queued in the owning shard's mailbox behind the writes sent before them.
+     */
+    SEQUENTIAL,
+    
+    /**
+     * Reads bypass the mailbox and see every write that was acknowledged before the read started.
+     */
+    READ_YOUR_WRITES,
+    
+    /**
+     * Reads bypass the mailbox and see writes shortly after they are applied, without ordering them
+     * against the acknowledgement; balance updates are cheapest for the shard in this mode.
+     */
+    EVENTUAL;
+    
+    /**
+     * Parses the configured name, e.g. {@code read-your-writes}.
+     */
+    public static ReadConsistency fromConfig(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+    
+    public boolean bypassesMailbox() {
+        return this != SEQUENTIAL;
+    }
+}
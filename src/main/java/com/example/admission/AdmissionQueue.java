@@ -0,0 +1,75 @@
+package com.example.admission;
+
+import akka.actor.ActorRef;
+import akka.pattern.AskTimeoutException;
+import akka.pattern.Patterns;
+import com.example.metrics.Counter;
+import com.example.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of requests in front of an actor. A request is only sent while fewer than
+ * {@code capacity} earlier ones are still waiting for their reply; otherwise it fails at once with an
+ * {@link OverloadedException} instead of queueing in the actor's mailbox until its ask times out.
+ * <p>
+ * The actor's mailbox itself stays unbounded: the messages the actors exchange among themselves, such as
+ * the reservations of a transfer, must never be dropped.
+ */
+public final class AdmissionQueue {
+    
+    private final ActorRef target;
+    private final int capacity;
+    private final Duration timeout;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final Counter askTimeouts;
+    
+    public AdmissionQueue(ActorRef target, int capacity, Duration timeout) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive, was " + capacity);
+        }
+        this.target = target;
+        this.capacity = capacity;
+        this.timeout = timeout;
+        String queue = target.path().name();
+        Metrics.REGISTRY.gauge("admission_queue_size", "Requests waiting for the reply of a registry.",
+                this::size, "queue", queue);
+        Metrics.REGISTRY.counter("admission_rejected_total", "Requests rejected with 503 because a limit was reached.",
+                this::rejected, "limit", queue);
+        askTimeouts = Metrics.REGISTRY.counter("ask_timeouts_total", "Asks that did not get a reply in time.",
+                "target", queue);
+    }
+    
+    public CompletionStage<Object> ask(Object message) {
+        for (int current = queued.get(); current < capacity; current = queued.get()) {
+            if (queued.compareAndSet(current, current + 1)) {
+                return Patterns.ask(target, message, timeout).whenComplete((reply, failure) -> {
+                    queued.decrementAndGet();
+                    if (failure instanceof AskTimeoutException) {
+                        askTimeouts.increment();
+                    }
+                });
+            }
+        }
+        rejected.increment();
+        CompletableFuture<Object> overloaded = new CompletableFuture<>();
+        overloaded.completeExceptionally(new OverloadedException(target.path().name() + " queue is full"));
+        return overloaded;
+    }
+    
+    /**
+     * Requests sent and still waiting for their reply.
+     */
+    public int size() {
+        return queued.get();
+    }
+    
+    public long rejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.admission;
+
+import com.example.metrics.Metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of requests handled at the same time; a request that finds all permits taken is
+ * rejected instead of waiting for one.
+ */
+public final class InFlightLimiter {
+    
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    
+    public InFlightLimiter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum number of requests in flight must be positive, was " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        Metrics.REGISTRY.gauge("http_requests_in_flight", "Requests being handled.", this::inFlight);
+        Metrics.REGISTRY.counter("admission_rejected_total", "Requests rejected with 503 because a limit was reached.",
+                this::rejected, "limit", "in_flight");
+    }
+    
+    /**
+     * Takes a permit if one is free; a permit taken must be given back with {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        for (int current = inFlight.get(); current < maxInFlight; current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+    
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+    
+    public int inFlight() {
+        return inFlight.get();
+    }
+    
+    public long rejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.admission;
+
+/**
+ * Signals that a request was not admitted because the service is at capacity; answered with
+ * {@code 503 Service Unavailable}. Thrown on hot paths under overload, so it carries no stack trace.
+ */
+public final class OverloadedException extends RuntimeException {
+    
+    public OverloadedException(String message) {
+        super(message, null, false, false);
+    }
+}
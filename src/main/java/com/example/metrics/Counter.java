@@ -0,0 +1,26 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic lock-free counter.
+ */
+public final class Counter {
+    
+    private final LongAdder value = new LongAdder();
+    
+    Counter() {
+    }
+    
+    public void increment() {
+        value.increment();
+    }
+    
+    public void add(long amount) {
+        value.add(amount);
+    }
+    
+    public long get() {
+        return value.sum();
+    }
+}
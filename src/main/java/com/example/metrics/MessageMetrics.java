@@ -0,0 +1,41 @@
+package com.example.metrics;
+
+/**
+ * Processing time and failures per message type of one kind of actor, recorded around its
+ * {@code receive}. The types are fixed up front so recording is a scan of a few class references.
+ */
+public final class MessageMetrics {
+    
+    private final Class<?>[] types;
+    private final LatencyHistogram[] durations;
+    private final Counter[] failures;
+    
+    public MessageMetrics(MetricsRegistry registry, String actor, Class<?>... types) {
+        this.types = types.clone();
+        this.durations = new LatencyHistogram[types.length];
+        this.failures = new Counter[types.length];
+        for (int i = 0; i < types.length; i++) {
+            String message = types[i].getSimpleName();
+            durations[i] = registry.histogram("actor_message_duration_seconds",
+                    "Time an actor spent processing a message.", "actor", actor, "message", message);
+            failures[i] = registry.counter("actor_message_failures_total",
+                    "Messages whose processing threw an exception.", "actor", actor, "message", message);
+        }
+    }
+    
+    /**
+     * Records a message processed since {@code startNanos}; messages of other types are ignored.
+     */
+    public void record(Object message, long startNanos, boolean failed) {
+        Class<?> type = message.getClass();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                durations[i].recordSince(startNanos);
+                if (failed) {
+                    failures[i].increment();
+                }
+                return;
+            }
+        }
+    }
+}
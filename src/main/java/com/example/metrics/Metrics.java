@@ -0,0 +1,13 @@
+package com.example.metrics;
+
+/**
+ * The process-wide {@link MetricsRegistry} exposed at {@code GET /metrics}.
+ */
+public final class Metrics {
+    
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    
+    private Metrics() {
+        
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.metrics;
+
+import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Route;
+
+import java.util.function.Supplier;
+
+/**
+ * Directives of the routes plus {@link #timed(RouteMetrics, Supplier)}.
+ */
+public class MetricsDirectives extends AllDirectives {
+    
+    /**
+     * Records the latency and outcome of {@code inner} in {@code metrics}. For a streamed response the
+     * latency ends when the response starts.
+     */
+    protected Route timed(RouteMetrics metrics, Supplier<Route> inner) {
+        return extractRequestContext(context -> {
+            long startedAt = System.nanoTime();
+            return mapRouteResultFuture(result -> result.whenComplete(
+                    (routeResult, failure) -> metrics.record(routeResult, failure, startedAt)), inner);
+        });
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Named metrics, rendered in the Prometheus text exposition format.
+ * <p>
+ * Metrics are registered once, when the component that records them is created, and kept in a field;
+ * registering the same name and labels again returns the existing metric. Labels are given as
+ * alternating names and values. Counters and gauges can also be backed by a supplier, for values a
+ * component already keeps, such as the rejections of an admission queue; registering one again replaces
+ * the supplier.
+ */
+public final class MetricsRegistry {
+    
+    private static final String[] BOUNDS = new String[LatencyHistogram.BOUNDS_SECONDS.length];
+    
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUNDS[i] = BigDecimal.valueOf(LatencyHistogram.BOUNDS_SECONDS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+    
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM;
+        
+        String exposed() {
+            return name().toLowerCase();
+        }
+    }
+    
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+        
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+    
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series.computeIfAbsent(labelsOf(labels), key -> new Counter());
+    }
+    
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).series.put(labelsOf(labels), value);
+    }
+    
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labelsOf(labels), value);
+    }
+    
+    /**
+     * Latency histogram exposed in seconds; {@code name} should end in {@code _seconds}.
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).series
+                .computeIfAbsent(labelsOf(labels), key -> new LatencyHistogram());
+    }
+    
+    /**
+     * All metrics in the Prometheus text exposition format, version 0.0.4.
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            text.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type.exposed()).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                appendSeries(text, family.name, series.getKey(), series.getValue());
+            }
+        }
+        return text.toString();
+    }
+    
+    private void appendSeries(StringBuilder text, String name, String labels, Object metric) {
+        if (metric instanceof Counter) {
+            appendSample(text, name, labels, null, Long.toString(((Counter) metric).get()));
+        } else if (metric instanceof LongSupplier) {
+            appendSample(text, name, labels, null, Long.toString(((LongSupplier) metric).getAsLong()));
+        } else if (metric instanceof DoubleSupplier) {
+            appendSample(text, name, labels, null, Double.toString(((DoubleSupplier) metric).getAsDouble()));
+        } else {
+            LatencyHistogram histogram = (LatencyHistogram) metric;
+            long[] buckets = histogram.bucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                String bound = i < BOUNDS.length ? BOUNDS[i] : "+Inf";
+                appendSample(text, name + "_bucket", labels, bound, Long.toString(cumulative));
+            }
+            appendSample(text, name + "_sum", labels, null, Double.toString(histogram.sumNanos() / 1e9));
+            appendSample(text, name + "_count", labels, null, Long.toString(cumulative));
+        }
+    }
+    
+    private static void appendSample(StringBuilder text, String name, String labels, String bound, String value) {
+        text.append(name);
+        if (!labels.isEmpty() || bound != null) {
+            text.append('{').append(labels);
+            if (bound != null) {
+                text.append(labels.isEmpty() ? "" : ",").append("le=\"").append(bound).append('"');
+            }
+            text.append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+    
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException(String.format("Metric %s is already registered as a %s", name,
+                    family.type.exposed()));
+        }
+        return family;
+    }
+    
+    private static String labelsOf(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return rendered.toString();
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
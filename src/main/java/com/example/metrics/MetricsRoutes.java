@@ -0,0 +1,26 @@
+package com.example.metrics;
+
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Route;
+
+/**
+ * {@code GET /metrics}: all metrics of a {@link MetricsRegistry} in the Prometheus text format.
+ */
+public class MetricsRoutes extends AllDirectives {
+    
+    private final MetricsRegistry registry;
+    
+    public MetricsRoutes(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+    
+    public Route routes() {
+        return path("metrics", () -> get(() -> complete(HttpResponse.create()
+                .withStatus(StatusCodes.OK)
+                .withEntity(HttpEntities.create(ContentTypes.TEXT_PLAIN_UTF8, registry.scrape())))));
+    }
+}
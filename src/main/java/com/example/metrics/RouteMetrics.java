@@ -0,0 +1,39 @@
+package com.example.metrics;
+
+import akka.http.javadsl.server.Complete;
+import akka.http.javadsl.server.RouteResult;
+
+/**
+ * Latency and responses of one route. Requests the route rejects are not recorded, as another route
+ * handles them.
+ */
+public final class RouteMetrics {
+    
+    private final LatencyHistogram duration;
+    private final Counter[] responsesByClass = new Counter[5];
+    private final Counter failures;
+    
+    public RouteMetrics(MetricsRegistry registry, String route) {
+        duration = registry.histogram("http_request_duration_seconds",
+                "Time until the response of a request started.", "route", route);
+        for (int i = 0; i < responsesByClass.length; i++) {
+            responsesByClass[i] = registry.counter("http_responses_total", "Responses by status class.",
+                    "route", route, "code", (i + 1) + "xx");
+        }
+        failures = registry.counter("http_request_failures_total",
+                "Requests that failed with an exception, including ask timeouts and load shedding.", "route", route);
+    }
+    
+    void record(RouteResult result, Throwable failure, long startNanos) {
+        if (failure != null) {
+            duration.recordSince(startNanos);
+            failures.increment();
+        } else if (result instanceof Complete) {
+            duration.recordSince(startNanos);
+            int statusClass = ((Complete) result).getResponse().status().intValue() / 100;
+            if (statusClass >= 1 && statusClass <= responsesByClass.length) {
+                responsesByClass[statusClass - 1].increment();
+            }
+        }
+    }
+}
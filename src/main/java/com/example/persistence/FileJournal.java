@@ -0,0 +1,313 @@
+package com.example.persistence;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * {@link Journal} backed by an append-only file. Appends are queued and a single writer thread
+ * group-commits everything that queued up while the previous batch was being synced: one
+ * {@link FileChannel#force(boolean)} makes a whole batch durable, after which its replies are sent.
+ * A reply therefore waits for at most the batch in progress plus its own batch.
+ * <p>
+ * Appending never blocks the caller, which is usually an actor on a shared dispatcher: the queue is
+ * unbounded, as the admission queues in front of the registries already bound the requests waiting for
+ * it. Once a write fails, or the writer thread fails in any other way, the journal is failed for good;
+ * the batch being written, everything still queued and every later append are answered with their
+ * failure reply.
+ * <p>
+ * Every record is framed as {@code length:int, crc32:int, payload} so that a torn write at the tail
+ * of the file is detected and cut off by {@link #replay(Path, Consumer)}.
+ */
+public final class FileJournal implements Journal, AutoCloseable {
+    
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_RECORD_SIZE = 1 << 26;
+    
+    private final LoggingAdapter logger;
+    private final String loggingPrefix = "[ JOURNAL ] : ";
+    
+    private final FileChannel channel;
+    private final BlockingQueue<PendingEvent> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final Thread writer;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+    private volatile long durablePosition;
+    
+    private static final class PendingEvent {
+        private final JournalEvent event;
+        private final ActorRef replyTo;
+        private final Object reply;
+        private final Object failureReply;
+        private final ActorRef sender;
+        private final CompletableFuture<Object> durable;
+        
+        PendingEvent(JournalEvent event, ActorRef replyTo, Object reply, Object failureReply, ActorRef sender,
+                     CompletableFuture<Object> durable) {
+            this.event = event;
+            this.replyTo = replyTo;
+            this.reply = reply;
+            this.failureReply = failureReply;
+            this.sender = sender;
+            this.durable = durable;
+        }
+    }
+    
+    FileJournal(ActorSystem system, FileChannel channel, long validLength, int maxBatchSize) {
+        this.logger = Logging.getLogger(system, this);
+        this.channel = channel;
+        this.durablePosition = validLength;
+        this.maxBatchSize = maxBatchSize;
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Opens the journal for appending after its first {@code validLength} bytes, discarding anything
+     * beyond them (a torn tail found by {@link #replay(Path, Consumer)}).
+     */
+    public static FileJournal open(ActorSystem system, Path file, long validLength, int maxBatchSize) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new FileJournal(system, channel, validLength, maxBatchSize);
+    }
+    
+    /**
+     * Reads every intact record of the journal in order and returns the length of the valid prefix.
+     * Reading stops at the first truncated or corrupt record.
+     */
+    public static long replay(Path file, Consumer<JournalEvent> handler) throws IOException {
+        return replay(file, 0, Long.MAX_VALUE, handler);
+    }
+    
+    /**
+     * Like {@link #replay(Path, Consumer)} but only reads the records between byte {@code fromPosition}
+     * and byte {@code toPosition}, both of which must be record boundaries.
+     */
+    public static long replay(Path file, long fromPosition, long toPosition,
+                              Consumer<JournalEvent> handler) throws IOException {
+        if (!Files.exists(file)) {
+            if (fromPosition > 0) {
+                throw new NoSuchFileException(file.toString(), null, "Journal is missing, expected " + fromPosition + " bytes");
+            }
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        long position = fromPosition;
+        try (InputStream fileInput = Files.newInputStream(file);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput, 1 << 16))) {
+            skipFully(input, fromPosition);
+            while (position < toPosition) {
+                int length;
+                int checksum;
+                try {
+                    length = input.readInt();
+                    checksum = input.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        return position;
+                    }
+                    if (length > payload.length) {
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    }
+                    input.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    return position;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    return position;
+                }
+                handler.accept(JournalEvent.readFrom(ByteBuffer.wrap(payload, 0, length)));
+                position += RECORD_HEADER_SIZE + length;
+            }
+            return position;
+        }
+    }
+    
+    @Override
+    public void append(JournalEvent event, ActorRef replyTo, Object reply, Object failureReply, ActorRef sender) {
+        enqueue(new PendingEvent(event, replyTo, reply, failureReply, sender, null));
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletionStage<T> append(JournalEvent event, T reply) {
+        CompletableFuture<Object> durable = new CompletableFuture<>();
+        enqueue(new PendingEvent(event, null, reply, null, null, durable));
+        return (CompletionStage<T>) durable;
+    }
+    
+    @Override
+    public boolean isFailed() {
+        return failure != null;
+    }
+    
+    /**
+     * An append that races with a failing write is answered by whichever thread sees it queued after the
+     * failure.
+     */
+    private void enqueue(PendingEvent pending) {
+        if (failure != null) {
+            fail(pending);
+            return;
+        }
+        if (!running) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        queue.add(pending);
+        if (failure != null) {
+            failQueued();
+        }
+    }
+    
+    /**
+     * End of the part of the journal that has been synced to disk; always a record boundary.
+     */
+    public long durablePosition() {
+        return durablePosition;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+    
+    /**
+     * Replies of a batch that were already sent when the writer fails are not answered again.
+     */
+    private void writeLoop() {
+        List<PendingEvent> batch = new ArrayList<>(maxBatchSize);
+        int replied = 0;
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                commit(batch);
+                for (PendingEvent pending : batch) {
+                    if (pending.replyTo != null) {
+                        pending.replyTo.tell(pending.reply, pending.sender);
+                    } else if (pending.durable != null) {
+                        pending.durable.complete(pending.reply);
+                    }
+                    replied++;
+                }
+                batch.clear();
+                replied = 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            failure = e;
+            running = false;
+            logger.error(e, "{} Journal write failed, {} pending replies are answered as failed", loggingPrefix,
+                    batch.size() - replied + queue.size());
+            for (PendingEvent pending : batch.subList(replied, batch.size())) {
+                fail(pending);
+            }
+            failQueued();
+        }
+    }
+    
+    private void failQueued() {
+        for (PendingEvent pending = queue.poll(); pending != null; pending = queue.poll()) {
+            fail(pending);
+        }
+    }
+    
+    private void fail(PendingEvent pending) {
+        if (pending.durable != null) {
+            pending.durable.completeExceptionally(failure);
+        } else if (pending.replyTo != null && pending.failureReply != null) {
+            pending.replyTo.tell(pending.failureReply, pending.sender);
+        }
+    }
+    
+    private void commit(List<PendingEvent> batch) throws IOException {
+        buffer.clear();
+        for (PendingEvent pending : batch) {
+            int maxRecordSize = RECORD_HEADER_SIZE + pending.event.maxEncodedSize();
+            if (buffer.remaining() < maxRecordSize) {
+                flush();
+                if (buffer.capacity() < maxRecordSize) {
+                    buffer = ByteBuffer.allocateDirect(maxRecordSize);
+                }
+            }
+            int start = buffer.position();
+            buffer.position(start + RECORD_HEADER_SIZE);
+            pending.event.writeTo(buffer);
+            int end = buffer.position();
+            
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(start + RECORD_HEADER_SIZE).limit(end);
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(start, end - start - RECORD_HEADER_SIZE);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        flush();
+        channel.force(false);
+        durablePosition = channel.position();
+    }
+    
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private static void skipFully(InputStream input, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Journal is shorter than " + bytes + " bytes");
+            }
+            remaining -= skipped;
+        }
+    }
+}
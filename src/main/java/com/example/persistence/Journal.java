@@ -0,0 +1,59 @@
+package com.example.persistence;
+
+import akka.actor.ActorRef;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Write-ahead log of account mutations. The caller applies a mutation to its in-memory state, appends
+ * the matching event and hands over the reply; the journal delivers the reply only once the event is
+ * durable, so a client is never told about a mutation that could be lost on restart.
+ * <p>
+ * A journal that cannot be written any more is {@link #isFailed() failed}: every event appended to it
+ * from then on, and every event not yet durable, is answered with its failure reply. Callers check
+ * {@link #isFailed()} before they apply a mutation, so their state does not run ahead of the journal.
+ */
+public interface Journal {
+    
+    /**
+     * Journal used when persistence is disabled: replies are delivered immediately.
+     */
+    Journal IN_MEMORY = new Journal() {
+        @Override
+        public void append(JournalEvent event, ActorRef replyTo, Object reply, Object failureReply, ActorRef sender) {
+            if (replyTo != null) {
+                replyTo.tell(reply, sender);
+            }
+        }
+        
+        @Override
+        public <T> CompletionStage<T> append(JournalEvent event, T reply) {
+            return CompletableFuture.completedFuture(reply);
+        }
+    };
+    
+    /**
+     * Appends {@code event} and tells {@code reply} to {@code replyTo} once it is durable, or
+     * {@code failureReply} if the journal fails first. {@code replyTo} may be null when nobody waits for
+     * the event.
+     */
+    void append(JournalEvent event, ActorRef replyTo, Object reply, Object failureReply, ActorRef sender);
+    
+    /**
+     * Appends {@code event} and completes the returned stage with {@code reply} once it is durable, for
+     * callers that are not actors. The stage fails if the journal cannot be written.
+     */
+    <T> CompletionStage<T> append(JournalEvent event, T reply);
+    
+    default void append(JournalEvent event) {
+        append(event, null, null, null, null);
+    }
+    
+    /**
+     * True once the journal could not be written; no event appended from then on becomes durable.
+     */
+    default boolean isFailed() {
+        return false;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single account mutation as recorded in the {@link Journal}. Amounts and balances are in minor units,
+ * timestamps in epoch milliseconds.
+ * <p>
+ * Binary layout: {@code type:byte, amount:long, transactionId, accountNumber, targetAccountNumber, name,
+ * timestamp:long} where every string is an {@code int} byte length (-1 for null) followed by its UTF-8
+ * bytes. Records written before the timestamp was added end after {@code name} and read with timestamp 0.
+ */
+public final class JournalEvent {
+    
+    public enum Type {
+        ACCOUNT_CREATED, CREDITED, DEBITED, TRANSFERRED, TRANSFER_RESERVED, TRANSFER_COMMITTED, TRANSFER_RELEASED,
+        TRANSFER_SETTLED, TRANSFER_FORGOTTEN;
+        
+        private static final Type[] VALUES = values();
+    }
+    
+    private final Type type;
+    private final String transactionId;
+    private final String accountNumber;
+    private final String targetAccountNumber;
+    private final String name;
+    private final long amount;
+    private final long timestamp;
+    
+    private JournalEvent(Type type, String transactionId, String accountNumber,
+                         String targetAccountNumber, String name, long amount) {
+        this(type, transactionId, accountNumber, targetAccountNumber, name, amount, System.currentTimeMillis());
+    }
+    
+    private JournalEvent(Type type, String transactionId, String accountNumber,
+                         String targetAccountNumber, String name, long amount, long timestamp) {
+        this.type = type;
+        this.transactionId = transactionId;
+        this.accountNumber = accountNumber;
+        this.targetAccountNumber = targetAccountNumber;
+        this.name = name;
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+    
+    public static JournalEvent accountCreated(String accountNumber, String name, long balance) {
+        return new JournalEvent(Type.ACCOUNT_CREATED, null, accountNumber, null, name, balance);
+    }
+    
+    public static JournalEvent credited(String accountNumber, long amount) {
+        return new JournalEvent(Type.CREDITED, null, accountNumber, null, null, amount);
+    }
+    
+    public static JournalEvent debited(String accountNumber, long amount) {
+        return new JournalEvent(Type.DEBITED, null, accountNumber, null, null, amount);
+    }
+    
+    /**
+     * Transfer between two accounts of the same shard, applied atomically.
+     */
+    public static JournalEvent transferred(String transactionId, String sourceAccountNumber,
+                                           String targetAccountNumber, long amount) {
+        return new JournalEvent(Type.TRANSFERRED, transactionId, sourceAccountNumber, targetAccountNumber, null, amount);
+    }
+    
+    public static JournalEvent transferReserved(String transactionId, String sourceAccountNumber,
+                                                String targetAccountNumber, long amount) {
+        return new JournalEvent(Type.TRANSFER_RESERVED, transactionId, sourceAccountNumber, targetAccountNumber, null, amount);
+    }
+    
+    public static JournalEvent transferCommitted(String transactionId, String sourceAccountNumber,
+                                                 String targetAccountNumber, long amount) {
+        return new JournalEvent(Type.TRANSFER_COMMITTED, transactionId, sourceAccountNumber, targetAccountNumber, null, amount);
+    }
+    
+    public static JournalEvent transferReleased(String transactionId, String sourceAccountNumber,
+                                                String targetAccountNumber, long amount) {
+        return new JournalEvent(Type.TRANSFER_RELEASED, transactionId, sourceAccountNumber, targetAccountNumber, null, amount);
+    }
+    
+    /**
+     * Written by the source shard of a clustered cross-shard transfer once the target shard, whose
+     * journal holds the commit, has acknowledged it; the reservation is no longer in flight.
+     */
+    public static JournalEvent transferSettled(String transactionId, String sourceAccountNumber,
+                                               String targetAccountNumber, long amount) {
+        return new JournalEvent(Type.TRANSFER_SETTLED, transactionId, sourceAccountNumber, targetAccountNumber, null, amount);
+    }
+    
+    /**
+     * Written by the target shard of a clustered cross-shard transfer once the source shard's settlement
+     * is durable: the commit can no longer be offered again, so the shard stops remembering it.
+     */
+    public static JournalEvent transferForgotten(String transactionId, String sourceAccountNumber,
+                                                 String targetAccountNumber, long amount) {
+        return new JournalEvent(Type.TRANSFER_FORGOTTEN, transactionId, sourceAccountNumber, targetAccountNumber, null, amount);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getTransactionId() {
+        return transactionId;
+    }
+    
+    /**
+     * The mutated account, or the source account of a transfer.
+     */
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+    
+    public String getTargetAccountNumber() {
+        return targetAccountNumber;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getAmount() {
+        return amount;
+    }
+    
+    /**
+     * When the event was created, 0 if unknown.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    JournalEvent withTimestamp(long timestamp) {
+        return new JournalEvent(type, transactionId, accountNumber, targetAccountNumber, name, amount, timestamp);
+    }
+    
+    /**
+     * Upper bound of the encoded size, used to make room in the write buffer before encoding.
+     */
+    int maxEncodedSize() {
+        return 1 + 8 + 8 + maxEncodedSize(transactionId) + maxEncodedSize(accountNumber)
+                + maxEncodedSize(targetAccountNumber) + maxEncodedSize(name);
+    }
+    
+    void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(amount);
+        writeString(buffer, transactionId);
+        writeString(buffer, accountNumber);
+        writeString(buffer, targetAccountNumber);
+        writeString(buffer, name);
+        buffer.putLong(timestamp);
+    }
+    
+    static JournalEvent readFrom(ByteBuffer buffer) {
+        Type type = Type.VALUES[buffer.get()];
+        long amount = buffer.getLong();
+        String transactionId = readString(buffer);
+        String accountNumber = readString(buffer);
+        String targetAccountNumber = readString(buffer);
+        String name = readString(buffer);
+        long timestamp = buffer.remaining() >= 8 ? buffer.getLong() : 0;
+        return new JournalEvent(type, transactionId, accountNumber, targetAccountNumber, name, amount, timestamp);
+    }
+    
+    private static int maxEncodedSize(String value) {
+        return 4 + (value == null ? 0 : value.length() * 3);
+    }
+    
+    private static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
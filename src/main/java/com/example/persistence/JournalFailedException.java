@@ -0,0 +1,13 @@
+package com.example.persistence;
+
+/**
+ * Signals that in-memory state is not served because its {@link Journal} has failed: it may hold
+ * mutations that never became durable and whose clients were told they failed. Answered with
+ * {@code 503 Service Unavailable}.
+ */
+public final class JournalFailedException extends RuntimeException {
+    
+    public JournalFailedException() {
+        super("The journal has failed", null, false, false);
+    }
+}
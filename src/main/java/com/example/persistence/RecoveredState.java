@@ -0,0 +1,254 @@
+package com.example.persistence;
+
+import akka.event.LoggingAdapter;
+import com.example.account.service.AccountRegistryActor;
+import com.example.account.store.AccountTable;
+import com.example.transcaction.models.Transaction;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.example.account.utils.AccountConfigs.TRANSACTION_DEDUP_MAX_ENTRIES;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_HISTORY_MAX_ENTRIES;
+import static com.example.account.utils.Money.fromMinorUnits;
+
+/**
+ * Account and transaction state rebuilt at startup from the latest snapshot plus the journal written
+ * after it, partitioned over the current number of account shards.
+ */
+public final class RecoveredState {
+    
+    private final AccountTable[] accountTables;
+    private final Map<String, Transaction> transactionsById;
+    private final Map<String, JournalEvent> reservedTransfers = new HashMap<>();
+    private final Map<String, JournalEvent> unsettledCommits = new LinkedHashMap<>();
+    private long snapshotPosition;
+    private long journalLength;
+    private long replayedEvents;
+    
+    private static final String JOURNAL_FILE_NAME = "journal.bin";
+    private static final int MAX_TRANSACTIONS = Math.max(TRANSACTION_DEDUP_MAX_ENTRIES, TRANSACTION_HISTORY_MAX_ENTRIES);
+    
+    private RecoveredState(int numberOfShards) {
+        this.accountTables = new AccountTable[numberOfShards];
+        for (int shard = 0; shard < numberOfShards; shard++) {
+            accountTables[shard] = new AccountTable();
+        }
+        this.transactionsById = new LinkedHashMap<String, Transaction>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Transaction> eldest) {
+                return size() > MAX_TRANSACTIONS;
+            }
+        };
+    }
+    
+    public static RecoveredState empty(int numberOfShards) {
+        return new RecoveredState(numberOfShards);
+    }
+    
+    public static Path journalFile(Path directory) {
+        return directory.resolve(JOURNAL_FILE_NAME);
+    }
+    
+    /**
+     * Loads the newest readable snapshot in {@code directory} and replays the journal from the position
+     * it was taken at; without a usable snapshot the whole journal is replayed. Cross-shard transfers
+     * that were reserved but never committed or released died with the previous process, so their
+     * reservations are released.
+     */
+    public static RecoveredState recover(Path directory, int numberOfShards, LoggingAdapter logger) throws IOException {
+        RecoveredState state = load(directory, numberOfShards, Long.MAX_VALUE, logger);
+        state.releaseDanglingReservations();
+        return state;
+    }
+    
+    /**
+     * State of a single clustered account shard, whose journal only holds its own side of cross-shard
+     * transfers: a reservation without a release or settlement may have been committed by the target
+     * shard, so it is kept in flight, see {@link #getReservedTransfers()}. Likewise a commit is remembered
+     * until its source shard's settlement is durable, see {@link #getUnsettledCommits()}.
+     */
+    public static RecoveredState recoverShard(Path directory, LoggingAdapter logger) throws IOException {
+        return load(directory, 1, Long.MAX_VALUE, logger);
+    }
+    
+    /**
+     * Snapshot plus the journal up to {@code toPosition}, keeping reservations that are still in flight.
+     */
+    static RecoveredState load(Path directory, int numberOfShards, long toPosition,
+                               LoggingAdapter logger) throws IOException {
+        for (Path snapshot : new SnapshotStore(directory).list()) {
+            RecoveredState state = new RecoveredState(numberOfShards);
+            try {
+                new SnapshotStore(directory).load(snapshot, state);
+            } catch (IOException e) {
+                logger.warning("[ Skipping unreadable snapshot {}: {} ]", snapshot, e.getMessage());
+                continue;
+            }
+            state.replay(journalFile(directory), toPosition);
+            return state;
+        }
+        RecoveredState state = new RecoveredState(numberOfShards);
+        state.replay(journalFile(directory), toPosition);
+        return state;
+    }
+    
+    public AccountTable[] getAccountTables() {
+        return accountTables;
+    }
+    
+    /**
+     * The most recent committed transactions in commit order, at most as many as the transaction id
+     * index or the transaction history keeps, whichever is more.
+     */
+    public Map<String, Transaction> getTransactionsById() {
+        return transactionsById;
+    }
+    
+    /**
+     * Length of the valid journal prefix; appends continue from here.
+     */
+    public long getJournalLength() {
+        return journalLength;
+    }
+    
+    /**
+     * Journal position of the snapshot recovery started from, 0 if the whole journal was replayed.
+     */
+    public long getSnapshotPosition() {
+        return snapshotPosition;
+    }
+    
+    public long getReplayedEvents() {
+        return replayedEvents;
+    }
+    
+    public int getAccountCount() {
+        int accounts = 0;
+        for (AccountTable table : accountTables) {
+            accounts += table.size();
+        }
+        return accounts;
+    }
+    
+    /**
+     * Cross-shard transfers reserved by this state's shards that were neither released nor settled.
+     */
+    public Collection<JournalEvent> getReservedTransfers() {
+        return reservedTransfers.values();
+    }
+    
+    /**
+     * Cross-shard transfers committed by this state's shards whose reservation lives in another shard's
+     * journal and which were not forgotten yet: the source shard may still offer them again.
+     */
+    public Collection<JournalEvent> getUnsettledCommits() {
+        return unsettledCommits.values();
+    }
+    
+    /**
+     * Sizes the (still empty) tables for {@code accounts} accounts so loading a snapshot never rehashes.
+     */
+    void expectAccounts(int accounts) {
+        for (int shard = 0; shard < accountTables.length; shard++) {
+            accountTables[shard] = new AccountTable(accounts / accountTables.length + 1);
+        }
+    }
+    
+    void restoreAccount(String accountNumber, String name, long balance) {
+        tableOf(accountNumber).add(accountNumber, name, balance);
+    }
+    
+    void restoreTransaction(JournalEvent committed) {
+        recordTransaction(committed);
+    }
+    
+    void restoreReservation(JournalEvent reserved) {
+        reservedTransfers.put(reserved.getTransactionId(), reserved);
+    }
+    
+    void restoreUnsettledCommit(JournalEvent committed) {
+        unsettledCommits.put(committed.getTransactionId(), committed);
+    }
+    
+    void restoredFromSnapshot(long journalPosition) {
+        this.snapshotPosition = journalPosition;
+        this.journalLength = journalPosition;
+    }
+    
+    void apply(JournalEvent event) {
+        replayedEvents++;
+        switch (event.getType()) {
+            case ACCOUNT_CREATED:
+                tableOf(event.getAccountNumber()).add(event.getAccountNumber(), event.getName(), event.getAmount());
+                break;
+            case CREDITED:
+                addToBalance(event.getAccountNumber(), event.getAmount());
+                break;
+            case DEBITED:
+                addToBalance(event.getAccountNumber(), -event.getAmount());
+                break;
+            case TRANSFERRED:
+                addToBalance(event.getAccountNumber(), -event.getAmount());
+                addToBalance(event.getTargetAccountNumber(), event.getAmount());
+                recordTransaction(event);
+                break;
+            case TRANSFER_RESERVED:
+                addToBalance(event.getAccountNumber(), -event.getAmount());
+                reservedTransfers.put(event.getTransactionId(), event);
+                break;
+            case TRANSFER_COMMITTED:
+                addToBalance(event.getTargetAccountNumber(), event.getAmount());
+                if (reservedTransfers.remove(event.getTransactionId()) == null) {
+                    unsettledCommits.put(event.getTransactionId(), event);
+                }
+                recordTransaction(event);
+                break;
+            case TRANSFER_RELEASED:
+                addToBalance(event.getAccountNumber(), event.getAmount());
+                reservedTransfers.remove(event.getTransactionId());
+                break;
+            case TRANSFER_SETTLED:
+                reservedTransfers.remove(event.getTransactionId());
+                break;
+            case TRANSFER_FORGOTTEN:
+                unsettledCommits.remove(event.getTransactionId());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal event " + event.getType());
+        }
+    }
+    
+    private void replay(Path journalFile, long toPosition) throws IOException {
+        journalLength = FileJournal.replay(journalFile, snapshotPosition, toPosition, this::apply);
+    }
+    
+    private void releaseDanglingReservations() {
+        for (JournalEvent reserved : reservedTransfers.values()) {
+            addToBalance(reserved.getAccountNumber(), reserved.getAmount());
+        }
+        reservedTransfers.clear();
+    }
+    
+    private void recordTransaction(JournalEvent event) {
+        transactionsById.put(event.getTransactionId(), new Transaction(event.getTransactionId(),
+                event.getAccountNumber(), event.getTargetAccountNumber(), fromMinorUnits(event.getAmount()),
+                event.getTimestamp() == 0 ? null : event.getTimestamp()));
+    }
+    
+    private void addToBalance(String accountNumber, long amount) {
+        AccountTable accounts = tableOf(accountNumber);
+        int slot = accounts.indexOf(accountNumber);
+        if (slot != AccountTable.NOT_FOUND) {
+            accounts.addToBalance(slot, amount);
+        }
+    }
+    
+    private AccountTable tableOf(String accountNumber) {
+        return accountTables[AccountRegistryActor.shardOf(accountNumber, accountTables.length)];
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.persistence;
+
+import com.example.account.store.AccountTable;
+import com.example.transcaction.models.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static com.example.account.utils.Money.toMinorUnits;
+
+/**
+ * Compact binary snapshots of {@link RecoveredState}: the accounts, the committed transaction index, the
+ * cross-shard reservations still in flight and the cross-shard commits not yet settled, as of a journal
+ * position. Snapshot files are named after
+ * that position, so recovery loads the newest one and replays the journal from there.
+ * <p>
+ * Layout: {@code magic, version, journalPosition, accounts, transactions, reservations, unsettledCommits,
+ * crc32}; strings are an {@code int} byte length (-1 for null) followed by UTF-8 bytes, amounts are minor
+ * units. Version 2 adds the commit time to every transaction and version 3 the unsettled commits; older
+ * snapshots are still read.
+ */
+public final class SnapshotStore {
+    
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 3;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int SNAPSHOTS_KEPT = 2;
+    
+    private final Path directory;
+    
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Snapshot files, newest first.
+     */
+    public List<Path> list() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX)
+                            && file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted((a, b) -> Long.compare(positionOf(b), positionOf(a)))
+                    .collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Writes a snapshot of {@code state} next to the journal and removes all but the newest snapshots.
+     * The file only becomes visible under its final name once it is completely written and synced.
+     */
+    public Path write(RecoveredState state) throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(String.format("%s%020d%s", PREFIX, state.getJournalLength(), SUFFIX));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(file, crc), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(state.getJournalLength());
+            
+            output.writeInt(state.getAccountCount());
+            for (AccountTable accounts : state.getAccountTables()) {
+                for (int slot = 0; slot < accounts.capacity(); slot++) {
+                    if (accounts.accountNumberAt(slot) != null) {
+                        writeString(output, accounts.accountNumberAt(slot));
+                        writeString(output, accounts.nameAt(slot));
+                        output.writeLong(accounts.balanceAt(slot));
+                    }
+                }
+            }
+            
+            output.writeInt(state.getTransactionsById().size());
+            for (Transaction transaction : state.getTransactionsById().values()) {
+                writeString(output, transaction.getTransactionId());
+                writeString(output, transaction.getSourceAccountNumber());
+                writeString(output, transaction.getTargetAccountNumber());
+                output.writeLong(toMinorUnits(transaction.getAmount()));
+                output.writeLong(transaction.getCommittedAt() == null ? 0 : transaction.getCommittedAt());
+            }
+            
+            output.writeInt(state.getReservedTransfers().size());
+            for (JournalEvent reserved : state.getReservedTransfers()) {
+                writeString(output, reserved.getTransactionId());
+                writeString(output, reserved.getAccountNumber());
+                writeString(output, reserved.getTargetAccountNumber());
+                output.writeLong(reserved.getAmount());
+            }
+            
+            output.writeInt(state.getUnsettledCommits().size());
+            for (JournalEvent committed : state.getUnsettledCommits()) {
+                writeString(output, committed.getTransactionId());
+                writeString(output, committed.getAccountNumber());
+                writeString(output, committed.getTargetAccountNumber());
+                output.writeLong(committed.getAmount());
+            }
+            output.flush();
+            output.writeInt((int) crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        deleteOlderSnapshots();
+        return snapshot;
+    }
+    
+    /**
+     * Loads {@code snapshot} into the empty {@code state}.
+     *
+     * @throws IOException if the snapshot is unreadable, of an unknown version or fails its checksum
+     */
+    public void load(Path snapshot, RecoveredState state) throws IOException {
+        verifyChecksum(snapshot);
+        try (InputStream file = Files.newInputStream(snapshot);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            int version = input.readInt() == MAGIC ? input.readInt() : -1;
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Not a version 1 to " + VERSION + " snapshot: " + snapshot);
+            }
+            long journalPosition = input.readLong();
+            
+            int accounts = input.readInt();
+            state.expectAccounts(accounts);
+            for (int i = 0; i < accounts; i++) {
+                state.restoreAccount(readString(input), readString(input), input.readLong());
+            }
+            
+            int transactions = input.readInt();
+            for (int i = 0; i < transactions; i++) {
+                String transactionId = readString(input);
+                JournalEvent committed = JournalEvent.transferCommitted(transactionId, readString(input),
+                        readString(input), input.readLong());
+                state.restoreTransaction(committed.withTimestamp(version > 1 ? input.readLong() : 0));
+            }
+            
+            int reservations = input.readInt();
+            for (int i = 0; i < reservations; i++) {
+                String transactionId = readString(input);
+                state.restoreReservation(JournalEvent.transferReserved(transactionId, readString(input),
+                        readString(input), input.readLong()));
+            }
+            
+            int unsettledCommits = version > 2 ? input.readInt() : 0;
+            for (int i = 0; i < unsettledCommits; i++) {
+                String transactionId = readString(input);
+                state.restoreUnsettledCommit(JournalEvent.transferCommitted(transactionId, readString(input),
+                        readString(input), input.readLong()));
+            }
+            state.restoredFromSnapshot(journalPosition);
+        }
+    }
+    
+    static long positionOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+    
+    /**
+     * Checks the trailing CRC32 in a separate bulk pass, which is much cheaper than checksumming the
+     * many small reads of the parser.
+     */
+    private static void verifyChecksum(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long payloadSize = channel.size() - 4;
+            if (payloadSize < 0) {
+                throw new IOException("Snapshot is truncated: " + snapshot);
+            }
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            long position = 0;
+            while (position < payloadSize) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), payloadSize - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Snapshot is truncated: " + snapshot);
+                }
+                buffer.flip();
+                crc.update(buffer);
+                position += read;
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            channel.read(trailer, payloadSize);
+            if (trailer.hasRemaining() || trailer.getInt(0) != (int) crc.getValue()) {
+                throw new IOException("Snapshot checksum mismatch: " + snapshot);
+            }
+        }
+    }
+    
+    private void deleteOlderSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>(list());
+        for (Path older : snapshots.subList(Math.min(SNAPSHOTS_KEPT, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(older);
+        }
+    }
+    
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+    
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
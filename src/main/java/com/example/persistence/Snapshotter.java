@@ -0,0 +1,90 @@
+package com.example.persistence;
+
+import akka.actor.ActorSystem;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a snapshot so that startup only has to replay the journal written since.
+ * <p>
+ * The snapshot is built off to the side from the previous snapshot plus the durable part of the
+ * journal, so the account actors are never paused or asked for their state. The price is that a
+ * second copy of the state is held in memory while a snapshot is being written.
+ */
+public final class Snapshotter implements AutoCloseable {
+    
+    private final LoggingAdapter logger;
+    private final String loggingPrefix = "[ SNAPSHOT ] : ";
+    
+    private final Path directory;
+    private final FileJournal journal;
+    private final SnapshotStore snapshots;
+    private final ScheduledExecutorService executor;
+    
+    private Snapshotter(ActorSystem system, Path directory, FileJournal journal) {
+        this.logger = Logging.getLogger(system, this);
+        this.directory = directory;
+        this.journal = journal;
+        this.snapshots = new SnapshotStore(directory);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Starts writing a snapshot of the journal in {@code directory} every {@code interval}.
+     */
+    public static Snapshotter start(ActorSystem system, Path directory, FileJournal journal, Duration interval) {
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        Snapshotter snapshotter = new Snapshotter(system, directory, journal);
+        snapshotter.executor.scheduleWithFixedDelay(snapshotter::snapshotQuietly, interval.toMillis(),
+                interval.toMillis(), TimeUnit.MILLISECONDS);
+        return snapshotter;
+    }
+    
+    /**
+     * Writes a snapshot at the current durable journal position unless one exists there already.
+     */
+    public void snapshot() throws IOException {
+        long position = journal.durablePosition();
+        List<Path> existing = snapshots.list();
+        if (!existing.isEmpty() && SnapshotStore.positionOf(existing.get(0)) >= position) {
+            return;
+        }
+        long start = System.nanoTime();
+        RecoveredState state = RecoveredState.load(directory, 1, position, logger);
+        Path snapshot = snapshots.write(state);
+        logger.info("{} Wrote {} with {} accounts in {} ms", loggingPrefix, snapshot.getFileName(),
+                state.getAccountCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.error(e, "{} Snapshot failed, the journal remains the source of truth", loggingPrefix);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.serialization;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+
+import java.io.NotSerializableException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what a {@link BinaryWriter} wrote, in the same order. Running past the end or reading a
+ * malformed number fails with {@link NotSerializableException}.
+ */
+public final class BinaryReader {
+    
+    private final byte[] bytes;
+    private int position;
+    
+    public BinaryReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+    
+    public int readByte() throws NotSerializableException {
+        require(1);
+        return bytes[position++];
+    }
+    
+    public boolean readBoolean() throws NotSerializableException {
+        return readByte() != 0;
+    }
+    
+    public long readVarLong() throws NotSerializableException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int next = readByte();
+            zigZag |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new NotSerializableException("Malformed variable-length number at byte " + position);
+    }
+    
+    public int readVarInt() throws NotSerializableException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int next = readByte();
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new NotSerializableException("Malformed variable-length number at byte " + position);
+    }
+    
+    public double readDouble() throws NotSerializableException {
+        require(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (bytes[position++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+    
+    public Double readOptionalDouble() throws NotSerializableException {
+        return readBoolean() ? readDouble() : null;
+    }
+    
+    public Long readOptionalLong() throws NotSerializableException {
+        return readBoolean() ? readVarLong() : null;
+    }
+    
+    public String readString() throws NotSerializableException {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        require(length);
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+    
+    public byte[] readBytes() throws NotSerializableException {
+        int length = readVarInt();
+        require(length);
+        byte[] value = new byte[length];
+        System.arraycopy(bytes, position, value, 0, length);
+        position += length;
+        return value;
+    }
+    
+    public ActorRef readActorRef(ExtendedActorSystem system) throws NotSerializableException {
+        String path = readString();
+        return path == null ? null : system.provider().resolveActorRef(path);
+    }
+    
+    public Object readMessage(Serialization serialization) throws NotSerializableException {
+        int serializerId = readVarInt();
+        String manifest = readString();
+        return serialization.deserialize(readBytes(), serializerId, manifest).get();
+    }
+    
+    private void require(int length) throws NotSerializableException {
+        if (length < 0 || position + length > bytes.length) {
+            throw new NotSerializableException("Truncated message: " + length + " bytes wanted at byte "
+                    + position + " of " + bytes.length);
+        }
+    }
+}
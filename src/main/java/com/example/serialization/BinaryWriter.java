@@ -0,0 +1,154 @@
+package com.example.serialization;
+
+import akka.actor.ActorRef;
+import akka.serialization.Serialization;
+import akka.serialization.Serializer;
+import akka.serialization.Serializers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte array the message serializers write to. Integers are variable-length, amounts zig-zag
+ * encoded so small negative numbers stay small too, and strings are length-prefixed UTF-8; {@code null}
+ * strings and optional numbers take a single byte.
+ */
+public final class BinaryWriter {
+    
+    private byte[] bytes;
+    private int length;
+    
+    public BinaryWriter(int initialCapacity) {
+        bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+    
+    public BinaryWriter writeByte(int value) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) value;
+        return this;
+    }
+    
+    public BinaryWriter writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+    
+    public BinaryWriter writeVarLong(long value) {
+        ensureCapacity(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[length++] = (byte) zigZag;
+        return this;
+    }
+    
+    /**
+     * Writes lengths, counts and ids unsigned, without the zig-zag step; a negative value takes five bytes.
+     */
+    public BinaryWriter writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+        return this;
+    }
+    
+    public BinaryWriter writeDouble(double value) {
+        ensureCapacity(8);
+        long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[length++] = (byte) (bits >>> shift);
+        }
+        return this;
+    }
+    
+    /**
+     * Writes a presence flag, followed by the value unless it is {@code null}.
+     */
+    public BinaryWriter writeOptionalDouble(Double value) {
+        writeBoolean(value != null);
+        return value == null ? this : writeDouble(value);
+    }
+    
+    /**
+     * Writes a presence flag, followed by the value unless it is {@code null}.
+     */
+    public BinaryWriter writeOptionalLong(Long value) {
+        writeBoolean(value != null);
+        return value == null ? this : writeVarLong(value);
+    }
+    
+    /**
+     * Writes the UTF-8 length plus one, so that {@code null} is written as 0, followed by the UTF-8 bytes.
+     */
+    public BinaryWriter writeString(String value) {
+        if (value == null) {
+            return writeVarInt(0);
+        }
+        int chars = value.length();
+        if (isAscii(value)) {
+            writeVarInt(chars + 1);
+            ensureCapacity(chars);
+            for (int i = 0; i < chars; i++) {
+                bytes[length++] = (byte) value.charAt(i);
+            }
+            return this;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length + 1);
+        return writeRaw(utf8);
+    }
+    
+    public BinaryWriter writeBytes(byte[] value) {
+        writeVarInt(value.length);
+        return writeRaw(value);
+    }
+    
+    /**
+     * Writes the path of an actor, including this node's address, so that a reply can be routed back to
+     * it from another node.
+     */
+    public BinaryWriter writeActorRef(ActorRef actorRef) {
+        return writeString(actorRef == null ? null : Serialization.serializedActorPath(actorRef));
+    }
+    
+    /**
+     * Writes a nested message with whatever serializer Akka is configured to use for it, preceded by that
+     * serializer's id and manifest.
+     */
+    public BinaryWriter writeMessage(Serialization serialization, Object message) {
+        Serializer serializer = serialization.findSerializerFor(message);
+        writeVarInt(serializer.identifier());
+        writeString(Serializers.manifestFor(serializer, message));
+        return writeBytes(serializer.toBinary(message));
+    }
+    
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+    
+    private BinaryWriter writeRaw(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, length, value.length);
+        length += value.length;
+        return this;
+    }
+    
+    private void ensureCapacity(int additional) {
+        if (length + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+        }
+    }
+    
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
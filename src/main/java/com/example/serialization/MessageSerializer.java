@@ -0,0 +1,244 @@
+package com.example.serialization;
+
+import akka.serialization.SerializerWithStringManifest;
+import com.example.account.messages.AccountRegistryMessages;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.transcaction.messages.TransactionRegistryMessages;
+import com.example.transcaction.models.Transaction;
+
+import java.io.NotSerializableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compact binary encoding of the account and transaction registry messages and the models they carry,
+ * used instead of Java serialization when they are sent to another node.
+ * <p>
+ * The manifest names the message type and the first byte of every message is the schema version of its
+ * type, see {@link #versionOf(Object)}. A type evolves by appending fields under a new version of its
+ * own, which readers only read from messages of that version or later. Readers accept versions newer
+ * than the ones they know and ignore the fields appended after the ones they read, so nodes of adjacent
+ * releases keep reading each other's messages during a rolling upgrade, and a type only changes version
+ * when it gains a field.
+ * <p>
+ * Version 2 of the failures replaced their message with a {@link ResultCode}; version 3 restores the
+ * message and appends the code, so failures evolve by appending again. Version 2 failures are still read.
+ */
+public final class MessageSerializer extends SerializerWithStringManifest {
+    
+    /**
+     * Version of the failures that carry a {@link ResultCode} id instead of a message.
+     */
+    private static final int RESULT_CODES = 2;
+    
+    /**
+     * Version of the failures that carry a message followed by a {@link ResultCode} id.
+     */
+    public static final int APPENDED_RESULT_CODES = 3;
+    
+    private static final String CREATE_ACCOUNT = "CA";
+    private static final String CREATE_ACCOUNTS = "CAS";
+    private static final String ACCOUNTS_CREATED = "AC";
+    private static final String GET_ACCOUNT = "GA";
+    private static final String CREDIT = "CR";
+    private static final String DEBIT = "DE";
+    private static final String TRANSFER = "TR";
+    private static final String SUCCESS = "S";
+    private static final String FAILURE = "F";
+    private static final String ACCOUNT = "A";
+    private static final String TRANSACTION_TRANSFER = "TT";
+    private static final String TRANSACTION_SUCCESS = "TS";
+    private static final String TRANSACTION_FAILURE = "TF";
+    
+    @Override
+    public int identifier() {
+        return 1_786_421;
+    }
+    
+    @Override
+    public String manifest(Object message) {
+        if (message instanceof AccountRegistryMessages.CreateAccount) {
+            return CREATE_ACCOUNT;
+        } else if (message instanceof AccountRegistryMessages.CreateAccounts) {
+            return CREATE_ACCOUNTS;
+        } else if (message instanceof AccountRegistryMessages.AccountsCreated) {
+            return ACCOUNTS_CREATED;
+        } else if (message instanceof AccountRegistryMessages.GetAccount) {
+            return GET_ACCOUNT;
+        } else if (message instanceof AccountRegistryMessages.Credit) {
+            return CREDIT;
+        } else if (message instanceof AccountRegistryMessages.Debit) {
+            return DEBIT;
+        } else if (message instanceof AccountRegistryMessages.Transfer) {
+            return TRANSFER;
+        } else if (message instanceof AccountRegistryMessages.SuccessResponse) {
+            return SUCCESS;
+        } else if (message instanceof AccountRegistryMessages.FailureResponse) {
+            return FAILURE;
+        } else if (message instanceof Account) {
+            return ACCOUNT;
+        } else if (message instanceof TransactionRegistryMessages.Transfer) {
+            return TRANSACTION_TRANSFER;
+        } else if (message instanceof TransactionRegistryMessages.SuccessResponse) {
+            return TRANSACTION_SUCCESS;
+        } else if (message instanceof TransactionRegistryMessages.FailureResponse) {
+            return TRANSACTION_FAILURE;
+        }
+        throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+    }
+    
+    @Override
+    public byte[] toBinary(Object message) {
+        BinaryWriter writer = new BinaryWriter(64).writeByte(versionOf(message));
+        if (message instanceof AccountRegistryMessages.CreateAccount) {
+            writeAccount(writer, ((AccountRegistryMessages.CreateAccount) message).getAccount());
+        } else if (message instanceof AccountRegistryMessages.CreateAccounts) {
+            List<Account> accounts = ((AccountRegistryMessages.CreateAccounts) message).getAccounts();
+            writer.writeVarInt(accounts.size());
+            for (Account account : accounts) {
+                writeAccount(writer, account);
+            }
+        } else if (message instanceof AccountRegistryMessages.AccountsCreated) {
+            AccountRegistryMessages.AccountsCreated created = (AccountRegistryMessages.AccountsCreated) message;
+            writer.writeVarInt(created.getRequested()).writeVarInt(created.getRejected().size());
+            for (Map.Entry<Integer, String> rejected : created.getRejected().entrySet()) {
+                writer.writeVarInt(rejected.getKey()).writeString(rejected.getValue());
+            }
+        } else if (message instanceof AccountRegistryMessages.GetAccount) {
+            writer.writeString(((AccountRegistryMessages.GetAccount) message).getAccountNumber());
+        } else if (message instanceof AccountRegistryMessages.Credit) {
+            AccountRegistryMessages.Credit credit = (AccountRegistryMessages.Credit) message;
+            writer.writeString(credit.getAccountNumber()).writeVarLong(credit.getAmount());
+        } else if (message instanceof AccountRegistryMessages.Debit) {
+            AccountRegistryMessages.Debit debit = (AccountRegistryMessages.Debit) message;
+            writer.writeString(debit.getAccountNumber()).writeVarLong(debit.getAmount());
+        } else if (message instanceof AccountRegistryMessages.Transfer) {
+            AccountRegistryMessages.Transfer transfer = (AccountRegistryMessages.Transfer) message;
+            writer.writeString(transfer.getTransactionId())
+                    .writeString(transfer.getSourceAccountNumber())
+                    .writeString(transfer.getTargetAccountNumber())
+                    .writeVarLong(transfer.getAmount());
+        } else if (message instanceof AccountRegistryMessages.SuccessResponse) {
+            // the code is always SUCCESS
+        } else if (message instanceof AccountRegistryMessages.FailureResponse) {
+            writeCode(writer, ((AccountRegistryMessages.FailureResponse) message).getCode());
+        } else if (message instanceof Account) {
+            writeAccount(writer, (Account) message);
+        } else if (message instanceof TransactionRegistryMessages.Transfer) {
+            Transaction transaction = ((TransactionRegistryMessages.Transfer) message).getTransaction();
+            writer.writeString(transaction.getTransactionId())
+                    .writeString(transaction.getSourceAccountNumber())
+                    .writeString(transaction.getTargetAccountNumber())
+                    .writeOptionalDouble(transaction.getAmount())
+                    .writeOptionalLong(transaction.getCommittedAt());
+        } else if (message instanceof TransactionRegistryMessages.SuccessResponse) {
+            // the code is always SUCCESS
+        } else if (message instanceof TransactionRegistryMessages.FailureResponse) {
+            writeCode(writer, ((TransactionRegistryMessages.FailureResponse) message).getCode());
+        } else {
+            throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+        }
+        return writer.toByteArray();
+    }
+    
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        BinaryReader reader = new BinaryReader(bytes);
+        int version = reader.readByte();
+        if (version < 1) {
+            throw new NotSerializableException("Message " + manifest + " has invalid schema version " + version);
+        }
+        switch (manifest) {
+            case CREATE_ACCOUNT:
+                return new AccountRegistryMessages.CreateAccount(readAccount(reader));
+            case CREATE_ACCOUNTS:
+                int count = reader.readVarInt();
+                List<Account> accounts = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    accounts.add(readAccount(reader));
+                }
+                return new AccountRegistryMessages.CreateAccounts(accounts);
+            case ACCOUNTS_CREATED:
+                int requested = reader.readVarInt();
+                int rejectedCount = reader.readVarInt();
+                SortedMap<Integer, String> rejected = new TreeMap<>();
+                for (int i = 0; i < rejectedCount; i++) {
+                    rejected.put(reader.readVarInt(), reader.readString());
+                }
+                return new AccountRegistryMessages.AccountsCreated(requested, rejected);
+            case GET_ACCOUNT:
+                return new AccountRegistryMessages.GetAccount(reader.readString());
+            case CREDIT:
+                return new AccountRegistryMessages.Credit(reader.readString(), reader.readVarLong());
+            case DEBIT:
+                return new AccountRegistryMessages.Debit(reader.readString(), reader.readVarLong());
+            case TRANSFER:
+                return new AccountRegistryMessages.Transfer(reader.readString(), reader.readString(),
+                        reader.readString(), reader.readVarLong());
+            case SUCCESS:
+                return AccountRegistryMessages.SuccessResponse.INSTANCE;
+            case FAILURE:
+                return AccountRegistryMessages.FailureResponse.of(readCode(reader, version));
+            case ACCOUNT:
+                return readAccount(reader);
+            case TRANSACTION_TRANSFER:
+                return new TransactionRegistryMessages.Transfer(new Transaction(reader.readString(),
+                        reader.readString(), reader.readString(), reader.readOptionalDouble(),
+                        reader.readOptionalLong()));
+            case TRANSACTION_SUCCESS:
+                return TransactionRegistryMessages.SuccessResponse.INSTANCE;
+            case TRANSACTION_FAILURE:
+                return TransactionRegistryMessages.FailureResponse.of(readCode(reader, version));
+            default:
+                throw new NotSerializableException("Unknown message manifest " + manifest);
+        }
+    }
+    
+    /**
+     * Schema version {@code message} is written with: the oldest version of its type that carries all of
+     * its fields.
+     */
+    static int versionOf(Object message) {
+        return message instanceof AccountRegistryMessages.FailureResponse
+                || message instanceof TransactionRegistryMessages.FailureResponse ? APPENDED_RESULT_CODES : 1;
+    }
+    
+    private static void writeAccount(BinaryWriter writer, Account account) {
+        writer.writeString(account.getAccountNumber())
+                .writeString(account.getName())
+                .writeOptionalDouble(account.getBalance())
+                .writeVarLong(account.getVersion());
+    }
+    
+    /**
+     * Writes a failure as of {@link #APPENDED_RESULT_CODES}: the description of its code in place of the
+     * message of version 1, followed by the code.
+     */
+    public static BinaryWriter writeCode(BinaryWriter writer, ResultCode code) {
+        return writer.writeString(code.getDescription()).writeVarInt(code.getId());
+    }
+    
+    /**
+     * Reads the code of a failure; a failure written before {@link #RESULT_CODES} only has a message and
+     * is read as {@link ResultCode#FAILED}.
+     */
+    public static ResultCode readCode(BinaryReader reader, int version) throws NotSerializableException {
+        if (version < RESULT_CODES) {
+            reader.readString();
+            return ResultCode.FAILED;
+        }
+        if (version >= APPENDED_RESULT_CODES) {
+            reader.readString();
+        }
+        return ResultCode.ofId(reader.readVarInt());
+    }
+    
+    private static Account readAccount(BinaryReader reader) throws NotSerializableException {
+        return new Account(reader.readString(), reader.readString(), reader.readOptionalDouble(),
+                reader.readVarLong());
+    }
+}
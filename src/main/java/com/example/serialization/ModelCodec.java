@@ -0,0 +1,311 @@
+package com.example.serialization;
+
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntity;
+import akka.http.javadsl.model.MediaRange;
+import akka.http.javadsl.model.MediaTypes;
+import akka.http.javadsl.model.headers.Accept;
+import akka.http.javadsl.unmarshalling.Unmarshaller;
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
+import com.example.account.models.Account;
+import com.example.transcaction.models.Transaction;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Streaming codec for the {@link Account} and {@link Transaction} request and response bodies, in JSON or,
+ * for internal clients that ask for it, CBOR.
+ * <p>
+ * It reads and writes the same JSON documents as the databinding behind {@code Jackson.unmarshaller} and
+ * {@code Jackson.marshaller}: properties in alphabetical order with nulls included, scalars coerced like
+ * Jackson does, a missing property left at the value of the model's no-argument constructor and an unknown
+ * one rejected. It only skips the per-request bean introspection and reflective field access.
+ */
+public final class ModelCodec {
+    
+    /**
+     * Body formats a client can send or ask for.
+     */
+    public enum Format {
+        JSON(new JsonFactory(), ContentTypes.APPLICATION_JSON),
+        CBOR(new CBORFactory(), MediaTypes.APPLICATION_CBOR.toContentType());
+        
+        private final JsonFactory factory;
+        private final ContentType contentType;
+        
+        Format(JsonFactory factory, ContentType contentType) {
+            this.factory = factory;
+            this.contentType = contentType;
+        }
+        
+        public ContentType getContentType() {
+            return contentType;
+        }
+        
+        /**
+         * CBOR for a client whose {@code Accept} header names it explicitly, JSON for everyone else, including
+         * clients that accept any type.
+         */
+        public static Format accepted(Optional<Accept> accept) {
+            if (accept.isPresent()) {
+                for (MediaRange range : accept.get().getMediaRanges()) {
+                    if (range.matches(MediaTypes.APPLICATION_CBOR) && !range.matches(MediaTypes.APPLICATION_JSON)) {
+                        return CBOR;
+                    }
+                }
+            }
+            return JSON;
+        }
+    }
+    
+    private interface Reader<T> {
+        T read(ByteString bytes, Format format) throws IOException;
+    }
+    
+    private static final SerializedString ACCOUNT_NUMBER = new SerializedString("accountNumber");
+    private static final SerializedString AMOUNT = new SerializedString("amount");
+    private static final SerializedString BALANCE = new SerializedString("balance");
+    private static final SerializedString COMMITTED_AT = new SerializedString("committedAt");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString SOURCE_ACCOUNT_NUMBER = new SerializedString("sourceAccountNumber");
+    private static final SerializedString TARGET_ACCOUNT_NUMBER = new SerializedString("targetAccountNumber");
+    private static final SerializedString TRANSACTION_ID = new SerializedString("transactionId");
+    
+    private static final Unmarshaller<HttpEntity, Account> ACCOUNT_UNMARSHALLER =
+            unmarshaller(ModelCodec::readAccount, Account.class);
+    private static final Unmarshaller<HttpEntity, Transaction> TRANSACTION_UNMARSHALLER =
+            unmarshaller(ModelCodec::readTransaction, Transaction.class);
+    
+    private ModelCodec() {
+    }
+    
+    /**
+     * Unmarshals an {@code application/json} or {@code application/cbor} entity; a body that cannot be read
+     * is rejected as malformed, like with {@code Jackson.unmarshaller(Account.class)}.
+     */
+    public static Unmarshaller<HttpEntity, Account> accountUnmarshaller() {
+        return ACCOUNT_UNMARSHALLER;
+    }
+    
+    /**
+     * Like {@link #accountUnmarshaller()}, for a {@link Transaction}.
+     */
+    public static Unmarshaller<HttpEntity, Transaction> transactionUnmarshaller() {
+        return TRANSACTION_UNMARSHALLER;
+    }
+    
+    public static Account readAccount(ByteString bytes, Format format) throws IOException {
+        try (JsonParser parser = format.factory.createParser(bytes.toArray())) {
+            startObject(parser, "Account");
+            String accountNumber = "";
+            String name = "";
+            Double balance = 0.0;
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (field) {
+                    case "accountNumber":
+                        accountNumber = readString(parser);
+                        break;
+                    case "name":
+                        name = readString(parser);
+                        break;
+                    case "balance":
+                        balance = readDouble(parser);
+                        break;
+                    case "version":
+                        parser.skipChildren();
+                        break;
+                    default:
+                        throw unknownField(parser, field, "Account");
+                }
+            }
+            endObject(parser, "Account");
+            return new Account(accountNumber, name, balance);
+        }
+    }
+    
+    public static Transaction readTransaction(ByteString bytes, Format format) throws IOException {
+        try (JsonParser parser = format.factory.createParser(bytes.toArray())) {
+            startObject(parser, "Transaction");
+            String transactionId = "";
+            String sourceAccountNumber = "";
+            String targetAccountNumber = "";
+            Double amount = 0.0;
+            Long committedAt = null;
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (field) {
+                    case "transactionId":
+                        transactionId = readString(parser);
+                        break;
+                    case "sourceAccountNumber":
+                        sourceAccountNumber = readString(parser);
+                        break;
+                    case "targetAccountNumber":
+                        targetAccountNumber = readString(parser);
+                        break;
+                    case "amount":
+                        amount = readDouble(parser);
+                        break;
+                    case "committedAt":
+                        committedAt = readLong(parser);
+                        break;
+                    default:
+                        throw unknownField(parser, field, "Transaction");
+                }
+            }
+            endObject(parser, "Transaction");
+            return new Transaction(transactionId, sourceAccountNumber, targetAccountNumber, amount, committedAt);
+        }
+    }
+    
+    public static ByteString write(Account account, Format format) {
+        ByteStringBuilder out = ByteString.createBuilder();
+        try (JsonGenerator generator = format.factory.createGenerator(out.asOutputStream())) {
+            generator.writeStartObject();
+            generator.writeFieldName(ACCOUNT_NUMBER);
+            generator.writeString(account.getAccountNumber());
+            generator.writeFieldName(BALANCE);
+            writeNumber(generator, account.getBalance());
+            generator.writeFieldName(NAME);
+            generator.writeString(account.getName());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write account " + account.getAccountNumber(), e);
+        }
+        return out.result();
+    }
+    
+    public static ByteString write(Transaction transaction, Format format) {
+        ByteStringBuilder out = ByteString.createBuilder();
+        try (JsonGenerator generator = format.factory.createGenerator(out.asOutputStream())) {
+            generator.writeStartObject();
+            generator.writeFieldName(AMOUNT);
+            writeNumber(generator, transaction.getAmount());
+            generator.writeFieldName(COMMITTED_AT);
+            if (transaction.getCommittedAt() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(transaction.getCommittedAt());
+            }
+            generator.writeFieldName(SOURCE_ACCOUNT_NUMBER);
+            generator.writeString(transaction.getSourceAccountNumber());
+            generator.writeFieldName(TARGET_ACCOUNT_NUMBER);
+            generator.writeString(transaction.getTargetAccountNumber());
+            generator.writeFieldName(TRANSACTION_ID);
+            generator.writeString(transaction.getTransactionId());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write transaction " + transaction.getTransactionId(), e);
+        }
+        return out.result();
+    }
+    
+    private static <T> Unmarshaller<HttpEntity, T> unmarshaller(Reader<T> reader, Class<T> type) {
+        return Unmarshaller.firstOf(
+                Unmarshaller.forMediaType(MediaTypes.APPLICATION_JSON, Unmarshaller.entityToByteString())
+                        .thenApply(bytes -> read(reader, bytes, Format.JSON, type)),
+                Unmarshaller.forMediaType(MediaTypes.APPLICATION_CBOR, Unmarshaller.entityToByteString())
+                        .thenApply(bytes -> read(reader, bytes, Format.CBOR, type)));
+    }
+    
+    private static <T> T read(Reader<T> reader, ByteString bytes, Format format, Class<T> type) {
+        try {
+            return reader.read(bytes, format);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot unmarshal " + format + " as " + type.getSimpleName(), e);
+        }
+    }
+    
+    private static void startObject(JsonParser parser, String model) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected an object for " + model + " but found "
+                    + parser.currentToken());
+        }
+    }
+    
+    private static void endObject(JsonParser parser, String model) throws IOException {
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Expected a field name or the end of " + model + " but found "
+                    + parser.currentToken());
+        }
+    }
+    
+    private static JsonParseException unknownField(JsonParser parser, String field, String model) {
+        return new JsonParseException(parser, "Unrecognized field \"" + field + "\" of " + model);
+    }
+    
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a string for " + parser.getCurrentName()
+                    + " but found " + token);
+        }
+        return parser.getText();
+    }
+    
+    private static Double readDouble(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        String text = readNumberText(parser);
+        try {
+            return text == null ? null : Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Expected a number for " + parser.getCurrentName()
+                    + " but found \"" + text + "\"", e);
+        }
+    }
+    
+    private static Long readLong(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isNumeric()) {
+            return parser.getLongValue();
+        }
+        String text = readNumberText(parser);
+        try {
+            return text == null ? null : Long.valueOf(text);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Expected a number for " + parser.getCurrentName()
+                    + " but found \"" + text + "\"", e);
+        }
+    }
+    
+    /**
+     * The text of a number sent as a string, or {@code null} for null or an empty string.
+     */
+    private static String readNumberText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected a number for " + parser.getCurrentName()
+                    + " but found " + token);
+        }
+        String text = parser.getText().trim();
+        return text.isEmpty() ? null : text;
+    }
+    
+    private static void writeNumber(JsonGenerator generator, Double value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.serialization;
+
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JSerializer;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+
+import java.io.NotSerializableException;
+import java.util.Optional;
+
+/**
+ * Serializes {@link Optional}, which is not {@code Serializable}, so account lookups can be answered
+ * across cluster nodes. An empty optional is zero bytes; otherwise the value is written with the
+ * serializer Akka picks for it, preceded by that serializer's id and manifest.
+ */
+public final class OptionalSerializer extends JSerializer {
+    
+    private final ExtendedActorSystem system;
+    
+    public OptionalSerializer(ExtendedActorSystem system) {
+        this.system = system;
+    }
+    
+    @Override
+    public int identifier() {
+        return 1_786_420;
+    }
+    
+    @Override
+    public boolean includeManifest() {
+        return false;
+    }
+    
+    @Override
+    public byte[] toBinary(Object object) {
+        Optional<?> optional = (Optional<?>) object;
+        if (!optional.isPresent()) {
+            return new byte[0];
+        }
+        return new BinaryWriter(64).writeMessage(serialization(), optional.get()).toByteArray();
+    }
+    
+    @Override
+    public Object fromBinaryJava(byte[] bytes, Class<?> manifest) {
+        if (bytes.length == 0) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new BinaryReader(bytes).readMessage(serialization()));
+        } catch (NotSerializableException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    private Serialization serialization() {
+        return SerializationExtension.get(system);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.transcaction.messages;
 
+import com.example.account.messages.ResultCode;
+import com.example.account.utils.Money;
 import com.example.transcaction.models.Transaction;
 
 import java.io.Serializable;
@@ -16,32 +18,65 @@ public interface TransactionRegistryMessages {
         public Transaction getTransaction() {
             return transaction;
         }
+        
+        /**
+         * Whether the transfer can be run at all: it names a transaction and two different accounts, and
+         * moves an amount that {@link Money#isValid(Double)} accepts and that is at least one minor unit once
+         * rounded. The routes answer any other transfer with {@code 400 Bad Request} and the registry with
+         * {@link ResultCode#INVALID}.
+         */
+        public boolean isValid() {
+            return transaction.getTransactionId() != null && transaction.getSourceAccountNumber() != null
+                    && transaction.getTargetAccountNumber() != null
+                    && !transaction.getSourceAccountNumber().equals(transaction.getTargetAccountNumber())
+                    && Money.isValid(transaction.getAmount()) && Money.toMinorUnits(transaction.getAmount()) > 0;
+        }
     }
     
+    /**
+     * Answer to a {@link Transfer}; a rejected transfer says why in its {@link ResultCode}.
+     */
     abstract class Response implements Serializable {
+        private final ResultCode code;
+        
+        Response(ResultCode code) {
+            this.code = code;
+        }
+        
+        public ResultCode getCode() {
+            return code;
+        }
     }
     
+    /**
+     * Carries no data, so every committed transfer is answered with the same instance.
+     */
     class SuccessResponse extends Response {
-        private final String message;
-        
-        public SuccessResponse(String message) {
-            this.message = message;
-        }
+        public static final SuccessResponse INSTANCE = new SuccessResponse();
         
-        public String getMessage() {
-            return message;
+        private SuccessResponse() {
+            super(ResultCode.SUCCESS);
         }
     }
     
     class FailureResponse extends Response {
-        private final String message;
+        private static final FailureResponse[] BY_CODE = new FailureResponse[ResultCode.values().length];
+        
+        static {
+            for (ResultCode code : ResultCode.values()) {
+                BY_CODE[code.ordinal()] = new FailureResponse(code);
+            }
+        }
         
-        public FailureResponse(String message) {
-            this.message = message;
+        private FailureResponse(ResultCode code) {
+            super(code);
         }
         
-        public String getMessage() {
-            return message;
+        /**
+         * The shared failure for {@code code}.
+         */
+        public static FailureResponse of(ResultCode code) {
+            return BY_CODE[code.ordinal()];
         }
     }
 }
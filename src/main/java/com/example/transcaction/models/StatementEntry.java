@@ -0,0 +1,40 @@
+package com.example.transcaction.models;
+
+/**
+ * One line of an account statement: a transfer seen from the statement's account, with a negative amount
+ * for money leaving the account.
+ */
+public class StatementEntry {
+    
+    private final String transactionId;
+    private final String committedAt;
+    private final String counterpartyAccountNumber;
+    private final Double amount;
+    
+    public StatementEntry(String transactionId, String committedAt, String counterpartyAccountNumber, Double amount) {
+        this.transactionId = transactionId;
+        this.committedAt = committedAt;
+        this.counterpartyAccountNumber = counterpartyAccountNumber;
+        this.amount = amount;
+    }
+    
+    public String getTransactionId() {
+        return transactionId;
+    }
+    
+    /**
+     * ISO-8601 commit time, {@code null} if unknown.
+     */
+    public String getCommittedAt() {
+        return committedAt;
+    }
+    
+    public String getCounterpartyAccountNumber() {
+        return counterpartyAccountNumber;
+    }
+    
+    public Double getAmount() {
+        return amount;
+    }
+    
+}
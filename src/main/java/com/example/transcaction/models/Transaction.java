@@ -6,20 +6,28 @@ public class Transaction {
     private final String sourceAccountNumber;
     private final String targetAccountNumber;
     private final Double amount;
+    private final Long committedAt;
     
     public Transaction() {
         this.transactionId = "";
         this.sourceAccountNumber = "";
         this.targetAccountNumber = "";
         this.amount = 0.0;
+        this.committedAt = null;
     }
     
     public Transaction(String transactionId, String sourceAccountNumber,
                        String targetAccountNumber, Double amount) {
+        this(transactionId, sourceAccountNumber, targetAccountNumber, amount, null);
+    }
+    
+    public Transaction(String transactionId, String sourceAccountNumber,
+                       String targetAccountNumber, Double amount, Long committedAt) {
         this.transactionId = transactionId;
         this.sourceAccountNumber = sourceAccountNumber;
         this.targetAccountNumber = targetAccountNumber;
         this.amount = amount;
+        this.committedAt = committedAt;
     }
     
     
@@ -39,4 +47,12 @@ public class Transaction {
         return amount;
     }
     
+    /**
+     * Commit time in epoch milliseconds; {@code null} for a transaction that is only requested, or whose
+     * commit time was not journaled.
+     */
+    public Long getCommittedAt() {
+        return committedAt;
+    }
+    
 }
@@ -0,0 +1,27 @@
+package com.example.transcaction.models;
+
+import java.util.List;
+
+/**
+ * One page of an account's transaction history, newest first. {@code nextCursor} fetches the next older
+ * page and is {@code null} on the last one.
+ */
+public class TransactionPage {
+    
+    private final List<Transaction> transactions;
+    private final String nextCursor;
+    
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+}
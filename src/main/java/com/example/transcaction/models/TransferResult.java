@@ -0,0 +1,45 @@
+package com.example.transcaction.models;
+
+import com.example.account.messages.ResultCode;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Outcome of one transfer of a batch request. {@code message} is only set for an item that could not be
+ * read as a transaction; every other outcome is described by its {@link ResultCode}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"transactionId", "success", "code", "message"})
+public class TransferResult {
+    
+    private final String transactionId;
+    private final ResultCode code;
+    private final String message;
+    
+    public TransferResult(String transactionId, ResultCode code) {
+        this(transactionId, code, null);
+    }
+    
+    public TransferResult(String transactionId, ResultCode code, String message) {
+        this.transactionId = transactionId;
+        this.code = code;
+        this.message = message;
+    }
+    
+    public String getTransactionId() {
+        return transactionId;
+    }
+    
+    public boolean isSuccess() {
+        return code == ResultCode.SUCCESS;
+    }
+    
+    public ResultCode getCode() {
+        return code;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+}
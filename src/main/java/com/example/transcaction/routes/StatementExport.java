@@ -0,0 +1,119 @@
+package com.example.transcaction.routes;
+
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
+import com.example.transcaction.models.StatementEntry;
+import com.example.transcaction.models.Transaction;
+import com.example.transcaction.store.TransactionHistory;
+import com.example.transcaction.store.TransactionHistory.Page;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Account statements as a stream: the account's history is read from the {@link TransactionHistory} one
+ * page at a time, oldest first, and every page is rendered into a single chunk only when the client is
+ * ready for more, so memory use does not depend on the length of the history.
+ * <p>
+ * Only the transactions the history still holds are exported, so a statement reaching back past the
+ * {@code TRANSACTION_HISTORY_MAX_ENTRIES} most recent transactions is incomplete; see
+ * {@link #truncatedBefore(Optional)}.
+ * <p>
+ * CSV statements start with the header {@code transactionId,committedAt,counterpartyAccountNumber,amount};
+ * NDJSON statements have one {@link StatementEntry} per line.
+ */
+final class StatementExport {
+    
+    private static final int PAGE_SIZE = 256;
+    private static final ByteString NEWLINE = ByteString.fromString("\n");
+    private static final ByteString CSV_HEADER =
+            ByteString.fromString("transactionId,committedAt,counterpartyAccountNumber,amount\n");
+    
+    private final TransactionHistory transactionHistory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    StatementExport(TransactionHistory transactionHistory) {
+        this.transactionHistory = transactionHistory;
+    }
+    
+    /**
+     * Transactions committed from {@code from} (inclusive) to {@code to} (exclusive); transactions
+     * without a known commit time are only part of unfiltered statements.
+     */
+    Source<ByteString, NotUsed> source(String accountNumber, Optional<Instant> from, Optional<Instant> to,
+                                       boolean csv) {
+        long fromMillis = from.map(Instant::toEpochMilli).orElse(Long.MIN_VALUE);
+        long toMillis = to.map(Instant::toEpochMilli).orElse(Long.MAX_VALUE);
+        boolean filtered = from.isPresent() || to.isPresent();
+        Source<ByteString, NotUsed> entries = Source.unfold(0L, cursor -> {
+            if (cursor < 0) {
+                return Optional.empty();
+            }
+            Page page = transactionHistory.pageOldestFirst(accountNumber, cursor, PAGE_SIZE);
+            return Optional.of(Pair.create(page.getNextCursor(), page.getTransactions()));
+        })
+                .map(transactions -> render(accountNumber, transactions, fromMillis, toMillis, filtered, csv))
+                .filter(chunk -> !chunk.isEmpty());
+        return csv ? Source.single(CSV_HEADER).concat(entries) : entries;
+    }
+    
+    /**
+     * The instant before which a statement starting at {@code from} may be missing transactions because
+     * the history dropped them, or empty if the statement is complete.
+     */
+    Optional<Instant> truncatedBefore(Optional<Instant> from) {
+        OptionalLong droppedBefore = transactionHistory.droppedBefore();
+        if (!droppedBefore.isPresent()
+                || from.map(Instant::toEpochMilli).orElse(Long.MIN_VALUE) >= droppedBefore.getAsLong()) {
+            return Optional.empty();
+        }
+        return Optional.of(Instant.ofEpochMilli(droppedBefore.getAsLong()));
+    }
+    
+    private ByteString render(String accountNumber, List<Transaction> transactions, long fromMillis,
+                              long toMillis, boolean filtered, boolean csv) {
+        ByteStringBuilder chunk = new ByteStringBuilder();
+        for (Transaction transaction : transactions) {
+            Long committedAt = transaction.getCommittedAt();
+            if (filtered && (committedAt == null || committedAt < fromMillis || committedAt >= toMillis)) {
+                continue;
+            }
+            boolean outgoing = transaction.getSourceAccountNumber().equals(accountNumber);
+            StatementEntry entry = new StatementEntry(transaction.getTransactionId(),
+                    committedAt == null ? null : Instant.ofEpochMilli(committedAt).toString(),
+                    outgoing ? transaction.getTargetAccountNumber() : transaction.getSourceAccountNumber(),
+                    outgoing ? -transaction.getAmount() : transaction.getAmount());
+            chunk.append(csv ? toCsvLine(entry) : toJsonLine(entry));
+        }
+        return chunk.result();
+    }
+    
+    private ByteString toJsonLine(StatementEntry entry) {
+        try {
+            return ByteString.fromArray(objectMapper.writeValueAsBytes(entry)).concat(NEWLINE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static ByteString toCsvLine(StatementEntry entry) {
+        return ByteString.fromString(csvField(entry.getTransactionId()) + ','
+                + (entry.getCommittedAt() == null ? "" : entry.getCommittedAt()) + ','
+                + csvField(entry.getCounterpartyAccountNumber()) + ','
+                + entry.getAmount() + '\n');
+    }
+    
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -4,64 +4,303 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.http.javadsl.coding.Coder;
 import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpCharsets;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpEntity;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.MediaRange;
+import akka.http.javadsl.model.MediaTypes;
 import akka.http.javadsl.model.StatusCodes;
-import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.model.headers.Accept;
+import akka.http.javadsl.model.headers.RawHeader;
+import akka.http.javadsl.server.PathMatchers;
 import akka.http.javadsl.server.Route;
-import akka.pattern.Patterns;
+import akka.stream.javadsl.JsonFraming;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.example.account.messages.ResultCode;
+import com.example.account.routes.ResultBodies;
+import com.example.admission.AdmissionQueue;
+import com.example.admission.OverloadedException;
+import com.example.metrics.Metrics;
+import com.example.metrics.MetricsDirectives;
+import com.example.metrics.RouteMetrics;
+import com.example.serialization.ModelCodec;
+import com.example.serialization.ModelCodec.Format;
 import com.example.transcaction.messages.TransactionRegistryMessages.Response;
-import com.example.transcaction.messages.TransactionRegistryMessages.SuccessResponse;
 import com.example.transcaction.messages.TransactionRegistryMessages.Transfer;
 import com.example.transcaction.models.Transaction;
+import com.example.transcaction.models.TransactionPage;
+import com.example.transcaction.models.TransferResult;
+import com.example.transcaction.store.TransactionHistory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
+import static com.example.account.utils.AccountConfigs.ADMISSION_TRANSACTION_QUEUE_SIZE;
 import static com.example.account.utils.AccountConfigs.AKKA_TIMEOUT_DURATION;
 import static com.example.account.utils.AccountConfigs.SERVICE_VERSION;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_BATCH_PARALLELISM;
+import static com.example.account.utils.ExtraMediaTypes.APPLICATION_NDJSON;
+import static com.example.account.utils.ExtraMediaTypes.isNdjson;
 
-public class TransactionRoutes extends AllDirectives {
+public class TransactionRoutes extends MetricsDirectives {
+    
+    private static final RouteMetrics POST_TRANSACTION = new RouteMetrics(Metrics.REGISTRY, "post_transaction");
+    private static final RouteMetrics POST_TRANSACTION_BATCH = new RouteMetrics(Metrics.REGISTRY, "post_transaction_batch");
+    private static final RouteMetrics GET_TRANSACTION = new RouteMetrics(Metrics.REGISTRY, "get_transaction");
+    private static final RouteMetrics GET_ACCOUNT_TRANSACTIONS = new RouteMetrics(Metrics.REGISTRY, "get_account_transactions");
+    private static final RouteMetrics GET_ACCOUNT_STATEMENT = new RouteMetrics(Metrics.REGISTRY, "get_account_statement");
+    private static final int MAX_BATCH_ITEM_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String STATEMENT_TRUNCATED_BEFORE = "Statement-Truncated-Before";
+    private static final String INVALID_PAGE_MESSAGE = "cursor must be a cursor returned by a previous page and limit "
+            + "a number from 1 to " + MAX_PAGE_SIZE;
+    private static final ByteString NEWLINE = ByteString.fromString("\n");
+    private static final ByteString ARRAY_START = ByteString.fromString("[");
+    private static final ByteString ARRAY_SEPARATOR = ByteString.fromString(",");
+    private static final ByteString ARRAY_END = ByteString.fromString("]");
     
     final private ActorRef transactionRegistryActor;
+    final private TransactionHistory transactionHistory;
     final private LoggingAdapter logger;
+    private final ObjectMapper objectMapper = new ObjectMapper();
     private Duration timeout = Duration.ofSeconds(AKKA_TIMEOUT_DURATION);
+    private final StatementExport statementExport;
+    private final AdmissionQueue transactionQueue;
     
-    public TransactionRoutes(ActorSystem system, ActorRef transactionRegistryActor) {
+    public TransactionRoutes(ActorSystem system, ActorRef transactionRegistryActor,
+                             TransactionHistory transactionHistory) {
         this.transactionRegistryActor = transactionRegistryActor;
+        this.transactionHistory = transactionHistory;
+        this.statementExport = new StatementExport(transactionHistory);
+        this.transactionQueue = new AdmissionQueue(transactionRegistryActor, ADMISSION_TRANSACTION_QUEUE_SIZE, timeout);
         logger = Logging.getLogger(system, this);
     }
     
     public Route routes() {
         return pathPrefix(SERVICE_VERSION, () -> route(
                 pathPrefix("transactions", () -> route(
-                        postTransaction()
+                        postTransaction(),
+                        postTransactionBatch(),
+                        path(PathMatchers.segment(), this::getTransaction)
+                )),
+                pathPrefix("accounts", () -> route(
+                        path(PathMatchers.segment().slash("transactions"), this::getAccountTransactions),
+                        path(PathMatchers.segment().slash("statement"), this::getAccountStatement)
                 ))
         ));
     }
     
+    /**
+     * Requests waiting for the transaction registry, bounded by {@code admission.transaction-queue-size}.
+     * Every transfer of a batch is admitted through it too, so a batch item beyond it is answered
+     * {@code OVERLOADED}.
+     */
+    public AdmissionQueue transactionQueue() {
+        return transactionQueue;
+    }
+    
+    /**
+     * Reads the transaction as JSON or CBOR and answers in the format the client accepts. A transfer that
+     * is not {@linkplain Transfer#isValid() valid} is answered with {@code 400 Bad Request} without reaching
+     * the transaction registry.
+     */
     private Route postTransaction() {
         return pathEnd(() ->
-                post(() -> entity(Jackson.unmarshaller(Transaction.class), transaction -> {
-                            logger.info(String.format("[Request] Transaction requested {SRC : %s | TRG : %s | AMOUNT :%s}",
-                                    transaction.getSourceAccountNumber(), transaction.getTargetAccountNumber(), transaction.getAmount()));
-                            CompletionStage<Response> transactionStatus = Patterns.ask(transactionRegistryActor,
-                                    new Transfer(transaction), timeout)
+                post(() -> timed(POST_TRANSACTION, () -> optionalHeaderValueByType(Accept.class, accept ->
+                        entity(ModelCodec.transactionUnmarshaller(), transaction -> {
+                            logger.debug("[Request] Transaction requested {SRC : {} | TRG : {} | AMOUNT :{}}",
+                                    transaction.getSourceAccountNumber(), transaction.getTargetAccountNumber(), transaction.getAmount());
+                            Transfer transfer = new Transfer(transaction);
+                            if (!transfer.isValid()) {
+                                return complete(createdOrRejected(ResultCode.INVALID, Format.accepted(accept)));
+                            }
+                            CompletionStage<Response> transactionStatus = transactionQueue.ask(transfer)
                                     .thenApply(Response.class::cast);
                             
                             return onSuccess(() -> transactionStatus, response -> {
-                                if (response instanceof SuccessResponse) {
-                                    logger.info(String.format("[Request] Transaction Successful {id : %s}",
-                                            transaction.getTransactionId()));
-                                    return complete(StatusCodes.CREATED, response, Jackson.marshaller());
-                                } else {
-                                    logger.info(String.format("[Request] Transaction Failed {id : %s}",
-                                            transaction.getTransactionId()));
-                                    return complete(StatusCodes.FORBIDDEN, response, Jackson.marshaller());
-                                }
+                                logger.debug("[Request] Transaction {id : {}} answered {}",
+                                        transaction.getTransactionId(), response.getCode());
+                                return complete(createdOrRejected(response.getCode(), Format.accepted(accept)));
                             }).orElse(complete(StatusCodes.INTERNAL_SERVER_ERROR));
                             
-                        })
-                ));
+                        }))
+                )));
+    }
+    
+    private static HttpResponse createdOrRejected(ResultCode code, Format format) {
+        return HttpResponse.create()
+                .withStatus(code == ResultCode.SUCCESS ? StatusCodes.CREATED
+                        : code == ResultCode.INVALID ? StatusCodes.BAD_REQUEST : StatusCodes.FORBIDDEN)
+                .withEntity(ResultBodies.of(code, format));
+    }
+    
+    /**
+     * Accepts a JSON array or an NDJSON stream of transactions and answers with one {@link TransferResult}
+     * per transaction, in request order and in the same format. Transactions are parsed as their bytes
+     * arrive and up to {@code transaction.batch-parallelism} of them are in flight in the transaction
+     * layer at once; results are streamed back as soon as all earlier ones are known.
+     * <p>
+     * The request's in-flight permit is given back when the response starts, so every transaction is
+     * admitted on its own by the transaction queue; one it is too full for is answered {@code OVERLOADED}.
+     */
+    private Route postTransactionBatch() {
+        return path("batch", () ->
+                post(() -> timed(POST_TRANSACTION_BATCH, () -> extractRequestEntity(entity -> {
+                    boolean ndjson = isNdjson(entity.getContentType());
+                    logger.debug("[Request] Transaction batch requested {format : {}}", ndjson ? "ndjson" : "json");
+                    
+                    Source<ByteString, ?> results = entity.getDataBytes()
+                            .via(JsonFraming.objectScanner(MAX_BATCH_ITEM_BYTES))
+                            .mapAsync(TRANSACTION_BATCH_PARALLELISM, this::transfer)
+                            .map(this::toJson);
+                    
+                    HttpEntity.Chunked body = ndjson
+                            ? HttpEntities.createChunked(APPLICATION_NDJSON.toContentType(),
+                            results.map(result -> result.concat(NEWLINE)))
+                            : HttpEntities.createChunked(ContentTypes.APPLICATION_JSON,
+                            results.intersperse(ARRAY_START, ARRAY_SEPARATOR, ARRAY_END));
+                    return complete(HttpResponse.create().withStatus(StatusCodes.OK).withEntity(body));
+                }))));
+    }
+    
+    /**
+     * Lookups are answered from the {@link TransactionHistory} without going through the transaction
+     * registry, so they never wait behind transfers.
+     */
+    private Route getTransaction(String transactionId) {
+        return get(() -> timed(GET_TRANSACTION, () -> optionalHeaderValueByType(Accept.class, accept -> {
+            logger.debug("[Request] Transaction details requested {id : {}}", transactionId);
+            Optional<Transaction> transaction = transactionHistory.get(transactionId);
+            if (transaction.isPresent()) {
+                Format format = Format.accepted(accept);
+                return complete(HttpResponse.create().withStatus(StatusCodes.OK).withEntity(
+                        HttpEntities.create(format.getContentType(), ModelCodec.write(transaction.get(), format))));
+            } else {
+                logger.debug("[Request] Transaction not found {id : {}}", transactionId);
+                return complete(StatusCodes.NOT_FOUND);
+            }
+        })));
+    }
+    
+    /**
+     * Pages through the account's history newest first, {@code limit} transactions at a time (50 by
+     * default, at most 1000). A page costs the same no matter how long the history is; an account
+     * without transactions has an empty history.
+     */
+    private Route getAccountTransactions(String accountNumber) {
+        return get(() -> timed(GET_ACCOUNT_TRANSACTIONS, () -> parameterOptional("cursor", cursor -> parameterOptional("limit", limit -> {
+            logger.debug("[Request] Transaction history requested {account : {} | cursor : {}}",
+                    accountNumber, cursor.orElse(""));
+            long from;
+            int pageSize;
+            try {
+                from = cursor.map(Long::parseLong).orElse(-1L);
+                pageSize = limit.map(Integer::parseInt).orElse(DEFAULT_PAGE_SIZE);
+            } catch (NumberFormatException e) {
+                return complete(StatusCodes.BAD_REQUEST, INVALID_PAGE_MESSAGE);
+            }
+            if (from < 0 && cursor.isPresent() || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return complete(StatusCodes.BAD_REQUEST, INVALID_PAGE_MESSAGE);
+            }
+            TransactionHistory.Page page = transactionHistory.page(accountNumber, from, pageSize);
+            return complete(StatusCodes.OK, new TransactionPage(page.getTransactions(),
+                    page.getNextCursor() < 0 ? null : Long.toString(page.getNextCursor())), Jackson.marshaller());
+        }))));
+    }
+    
+    /**
+     * Streams the account's statement oldest first as NDJSON, or as CSV if the client accepts
+     * {@code text/csv}, optionally limited to {@code from} (inclusive) and {@code to} (exclusive), each an
+     * ISO-8601 instant or a date meaning midnight UTC. The statement is gzip-compressed for clients that
+     * accept it. A statement the history no longer holds all transactions for carries a
+     * {@code Statement-Truncated-Before} header with the instant before which transactions may be missing.
+     */
+    private Route getAccountStatement(String accountNumber) {
+        return get(() -> timed(GET_ACCOUNT_STATEMENT, () -> parameterOptional("from", from -> parameterOptional("to", to ->
+                optionalHeaderValueByType(Accept.class, accept -> {
+                    boolean csv = accept.isPresent() && acceptsCsv(accept.get());
+                    logger.debug("[Request] Statement requested {account : {} | from : {} | to : {} | format : {}}",
+                            accountNumber, from.orElse(""), to.orElse(""), csv ? "csv" : "ndjson");
+                    Optional<Instant> fromInstant;
+                    Optional<Instant> toInstant;
+                    try {
+                        fromInstant = from.map(TransactionRoutes::parseInstant);
+                        toInstant = to.map(TransactionRoutes::parseInstant);
+                    } catch (DateTimeParseException e) {
+                        return complete(StatusCodes.BAD_REQUEST, "from and to must be ISO-8601 dates or instants");
+                    }
+                    
+                    Source<ByteString, ?> statement = statementExport.source(accountNumber, fromInstant, toInstant, csv);
+                    HttpEntity.Chunked body = HttpEntities.createChunked(csv
+                            ? ContentTypes.create(MediaTypes.TEXT_CSV, HttpCharsets.UTF_8)
+                            : APPLICATION_NDJSON.toContentType(), statement);
+                    HttpResponse response = HttpResponse.create().withStatus(StatusCodes.OK).withEntity(body);
+                    Optional<Instant> truncatedBefore = statementExport.truncatedBefore(fromInstant);
+                    if (truncatedBefore.isPresent()) {
+                        response = response.addHeader(RawHeader.create(STATEMENT_TRUNCATED_BEFORE,
+                                truncatedBefore.get().toString()));
+                    }
+                    HttpResponse statementResponse = response;
+                    return encodeResponseWith(Arrays.asList(Coder.NoCoding, Coder.Gzip), () ->
+                            complete(statementResponse));
+                })))));
+    }
+    
+    private static boolean acceptsCsv(Accept accept) {
+        for (MediaRange range : accept.getMediaRanges()) {
+            if (range.mainType().equals("text") && range.matches(MediaTypes.TEXT_CSV)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Instant parseInstant(String value) {
+        return value.contains("T") ? Instant.parse(value) : LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+    
+    private CompletionStage<TransferResult> transfer(ByteString json) {
+        Transaction transaction;
+        try {
+            transaction = ModelCodec.readTransaction(json, Format.JSON);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(new TransferResult(null, ResultCode.INVALID,
+                    "Malformed transaction: " + e.getMessage()));
+        }
+        Transfer transfer = new Transfer(transaction);
+        if (!transfer.isValid()) {
+            return CompletableFuture.completedFuture(new TransferResult(transaction.getTransactionId(),
+                    ResultCode.INVALID, "Invalid transaction: the ids and an amount above zero are required"));
+        }
+        return transactionQueue.ask(transfer)
+                .thenApply(response -> new TransferResult(transaction.getTransactionId(), ((Response) response).getCode()))
+                .exceptionally(e -> new TransferResult(transaction.getTransactionId(),
+                        e instanceof OverloadedException || e.getCause() instanceof OverloadedException
+                                ? ResultCode.OVERLOADED : ResultCode.TIMED_OUT));
+    }
+    
+    private ByteString toJson(TransferResult result) {
+        try {
+            return ByteString.fromArray(objectMapper.writeValueAsBytes(result));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
     }
     
 }
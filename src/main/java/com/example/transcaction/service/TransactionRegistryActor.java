@@ -3,124 +3,234 @@ package com.example.transcaction.service;
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.actor.Terminated;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.pattern.Patterns;
-import com.example.account.messages.AccountRegistryMessages;
-import com.example.account.messages.AccountRegistryMessages.Credit;
-import com.example.account.messages.AccountRegistryMessages.Debit;
-import com.example.account.messages.AccountRegistryMessages.GetAccount;
+import com.example.account.messages.ResultCode;
+import com.example.account.service.ActorAccountStore;
+import com.example.account.store.AccountStore;
+import com.example.metrics.MessageMetrics;
+import com.example.metrics.Metrics;
 import com.example.transcaction.messages.TransactionRegistryMessages;
 import com.example.transcaction.messages.TransactionRegistryMessages.Transfer;
 import com.example.transcaction.models.Transaction;
+import com.example.transcaction.service.TransferCoordinatorActor.InDoubt;
+import com.example.transcaction.service.TransferCoordinatorActor.Settled;
+import com.example.transcaction.store.TransactionHistory;
+import com.example.transcaction.store.TransactionIdIndex;
+import scala.PartialFunction;
+import scala.runtime.BoxedUnit;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
-import static com.example.account.utils.AccountConfigs.AKKA_TIMEOUT_DURATION;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_DEDUP_MAX_ENTRIES;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_DEDUP_WINDOW;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_DISPATCHER;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_HISTORY_MAX_ENTRIES;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_TRANSFER_TIMEOUT;
 
+/**
+ * Decides which transfers may run, records the committed ones and answers the clients. Every accepted
+ * transfer is run by its own {@link TransferCoordinatorActor}, so the registry never waits for the
+ * account layer and only keeps the ids of transfers in flight and of committed ones.
+ * <p>
+ * A coordinator that fails is stopped rather than restarted, which would start its transfer again, and
+ * the registry watches every coordinator: one that stops before reporting its transfer's outcome gets
+ * the transfer answered with {@link ResultCode#FAILED} and its id released, so a retry can run.
+ */
 public class TransactionRegistryActor extends AbstractActor {
     
     private LoggingAdapter logger = Logging.getLogger(getContext().getSystem(), this);
     private final String loggingPrefix = "[ TRANSACTION ] : ";
-    private static ActorRef accountActorRef;
-    private Duration timeout = Duration.ofSeconds(AKKA_TIMEOUT_DURATION);
+    private final AccountStore accountStore;
     
-    private final Map<String, Transaction> transcationsById = new HashMap<>();
+    private static final MessageMetrics MESSAGE_METRICS = new MessageMetrics(Metrics.REGISTRY, "transaction_registry",
+            Transfer.class, InDoubt.class, Settled.class);
+    
+    private final TransactionHistory transactionHistory;
+    private final TransactionIdIndex committedTransactionIds;
+    private final Map<String, ActorRef> transactionsInFlight = new HashMap<>();
+    private final Map<ActorRef, Transaction> coordinators = new HashMap<>();
+    private final Duration transferTimeout;
     
     public static Props props(ActorRef accountService) {
-        accountActorRef = accountService;
-        return Props.create(TransactionRegistryActor.class);
+        return props(accountService, new TransactionHistory(TRANSACTION_HISTORY_MAX_ENTRIES));
+    }
+    
+    /**
+     * Registry recording committed transactions in the given history, which the routes read directly.
+     */
+    public static Props props(ActorRef accountService, TransactionHistory transactionHistory) {
+        return props(new ActorAccountStore(accountService), transactionHistory, Collections.emptyList());
+    }
+    
+    /**
+     * Registry that already knows the given committed transactions, e.g. the ones recovered from the
+     * journal at startup, in commit order.
+     */
+    public static Props props(AccountStore accountStore, TransactionHistory transactionHistory,
+                              Collection<Transaction> committedTransactions) {
+        TransactionIdIndex index = new TransactionIdIndex(TRANSACTION_DEDUP_WINDOW, TRANSACTION_DEDUP_MAX_ENTRIES);
+        for (Transaction transaction : committedTransactions) {
+            index.add(transaction.getTransactionId());
+            transactionHistory.record(transaction);
+        }
+        return props(accountStore, transactionHistory, index);
+    }
+    
+    public static Props props(AccountStore accountStore, TransactionHistory transactionHistory,
+                              TransactionIdIndex committedTransactionIds) {
+        return props(accountStore, transactionHistory, committedTransactionIds, TRANSACTION_TRANSFER_TIMEOUT);
+    }
+    
+    /**
+     * Registry whose transfers are reported as timed out once the account layer has not answered for
+     * {@code transferTimeout}. The registry and its transfer coordinators run on
+     * {@code transaction.dispatcher}.
+     */
+    public static Props props(AccountStore accountStore, TransactionHistory transactionHistory,
+                              TransactionIdIndex committedTransactionIds, Duration transferTimeout) {
+        return Props.create(TransactionRegistryActor.class, accountStore, transactionHistory, committedTransactionIds,
+                transferTimeout).withDispatcher(TRANSACTION_DISPATCHER);
+    }
+    
+    public TransactionRegistryActor(AccountStore accountStore, TransactionHistory transactionHistory,
+                                    TransactionIdIndex committedTransactionIds, Duration transferTimeout) {
+        this.accountStore = accountStore;
+        this.transactionHistory = transactionHistory;
+        this.committedTransactionIds = committedTransactionIds;
+        this.transferTimeout = transferTimeout;
+    }
+    
+    /**
+     * Times every message; {@code receive} is the behaviour built by {@link #createReceive()}.
+     */
+    @Override
+    public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object message) {
+        long startedAt = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.aroundReceive(receive, message);
+            failed = false;
+        } finally {
+            MESSAGE_METRICS.record(message, startedAt, failed);
+        }
+    }
+    
+    @Override
+    public SupervisorStrategy supervisorStrategy() {
+        return SupervisorStrategy.stoppingStrategy();
     }
     
     @Override
     public Receive createReceive() {
         return receiveBuilder()
                 .match(Transfer.class, this::processTransfer)
+                .match(InDoubt.class, this::transferInDoubt)
+                .match(Settled.class, this::transferSettled)
+                .match(Terminated.class, this::coordinatorStopped)
                 .build();
     }
     
     private void processTransfer(Transfer transfer) {
-        ActorRef replyTo = sender();
         Transaction txn = transfer.getTransaction();
         
-        if (checkIfTransactionExists(txn.getTransactionId())) {
-            
-            Patterns.ask(accountActorRef, new GetAccount(txn.getSourceAccountNumber()), timeout)
-                    .thenApply(Optional.class::cast)
-                    .thenAcceptBoth(Patterns.ask(accountActorRef, new GetAccount(txn.getTargetAccountNumber()), timeout)
-                            .thenApply(Optional.class::cast), (srcAccount, trgAccount) -> {
-                        if (srcAccount.isPresent() && trgAccount.isPresent()) {
-                            initiateTransfer(txn, replyTo);
-                        } else if (!srcAccount.isPresent()) {
-                            sendFailureResponse(replyTo, String.format("%s Source Account %s does not exits",
-                                    loggingPrefix, txn.getSourceAccountNumber()));
-                        } else {
-                            sendFailureResponse(replyTo, String.format("%s Target Account %s does not exits",
-                                    loggingPrefix, txn.getTargetAccountNumber()));
-                        }
-                    });
+        if (!transfer.isValid()) {
+            sendFailureResponse(sender(), txn, ResultCode.INVALID);
+        } else if (checkIfTransactionExists(txn.getTransactionId())) {
+            transactionsInFlight.put(txn.getTransactionId(), sender());
+            ActorRef coordinator = getContext().actorOf(TransferCoordinatorActor.props(accountStore, txn,
+                    transferTimeout));
+            coordinators.put(getContext().watch(coordinator), txn);
         } else {
-            sendFailureResponse(replyTo, String.format("%s Transaction Id %s is already committed/rolledBack",
-                    loggingPrefix, txn.getTransactionId()));
+            sendFailureResponse(sender(), txn, ResultCode.DUPLICATE);
         }
     }
     
+    /**
+     * A transaction id counts as taken while its transfer is in flight, so a duplicate sent before the
+     * first one completes is rejected as well.
+     */
     private boolean checkIfTransactionExists(String txnId) {
-        return !transcationsById.containsKey(txnId);
-    }
-    
-    private void initiateTransfer(Transaction txn, ActorRef replyTo) {
-        Patterns.ask(accountActorRef, new Debit(txn.getSourceAccountNumber(), txn.getAmount()), timeout)
-                .thenAcceptBoth(Patterns.ask(accountActorRef, new Credit(txn.getTargetAccountNumber(), txn.getAmount()), timeout),
-                        (debitTxn, creditTxn) -> {
-                            if (debitTxn instanceof AccountRegistryMessages.SuccessResponse
-                                    && creditTxn instanceof AccountRegistryMessages.SuccessResponse) {
-                                transcationsById.put(txn.getTransactionId(), txn);
-                                
-                                sendSuccessResponse(replyTo, String.format("%s Amount %s successfully credited to %s from %s",
-                                        loggingPrefix, txn.getAmount(), txn.getTargetAccountNumber(),
-                                        txn.getSourceAccountNumber()));
-                            } else {
-                                handleFailure(debitTxn, creditTxn, txn, replyTo);
-                            }
-                        });
-    }
-    
-    private void handleFailure(Object debitTxn, Object creditTxn, Transaction txn, ActorRef replyTo) {
-        if (debitTxn instanceof AccountRegistryMessages.FailureResponse
-                && creditTxn instanceof AccountRegistryMessages.SuccessResponse) {
-            revertTargetAccountBalance(txn);
-        }
-        if (debitTxn instanceof AccountRegistryMessages.SuccessResponse
-                && creditTxn instanceof AccountRegistryMessages.FailureResponse) {
-            revertSourceAccountBalance(txn);
+        return !transactionsInFlight.containsKey(txnId) && !committedTransactionIds.contains(txnId);
+    }
+    
+    /**
+     * A transfer whose outcome is unknown because the account layer did not answer in time may still be
+     * applied, so its id is remembered like a committed one and a retry is rejected.
+     */
+    private void transferInDoubt(InDoubt inDoubt) {
+        reported(getSender());
+        Transaction txn = inDoubt.getTransaction();
+        remember(txn.getTransactionId());
+        sendFailureResponse(transactionsInFlight.remove(txn.getTransactionId()), txn, ResultCode.TIMED_OUT);
+    }
+    
+    /**
+     * Records a committed transfer before answering, so a client that looks it up after the answer finds
+     * it. A transfer settled after it was in doubt has already been answered.
+     */
+    private void transferSettled(Settled settled) {
+        reported(getSender());
+        Transaction txn = settled.getTransaction();
+        ActorRef replyTo = transactionsInFlight.remove(txn.getTransactionId());
+        if (settled.isCommitted()) {
+            remember(txn.getTransactionId());
+            transactionHistory.record(new Transaction(txn.getTransactionId(), txn.getSourceAccountNumber(),
+                    txn.getTargetAccountNumber(), txn.getAmount(), System.currentTimeMillis()));
+            if (replyTo != null) {
+                logger.debug("{} Transaction {} of {} succeeded", loggingPrefix, txn.getTransactionId(),
+                        txn.getAmount());
+                replyTo.tell(TransactionRegistryMessages.SuccessResponse.INSTANCE, getSelf());
+            }
+        } else if (replyTo != null) {
+            sendFailureResponse(replyTo, txn, settled.getCode());
         }
-        
-        sendFailureResponse(replyTo, String.format("%s Transaction %s Failed",
-                loggingPrefix, txn.getTransactionId()));
     }
     
-    private void revertSourceAccountBalance(Transaction txn) {
-        Patterns.ask(accountActorRef, new Debit(txn.getTargetAccountNumber(), txn.getAmount()),
-                timeout);
+    /**
+     * The coordinator has reported its transfer, so its stopping is expected from now on.
+     */
+    private void reported(ActorRef coordinator) {
+        if (coordinators.remove(coordinator) != null) {
+            getContext().unwatch(coordinator);
+        }
     }
     
-    private void revertTargetAccountBalance(Transaction txn) {
-        Patterns.ask(accountActorRef, new Credit(txn.getSourceAccountNumber(), txn.getAmount()),
-                timeout);
+    /**
+     * A coordinator only stops without reporting when starting its transfer threw, e.g. when the account
+     * layer refused the transfer by throwing instead of answering. The transfer was never applied, so its
+     * id is released for a retry.
+     */
+    private void coordinatorStopped(Terminated terminated) {
+        Transaction txn = coordinators.remove(terminated.getActor());
+        if (txn != null) {
+            logger.warning("{} Transaction {} failed: its coordinator stopped without an outcome", loggingPrefix,
+                    txn.getTransactionId());
+            sendFailureResponse(transactionsInFlight.remove(txn.getTransactionId()), txn, ResultCode.FAILED);
+        }
     }
     
-    private void sendFailureResponse(ActorRef ref, String message) {
-        logger.error(message);
-        ref.tell(new TransactionRegistryMessages.FailureResponse(message), getSelf());
+    private void remember(String txnId) {
+        committedTransactionIds.add(txnId);
+        if (committedTransactionIds.evictedBeforeExpiry() == 1) {
+            logger.warning("{} Transaction id index is full, ids are forgotten before the end of the {} window",
+                    loggingPrefix, TRANSACTION_DEDUP_WINDOW);
+        }
     }
     
-    private void sendSuccessResponse(ActorRef ref, String message) {
-        logger.info(message);
-        ref.tell(new TransactionRegistryMessages.SuccessResponse(message), getSelf());
+    /**
+     * Answers with the failure cached for {@code code}; a failed transfer is an expected outcome, so it is
+     * only logged at debug level and costs nothing when that level is off.
+     */
+    private void sendFailureResponse(ActorRef ref, Transaction txn, ResultCode code) {
+        logger.debug("{} Transaction {} failed: {}", loggingPrefix, txn.getTransactionId(), code);
+        ref.tell(TransactionRegistryMessages.FailureResponse.of(code), getSelf());
     }
     
 }
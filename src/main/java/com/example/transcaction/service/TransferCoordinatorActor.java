@@ -0,0 +1,179 @@
+package com.example.transcaction.service;
+
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.Props;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
+import com.example.account.messages.AccountRegistryMessages;
+import com.example.account.messages.ResultCode;
+import com.example.account.store.AccountStore;
+import com.example.account.utils.Money;
+import com.example.transcaction.models.Transaction;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.account.utils.AccountConfigs.TRANSACTION_DISPATCHER;
+
+/**
+ * Runs a single transfer for the {@link TransactionRegistryActor} and stops once its outcome is known,
+ * so any number of transfers wait for the account layer at the same time while the registry only
+ * decides which transaction ids may be used, records the outcomes and answers the clients.
+ * <p>
+ * The coordinator moves through explicit states:
+ * <ol>
+ * <li><em>transferring</em>: the account layer was asked to move the amount; its answer is reported to
+ * the registry as {@link Settled}.</li>
+ * <li><em>in doubt</em>: the account layer did not answer within {@code transaction.transfer-timeout},
+ * which is reported as {@link InDoubt} so the client hears that the transfer timed out. The coordinator
+ * keeps waiting for the late answer and reports it as {@link Settled}, so a transfer that was applied
+ * after all is still recorded. If asking the account layer fails altogether, the outcome stays unknown.</li>
+ * </ol>
+ * A transfer never leaves partial state behind for the coordinator to undo: the account layer releases
+ * a reservation itself when the target account cannot be credited.
+ */
+public class TransferCoordinatorActor extends AbstractActorWithTimers {
+    
+    private LoggingAdapter logger = Logging.getLogger(getContext().getSystem(), this);
+    private final String loggingPrefix = "[ TRANSACTION ] : ";
+    
+    private final AccountStore accountStore;
+    private final Transaction transaction;
+    private final Duration transferTimeout;
+    
+    /**
+     * Sent to the registry once the account layer has answered, with the {@link ResultCode} it answered;
+     * the transfer is committed only for {@link ResultCode#SUCCESS}.
+     */
+    static final class Settled {
+        private final Transaction transaction;
+        private final ResultCode code;
+        
+        Settled(Transaction transaction, ResultCode code) {
+            this.transaction = transaction;
+            this.code = code;
+        }
+        
+        Transaction getTransaction() {
+            return transaction;
+        }
+        
+        ResultCode getCode() {
+            return code;
+        }
+        
+        boolean isCommitted() {
+            return code == ResultCode.SUCCESS;
+        }
+    }
+    
+    /**
+     * Sent to the registry when the transfer's outcome is not known in time; it may still be
+     * {@link Settled} later.
+     */
+    static final class InDoubt {
+        private final Transaction transaction;
+        
+        InDoubt(Transaction transaction) {
+            this.transaction = transaction;
+        }
+        
+        Transaction getTransaction() {
+            return transaction;
+        }
+    }
+    
+    /**
+     * Answer of the account layer, or the failure of asking it, piped back to the coordinator.
+     */
+    private static final class Outcome {
+        private final Object response;
+        
+        Outcome(Object response) {
+            this.response = response;
+        }
+    }
+    
+    private enum Deadline {
+        INSTANCE
+    }
+    
+    static Props props(AccountStore accountStore, Transaction transaction, Duration transferTimeout) {
+        return Props.create(TransferCoordinatorActor.class, accountStore, transaction, transferTimeout)
+                .withDispatcher(TRANSACTION_DISPATCHER);
+    }
+    
+    public TransferCoordinatorActor(AccountStore accountStore, Transaction transaction, Duration transferTimeout) {
+        this.accountStore = accountStore;
+        this.transaction = transaction;
+        this.transferTimeout = transferTimeout;
+    }
+    
+    @Override
+    public void preStart() {
+        CompletionStage<Outcome> outcome = accountStore.transfer(transaction.getTransactionId(),
+                transaction.getSourceAccountNumber(), transaction.getTargetAccountNumber(),
+                Money.toMinorUnits(transaction.getAmount()))
+                .handle((response, failure) -> new Outcome(failure != null ? failure : response));
+        Patterns.pipe(outcome, getContext().getDispatcher()).to(getSelf());
+        getTimers().startSingleTimer(Deadline.INSTANCE, Deadline.INSTANCE,
+                scala.concurrent.duration.Duration.create(transferTimeout.toNanos(), TimeUnit.NANOSECONDS));
+    }
+    
+    @Override
+    public Receive createReceive() {
+        return transferring();
+    }
+    
+    private Receive transferring() {
+        return receiveBuilder()
+                .match(Outcome.class, this::transferred)
+                .match(Deadline.class, deadline -> deadlinePassed())
+                .build();
+    }
+    
+    private Receive inDoubt() {
+        return receiveBuilder()
+                .match(Outcome.class, this::resolved)
+                .build();
+    }
+    
+    private void transferred(Outcome outcome) {
+        getTimers().cancel(Deadline.INSTANCE);
+        if (outcome.response instanceof Throwable) {
+            logger.warning("{} Transaction {} has an unknown outcome: {}", loggingPrefix,
+                    transaction.getTransactionId(), outcome.response);
+            getContext().getParent().tell(new InDoubt(transaction), getSelf());
+            getContext().stop(getSelf());
+        } else {
+            settle(outcome);
+        }
+    }
+    
+    private void deadlinePassed() {
+        getContext().getParent().tell(new InDoubt(transaction), getSelf());
+        getContext().become(inDoubt());
+    }
+    
+    private void resolved(Outcome outcome) {
+        if (outcome.response instanceof Throwable) {
+            logger.warning("{} Transaction {} timed out and its outcome stays unknown: {}", loggingPrefix,
+                    transaction.getTransactionId(), outcome.response);
+            getContext().stop(getSelf());
+        } else {
+            logger.warning("{} Transaction {} timed out and was answered afterwards", loggingPrefix,
+                    transaction.getTransactionId());
+            settle(outcome);
+        }
+    }
+    
+    private void settle(Outcome outcome) {
+        ResultCode code = outcome.response instanceof AccountRegistryMessages.Response
+                ? ((AccountRegistryMessages.Response) outcome.response).getCode() : ResultCode.FAILED;
+        getContext().getParent().tell(new Settled(transaction, code), getSelf());
+        getContext().stop(getSelf());
+    }
+    
+}
@@ -0,0 +1,279 @@
+package com.example.transcaction.store;
+
+import com.example.transcaction.models.Transaction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The most recent committed transactions, by id and per account, in commit order.
+ * <p>
+ * Every account has its own append-only history, so a page of a hot account's history is found by
+ * position instead of by scanning all transactions. Entries of an account are numbered from 0 in the
+ * order they were recorded; these sequence numbers are the pagination cursors and stay valid until the
+ * process restarts. Once more than {@code maxEntries} transactions are recorded, the oldest ones are
+ * dropped, and an account whose entries are all dropped is forgotten.
+ * <p>
+ * Written by the transaction registry actor only and read concurrently by the routes without locking:
+ * a new entry is stored before the history's size is published, so readers never see a partial entry.
+ */
+public final class TransactionHistory {
+    
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Transaction> transactionsById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AccountHistory> historiesByAccount = new ConcurrentHashMap<>();
+    private final ArrayDeque<Transaction> commitOrder = new ArrayDeque<>();
+    private long nextStart;
+    private volatile long droppedBefore = Long.MIN_VALUE;
+    
+    /**
+     * A page of one account's history.
+     */
+    public static final class Page {
+        private final List<Transaction> transactions;
+        private final long nextCursor;
+        
+        Page(List<Transaction> transactions, long nextCursor) {
+            this.transactions = transactions;
+            this.nextCursor = nextCursor;
+        }
+        
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+        
+        /**
+         * Sequence number of the entry the next page starts at, or -1 if this page reaches the end of the
+         * history in its direction.
+         */
+        public long getNextCursor() {
+            return nextCursor;
+        }
+    }
+    
+    /**
+     * Entries are stored in chunks of {@link #CHUNK_SIZE}. The first chunk starts small and grows by
+     * copying, so the many accounts with only a few transactions stay small; later chunks are allocated
+     * at full size and dropped as a whole once all their entries are evicted.
+     * <p>
+     * The chunks are held by a {@link Spine} that starts at the oldest retained chunk. The spine doubles
+     * when it is full, and once its evicted prefix is at least half of it, the retained chunks are copied
+     * to a new spine that starts at the first of them, so a history that keeps rolling over does not grow.
+     * A history starts at sequence number {@code start}, which is a multiple of {@link #CHUNK_SIZE}.
+     */
+    private static final class AccountHistory {
+        private static final int CHUNK_SHIFT = 10;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+        private static final int INITIAL_CHUNK_SIZE = 4;
+        
+        private volatile Spine spine;
+        private volatile long first;
+        private volatile long size;
+        
+        /**
+         * Chunks of a history; {@code chunks[0]} holds the entries of chunk number {@code base}.
+         */
+        private static final class Spine {
+            final Transaction[][] chunks;
+            final long base;
+            
+            Spine(Transaction[][] chunks, long base) {
+                this.chunks = chunks;
+                this.base = base;
+            }
+            
+            Transaction[] chunkOf(long sequence) {
+                long index = (sequence >>> CHUNK_SHIFT) - base;
+                return index < 0 || index >= chunks.length ? null : chunks[(int) index];
+            }
+        }
+        
+        AccountHistory(long start) {
+            this.spine = new Spine(new Transaction[][]{new Transaction[INITIAL_CHUNK_SIZE]}, start >>> CHUNK_SHIFT);
+            this.first = start;
+            this.size = start;
+        }
+        
+        /**
+         * Replaces chunks in the current spine in place: a reader only looks at entries below the
+         * {@code size} it read first, and those were stored before that {@code size} was published.
+         */
+        void append(Transaction transaction) {
+            long sequence = size;
+            int offset = (int) (sequence & CHUNK_MASK);
+            Spine current = spine;
+            int index = (int) ((sequence >>> CHUNK_SHIFT) - current.base);
+            if (index == current.chunks.length) {
+                current = new Spine(Arrays.copyOf(current.chunks, index << 1), current.base);
+                spine = current;
+            }
+            Transaction[] chunk = current.chunks[index];
+            if (chunk == null) {
+                chunk = new Transaction[CHUNK_SIZE];
+                current.chunks[index] = chunk;
+            } else if (offset == chunk.length) {
+                chunk = Arrays.copyOf(chunk, Math.min(offset << 1, CHUNK_SIZE));
+                current.chunks[index] = chunk;
+            }
+            chunk[offset] = transaction;
+            size = sequence + 1;
+        }
+        
+        void evictOldest() {
+            long evicted = first;
+            first = evicted + 1;
+            if (((evicted + 1) & CHUNK_MASK) == 0) {
+                Spine current = spine;
+                int index = (int) ((evicted >>> CHUNK_SHIFT) - current.base);
+                current.chunks[index] = null;
+                int dropped = index + 1;
+                if (dropped << 1 >= current.chunks.length) {
+                    Transaction[][] retained = new Transaction[Math.max(1, current.chunks.length - dropped)][];
+                    System.arraycopy(current.chunks, dropped, retained, 0, current.chunks.length - dropped);
+                    spine = new Spine(retained, current.base + dropped);
+                }
+            }
+        }
+        
+        boolean isEmpty() {
+            return first == size;
+        }
+        
+        long end() {
+            return size;
+        }
+        
+        /**
+         * Reads {@code size} before anything else, so every entry below it is fully visible.
+         */
+        Page page(long cursor, int limit) {
+            long end = size;
+            Spine current = spine;
+            long oldest = first;
+            long sequence = cursor < 0 ? end - 1 : Math.min(cursor, end - 1);
+            List<Transaction> transactions = new ArrayList<>((int) Math.max(0, Math.min(limit, sequence - oldest + 1)));
+            for (; sequence >= oldest && transactions.size() < limit; sequence--) {
+                Transaction[] chunk = current.chunkOf(sequence);
+                if (chunk == null) {
+                    break;
+                }
+                transactions.add(chunk[(int) (sequence & CHUNK_MASK)]);
+            }
+            boolean more = sequence >= oldest && current.chunkOf(sequence) != null;
+            return new Page(transactions, more ? sequence : -1);
+        }
+        
+        Page pageOldestFirst(long cursor, int limit) {
+            long end = size;
+            Spine current = spine;
+            long sequence = Math.max(cursor, first);
+            List<Transaction> transactions = new ArrayList<>((int) Math.max(0, Math.min(limit, end - sequence)));
+            for (; sequence < end && transactions.size() < limit; sequence++) {
+                Transaction[] chunk = current.chunkOf(sequence);
+                if (chunk == null) {
+                    sequence = (((sequence >>> CHUNK_SHIFT) + 1) << CHUNK_SHIFT) - 1;
+                } else {
+                    transactions.add(chunk[(int) (sequence & CHUNK_MASK)]);
+                }
+            }
+            return new Page(transactions, sequence < end ? sequence : -1);
+        }
+    }
+    
+    public TransactionHistory(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of history entries must be positive, was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * Appends a committed transaction to the histories of its source and target account. Must only be
+     * called by a single thread.
+     */
+    public void record(Transaction transaction) {
+        if (commitOrder.size() == maxEntries) {
+            Transaction oldest = commitOrder.removeFirst();
+            transactionsById.remove(oldest.getTransactionId(), oldest);
+            if (oldest.getCommittedAt() != null && oldest.getCommittedAt() >= droppedBefore) {
+                droppedBefore = oldest.getCommittedAt() + 1;
+            }
+            evictOldest(oldest.getSourceAccountNumber());
+            if (!oldest.getTargetAccountNumber().equals(oldest.getSourceAccountNumber())) {
+                evictOldest(oldest.getTargetAccountNumber());
+            }
+        }
+        commitOrder.addLast(transaction);
+        transactionsById.put(transaction.getTransactionId(), transaction);
+        historyOf(transaction.getSourceAccountNumber()).append(transaction);
+        if (!transaction.getTargetAccountNumber().equals(transaction.getSourceAccountNumber())) {
+            historyOf(transaction.getTargetAccountNumber()).append(transaction);
+        }
+    }
+    
+    public Optional<Transaction> get(String transactionId) {
+        return Optional.ofNullable(transactionsById.get(transactionId));
+    }
+    
+    /**
+     * Up to {@code limit} transactions of the account, newest first, starting at the entry with sequence
+     * number {@code cursor} or at the newest entry if {@code cursor} is negative.
+     */
+    public Page page(String accountNumber, long cursor, int limit) {
+        AccountHistory history = historiesByAccount.get(accountNumber);
+        return history == null ? new Page(Collections.emptyList(), -1) : history.page(cursor, limit);
+    }
+    
+    /**
+     * Up to {@code limit} transactions of the account, oldest first, starting at the entry with sequence
+     * number {@code cursor} or at the oldest retained entry if that one is newer.
+     */
+    public Page pageOldestFirst(String accountNumber, long cursor, int limit) {
+        AccountHistory history = historiesByAccount.get(accountNumber);
+        return history == null ? new Page(Collections.emptyList(), -1) : history.pageOldestFirst(cursor, limit);
+    }
+    
+    public int size() {
+        return transactionsById.size();
+    }
+    
+    /**
+     * Epoch millisecond before which committed transactions may have been dropped, or empty while no
+     * transaction with a known commit time was.
+     */
+    public OptionalLong droppedBefore() {
+        long millis = droppedBefore;
+        return millis == Long.MIN_VALUE ? OptionalLong.empty() : OptionalLong.of(millis);
+    }
+    
+    /**
+     * Number of accounts with at least one retained transaction.
+     */
+    public int accounts() {
+        return historiesByAccount.size();
+    }
+    
+    private AccountHistory historyOf(String accountNumber) {
+        return historiesByAccount.computeIfAbsent(accountNumber, number -> new AccountHistory(nextStart));
+    }
+    
+    /**
+     * Drops the account's history once its last entry is evicted. A later history of the account starts
+     * past every sequence number handed out before, so an old cursor never points into it.
+     */
+    private void evictOldest(String accountNumber) {
+        AccountHistory history = historiesByAccount.get(accountNumber);
+        history.evictOldest();
+        if (history.isEmpty()) {
+            historiesByAccount.remove(accountNumber, history);
+            nextStart = Math.max(nextStart, (history.end() + AccountHistory.CHUNK_MASK) & ~(long) AccountHistory.CHUNK_MASK);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.transcaction.store;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers committed transaction ids for a fixed window so that duplicates can be rejected, using
+ * memory bounded by {@code maxEntries} instead of growing with the lifetime transaction volume.
+ * <p>
+ * Ids are kept in insertion order in a ring buffer, which makes expiring the oldest ones cheap, and in
+ * an open-addressing hash set for lookups. Duplicates are rejected reliably as long as fewer than
+ * {@code maxEntries} transactions are committed per window; beyond that the oldest ids are forgotten
+ * early, which {@link #evictedBeforeExpiry()} counts.
+ * <p>
+ * Not thread-safe: owned by the transaction registry actor.
+ */
+public final class TransactionIdIndex {
+    
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private final long windowMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    
+    private String[] order;
+    private long[] insertedAt;
+    private int head;
+    private int size;
+    
+    private String[] table;
+    private int mask;
+    
+    private long evictedBeforeExpiry;
+    
+    public TransactionIdIndex(Duration window, int maxEntries) {
+        this(window, maxEntries, System::currentTimeMillis);
+    }
+    
+    public TransactionIdIndex(Duration window, int maxEntries, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of transaction ids must be positive, was " + maxEntries);
+        }
+        this.windowMillis = window.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        int capacity = Math.min(INITIAL_CAPACITY, maxEntries);
+        this.order = new String[capacity];
+        this.insertedAt = new long[capacity];
+        allocateTable(tableSizeFor(capacity));
+    }
+    
+    public boolean contains(String transactionId) {
+        expire();
+        return indexOf(transactionId) >= 0;
+    }
+    
+    /**
+     * Remembers the id for one window, forgetting the oldest id if the index is full. Returns
+     * {@code false} if the id is already remembered.
+     */
+    public boolean add(String transactionId) {
+        expire();
+        if (indexOf(transactionId) >= 0) {
+            return false;
+        }
+        if (size == maxEntries) {
+            removeOldest();
+            evictedBeforeExpiry++;
+        } else if (size == order.length) {
+            growRing();
+        }
+        if (size + 1 > table.length >> 1) {
+            allocateTable(table.length << 1);
+            for (int i = 0; i < size; i++) {
+                insert(order[(head + i) % order.length]);
+            }
+        }
+        insert(transactionId);
+        int tail = (head + size) % order.length;
+        order[tail] = transactionId;
+        insertedAt[tail] = clock.getAsLong();
+        size++;
+        return true;
+    }
+    
+    public int size() {
+        expire();
+        return size;
+    }
+    
+    /**
+     * Ids forgotten before their window was over because the index was full.
+     */
+    public long evictedBeforeExpiry() {
+        return evictedBeforeExpiry;
+    }
+    
+    private void expire() {
+        long now = clock.getAsLong();
+        while (size > 0 && now - insertedAt[head] >= windowMillis) {
+            removeOldest();
+        }
+    }
+    
+    private void removeOldest() {
+        String oldest = order[head];
+        order[head] = null;
+        head = (head + 1) % order.length;
+        size--;
+        remove(oldest);
+    }
+    
+    private void growRing() {
+        int capacity = (int) Math.min(maxEntries, (long) order.length << 1);
+        String[] grownOrder = new String[capacity];
+        long[] grownInsertedAt = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            grownOrder[i] = order[(head + i) % order.length];
+            grownInsertedAt[i] = insertedAt[(head + i) % order.length];
+        }
+        order = grownOrder;
+        insertedAt = grownInsertedAt;
+        head = 0;
+    }
+    
+    private int indexOf(String transactionId) {
+        for (int slot = hash(transactionId) & mask; ; slot = (slot + 1) & mask) {
+            String candidate = table[slot];
+            if (candidate == null) {
+                return -1;
+            }
+            if (candidate.equals(transactionId)) {
+                return slot;
+            }
+        }
+    }
+    
+    private void insert(String transactionId) {
+        int slot = hash(transactionId) & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = transactionId;
+    }
+    
+    /**
+     * Backward-shift deletion: later entries of the probe sequence are moved into the hole, so lookups
+     * never need tombstones.
+     */
+    private void remove(String transactionId) {
+        int hole = indexOf(transactionId);
+        for (int next = (hole + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+            int home = hash(table[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = null;
+    }
+    
+    private void allocateTable(int capacity) {
+        table = new String[capacity];
+        mask = capacity - 1;
+    }
+    
+    private static int tableSizeFor(int entries) {
+        return Integer.highestOneBit(Math.max(entries, 2) - 1) << 2;
+    }
+    
+    private static int hash(String transactionId) {
+        int h = transactionId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.accesslog;
+
+import akka.actor.ActorSystem;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.testkit.javadsl.TestKit;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccessLogTest {
+    
+    private static ActorSystem system;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create();
+    }
+    
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+    }
+    
+    @Test
+    public void testWritesOneJsonLinePerRequest() throws IOException {
+        StringWriter out = new StringWriter();
+        RingBufferAccessLog accessLog = new RingBufferAccessLog(system, out, 1.0, 16);
+        accessLog.record(HttpRequest.GET("/v1/accounts/1"), HttpResponse.create().withEntity("{\"id\":1}"),
+                System.nanoTime());
+        accessLog.record(HttpRequest.POST("/v1/accounts/%22quoted%22"),
+                HttpResponse.create().withStatus(StatusCodes.CONFLICT), System.nanoTime());
+        accessLog.close();
+        
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("GET", first.get("method").asText());
+        assertEquals("/v1/accounts/1", first.get("path").asText());
+        assertEquals(200, first.get("status").asInt());
+        assertEquals(8, first.get("bytes").asInt());
+        assertTrue(first.get("durationMicros").asLong() >= 0);
+        assertTrue(first.get("time").asText().endsWith("Z"));
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals("/v1/accounts/%22quoted%22", second.get("path").asText());
+        assertEquals(409, second.get("status").asInt());
+        assertEquals(2, accessLog.written());
+    }
+    
+    @Test
+    public void testLogsServerErrorsWhateverTheSampleRate() {
+        StringWriter out = new StringWriter();
+        RingBufferAccessLog accessLog = new RingBufferAccessLog(system, out, 0.0, 16);
+        for (int i = 0; i < 100; i++) {
+            accessLog.record(HttpRequest.GET("/v1/accounts/" + i), HttpResponse.create(), System.nanoTime());
+        }
+        accessLog.record(HttpRequest.GET("/v1/accounts/1"),
+                HttpResponse.create().withStatus(StatusCodes.INTERNAL_SERVER_ERROR), System.nanoTime());
+        accessLog.close();
+        
+        assertEquals(1, accessLog.written());
+        assertTrue(out.toString().contains("\"status\":500"));
+        assertFalse(out.toString().contains("\"status\":200"));
+    }
+    
+    @Test
+    public void testDropsLinesInsteadOfBlockingWhenTheWriterFallsBehind() {
+        CountDownLatch released = new CountDownLatch(1);
+        Writer blocked = new StringWriter() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RingBufferAccessLog accessLog = new RingBufferAccessLog(system, blocked, 1.0, 4);
+        for (int i = 0; i < 20; i++) {
+            accessLog.record(HttpRequest.GET("/v1/accounts/" + i), HttpResponse.create(), System.nanoTime());
+        }
+        released.countDown();
+        accessLog.close();
+        
+        assertTrue(accessLog.dropped() >= 15);
+        assertEquals(20, accessLog.written() + accessLog.dropped());
+    }
+    
+    @Test
+    public void testConcurrentRequestsAreEachWrittenOnce() throws InterruptedException {
+        int threads = 4;
+        int requestsPerThread = 5_000;
+        StringWriter out = new StringWriter();
+        RingBufferAccessLog accessLog = new RingBufferAccessLog(system, out, 1.0, threads * requestsPerThread);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < requestsPerThread; i++) {
+                    accessLog.record(HttpRequest.GET("/" + thread + "/" + i), HttpResponse.create(), System.nanoTime());
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        accessLog.close();
+        
+        Set<String> paths = new HashSet<>();
+        for (String line : out.toString().split("\n")) {
+            int start = line.indexOf("\"path\":\"") + 8;
+            paths.add(line.substring(start, line.indexOf('"', start)));
+        }
+        assertEquals(0, accessLog.dropped());
+        assertEquals(threads * requestsPerThread, accessLog.written());
+        assertEquals(threads * requestsPerThread, paths.size());
+    }
+}
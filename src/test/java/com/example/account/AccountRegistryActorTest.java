@@ -4,24 +4,34 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.javadsl.TestKit;
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
 import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.messages.AccountRegistryMessages.CreateAccounts;
 import com.example.account.messages.AccountRegistryMessages.Credit;
 import com.example.account.messages.AccountRegistryMessages.Debit;
 import com.example.account.messages.AccountRegistryMessages.FailureResponse;
 import com.example.account.messages.AccountRegistryMessages.GetAccount;
 import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
+import com.example.account.messages.ResultCode;
 import com.example.account.models.Account;
 import com.example.account.service.AccountRegistryActor;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
 public class AccountRegistryActorTest {
     private static ActorSystem system;
     
     private static final String ACCOUNT_NUMBER = "1";
+    private static final String OTHER_ACCOUNT_NUMBER = "2";
     private static final String NAME = "TEST";
     private static final Double BALANCE = 10.0;
     private static final Double AMOUNT = 2.0;
@@ -155,4 +165,116 @@ public class AccountRegistryActorTest {
         }};
     }
     
+    @Test
+    public void testAccountsAreRoutedToTheirShardAcrossMultipleShards() {
+        new TestKit(system) {{
+            ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(4));
+            
+            for (int i = 0; i < 16; i++) {
+                accountRegistryActor.tell(new CreateAccount(new Account(String.valueOf(i), NAME, BALANCE)), getRef());
+                expectMsgClass(SuccessResponse.class);
+            }
+            for (int i = 0; i < 16; i++) {
+                accountRegistryActor.tell(new CreateAccount(new Account(String.valueOf(i), NAME, BALANCE)), getRef());
+                expectMsgClass(FailureResponse.class);
+                
+                accountRegistryActor.tell(new Debit(String.valueOf(i), AMOUNT), getRef());
+                expectMsgClass(SuccessResponse.class);
+            }
+        }};
+    }
+    
+    @Test
+    public void testTransferWithinOneShardMovesBalance() {
+        assertTransferMovesBalance(system.actorOf(AccountRegistryActor.props(1)));
+    }
+    
+    @Test
+    public void testTransferAcrossShardsMovesBalance() {
+        assertNotEquals(AccountRegistryActor.shardOf(ACCOUNT_NUMBER, 2),
+                AccountRegistryActor.shardOf(OTHER_ACCOUNT_NUMBER, 2));
+        assertTransferMovesBalance(system.actorOf(AccountRegistryActor.props(2)));
+    }
+    
+    @Test
+    public void testTransferAcrossShardsToMissingAccountReleasesReservation() {
+        new TestKit(system) {{
+            ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(2));
+            
+            accountRegistryActor.tell(new CreateAccount(new Account(ACCOUNT_NUMBER, NAME, BALANCE)), getRef());
+            expectMsgClass(SuccessResponse.class);
+            
+            accountRegistryActor.tell(new Transfer("T1", ACCOUNT_NUMBER, OTHER_ACCOUNT_NUMBER, AMOUNT), getRef());
+            expectMsgClass(FailureResponse.class);
+            
+            accountRegistryActor.tell(new GetAccount(ACCOUNT_NUMBER), getRef());
+            assertEquals(BALANCE, balanceOf(expectMsgClass(Optional.class)));
+        }};
+    }
+    
+    @Test
+    public void testCreateAccountsRejectsDuplicatesByRequestIndex() {
+        new TestKit(system) {{
+            ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(2));
+            accountRegistryActor.tell(new CreateAccount(new Account(OTHER_ACCOUNT_NUMBER, NAME, BALANCE)), getRef());
+            expectMsgClass(SuccessResponse.class);
+            
+            accountRegistryActor.tell(new CreateAccounts(Arrays.asList(
+                    new Account(ACCOUNT_NUMBER, NAME, BALANCE),
+                    new Account(OTHER_ACCOUNT_NUMBER, NAME, BALANCE),
+                    new Account("3", NAME, BALANCE),
+                    new Account(ACCOUNT_NUMBER, NAME, BALANCE))), getRef());
+            AccountsCreated created = expectMsgClass(AccountsCreated.class);
+            
+            assertEquals(4, created.getRequested());
+            assertEquals(2, created.getCreated());
+            assertEquals(Arrays.asList(1, 3), new ArrayList<>(created.getRejected().keySet()));
+            accountRegistryActor.tell(new GetAccount("3"), getRef());
+            assertEquals(BALANCE, balanceOf(expectMsgClass(Optional.class)));
+        }};
+    }
+    
+    @Test
+    public void testAccountsWithoutValidBalanceAreRejectedAsInvalid() {
+        new TestKit(system) {{
+            ActorRef accountRegistryActor = getTestAccountRegistryActor();
+            
+            accountRegistryActor.tell(new CreateAccount(new Account(ACCOUNT_NUMBER, NAME, null)), getRef());
+            assertEquals(ResultCode.INVALID, expectMsgClass(FailureResponse.class).getCode());
+            accountRegistryActor.tell(new CreateAccounts(Arrays.asList(
+                    new Account(ACCOUNT_NUMBER, NAME, Double.NaN),
+                    new Account(OTHER_ACCOUNT_NUMBER, NAME, BALANCE),
+                    new Account("3", NAME, Double.POSITIVE_INFINITY))), getRef());
+            AccountsCreated created = expectMsgClass(AccountsCreated.class);
+            
+            assertEquals(1, created.getCreated());
+            assertEquals(Arrays.asList(0, 2), new ArrayList<>(created.getRejected().keySet()));
+            accountRegistryActor.tell(new CreateAccount(new Account(ACCOUNT_NUMBER, NAME, BALANCE)), getRef());
+            expectMsgClass(SuccessResponse.class);
+        }};
+    }
+    
+    private void assertTransferMovesBalance(ActorRef accountRegistryActor) {
+        new TestKit(system) {{
+            accountRegistryActor.tell(new CreateAccount(new Account(ACCOUNT_NUMBER, NAME, BALANCE)), getRef());
+            expectMsgClass(SuccessResponse.class);
+            accountRegistryActor.tell(new CreateAccount(new Account(OTHER_ACCOUNT_NUMBER, NAME, BALANCE)), getRef());
+            expectMsgClass(SuccessResponse.class);
+            
+            accountRegistryActor.tell(new Transfer("T1", ACCOUNT_NUMBER, OTHER_ACCOUNT_NUMBER, AMOUNT), getRef());
+            expectMsgClass(SuccessResponse.class);
+            accountRegistryActor.tell(new Transfer("T2", ACCOUNT_NUMBER, OTHER_ACCOUNT_NUMBER, DEBIT), getRef());
+            expectMsgClass(FailureResponse.class);
+            
+            accountRegistryActor.tell(new GetAccount(ACCOUNT_NUMBER), getRef());
+            assertEquals(BALANCE - AMOUNT, balanceOf(expectMsgClass(Optional.class)), 0.0);
+            accountRegistryActor.tell(new GetAccount(OTHER_ACCOUNT_NUMBER), getRef());
+            assertEquals(BALANCE + AMOUNT, balanceOf(expectMsgClass(Optional.class)), 0.0);
+        }};
+    }
+    
+    private static Double balanceOf(Optional<?> account) {
+        return ((Account) account.get()).getBalance();
+    }
+    
 }
@@ -0,0 +1,128 @@
+package com.example.account;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ShardRegion;
+import akka.testkit.javadsl.TestKit;
+import com.example.account.messages.AccountRegistryMessages.FailureResponse;
+import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.models.Account;
+import com.example.account.service.AccountSharding;
+import com.example.account.service.ActorAccountStore;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs two cluster nodes in this JVM, talking over real remoting on localhost, where auto-downing is safe
+ * as both nodes share one machine.
+ */
+public class AccountShardingTest {
+    
+    private static final int SHARDS = 4;
+    private static final int ACCOUNTS = 16;
+    private static final String NAME = "TEST";
+    
+    private Path journalDirectory;
+    private ActorSystem first;
+    private ActorSystem second;
+    
+    @Before
+    public void createJournalDirectory() throws IOException {
+        journalDirectory = Files.createTempDirectory("cluster-journal");
+    }
+    
+    @After
+    public void teardown() throws IOException {
+        if (second != null) {
+            TestKit.shutdownActorSystem(second);
+        }
+        if (first != null) {
+            TestKit.shutdownActorSystem(first);
+        }
+        try (Stream<Path> files = Files.walk(journalDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    @Test
+    public void testAccountsMoveToAJoiningNodeAndStayReachableFromBoth() {
+        first = node();
+        AccountSharding.join(first, Collections.emptyList());
+        ActorAccountStore firstStore = new ActorAccountStore(AccountSharding.start(first, journalDirectory, SHARDS));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertTrue(join(firstStore.create(new Account(String.valueOf(i), NAME, 10.0))) instanceof SuccessResponse);
+        }
+        assertTrue(join(firstStore.transfer("T1", "0", "1", 400)) instanceof SuccessResponse);
+        
+        second = node();
+        String firstAddress = Cluster.get(first).selfAddress().host().get() + ":"
+                + Cluster.get(first).selfAddress().port().get();
+        AccountSharding.join(second, Collections.singletonList(firstAddress));
+        ActorAccountStore secondStore = new ActorAccountStore(AccountSharding.start(second, journalDirectory, SHARDS));
+        awaitShardsHostedBy(second);
+        
+        assertEquals(6.0, join(secondStore.get("0")).get().getBalance(), 0.0);
+        assertEquals(14.0, join(secondStore.get("1")).get().getBalance(), 0.0);
+        assertFalse(join(secondStore.get("missing")).isPresent());
+        for (int i = 2; i < ACCOUNTS; i++) {
+            assertTrue(join(secondStore.transfer("T" + i, String.valueOf(i), String.valueOf(i - 1), 100))
+                    instanceof SuccessResponse);
+        }
+        assertTrue(join(secondStore.transfer("T-missing", "0", "missing", 100)) instanceof FailureResponse);
+        assertTrue(join(firstStore.create(new Account("0", NAME, 10.0))) instanceof FailureResponse);
+        
+        double total = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            total += join(firstStore.get(String.valueOf(i))).get().getBalance();
+        }
+        assertEquals(ACCOUNTS * 10.0, total, 0.0);
+        assertEquals(6.0, join(firstStore.get("0")).get().getBalance(), 0.0);
+        assertEquals(15.0, join(firstStore.get("1")).get().getBalance(), 0.0);
+        assertEquals(9.0, join(firstStore.get(String.valueOf(ACCOUNTS - 1))).get().getBalance(), 0.0);
+    }
+    
+    private static ActorSystem node() {
+        Config config = ConfigFactory.parseString("akka.remote.netty.tcp.port = 0\n"
+                + "akka.remote.netty.tcp.hostname = \"127.0.0.1\"\n"
+                + "akka.cluster.jmx.multi-mbeans-in-same-jvm = on\n"
+                + "akka.cluster.auto-down-unreachable-after = 30s")
+                .withFallback(ConfigFactory.load("cluster"));
+        return ActorSystem.create("TransactionApiServer", config);
+    }
+    
+    private static void awaitShardsHostedBy(ActorSystem node) {
+        ActorRef region = ClusterSharding.get(node).shardRegion(AccountSharding.TYPE_NAME);
+        new TestKit(node) {{
+            awaitAssert(Duration.ofSeconds(30), () -> {
+                region.tell(ShardRegion.getShardRegionStateInstance(), getRef());
+                ShardRegion.CurrentShardRegionState state = expectMsgClass(ShardRegion.CurrentShardRegionState.class);
+                assertFalse(state.getShards().isEmpty());
+                return null;
+            });
+        }};
+    }
+    
+    private static <T> T join(CompletionStage<T> stage) {
+        return stage.toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.account;
+
+import com.example.account.store.AccountTable;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AccountTableTest {
+    
+    private static final String NAME = "TEST";
+    
+    @Test
+    public void testAddRejectsExistingAccount() {
+        AccountTable accounts = new AccountTable();
+        
+        assertTrue(accounts.add("1", NAME, 1000) != AccountTable.NOT_FOUND);
+        assertEquals(AccountTable.NOT_FOUND, accounts.add("1", NAME, 500));
+        assertEquals(1000, accounts.balanceAt(accounts.indexOf("1")));
+        assertEquals(1, accounts.size());
+    }
+    
+    @Test
+    public void testIndexOfReturnsNotFoundForMissingAccount() {
+        AccountTable accounts = new AccountTable();
+        
+        assertEquals(AccountTable.NOT_FOUND, accounts.indexOf("1"));
+        assertEquals(AccountTable.NOT_FOUND, accounts.indexOf(null));
+        assertFalse(accounts.contains("1"));
+    }
+    
+    @Test
+    public void testAddToBalanceUpdatesInPlace() {
+        AccountTable accounts = new AccountTable();
+        int slot = accounts.add("1", NAME, 1000);
+        
+        accounts.addToBalance(slot, 250);
+        accounts.addToBalance(slot, -1100);
+        
+        assertEquals(150, accounts.balanceAt(accounts.indexOf("1")));
+        assertEquals(NAME, accounts.nameAt(slot));
+    }
+    
+    @Test
+    public void testVersionIsIncrementedOnEveryBalanceUpdateAndSurvivesResize() {
+        AccountTable accounts = new AccountTable(4);
+        int slot = accounts.add("1", NAME, 1000);
+        assertEquals(1, accounts.versionOf("1"));
+        
+        accounts.addToBalance(slot, 250);
+        accounts.addToBalance(slot, -250);
+        for (int i = 2; i < 1000; i++) {
+            accounts.add(String.valueOf(i), NAME, i);
+        }
+        
+        assertEquals(3, accounts.versionOf("1"));
+        assertEquals(3, accounts.versionAt(accounts.indexOf("1")));
+        assertEquals(AccountTable.NO_VERSION, accounts.versionOf("missing"));
+    }
+    
+    @Test
+    public void testAccountsSurviveResize() {
+        AccountTable accounts = new AccountTable(4);
+        for (int i = 0; i < 10_000; i++) {
+            accounts.add(String.valueOf(i), NAME + i, i);
+        }
+        
+        assertEquals(10_000, accounts.size());
+        for (int i = 0; i < 10_000; i++) {
+            int slot = accounts.indexOf(String.valueOf(i));
+            assertEquals(i, accounts.balanceAt(slot));
+            assertEquals(NAME + i, accounts.nameAt(slot));
+        }
+    }
+    
+    @Test
+    public void testConcurrentReadsSeeCompleteAccountsWhileTableResizes() throws InterruptedException {
+        AccountTable accounts = new AccountTable(4);
+        AtomicInteger added = new AtomicInteger();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            Random random = new Random(42);
+            while (added.get() < 200_000 && failure.get() == null) {
+                int count = added.get();
+                if (count == 0) {
+                    continue;
+                }
+                int i = random.nextInt(count);
+                String read = accounts.read(String.valueOf(i), (number, name, balance, version) -> name + ":" + balance);
+                if (!(NAME + i + ":" + i).equals(read)) {
+                    failure.set("Account " + i + " read as " + read);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200_000; i++) {
+            accounts.add(String.valueOf(i), NAME + i, i);
+            added.set(i + 1);
+        }
+        reader.join();
+        
+        assertNull(failure.get());
+        assertNull(accounts.read("200000", (number, name, balance, version) -> name));
+    }
+}
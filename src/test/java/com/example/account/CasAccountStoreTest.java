@@ -0,0 +1,133 @@
+package com.example.account;
+
+import com.example.account.messages.AccountRegistryMessages.AccountsCreated;
+import com.example.account.messages.AccountRegistryMessages.FailureResponse;
+import com.example.account.messages.AccountRegistryMessages.Response;
+import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.account.store.AccountTable;
+import com.example.account.store.CasAccountStore;
+import com.example.persistence.Journal;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CasAccountStoreTest {
+    
+    @Test
+    public void testAnswersLikeTheAccountActors() {
+        CasAccountStore store = new CasAccountStore(Journal.IN_MEMORY);
+        
+        assertTrue(join(store.create(new Account("A", "TEST", 10.0))) instanceof SuccessResponse);
+        assertTrue(join(store.create(new Account("A", "TEST", 10.0))) instanceof FailureResponse);
+        assertTrue(join(store.create(new Account("B", "TEST", 1.0))) instanceof SuccessResponse);
+        
+        assertTrue(join(store.credit("A", 500)) instanceof SuccessResponse);
+        assertTrue(join(store.debit("A", 200)) instanceof SuccessResponse);
+        assertTrue(join(store.debit("A", 5000)) instanceof FailureResponse);
+        assertTrue(join(store.credit("C", 100)) instanceof FailureResponse);
+        assertTrue(join(store.transfer("T1", "A", "B", 300)) instanceof SuccessResponse);
+        assertTrue(join(store.transfer("T2", "A", "C", 1)) instanceof FailureResponse);
+        assertTrue(join(store.transfer("T3", "B", "A", 1000)) instanceof FailureResponse);
+        
+        assertEquals(10.0, store.get("A").toCompletableFuture().join().get().getBalance(), 0.0);
+        assertEquals(4.0, store.get("B").toCompletableFuture().join().get().getBalance(), 0.0);
+        assertFalse(store.get("C").toCompletableFuture().join().isPresent());
+    }
+    
+    @Test
+    public void testVersionChangesWithEveryBalanceUpdate() {
+        CasAccountStore store = new CasAccountStore(Journal.IN_MEMORY);
+        join(store.create(new Account("A", "TEST", 10.0)));
+        join(store.create(new Account("B", "TEST", 10.0)));
+        long created = store.versionOf("A");
+        
+        join(store.transfer("T1", "A", "B", 100));
+        
+        assertEquals(created + 1, store.versionOf("A"));
+        assertEquals(created + 1, store.get("A").toCompletableFuture().join().get().getVersion());
+        assertEquals(AccountTable.NO_VERSION, store.versionOf("C"));
+    }
+    
+    @Test
+    public void testCreatesAllAndReportsRejectedAccountsByIndex() {
+        CasAccountStore store = new CasAccountStore(Journal.IN_MEMORY);
+        join(store.create(new Account("B", "TEST", 1.0)));
+        
+        AccountsCreated created = store.createAll(Arrays.asList(new Account("A", "TEST", 1.0),
+                new Account("B", "TEST", 1.0), new Account(null, "TEST", 1.0), new Account("C", "TEST", null)))
+                .toCompletableFuture().join();
+        
+        assertEquals(1, created.getCreated());
+        assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(created.getRejected().keySet().toArray()));
+        assertEquals(ResultCode.INVALID, join(store.create(new Account("D", "TEST", Double.NaN))).getCode());
+        assertFalse(store.get("C").toCompletableFuture().join().isPresent());
+    }
+    
+    @Test
+    public void testStartsFromRecoveredTables() {
+        AccountTable table = new AccountTable();
+        table.add("A", "TEST", 1234);
+        
+        CasAccountStore store = new CasAccountStore(Journal.IN_MEMORY, new AccountTable[]{table});
+        
+        assertEquals(12.34, store.get("A").toCompletableFuture().join().get().getBalance(), 0.0);
+    }
+    
+    @Test
+    public void testConcurrentTransfersConserveMoneyAndNeverOverdraw() throws InterruptedException {
+        CasAccountStore store = new CasAccountStore(Journal.IN_MEMORY);
+        int accounts = 8;
+        for (int i = 0; i < accounts; i++) {
+            join(store.create(new Account(String.valueOf(i), "TEST", 10.0)));
+        }
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    int source = (thread + i) % accounts;
+                    int target = (thread * 3 + i * 7 + 1) % accounts;
+                    if (i % 3 == 0) {
+                        store.debit(String.valueOf(source), 7);
+                        store.credit(String.valueOf(target), 7);
+                    } else {
+                        store.transfer("T" + thread + "-" + i, String.valueOf(source), String.valueOf(target), 50);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        
+        double total = 0;
+        for (int i = 0; i < accounts; i++) {
+            double balance = store.get(String.valueOf(i)).toCompletableFuture().join().get().getBalance();
+            assertTrue("Account " + i + " overdrawn: " + balance, balance > 0);
+            total += balance;
+        }
+        assertEquals(accounts * 10.0, total, 0.001);
+    }
+    
+    private static Response join(CompletionStage<Response> response) {
+        return response.toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.account.routes;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.example.account.messages.AccountRegistryMessages.Credit;
+import com.example.account.messages.AccountRegistryMessages.GetAccount;
+import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.models.Account;
+import com.example.account.routes.AccountLookups.Rendered;
+import com.example.account.service.ActorAccountStore;
+import com.example.account.store.AccountStore;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AccountLookupsTest {
+    
+    private static ActorSystem system;
+    
+    private final AtomicInteger lookupsMade = new AtomicInteger();
+    private CompletableFuture<Optional<Account>> pending = new CompletableFuture<>();
+    
+    private final AccountLookups lookups = new AccountLookups(accountNumber -> {
+        lookupsMade.incrementAndGet();
+        return pending;
+    });
+    
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create();
+    }
+    
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+    }
+    
+    @Test
+    public void testConcurrentRequestsShareOneLookupAndBody() {
+        CompletionStage<Rendered> first = lookups.get("1", 1);
+        CompletionStage<Rendered> second = lookups.get("1", 1);
+        CompletionStage<Rendered> third = lookups.get("1", 1);
+        pending.complete(Optional.of(new Account("1", "TEST", 10.0, 1)));
+        
+        Rendered rendered = first.toCompletableFuture().join();
+        assertEquals("{\"accountNumber\":\"1\",\"balance\":10.0,\"name\":\"TEST\"}", rendered.body.utf8String());
+        assertSame(rendered, second.toCompletableFuture().join());
+        assertSame(rendered, third.toCompletableFuture().join());
+        assertEquals(1, lookupsMade.get());
+        assertEquals(3, lookups.requests());
+        assertEquals(2.0 / 3, lookups.coalescingRatio(), 1e-9);
+    }
+    
+    @Test
+    public void testRequestNewerThanLookupInFlightLooksUpAgain() {
+        CompletionStage<Rendered> first = lookups.get("1", 1);
+        CompletionStage<Rendered> afterWrite = lookups.get("1", 2);
+        CompletableFuture<Optional<Account>> stale = pending;
+        pending = CompletableFuture.completedFuture(Optional.of(new Account("1", "TEST", 5.0, 2)));
+        stale.complete(Optional.of(new Account("1", "TEST", 10.0, 1)));
+        
+        assertEquals(1, first.toCompletableFuture().join().version);
+        assertEquals(2, afterWrite.toCompletableFuture().join().version);
+        assertEquals(2, lookupsMade.get());
+    }
+    
+    @Test
+    public void testReadAfterAcknowledgedWriteNeverJoinsLookupInFlightWhenVersionsAreUnknown() {
+        TestKit registry = new TestKit(system);
+        ActorAccountStore accountStore = new ActorAccountStore(registry.getRef());
+        AccountLookups storeLookups = new AccountLookups(accountStore::get);
+        
+        CompletionStage<Rendered> beforeWrite = storeLookups.get("1", accountStore.versionOf("1"));
+        registry.expectMsgClass(GetAccount.class);
+        ActorRef beforeWriteLookup = registry.getLastSender();
+        CompletionStage<?> credited = accountStore.credit("1", 500);
+        registry.expectMsgClass(Credit.class);
+        registry.reply(SuccessResponse.INSTANCE);
+        credited.toCompletableFuture().join();
+        
+        assertEquals(AccountStore.UNKNOWN_VERSION, accountStore.versionOf("1"));
+        CompletionStage<Rendered> afterWrite = storeLookups.get("1", accountStore.versionOf("1"));
+        registry.expectMsgClass(GetAccount.class);
+        registry.reply(Optional.of(new Account("1", "TEST", 15.0, 2)));
+        beforeWriteLookup.tell(Optional.of(new Account("1", "TEST", 10.0, 1)), ActorRef.noSender());
+        
+        assertEquals(1, beforeWrite.toCompletableFuture().join().version);
+        assertEquals("{\"accountNumber\":\"1\",\"balance\":15.0,\"name\":\"TEST\"}",
+                afterWrite.toCompletableFuture().join().body.utf8String());
+        assertEquals(2, storeLookups.lookups());
+    }
+    
+    @Test
+    public void testLaterRequestStartsNewLookupAndMissingAccountIsNotRendered() {
+        pending.complete(Optional.empty());
+        
+        assertTrue(lookups.get("1", 0).toCompletableFuture().join().isMissing());
+        assertTrue(lookups.get("1", 0).toCompletableFuture().join().isMissing());
+        assertEquals(2, lookupsMade.get());
+        assertEquals(0.0, lookups.coalescingRatio(), 1e-9);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.admission;
+
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionQueueTest {
+    
+    private static ActorSystem system;
+    
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create();
+    }
+    
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+        system = null;
+    }
+    
+    @Test
+    public void testRejectsAtOnceWhileFull() {
+        TestKit registry = new TestKit(system);
+        AdmissionQueue queue = new AdmissionQueue(registry.getRef(), 2, Duration.ofSeconds(5));
+        
+        CompletableFuture<Object> first = queue.ask("first").toCompletableFuture();
+        queue.ask("second");
+        CompletableFuture<Object> rejected = queue.ask("third").toCompletableFuture();
+        
+        assertTrue(rejected.isCompletedExceptionally());
+        assertOverloaded(rejected);
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.rejected());
+        registry.expectMsg("first");
+        registry.reply("done");
+        registry.expectMsg("second");
+        
+        assertEquals("done", first.join());
+        CompletionStage<Object> admitted = queue.ask("fourth");
+        registry.expectMsg("fourth");
+        registry.reply("done");
+        assertEquals("done", admitted.toCompletableFuture().join());
+    }
+    
+    @Test
+    public void testTimedOutRequestLeavesQueue() {
+        TestKit registry = new TestKit(system);
+        AdmissionQueue queue = new AdmissionQueue(registry.getRef(), 1, Duration.ofMillis(100));
+        
+        CompletableFuture<Object> timedOut = queue.ask("first").toCompletableFuture();
+        try {
+            timedOut.join();
+            fail("Ask should have timed out");
+        } catch (CompletionException expected) {
+            assertEquals(0, queue.size());
+        }
+        queue.ask("second");
+        assertEquals(0, queue.rejected());
+    }
+    
+    @Test
+    public void testInFlightLimiterRejectsBeyondLimit() {
+        InFlightLimiter limiter = new InFlightLimiter(2);
+        
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+        
+        assertEquals(2, limiter.inFlight());
+        assertEquals(1, limiter.rejected());
+    }
+    
+    private static void assertOverloaded(CompletableFuture<Object> future) {
+        try {
+            future.join();
+            fail("Request should have been rejected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof OverloadedException);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorSystem;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.testkit.javadsl.TestKit;
+import com.example.accesslog.RingBufferAccessLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time a request thread spends logging a request: formatting the line itself, like the routes did with
+ * {@code logger.info(String.format(...))}, against handing it to {@link RingBufferAccessLog} at a sample
+ * rate. The access log writes to a {@link Writer} that discards its input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessLogBenchmark {
+    
+    private static final HttpRequest REQUEST = HttpRequest.GET("/v1/accounts/123451");
+    private static final HttpResponse RESPONSE = HttpResponse.create().withStatus(StatusCodes.OK)
+            .withEntity("{\"accountNumber\":\"123451\",\"balance\":1234.56,\"name\":\"Pallavi Singh\"}");
+    
+    @Param({"1.0", "0.1"})
+    public double sampleRate;
+    
+    private ActorSystem system;
+    private RingBufferAccessLog accessLog;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create("AccessLogBenchmark");
+        accessLog = new RingBufferAccessLog(system, new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+            }
+            
+            @Override
+            public void flush() {
+            }
+            
+            @Override
+            public void close() {
+            }
+        }, sampleRate, 8192);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        accessLog.close();
+        TestKit.shutdownActorSystem(system);
+    }
+    
+    @Benchmark
+    public String formatted() {
+        return String.format("[ Request ] : Get Account details for {id : %s } answered %d in %d us",
+                REQUEST.getUri().path(), RESPONSE.status().intValue(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime()));
+    }
+    
+    @Benchmark
+    public void recorded() {
+        accessLog.record(REQUEST, RESPONSE, System.nanoTime());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.benchmarks;
+
+import com.example.account.models.Account;
+import com.example.account.store.AccountTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Retained heap of the previous {@code HashMap<String, Account>} account store compared with
+ * {@link AccountTable}, for each account count given on the command line (default 1M and 10M).
+ * Account numbers are distinct strings, names are shared so only the store overhead differs.
+ * Give the JVM enough heap for the largest count, e.g. {@code -Xmx8g} for 10M accounts.
+ */
+public class AccountFootprint {
+    
+    private static final String NAME = "FOOTPRINT";
+    
+    // Keeps the store under measurement reachable across the second heap reading
+    private static volatile Object retained;
+    
+    public static void main(String[] args) {
+        int[] counts = args.length == 0 ? new int[]{1_000_000, 10_000_000} : parse(args);
+        System.out.printf("%12s %22s %22s %8s%n", "accounts", "HashMap<String,Account>", "AccountTable", "ratio");
+        for (int count : counts) {
+            long hashMapBytes = measure(() -> hashMapOf(count));
+            long tableBytes = measure(() -> tableOf(count));
+            System.out.printf("%12d %14d MB %3d B %14d MB %3d B %7.2fx%n", count,
+                    hashMapBytes >> 20, hashMapBytes / count,
+                    tableBytes >> 20, tableBytes / count,
+                    (double) hashMapBytes / tableBytes);
+        }
+    }
+    
+    private static Map<String, Account> hashMapOf(int count) {
+        Map<String, Account> accountsById = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String accountNumber = String.valueOf(i);
+            accountsById.put(accountNumber, new Account(accountNumber, NAME, (double) i));
+        }
+        return accountsById;
+    }
+    
+    private static AccountTable tableOf(int count) {
+        AccountTable accounts = new AccountTable();
+        for (int i = 0; i < count; i++) {
+            accounts.add(String.valueOf(i), NAME, i * 100L);
+        }
+        return accounts;
+    }
+    
+    private static long measure(Supplier<Object> store) {
+        long before = usedHeap();
+        retained = store.get();
+        long after = usedHeap();
+        retained = null;
+        return after - before;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    private static int[] parse(String[] args) {
+        int[] counts = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i].replace("_", ""));
+        }
+        return counts;
+    }
+}
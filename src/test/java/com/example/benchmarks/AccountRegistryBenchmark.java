@@ -0,0 +1,92 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.Patterns;
+import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.messages.AccountRegistryMessages.Credit;
+import com.example.account.messages.AccountRegistryMessages.Debit;
+import com.example.account.messages.AccountRegistryMessages.GetAccount;
+import com.example.account.models.Account;
+import com.example.account.service.AccountRegistryActor;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message throughput of {@link AccountRegistryActor} for the single-account commands, each sent with an
+ * ask the way the routes send them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class AccountRegistryBenchmark {
+    
+    private static final int ACCOUNTS = 1024;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    
+    @Param({"1", "8"})
+    public int shards;
+    
+    private ActorSystem system;
+    private ActorRef accountRegistryActor;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create("AccountRegistryBenchmark",
+                ConfigFactory.parseString("akka.loglevel = WARNING").withFallback(ConfigFactory.load()));
+        accountRegistryActor = system.actorOf(AccountRegistryActor.props(shards));
+        for (int account = 0; account < ACCOUNTS; account++) {
+            ask(new CreateAccount(new Account(String.valueOf(account), "BENCH", 1_000_000_000.0)));
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.terminate();
+    }
+    
+    @Benchmark
+    public Object getAccount() {
+        return ask(new GetAccount(randomAccount()));
+    }
+    
+    @Benchmark
+    public Object credit() {
+        return ask(new Credit(randomAccount(), 1L));
+    }
+    
+    @Benchmark
+    public Object debit() {
+        return ask(new Debit(randomAccount(), 1L));
+    }
+    
+    private static String randomAccount() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+    
+    private Object ask(Object message) {
+        return Patterns.ask(accountRegistryActor, message, TIMEOUT).toCompletableFuture().join();
+    }
+    
+}
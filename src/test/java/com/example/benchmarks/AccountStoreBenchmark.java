@@ -0,0 +1,85 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorSystem;
+import com.example.account.models.Account;
+import com.example.account.service.AccountRegistryActor;
+import com.example.account.service.ActorAccountStore;
+import com.example.account.store.AccountStore;
+import com.example.account.store.CasAccountStore;
+import com.example.account.utils.AccountEngine;
+import com.example.persistence.Journal;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the two {@link AccountStore} engines under contention: 16 threads crediting and
+ * transferring between {@code accounts} accounts, so with 16 accounts nearly every operation collides
+ * with another one on the same account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class AccountStoreBenchmark {
+    
+    @Param({"actor", "cas"})
+    public String engine;
+    
+    @Param({"16", "16384"})
+    public int accounts;
+    
+    private ActorSystem system;
+    private AccountStore accountStore;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create("AccountStoreBenchmark",
+                ConfigFactory.parseString("akka.loglevel = WARNING").withFallback(ConfigFactory.load()));
+        accountStore = AccountEngine.fromConfig(engine) == AccountEngine.CAS
+                ? new CasAccountStore(Journal.IN_MEMORY)
+                : new ActorAccountStore(system.actorOf(AccountRegistryActor.props(8)));
+        for (int account = 0; account < accounts; account++) {
+            accountStore.create(new Account(String.valueOf(account), "BENCH", 1_000_000_000.0))
+                    .toCompletableFuture().join();
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.terminate();
+    }
+    
+    @Benchmark
+    public Object credit() {
+        return accountStore.credit(randomAccount(), 1L).toCompletableFuture().join();
+    }
+    
+    @Benchmark
+    public Object transfer() {
+        return accountStore.transfer("T", randomAccount(), randomAccount(), 1L).toCompletableFuture().join();
+    }
+    
+    private String randomAccount() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(accounts));
+    }
+    
+}
@@ -0,0 +1,72 @@
+package com.example.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, e.g. a copy of {@code target/benchmarks/jmh-result.json} from
+ * the previous commit against the current one. Prints the change of every benchmark present in both
+ * and exits with status 1 if any got worse by more than {@code threshold} percent (default 10).
+ * Throughput is better when higher, every other mode when lower.
+ */
+public class BenchmarkComparison {
+    
+    private static final String PACKAGE = BenchmarkComparison.class.getPackage().getName() + ".";
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s%n", entry.getKey(), "new");
+                continue;
+            }
+            double was = before.path("primaryMetric").path("score").asDouble();
+            double is = entry.getValue().path("primaryMetric").path("score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = was == 0 ? 0 : (is - was) / was * 100;
+            boolean regressed = (higherIsBetter ? -change : change) > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f -> %14.3f %-8s %+7.1f%%%s%n", entry.getKey(), was, is,
+                    entry.getValue().path("primaryMetric").path("scoreUnit").asText(), change,
+                    regressed ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Results keyed by benchmark, mode and parameters, as JMH prints them.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText().replace(PACKAGE, ""))
+                    .append(' ').append(result.path("mode").asText());
+            for (Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields(); params.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
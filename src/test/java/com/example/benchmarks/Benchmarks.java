@@ -0,0 +1,30 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH with its command line arguments, writing results as JSON to
+ * {@code target/benchmarks/jmh-result.json} unless {@code -rf} or {@code -rff} is given, so runs on
+ * different commits can be compared with {@link BenchmarkComparison}.
+ */
+public class Benchmarks {
+    
+    static final Path RESULT_FILE = Paths.get("target", "benchmarks", "jmh-result.json");
+    
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf") && !arguments.contains("-rff")) {
+            Files.createDirectories(RESULT_FILE.getParent());
+            arguments.addAll(Arrays.asList("-rf", "json", "-rff", RESULT_FILE.toString()));
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.benchmarks;
+
+import com.example.account.models.Account;
+import com.example.transcaction.models.Transaction;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson marshalling of the request and response bodies, with the mapper configured like the one behind
+ * {@code Jackson.marshaller()} and {@code Jackson.unmarshaller(...)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonMarshallingBenchmark {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    
+    private ObjectWriter writer;
+    private ObjectReader accountReader;
+    private ObjectReader transactionReader;
+    private Account account;
+    private Transaction transaction;
+    private byte[] accountJson;
+    private byte[] transactionJson;
+    
+    @Setup
+    public void setUp() throws IOException {
+        writer = objectMapper.writer();
+        accountReader = objectMapper.readerFor(Account.class);
+        transactionReader = objectMapper.readerFor(Transaction.class);
+        account = new Account("123451", "Pallavi Singh", 1234.56);
+        transaction = new Transaction("8f14e45f-ceea-467f-a8d4-c2b1e5a0b7d2", "123451", "123452", 12.5,
+                System.currentTimeMillis());
+        accountJson = writer.writeValueAsBytes(account);
+        transactionJson = writer.writeValueAsBytes(transaction);
+    }
+    
+    @Benchmark
+    public byte[] writeAccount() throws IOException {
+        return writer.writeValueAsBytes(account);
+    }
+    
+    @Benchmark
+    public Account readAccount() throws IOException {
+        return accountReader.readValue(accountJson);
+    }
+    
+    @Benchmark
+    public byte[] writeTransaction() throws IOException {
+        return writer.writeValueAsBytes(transaction);
+    }
+    
+    @Benchmark
+    public Transaction readTransaction() throws IOException {
+        return transactionReader.readValue(transactionJson);
+    }
+    
+}
@@ -0,0 +1,125 @@
+package com.example.benchmarks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe log-linear latency histogram in nanoseconds, after HdrHistogram: every power of two is
+ * split into 64 buckets, so any recorded value is reported within 1.6% of what was recorded, from
+ * nanoseconds up to hours, in a fixed 30 KB.
+ */
+final class LatencyRecorder {
+    
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    
+    void record(long nanos) {
+        record(nanos, 1);
+    }
+    
+    /**
+     * Records {@code nanos} plus the values that requests which should have been sent every
+     * {@code expectedIntervalNanos} while this one was outstanding would have seen: {@code nanos} minus
+     * one, two, ... intervals. Without them, a stall that held back a closed-loop client is recorded as a
+     * single slow request instead of as every request it delayed.
+     */
+    void recordCorrected(long nanos, long expectedIntervalNanos) {
+        recordCorrected(nanos, expectedIntervalNanos, 1);
+    }
+    
+    long count() {
+        return total.sum();
+    }
+    
+    double meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : (double) sumNanos.sum() / count;
+    }
+    
+    /**
+     * Smallest recorded value, up to bucket precision, that {@code percentile} percent of the recorded
+     * values are at or below; 0 if nothing was recorded.
+     */
+    long percentile(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return highestValueIn(bucket);
+            }
+        }
+        return highestValueIn(BUCKETS - 1);
+    }
+    
+    long max() {
+        for (int bucket = BUCKETS - 1; bucket >= 0; bucket--) {
+            if (counts.get(bucket) > 0) {
+                return highestValueIn(bucket);
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * A copy with every recorded value corrected as by {@link #recordCorrected(long, long)}, for when
+     * the expected interval is only known once the run is over.
+     */
+    LatencyRecorder corrected(long expectedIntervalNanos) {
+        LatencyRecorder corrected = new LatencyRecorder();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long count = counts.get(bucket);
+            if (count > 0) {
+                corrected.recordCorrected(highestValueIn(bucket), expectedIntervalNanos, count);
+            }
+        }
+        return corrected;
+    }
+    
+    private void recordCorrected(long nanos, long expectedIntervalNanos, long times) {
+        record(nanos, times);
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (long missed = nanos - expectedIntervalNanos; missed >= expectedIntervalNanos; missed -= expectedIntervalNanos) {
+            record(missed, times);
+        }
+    }
+    
+    private void record(long nanos, long times) {
+        long value = Math.max(0, nanos);
+        counts.addAndGet(bucketOf(value), times);
+        total.add(times);
+        sumNanos.add(value * times);
+    }
+    
+    /**
+     * Values below {@code 2 * SUB_BUCKETS} have a bucket each; above that, the bucket is picked by the
+     * position of the highest bit and the {@code SUB_BUCKET_BITS} bits below it.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS << 1) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS << 1) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
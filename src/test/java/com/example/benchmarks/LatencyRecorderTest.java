@@ -0,0 +1,52 @@
+package com.example.benchmarks;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRecorderTest {
+    
+    @Test
+    public void testReportsPercentilesWithinBucketPrecision() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            recorder.record(micros * 1000);
+        }
+        
+        assertEquals(10_000, recorder.count());
+        assertWithinPrecision(5_000_000, recorder.percentile(50));
+        assertWithinPrecision(9_900_000, recorder.percentile(99));
+        assertWithinPrecision(9_990_000, recorder.percentile(99.9));
+        assertWithinPrecision(10_000_000, recorder.max());
+        assertEquals(0, new LatencyRecorder().percentile(99));
+    }
+    
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 127, 128, 129, 255, 256, 1_000_000_007L, Long.MAX_VALUE}) {
+            long highest = LatencyRecorder.highestValueIn(LatencyRecorder.bucketOf(value));
+            assertTrue(value + " reported as " + highest, highest >= value && highest - value <= value / 64 + 1);
+        }
+    }
+    
+    @Test
+    public void testCorrectsForRequestsHeldBackByStall() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 0; i < 99; i++) {
+            recorder.record(1_000_000);
+        }
+        recorder.record(100_000_000);
+        assertWithinPrecision(1_000_000, recorder.percentile(99));
+        
+        LatencyRecorder corrected = recorder.corrected(1_000_000);
+        assertEquals(199, corrected.count());
+        long p75 = corrected.percentile(75);
+        assertTrue("p75 was " + p75, p75 > 45_000_000 && p75 < 55_000_000);
+        assertWithinPrecision(100_000_000, corrected.max());
+    }
+    
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 64 + 1);
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.http.javadsl.ConnectHttp;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.stream.ActorMaterializer;
+import akka.stream.ActorMaterializerSettings;
+import akka.stream.Materializer;
+import com.example.AppServer;
+import com.example.account.service.AccountRegistryActor;
+import com.example.account.store.AccountView;
+import com.example.persistence.Journal;
+import com.example.persistence.RecoveredState;
+import com.example.transcaction.service.TransactionRegistryActor;
+import com.example.transcaction.store.TransactionHistory;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_SHARDS;
+import static com.example.account.utils.AccountConfigs.HTTP_DISPATCHER;
+import static com.example.account.utils.AccountConfigs.TRANSACTION_HISTORY_MAX_ENTRIES;
+
+/**
+ * Drives an {@link AppServer} started on localhost, or the one at {@code target=http://host:port}, with
+ * a mix of account creates, account lookups and transfers over a Zipfian distribution of accounts through
+ * the akka-http client, and reports throughput and latency percentiles per operation.
+ * <p>
+ * {@code mode=closed} runs {@code concurrency} clients that each send their next request once the
+ * previous one is answered. Such clients send less while the server stalls and so hide the stall from
+ * their own measurements (coordinated omission); their latencies are therefore also reported corrected,
+ * with every response recorded together with the requests a client would have sent every median response
+ * time while it was outstanding. {@code mode=open} sends {@code rate} requests per second on a fixed
+ * schedule over {@code concurrency} connections whether or not earlier ones were answered, and measures
+ * every request from the time it was due, so time spent queued behind slow requests is included.
+ * <p>
+ * Arguments are {@code key=value} pairs, durations in seconds; the defaults are
+ * {@code mode=closed concurrency=64 rate=1000 duration=30 warmup=5 accounts=10000 theta=0.99
+ * mix=get:70,transfer:25,create:5 server-log-level=WARNING}. Latencies only cover {@code 2xx} and
+ * {@code 3xx} responses; other statuses and requests that got no response are counted separately.
+ */
+public class LoadGenerator {
+    
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    
+    static {
+        DEFAULTS.put("mode", "closed");
+        DEFAULTS.put("concurrency", "64");
+        DEFAULTS.put("rate", "1000");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("accounts", "10000");
+        DEFAULTS.put("theta", "0.99");
+        DEFAULTS.put("mix", "get:70,transfer:25,create:5");
+        DEFAULTS.put("server-log-level", "WARNING");
+    }
+    
+    enum Operation {
+        GET, TRANSFER, CREATE
+    }
+    
+    /**
+     * What one run measured for one operation, or for all of them.
+     */
+    private static final class Stats {
+        private final LatencyRecorder serviceTime = new LatencyRecorder();
+        private final LatencyRecorder responseTime = new LatencyRecorder();
+        private final Map<Integer, LongAdder> errorStatuses = new ConcurrentHashMap<>();
+        private final LongAdder failed = new LongAdder();
+        
+        void record(int status, long sentAt, long dueAt, long answeredAt) {
+            if (status >= 400) {
+                errorStatuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+                return;
+            }
+            serviceTime.record(answeredAt - sentAt);
+            responseTime.record(answeredAt - dueAt);
+        }
+        
+        long errors() {
+            return errorStatuses.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+    }
+    
+    private final Http http;
+    private final Materializer materializer;
+    private final String target;
+    private final int accounts;
+    private final Zipfian ranks;
+    private final Operation[] mix;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong outstanding = new AtomicLong();
+    
+    private LoadGenerator(ActorSystem system, String target, int accounts, double theta, Operation[] mix) {
+        this.http = Http.get(system);
+        this.materializer = ActorMaterializer.create(system);
+        this.target = target;
+        this.accounts = accounts;
+        this.ranks = new Zipfian(accounts, theta);
+        this.mix = mix;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String mode = options.get("mode");
+        if (!mode.equals("closed") && !mode.equals("open")) {
+            throw new IllegalArgumentException("mode must be closed or open, was " + mode);
+        }
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        double rate = Double.parseDouble(options.get("rate"));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup")));
+        
+        ActorSystem serverSystem = null;
+        String target = options.get("target");
+        if (target == null) {
+            serverSystem = ActorSystem.create("LoadTarget", ConfigFactory
+                    .parseString("akka.loglevel = " + options.get("server-log-level"))
+                    .withFallback(ConfigFactory.load()));
+            target = startServer(serverSystem);
+        }
+        ActorSystem system = ActorSystem.create("LoadGenerator", clientConfig(concurrency));
+        try {
+            LoadGenerator generator = new LoadGenerator(system, target,
+                    Integer.parseInt(options.get("accounts").replace("_", "")),
+                    Double.parseDouble(options.get("theta")), parseMix(options.get("mix")));
+            generator.preload();
+            System.out.printf("%s target=%s%n", options, target);
+            
+            if (warmupNanos > 0) {
+                generator.run(mode, concurrency, rate, warmupNanos);
+            }
+            long start = System.nanoTime();
+            Map<Operation, Stats> stats = generator.run(mode, concurrency, rate, durationNanos);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(stats, mode.equals("closed"), seconds);
+        } finally {
+            system.terminate();
+            if (serverSystem != null) {
+                serverSystem.terminate();
+            }
+        }
+    }
+    
+    /**
+     * Statistics per operation, with the total under {@code null}.
+     */
+    private Map<Operation, Stats> run(String mode, int concurrency, double rate, long durationNanos) {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        Stats total = new Stats();
+        long end = System.nanoTime() + durationNanos;
+        if (mode.equals("closed")) {
+            CompletableFuture<?>[] clients = new CompletableFuture<?>[concurrency];
+            for (int client = 0; client < concurrency; client++) {
+                CompletableFuture<Void> stopped = new CompletableFuture<>();
+                sendNext(stats, total, end, stopped);
+                clients[client] = stopped;
+            }
+            CompletableFuture.allOf(clients).join();
+        } else {
+            double periodNanos = 1e9 / rate;
+            long start = System.nanoTime();
+            for (long i = 0; ; i++) {
+                long dueAt = start + (long) (i * periodNanos);
+                if (dueAt - end >= 0) {
+                    break;
+                }
+                long wait = dueAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = nextOperation();
+                send(operation, dueAt, stats.get(operation), total);
+            }
+        }
+        awaitOutstanding();
+        Map<Operation, Stats> result = new LinkedHashMap<>(stats);
+        result.put(null, total);
+        return result;
+    }
+    
+    /**
+     * One closed-loop client: sends a request and, once it is answered, the next, until {@code end}.
+     * Completes {@code stopped} once its last request is answered.
+     */
+    private void sendNext(Map<Operation, Stats> stats, Stats total, long end, CompletableFuture<Void> stopped) {
+        long now = System.nanoTime();
+        if (now - end >= 0) {
+            stopped.complete(null);
+            return;
+        }
+        Operation operation = nextOperation();
+        send(operation, now, stats.get(operation), total).whenCompleteAsync(
+                (done, failure) -> sendNext(stats, total, end, stopped), materializer.executionContext());
+    }
+    
+    private CompletionStage<Void> send(Operation operation, long dueAt, Stats stats, Stats total) {
+        outstanding.incrementAndGet();
+        long sentAt = System.nanoTime();
+        return http.singleRequest(request(operation))
+                .thenCompose(response -> response.discardEntityBytes(materializer).completionStage()
+                        .thenApply(done -> response.status().intValue()))
+                .handle((status, failure) -> {
+                    long answeredAt = System.nanoTime();
+                    if (failure != null) {
+                        stats.failed.increment();
+                        total.failed.increment();
+                    } else {
+                        stats.record(status, sentAt, dueAt, answeredAt);
+                        total.record(status, sentAt, dueAt, answeredAt);
+                    }
+                    outstanding.decrementAndGet();
+                    return null;
+                });
+    }
+    
+    private void awaitOutstanding() {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (outstanding.get() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+    
+    private Operation nextOperation() {
+        return mix[ThreadLocalRandom.current().nextInt(mix.length)];
+    }
+    
+    private HttpRequest request(Operation operation) {
+        switch (operation) {
+            case GET:
+                return HttpRequest.GET(target + "/v1/accounts/" + accountNumber(ranks.next()));
+            case TRANSFER:
+                long source = ranks.next();
+                long destination = ranks.next();
+                if (destination == source) {
+                    destination = (source + 1) % accounts;
+                }
+                return HttpRequest.POST(target + "/v1/transactions").withEntity(ContentTypes.APPLICATION_JSON,
+                        "{\"transactionId\":\"LG-" + runId + "-" + ids.incrementAndGet()
+                                + "\",\"sourceAccountNumber\":\"" + accountNumber(source)
+                                + "\",\"targetAccountNumber\":\"" + accountNumber(destination)
+                                + "\",\"amount\":0.01}");
+            default:
+                return HttpRequest.POST(target + "/v1/accounts").withEntity(ContentTypes.APPLICATION_JSON,
+                        "{\"accountNumber\":\"LG-" + runId + "-" + ids.incrementAndGet()
+                                + "\",\"name\":\"LOAD\",\"balance\":100}");
+        }
+    }
+    
+    /**
+     * Imports the accounts the Zipfian ranks map to, with balances no run can exhaust. Accounts left by an
+     * earlier run against the same server are reported back as rejected rows and kept.
+     */
+    private void preload() {
+        StringBuilder csv = new StringBuilder(accounts * 32);
+        for (int rank = 0; rank < accounts; rank++) {
+            csv.append(accountNumber(rank)).append(",LOAD,1000000000\n");
+        }
+        HttpResponse response = http.singleRequest(HttpRequest.POST(target + "/v1/accounts/import")
+                .withEntity(ContentTypes.TEXT_CSV_UTF8, csv.toString()))
+                .toCompletableFuture().join();
+        response.discardEntityBytes(materializer).completionStage().toCompletableFuture().join();
+        if (response.status().isFailure()) {
+            throw new IllegalStateException("Importing accounts failed with " + response.status());
+        }
+    }
+    
+    private static String accountNumber(long rank) {
+        return "LG" + rank;
+    }
+    
+    private static void report(Map<Operation, Stats> stats, boolean closedLoop, double seconds) {
+        System.out.printf("%-9s %-10s %10s %10s %9s %9s %9s %9s %9s %7s%n", "operation", "latency", "ok",
+                "ok/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "failed");
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            String operation = entry.getKey() == null ? "total" : entry.getKey().name().toLowerCase();
+            Stats operationStats = entry.getValue();
+            LatencyRecorder corrected = closedLoop
+                    ? operationStats.serviceTime.corrected(operationStats.serviceTime.percentile(50))
+                    : operationStats.responseTime;
+            report(operation, "service", operationStats.serviceTime, operationStats, seconds);
+            report(operation, "corrected", corrected, operationStats, seconds);
+        }
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            if (entry.getKey() != null && !entry.getValue().errorStatuses.isEmpty()) {
+                Map<Integer, Long> statuses = new TreeMap<>();
+                entry.getValue().errorStatuses.forEach((status, count) -> statuses.put(status, count.sum()));
+                System.out.printf("%s error statuses: %s%n", entry.getKey().name().toLowerCase(), statuses);
+            }
+        }
+    }
+    
+    private static void report(String operation, String latency, LatencyRecorder recorder, Stats stats,
+                               double seconds) {
+        long ok = stats.serviceTime.count();
+        System.out.printf("%-9s %-10s %10d %10.0f %9.3f %9.3f %9.3f %9.3f %9d %7d%n", operation, latency, ok,
+                ok / seconds, millis(recorder.percentile(50)), millis(recorder.percentile(99)),
+                millis(recorder.percentile(99.9)), millis(recorder.max()), stats.errors(), stats.failed.sum());
+    }
+    
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+    
+    /**
+     * Binds the routes of a fresh, in-memory {@link AppServer} to a free port on localhost.
+     */
+    private static String startServer(ActorSystem system) {
+        Materializer materializer = ActorMaterializer.create(
+                ActorMaterializerSettings.create(system).withDispatcher(HTTP_DISPATCHER), system);
+        RecoveredState state = RecoveredState.empty(ACCOUNT_SHARDS);
+        ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(Journal.IN_MEMORY,
+                state.getAccountTables()), "accountRegistryActor");
+        TransactionHistory transactionHistory = new TransactionHistory(TRANSACTION_HISTORY_MAX_ENTRIES);
+        ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountRegistryActor,
+                transactionHistory), "transactionRegistryActor");
+        AppServer server = new AppServer(system, accountRegistryActor, new AccountView(state.getAccountTables()),
+                transactionRegistryActor, transactionHistory);
+        ServerBinding binding = Http.get(system)
+                .bindAndHandle(server.createRoute().flow(system, materializer),
+                        ConnectHttp.toHost("127.0.0.1", 0), materializer)
+                .toCompletableFuture().join();
+        return "http://127.0.0.1:" + binding.localAddress().getPort();
+    }
+    
+    /**
+     * One connection per closed-loop client; open-loop requests beyond the connections queue in the pool,
+     * which is sized so that they are only rejected once the server is hopelessly behind.
+     */
+    private static Config clientConfig(int concurrency) {
+        return ConfigFactory.parseString("akka.loglevel = WARNING\n"
+                + "akka.http.host-connection-pool.max-connections = " + concurrency + "\n"
+                + "akka.http.host-connection-pool.max-open-requests = 65536")
+                .withFallback(ConfigFactory.load());
+    }
+    
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Arguments are key=value pairs, was " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+    
+    /**
+     * {@code get:70,transfer:25,create:5} as 100 operations to pick from at random.
+     */
+    private static Operation[] parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.split(":");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        Operation[] operations = new Operation[weights.values().stream().mapToInt(Integer::intValue).sum()];
+        int next = 0;
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            for (int i = 0; i < weight.getValue(); i++) {
+                operations[next++] = weight.getKey();
+            }
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.benchmarks;
+
+import com.example.account.messages.AccountRegistryMessages;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.serialization.MessageSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the account registry messages with {@link MessageSerializer} and with Java
+ * serialization, which Akka falls back to for unbound messages. Run {@link #main} for the encoded sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageSerializationBenchmark {
+    
+    @Param({"createAccount", "getAccount", "credit", "debit", "transfer", "success", "failure"})
+    public String message;
+    
+    @Param({"binary", "java"})
+    public String format;
+    
+    private final MessageSerializer serializer = new MessageSerializer();
+    
+    private Object value;
+    private String manifest;
+    private byte[] encoded;
+    
+    @Setup
+    public void setUp() throws IOException {
+        value = message(message);
+        manifest = serializer.manifest(value);
+        encoded = encode();
+    }
+    
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return "binary".equals(format) ? serializer.toBinary(value) : javaSerialized(value);
+    }
+    
+    @Benchmark
+    public Object decode() throws IOException, ClassNotFoundException {
+        if ("binary".equals(format)) {
+            return serializer.fromBinary(encoded, manifest);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(encoded))) {
+            return input.readObject();
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        MessageSerializer serializer = new MessageSerializer();
+        System.out.printf("%-14s %8s %8s%n", "message", "binary", "java");
+        for (String name : MessageSerializationBenchmark.class.getField("message").getAnnotation(Param.class).value()) {
+            Object message = message(name);
+            System.out.printf("%-14s %6d B %6d B%n", name, serializer.toBinary(message).length,
+                    javaSerialized(message).length);
+        }
+    }
+    
+    private static Object message(String name) {
+        switch (name) {
+            case "createAccount":
+                return new AccountRegistryMessages.CreateAccount(new Account("123451", "Pallavi Singh", 1234.56));
+            case "getAccount":
+                return new AccountRegistryMessages.GetAccount("123451");
+            case "credit":
+                return new AccountRegistryMessages.Credit("123451", 1250L);
+            case "debit":
+                return new AccountRegistryMessages.Debit("123451", 1250L);
+            case "transfer":
+                return new AccountRegistryMessages.Transfer("8f14e45f-ceea-467f-a8d4-c2b1e5a0b7d2", "123451",
+                        "123452", 1250L);
+            case "success":
+                return AccountRegistryMessages.SuccessResponse.INSTANCE;
+            case "failure":
+                return AccountRegistryMessages.FailureResponse.of(ResultCode.INSUFFICIENT_FUNDS);
+            default:
+                throw new IllegalArgumentException("Unknown message " + name);
+        }
+    }
+    
+    private static byte[] javaSerialized(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+}
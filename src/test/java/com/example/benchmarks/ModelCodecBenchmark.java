@@ -0,0 +1,116 @@
+package com.example.benchmarks;
+
+import akka.util.ByteString;
+import com.example.account.models.Account;
+import com.example.serialization.ModelCodec;
+import com.example.serialization.ModelCodec.Format;
+import com.example.transcaction.models.Transaction;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing request and response bodies with {@link ModelCodec}, in JSON and CBOR, and the way
+ * {@code Jackson.unmarshaller} and {@code Jackson.marshaller} do it: databinding through a {@code String}
+ * with an alphabetically sorting mapper. Run {@link #main} for the bytes on the wire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelCodecBenchmark {
+    
+    private static final ObjectMapper OBJECT_MAPPER =
+            new ObjectMapper().enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    
+    @Param({"account", "transaction"})
+    public String model;
+    
+    @Param({"databind", "json", "cbor"})
+    public String codec;
+    
+    private Object value;
+    private ByteString encoded;
+    
+    @Setup
+    public void setUp() throws IOException {
+        value = model(model);
+        encoded = encode();
+    }
+    
+    @Benchmark
+    public ByteString encode() throws IOException {
+        return encode(value, codec);
+    }
+    
+    @Benchmark
+    public Object decode() throws IOException {
+        Class<?> type = value.getClass();
+        switch (codec) {
+            case "databind":
+                return OBJECT_MAPPER.readValue(encoded.utf8String(), type);
+            case "json":
+                return type == Account.class ? ModelCodec.readAccount(encoded, Format.JSON)
+                        : ModelCodec.readTransaction(encoded, Format.JSON);
+            default:
+                return type == Account.class ? ModelCodec.readAccount(encoded, Format.CBOR)
+                        : ModelCodec.readTransaction(encoded, Format.CBOR);
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String[] codecs = ModelCodecBenchmark.class.getField("codec").getAnnotation(Param.class).value();
+        System.out.printf("%-12s", "model");
+        for (String codec : codecs) {
+            System.out.printf(" %10s", codec);
+        }
+        System.out.println();
+        for (String name : ModelCodecBenchmark.class.getField("model").getAnnotation(Param.class).value()) {
+            System.out.printf("%-12s", name);
+            for (String codec : codecs) {
+                System.out.printf(" %8d B", encode(model(name), codec).size());
+            }
+            System.out.println();
+        }
+    }
+    
+    private static Object model(String name) {
+        switch (name) {
+            case "account":
+                return new Account("123451", "Pallavi Singh", 1234.56);
+            case "transaction":
+                return new Transaction("8f14e45f-ceea-467f-a8d4-c2b1e5a0b7d2", "123451", "123452", 12.5,
+                        1_700_000_000_000L);
+            default:
+                throw new IllegalArgumentException("Unknown model " + name);
+        }
+    }
+    
+    private static ByteString encode(Object value, String codec) throws IOException {
+        switch (codec) {
+            case "databind":
+                return ByteString.fromString(OBJECT_MAPPER.writeValueAsString(value));
+            case "json":
+                return value instanceof Account ? ModelCodec.write((Account) value, Format.JSON)
+                        : ModelCodec.write((Transaction) value, Format.JSON);
+            default:
+                return value instanceof Account ? ModelCodec.write((Account) value, Format.CBOR)
+                        : ModelCodec.write((Transaction) value, Format.CBOR);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.example.persistence.FileJournal;
+import com.example.persistence.JournalEvent;
+import com.example.persistence.RecoveredState;
+import com.example.persistence.Snapshotter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup recovery time with and without a snapshot. Journals the creation of {@code accounts}
+ * accounts (default 10M) plus {@code transfers} transfers (default 1M), snapshots, journals another
+ * {@code transfers} transfers and then times a full journal replay against snapshot plus tail.
+ * Give the JVM enough heap for two copies of the state, e.g. {@code -Xmx4g} for 10M accounts.
+ */
+public class RecoveryTime {
+    
+    private static final int SHARDS = 8;
+    private static final String NAME = "RECOVERY";
+    
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : 10_000_000;
+        int transfers = args.length > 1 ? Integer.parseInt(args[1].replace("_", "")) : 1_000_000;
+        ActorSystem system = ActorSystem.create("RecoveryTime");
+        Path directory = Files.createTempDirectory("recovery");
+        try {
+            FileJournal journal = FileJournal.open(system, RecoveredState.journalFile(directory), 0, 4096);
+            for (int i = 0; i < accounts; i++) {
+                journal.append(JournalEvent.accountCreated(String.valueOf(i), NAME, 1_000_000L));
+            }
+            appendTransfers(journal, accounts, transfers, 0);
+            awaitDurable(system, journal);
+            Snapshotter snapshotter = Snapshotter.start(system, directory, journal, Duration.ofDays(1));
+            long snapshotStart = System.nanoTime();
+            snapshotter.snapshot();
+            long snapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - snapshotStart);
+            snapshotter.close();
+            appendTransfers(journal, accounts, transfers, transfers);
+            journal.close();
+            
+            System.out.printf("accounts=%d journal=%d MB snapshot written in %d ms%n", accounts,
+                    Files.size(RecoveredState.journalFile(directory)) >> 20, snapshotMillis);
+            long withSnapshot = timeRecovery(system, directory);
+            deleteSnapshots(directory);
+            long fullReplay = timeRecovery(system, directory);
+            System.out.printf("%-22s %8d ms%n%-22s %8d ms%n", "full journal replay", fullReplay,
+                    "snapshot + tail", withSnapshot);
+        } finally {
+            deleteDirectory(directory);
+            TestKit.shutdownActorSystem(system);
+        }
+    }
+    
+    private static void appendTransfers(FileJournal journal, int accounts, int transfers, int firstId) {
+        for (int i = 0; i < transfers; i++) {
+            int source = (int) ((i * 2654435761L) % accounts);
+            journal.append(JournalEvent.transferred("T" + (firstId + i), String.valueOf(source),
+                    String.valueOf((source + 1) % accounts), 100));
+        }
+    }
+    
+    private static long timeRecovery(ActorSystem system, Path directory) throws IOException {
+        System.gc();
+        long start = System.nanoTime();
+        RecoveredState state = RecoveredState.recover(directory, SHARDS, system.log());
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.printf("recovered %d accounts, snapshot at %d, %d journal events replayed%n",
+                state.getAccountCount(), state.getSnapshotPosition(), state.getReplayedEvents());
+        return millis;
+    }
+    
+    /**
+     * Replies are only sent once their batch is synced and batches are written in order, so the reply
+     * to a last no-op credit means everything appended before it is durable.
+     */
+    private static void awaitDurable(ActorSystem system, FileJournal journal) {
+        TestKit probe = new TestKit(system);
+        journal.append(JournalEvent.credited("0", 0), probe.getRef(), "durable", "failed", ActorRef.noSender());
+        probe.expectMsg(Duration.ofMinutes(10), "durable");
+    }
+    
+    private static void deleteSnapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith("snapshot-")) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+    
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.MediaTypes;
+import akka.http.javadsl.model.headers.ETag;
+import akka.http.javadsl.model.headers.EntityTagRange;
+import akka.http.javadsl.model.headers.IfNoneMatch;
+import akka.http.javadsl.testkit.JUnitRouteTest;
+import akka.http.javadsl.testkit.TestRoute;
+import com.example.AppServer;
+import com.example.account.service.AccountRegistryActor;
+import com.example.account.store.AccountTable;
+import com.example.account.store.AccountView;
+import com.example.persistence.Journal;
+import com.example.persistence.RecoveredState;
+import com.example.transcaction.service.TransactionRegistryActor;
+import com.example.transcaction.store.TransactionHistory;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_SHARDS;
+
+/**
+ * Full handling of a request by the routes of {@link AppServer} through the akka-http testkit:
+ * unmarshalling, directives, the actors behind them and marshalling, without the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteBenchmark extends JUnitRouteTest {
+    
+    private static final String TRANSFER = "{\"transactionId\":\"%d\",\"sourceAccountNumber\":\"1\","
+            + "\"targetAccountNumber\":\"2\",\"amount\":0.01}";
+    
+    private final AtomicLong transactionIds = new AtomicLong();
+    private TestRoute route;
+    private IfNoneMatch unchanged;
+    
+    @Override
+    public Config additionalConfig() {
+        return ConfigFactory.parseString("akka.loglevel = WARNING");
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        systemResource().before();
+        ActorSystem system = system();
+        AccountTable[] accountTables = RecoveredState.empty(ACCOUNT_SHARDS).getAccountTables();
+        ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(Journal.IN_MEMORY, accountTables));
+        TransactionHistory transactionHistory = new TransactionHistory(100_000);
+        ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountRegistryActor,
+                transactionHistory));
+        route = testRoute(new AppServer(system, accountRegistryActor, new AccountView(accountTables),
+                transactionRegistryActor, transactionHistory).createRoute());
+        
+        for (String account : new String[]{"1", "2", "3"}) {
+            route.run(HttpRequest.POST("/v1/accounts").withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                    "{\"accountNumber\":\"" + account + "\",\"name\":\"BENCH\",\"balance\":1000000000}"));
+        }
+        ETag etag = route.run(HttpRequest.GET("/v1/accounts/3")).header(ETag.class);
+        unchanged = IfNoneMatch.create(EntityTagRange.create(etag.etag()));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        systemResource().after();
+    }
+    
+    @Benchmark
+    public String postTransaction() {
+        return route.run(HttpRequest.POST("/v1/transactions").withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                String.format(TRANSFER, transactionIds.incrementAndGet()))).entityString();
+    }
+    
+    @Benchmark
+    public String getAccount() {
+        return route.run(HttpRequest.GET("/v1/accounts/1")).entityString();
+    }
+    
+    /**
+     * Polling an account that has not changed since its {@code ETag} was handed out.
+     */
+    @Benchmark
+    public String getAccountNotModified() {
+        return route.run(HttpRequest.GET("/v1/accounts/3").addHeader(unchanged)).entityString();
+    }
+    
+}
@@ -0,0 +1,100 @@
+package com.example.benchmarks;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.Patterns;
+import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.models.Account;
+import com.example.account.service.AccountRegistryActor;
+import com.example.transcaction.messages.TransactionRegistryMessages.Transfer;
+import com.example.transcaction.models.Transaction;
+import com.example.transcaction.service.TransactionRegistryActor;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer throughput through {@link TransactionRegistryActor} as a function of the number of
+ * account shards behind {@link AccountRegistryActor}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class TransferThroughputBenchmark {
+    
+    private static final int ACCOUNTS = 1024;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+    
+    private ActorSystem system;
+    private ActorRef transactionRegistryActor;
+    private final AtomicLong transactionIds = new AtomicLong();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create("TransferThroughputBenchmark",
+                ConfigFactory.parseString("akka.loglevel = WARNING").withFallback(ConfigFactory.load()));
+        ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(shards));
+        for (int account = 0; account < ACCOUNTS; account++) {
+            Patterns.ask(accountRegistryActor,
+                    new CreateAccount(new Account(String.valueOf(account), "BENCH", 1_000_000_000.0)), TIMEOUT)
+                    .toCompletableFuture().join();
+        }
+        transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountRegistryActor));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.terminate();
+    }
+    
+    @Benchmark
+    public Object transfer() {
+        return randomTransfer();
+    }
+    
+    /**
+     * Single-client latency distribution of one transfer, including its p99.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(1)
+    public Object transferLatency() {
+        return randomTransfer();
+    }
+    
+    private Object randomTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(ACCOUNTS);
+        int target = (source + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        Transaction transaction = new Transaction(String.valueOf(transactionIds.incrementAndGet()),
+                String.valueOf(source), String.valueOf(target), 1.0);
+        return Patterns.ask(transactionRegistryActor, new Transfer(transaction), TIMEOUT)
+                .toCompletableFuture().join();
+    }
+    
+}
@@ -0,0 +1,48 @@
+package com.example.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipfian ranks in {@code [0, n)}: rank 0 is the most popular and rank {@code k} is drawn with a
+ * probability proportional to {@code 1 / (k + 1)^theta}. Uses the rejection-free method of Gray et al.,
+ * "Quickly Generating Billion-Record Synthetic Databases", as YCSB does; {@code theta = 0} is uniform.
+ */
+final class Zipfian {
+    
+    private final long n;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+    
+    Zipfian(long n, double theta) {
+        if (n < 2 || theta < 0 || theta >= 1) {
+            throw new IllegalArgumentException("Need n >= 2 and 0 <= theta < 1, was n=" + n + " theta=" + theta);
+        }
+        this.n = n;
+        this.theta = theta;
+        this.zetaN = zeta(n, theta);
+        this.alpha = 1 / (1 - theta);
+        this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+    
+    long next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+    }
+    
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+    
+    @Test
+    public void testHistogramIsRenderedWithCumulativeBuckets() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram histogram = registry.histogram("request_duration_seconds", "Request latency.", "route", "get");
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(40));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(700));
+        histogram.record(TimeUnit.SECONDS.toNanos(30));
+        
+        String text = registry.scrape();
+        
+        assertTrue(text.startsWith("# HELP request_duration_seconds Request latency.\n"
+                + "# TYPE request_duration_seconds histogram\n"
+                + "request_duration_seconds_bucket{route=\"get\",le=\"0.00005\"} 1\n"));
+        assertTrue(text.contains("request_duration_seconds_bucket{route=\"get\",le=\"0.0005\"} 1\n"
+                + "request_duration_seconds_bucket{route=\"get\",le=\"0.001\"} 2\n"));
+        assertTrue(text.contains("request_duration_seconds_bucket{route=\"get\",le=\"10\"} 2\n"
+                + "request_duration_seconds_bucket{route=\"get\",le=\"+Inf\"} 3\n"
+                + "request_duration_seconds_sum{route=\"get\"} 30.00074\n"
+                + "request_duration_seconds_count{route=\"get\"} 3\n"));
+        assertEquals(3, histogram.count());
+    }
+    
+    @Test
+    public void testCountersAndGaugesAreRenderedByNameAndLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("requests_total", "Requests.", "path", "a\"b");
+        counter.add(2);
+        registry.counter("requests_total", "Requests.", "path", "a\"b").increment();
+        registry.gauge("in_flight", "In flight.", () -> 7);
+        registry.counter("evicted_total", "Evicted.", () -> 4L);
+        registry.counter("evicted_total", "Evicted.", () -> 5L);
+        
+        assertEquals("# HELP evicted_total Evicted.\n"
+                + "# TYPE evicted_total counter\n"
+                + "evicted_total 5\n"
+                + "# HELP in_flight In flight.\n"
+                + "# TYPE in_flight gauge\n"
+                + "in_flight 7.0\n"
+                + "# HELP requests_total Requests.\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total{path=\"a\\\"b\"} 3\n", registry.scrape());
+        assertSame(counter, registry.counter("requests_total", "Requests.", "path", "a\"b"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNameRegisteredWithOtherType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("latency", "Latency.");
+        registry.histogram("latency", "Latency.");
+    }
+    
+    @Test
+    public void testMessageMetricsRecordKnownTypesOnly() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MessageMetrics metrics = new MessageMetrics(registry, "shard", String.class);
+        
+        metrics.record("message", System.nanoTime(), false);
+        metrics.record("message", System.nanoTime(), true);
+        metrics.record(42, System.nanoTime(), true);
+        
+        String text = registry.scrape();
+        assertTrue(text.contains("actor_message_duration_seconds_count{actor=\"shard\",message=\"String\"} 2\n"));
+        assertTrue(text.contains("actor_message_failures_total{actor=\"shard\",message=\"String\"} 1\n"));
+        assertTrue(!text.contains("Integer"));
+    }
+}
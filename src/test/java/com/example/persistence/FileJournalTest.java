@@ -0,0 +1,203 @@
+package com.example.persistence;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.example.account.messages.AccountRegistryMessages.CreateAccount;
+import com.example.account.messages.AccountRegistryMessages.Credit;
+import com.example.account.messages.AccountRegistryMessages.FailureResponse;
+import com.example.account.messages.AccountRegistryMessages.SuccessResponse;
+import com.example.account.messages.AccountRegistryMessages.Transfer;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.account.service.AccountRegistryActor;
+import com.example.account.store.AccountTable;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileJournalTest {
+    
+    private static ActorSystem system;
+    
+    private static final int SHARDS = 2;
+    private static final String SOURCE_ACCOUNT_NUMBER = "1";
+    private static final String TARGET_ACCOUNT_NUMBER = "2";
+    private static final String NAME = "TEST";
+    
+    private Path journalFile;
+    
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create();
+    }
+    
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+    }
+    
+    @Before
+    public void createJournalFile() throws IOException {
+        journalFile = RecoveredState.journalFile(Files.createTempDirectory("journal"));
+    }
+    
+    @After
+    public void deleteJournalFile() throws IOException {
+        try (Stream<Path> files = Files.list(journalFile.getParent())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalFile.getParent());
+    }
+    
+    @Test
+    public void testRecoveredStateMatchesAcknowledgedMutations() throws IOException {
+        FileJournal journal = FileJournal.open(system, journalFile, 0, 16);
+        new TestKit(system) {{
+            ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(journal,
+                    RecoveredState.empty(SHARDS).getAccountTables()));
+            
+            accountRegistryActor.tell(new CreateAccount(new Account(SOURCE_ACCOUNT_NUMBER, NAME, 10.0)), getRef());
+            accountRegistryActor.tell(new CreateAccount(new Account(TARGET_ACCOUNT_NUMBER, NAME, 20.0)), getRef());
+            accountRegistryActor.tell(new Credit(SOURCE_ACCOUNT_NUMBER, 5.0), getRef());
+            accountRegistryActor.tell(new Transfer("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 2.5), getRef());
+            for (int i = 0; i < 4; i++) {
+                expectMsgClass(SuccessResponse.class);
+            }
+        }};
+        journal.close();
+        
+        RecoveredState state = RecoveredState.recover(journalFile.getParent(), SHARDS, system.log());
+        
+        assertEquals(5, state.getReplayedEvents());
+        assertEquals(Files.size(journalFile), state.getJournalLength());
+        assertEquals(1250, balanceOf(state, SOURCE_ACCOUNT_NUMBER));
+        assertEquals(2250, balanceOf(state, TARGET_ACCOUNT_NUMBER));
+        assertTrue(state.getTransactionsById().containsKey("T1"));
+    }
+    
+    @Test
+    public void testReplayStopsAtTornTail() throws IOException {
+        FileJournal journal = FileJournal.open(system, journalFile, 0, 16);
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 500));
+        journal.close();
+        long validLength = Files.size(journalFile);
+        Files.write(journalFile, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+        
+        List<JournalEvent> events = new ArrayList<>();
+        
+        assertEquals(validLength, FileJournal.replay(journalFile, events::add));
+        assertEquals(2, events.size());
+        assertEquals(JournalEvent.Type.CREDITED, events.get(1).getType());
+        assertEquals(500, events.get(1).getAmount());
+    }
+    
+    @Test
+    public void testAppendAfterTornTailOverwritesIt() throws IOException {
+        FileJournal journal = FileJournal.open(system, journalFile, 0, 16);
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.close();
+        Files.write(journalFile, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+        
+        RecoveredState state = RecoveredState.recover(journalFile.getParent(), SHARDS, system.log());
+        journal = FileJournal.open(system, journalFile, state.getJournalLength(), 16);
+        journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 500));
+        journal.close();
+        
+        assertEquals(1500, balanceOf(RecoveredState.recover(journalFile.getParent(), SHARDS, system.log()), SOURCE_ACCOUNT_NUMBER));
+    }
+    
+    @Test
+    public void testDanglingReservationIsReleasedOnRecovery() throws IOException {
+        FileJournal journal = FileJournal.open(system, journalFile, 0, 16);
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.accountCreated(TARGET_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.transferReserved("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 300));
+        journal.close();
+        
+        RecoveredState state = RecoveredState.recover(journalFile.getParent(), SHARDS, system.log());
+        
+        assertEquals(1000, balanceOf(state, SOURCE_ACCOUNT_NUMBER));
+        assertEquals(1000, balanceOf(state, TARGET_ACCOUNT_NUMBER));
+        assertTrue(state.getTransactionsById().isEmpty());
+    }
+    
+    @Test
+    public void testFailedJournalAnswersFailedAndStopsMutations() throws IOException {
+        FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.close();
+        FileJournal journal = new FileJournal(system, channel, 0, 16);
+        AccountTable[] accountTables = RecoveredState.empty(SHARDS).getAccountTables();
+        new TestKit(system) {{
+            ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(journal, accountTables));
+            
+            accountRegistryActor.tell(new CreateAccount(new Account(SOURCE_ACCOUNT_NUMBER, NAME, 10.0)), getRef());
+            assertEquals(ResultCode.FAILED, expectMsgClass(FailureResponse.class).getCode());
+            assertTrue(journal.isFailed());
+            
+            accountRegistryActor.tell(new Credit(SOURCE_ACCOUNT_NUMBER, 5.0), getRef());
+            assertEquals(ResultCode.FAILED, expectMsgClass(FailureResponse.class).getCode());
+            assertEquals(1000, balanceOf(accountTables, SOURCE_ACCOUNT_NUMBER));
+        }};
+        
+        assertTrue(journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 500), SuccessResponse.INSTANCE)
+                .toCompletableFuture().isCompletedExceptionally());
+        journal.close();
+    }
+    
+    @Test
+    public void testWriterFailingOutsideIoAnswersEveryPendingAppendAsFailed() throws Exception {
+        FileJournal journal = FileJournal.open(system, journalFile, 0, 16);
+        new TestKit(system) {{
+            journal.append(unencodableEvent(), getRef(), SuccessResponse.INSTANCE,
+                    FailureResponse.of(ResultCode.FAILED), ActorRef.noSender());
+            journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 500), getRef(), SuccessResponse.INSTANCE,
+                    FailureResponse.of(ResultCode.FAILED), ActorRef.noSender());
+            assertEquals(ResultCode.FAILED, expectMsgClass(FailureResponse.class).getCode());
+            assertEquals(ResultCode.FAILED, expectMsgClass(FailureResponse.class).getCode());
+            assertTrue(journal.isFailed());
+        }};
+        
+        assertTrue(journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 500), SuccessResponse.INSTANCE)
+                .toCompletableFuture().isCompletedExceptionally());
+        journal.close();
+    }
+    
+    /**
+     * An event without a type, so writing it throws a {@link NullPointerException} rather than an
+     * {@link IOException}.
+     */
+    private static JournalEvent unencodableEvent() throws ReflectiveOperationException {
+        Constructor<JournalEvent> constructor = JournalEvent.class.getDeclaredConstructor(JournalEvent.Type.class,
+                String.class, String.class, String.class, String.class, long.class, long.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(null, null, SOURCE_ACCOUNT_NUMBER, null, null, 500L, 0L);
+    }
+    
+    private static long balanceOf(RecoveredState state, String accountNumber) {
+        return balanceOf(state.getAccountTables(), accountNumber);
+    }
+    
+    private static long balanceOf(AccountTable[] accountTables, String accountNumber) {
+        AccountTable accounts = accountTables[AccountRegistryActor.shardOf(accountNumber, SHARDS)];
+        return accounts.balanceAt(accounts.indexOf(accountNumber));
+    }
+}
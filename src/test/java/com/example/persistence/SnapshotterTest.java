@@ -0,0 +1,183 @@
+package com.example.persistence;
+
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.example.account.service.AccountRegistryActor;
+import com.example.account.store.AccountTable;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotterTest {
+    
+    private static ActorSystem system;
+    
+    private static final int SHARDS = 4;
+    private static final String SOURCE_ACCOUNT_NUMBER = "1";
+    private static final String TARGET_ACCOUNT_NUMBER = "2";
+    private static final String NAME = "TEST";
+    
+    private Path directory;
+    private FileJournal journal;
+    
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create();
+    }
+    
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+    }
+    
+    @Before
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        journal = FileJournal.open(system, RecoveredState.journalFile(directory), 0, 16);
+    }
+    
+    @After
+    public void deleteDirectory() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+    
+    @Test
+    public void testSnapshotPlusTailMatchesFullReplay() throws IOException {
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.accountCreated(TARGET_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.transferred("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 100));
+        awaitDurable(3);
+        snapshot();
+        journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 50));
+        journal.append(JournalEvent.transferReserved("T2", TARGET_ACCOUNT_NUMBER, SOURCE_ACCOUNT_NUMBER, 200));
+        journal.append(JournalEvent.transferCommitted("T2", TARGET_ACCOUNT_NUMBER, SOURCE_ACCOUNT_NUMBER, 200));
+        journal.close();
+        
+        RecoveredState recovered = RecoveredState.recover(directory, SHARDS, system.log());
+        
+        assertTrue(recovered.getSnapshotPosition() > 0);
+        assertEquals(3, recovered.getReplayedEvents());
+        assertEquals(1150, balanceOf(recovered, SOURCE_ACCOUNT_NUMBER));
+        assertEquals(900, balanceOf(recovered, TARGET_ACCOUNT_NUMBER));
+        assertEquals(2, recovered.getTransactionsById().size());
+        assertNotNull(recovered.getTransactionsById().get("T1").getCommittedAt());
+        assertNotNull(recovered.getTransactionsById().get("T2").getCommittedAt());
+        assertEquals(Files.size(RecoveredState.journalFile(directory)), recovered.getJournalLength());
+    }
+    
+    @Test
+    public void testReservationInFlightAtSnapshotIsCommittedFromTail() throws IOException {
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.accountCreated(TARGET_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.transferReserved("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 300));
+        awaitDurable(3);
+        snapshot();
+        journal.append(JournalEvent.transferCommitted("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 300));
+        journal.close();
+        
+        RecoveredState recovered = RecoveredState.recover(directory, SHARDS, system.log());
+        
+        assertEquals(700, balanceOf(recovered, SOURCE_ACCOUNT_NUMBER));
+        assertEquals(1300, balanceOf(recovered, TARGET_ACCOUNT_NUMBER));
+        assertTrue(recovered.getTransactionsById().containsKey("T1"));
+    }
+    
+    @Test
+    public void testShardRemembersCommitsAcrossSnapshotsUntilForgotten() throws IOException {
+        journal.append(JournalEvent.accountCreated(TARGET_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.transferCommitted("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 100));
+        journal.append(JournalEvent.transferCommitted("T2", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 200));
+        awaitDurable(3);
+        snapshot();
+        journal.append(JournalEvent.transferForgotten("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 100));
+        journal.close();
+        
+        RecoveredState recovered = RecoveredState.recoverShard(directory, system.log());
+        
+        assertTrue(recovered.getSnapshotPosition() > 0);
+        assertEquals(1, recovered.getUnsettledCommits().size());
+        JournalEvent unsettled = recovered.getUnsettledCommits().iterator().next();
+        assertEquals("T2", unsettled.getTransactionId());
+        assertEquals(200, unsettled.getAmount());
+        AccountTable accounts = recovered.getAccountTables()[0];
+        assertEquals(1300, accounts.balanceAt(accounts.indexOf(TARGET_ACCOUNT_NUMBER)));
+    }
+    
+    @Test
+    public void testCommitOfAReservationInTheSameJournalIsNotUnsettled() throws IOException {
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.accountCreated(TARGET_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.transferReserved("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 300));
+        journal.append(JournalEvent.transferCommitted("T1", SOURCE_ACCOUNT_NUMBER, TARGET_ACCOUNT_NUMBER, 300));
+        journal.close();
+        
+        assertTrue(RecoveredState.recover(directory, SHARDS, system.log()).getUnsettledCommits().isEmpty());
+    }
+    
+    @Test
+    public void testCorruptSnapshotFallsBackToFullReplay() throws IOException {
+        journal.append(JournalEvent.accountCreated(SOURCE_ACCOUNT_NUMBER, NAME, 1000));
+        journal.append(JournalEvent.credited(SOURCE_ACCOUNT_NUMBER, 500));
+        awaitDurable(2);
+        snapshot();
+        journal.close();
+        Path snapshot = new SnapshotStore(directory).list().get(0);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+        
+        RecoveredState recovered = RecoveredState.recover(directory, SHARDS, system.log());
+        
+        assertEquals(0, recovered.getSnapshotPosition());
+        assertEquals(2, recovered.getReplayedEvents());
+        assertEquals(1500, balanceOf(recovered, SOURCE_ACCOUNT_NUMBER));
+    }
+    
+    private void snapshot() throws IOException {
+        Snapshotter snapshotter = Snapshotter.start(system, directory, journal, Duration.ofDays(1));
+        try {
+            snapshotter.snapshot();
+        } finally {
+            snapshotter.close();
+        }
+    }
+    
+    private void awaitDurable(int events) {
+        new TestKit(system) {{
+            awaitCond(() -> durableEvents() == events);
+        }};
+    }
+    
+    private long durableEvents() {
+        long[] count = {0};
+        try {
+            FileJournal.replay(RecoveredState.journalFile(directory), 0, journal.durablePosition(), event -> count[0]++);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return count[0];
+    }
+    
+    private static long balanceOf(RecoveredState state, String accountNumber) {
+        AccountTable accounts = state.getAccountTables()[AccountRegistryActor.shardOf(accountNumber, SHARDS)];
+        return accounts.balanceAt(accounts.indexOf(accountNumber));
+    }
+}
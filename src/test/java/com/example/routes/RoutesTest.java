@@ -2,18 +2,60 @@ package com.example.routes;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpCharsets;
 import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.MediaRanges;
 import akka.http.javadsl.model.MediaTypes;
 import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.Accept;
+import akka.http.javadsl.model.headers.AcceptEncoding;
+import akka.http.javadsl.model.headers.ContentEncoding;
+import akka.http.javadsl.model.headers.ETag;
+import akka.http.javadsl.model.headers.EntityTagRange;
+import akka.http.javadsl.model.headers.HttpEncodings;
+import akka.http.javadsl.model.headers.IfNoneMatch;
+import akka.http.javadsl.model.headers.RetryAfter;
 import akka.http.javadsl.testkit.JUnitRouteTest;
 import akka.http.javadsl.testkit.TestRoute;
+import akka.testkit.javadsl.TestKit;
+import akka.util.ByteString;
 import com.example.AppServer;
+import com.example.accesslog.AccessLog;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.account.routes.AccountRoutes;
 import com.example.account.service.AccountRegistryActor;
+import com.example.account.service.ActorAccountStore;
+import com.example.account.store.AccountTable;
+import com.example.account.store.AccountView;
+import com.example.admission.InFlightLimiter;
+import com.example.persistence.Journal;
+import com.example.persistence.JournalEvent;
+import com.example.persistence.RecoveredState;
+import com.example.serialization.ModelCodec;
+import com.example.serialization.ModelCodec.Format;
+import com.example.transcaction.models.Transaction;
+import com.example.transcaction.routes.TransactionRoutes;
 import com.example.transcaction.service.TransactionRegistryActor;
+import com.example.transcaction.store.TransactionHistory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.example.account.utils.AccountConfigs.ACCOUNT_SHARDS;
+import static com.example.account.utils.AccountConfigs.ADMISSION_ACCOUNT_QUEUE_SIZE;
+import static com.example.account.utils.AccountConfigs.ADMISSION_TRANSACTION_QUEUE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
 public class RoutesTest extends JUnitRouteTest {
     
     private TestRoute route;
@@ -23,11 +65,14 @@ public class RoutesTest extends JUnitRouteTest {
     public void setUp() {
         system = ActorSystem.create("TransactionTestApiServer");
         
-        ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(),
+        AccountTable[] accountTables = RecoveredState.empty(ACCOUNT_SHARDS).getAccountTables();
+        ActorRef accountRegistryActor = system.actorOf(AccountRegistryActor.props(Journal.IN_MEMORY, accountTables),
                 "testAccountRegistryActor");
-        ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountRegistryActor),
-                "testTransactionRegistryActor");
-        AppServer server = new AppServer(system, accountRegistryActor, transactionRegistryActor);
+        TransactionHistory transactionHistory = new TransactionHistory(1000);
+        ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(accountRegistryActor,
+                transactionHistory), "testTransactionRegistryActor");
+        AppServer server = new AppServer(system, accountRegistryActor, new AccountView(accountTables),
+                transactionRegistryActor, transactionHistory);
         route = testRoute(server.createRoute());
     }
     
@@ -114,7 +159,8 @@ public class RoutesTest extends JUnitRouteTest {
                         "    \"targetAccountNumber\":\"123453\",\n" +
                         "    \"amount\":3\n" +
                         "}"))
-                .assertStatusCode(StatusCodes.FORBIDDEN);
+                .assertStatusCode(StatusCodes.FORBIDDEN)
+                .assertEntity("{\"code\":\"NOT_FOUND\",\"message\":\"Account not found\"}");
     }
     
     @Test
@@ -127,4 +173,360 @@ public class RoutesTest extends JUnitRouteTest {
                         "}"))
                 .assertStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
     }
+    
+    @Test
+    public void testPostTransactionBatchReturnsResultsInRequestOrder() {
+        createAccount("223451", 10);
+        createAccount("223452", 10);
+        
+        route.run(HttpRequest.POST("/v1/transactions/batch")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(), "[\n" +
+                        "{\"transactionId\":\"B1\",\"sourceAccountNumber\":\"223451\",\"targetAccountNumber\":\"223452\",\"amount\":3},\n" +
+                        "{\"transactionId\":\"B2\",\"sourceAccountNumber\":\"223451\",\"targetAccountNumber\":\"223459\",\"amount\":3},\n" +
+                        "{\"transactionId\":\"B3\",\"sourceAccountNumber\":\"223452\",\"targetAccountNumber\":\"223451\",\"amount\":1}\n" +
+                        "]"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertMediaType(MediaTypes.APPLICATION_JSON)
+                .assertEntity("[" +
+                        "{\"transactionId\":\"B1\",\"success\":true,\"code\":\"SUCCESS\"}," +
+                        "{\"transactionId\":\"B2\",\"success\":false,\"code\":\"NOT_FOUND\"}," +
+                        "{\"transactionId\":\"B3\",\"success\":true,\"code\":\"SUCCESS\"}" +
+                        "]");
+    }
+    
+    @Test
+    public void testPostTransactionBatchAcceptsNdjson() {
+        createAccount("323451", 10);
+        createAccount("323452", 10);
+        
+        String results = route.run(HttpRequest.POST("/v1/transactions/batch")
+                .withEntity(ContentTypes.create(MediaTypes.applicationWithFixedCharset("x-ndjson", HttpCharsets.UTF_8)),
+                        "{\"transactionId\":\"N1\",\"sourceAccountNumber\":\"323451\",\"targetAccountNumber\":\"323452\",\"amount\":3}\n" +
+                                "{\"transactionId\":\"N1\",\"sourceAccountNumber\":\"323451\",\"targetAccountNumber\":\"323452\",\"amount\":3}\n"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        
+        String[] lines = results.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"success\":true"));
+        assertTrue(lines[1].contains("\"success\":false"));
+    }
+    
+    @Test
+    public void testPostCreateAccountWithoutValidBalanceReturnsBadRequest() {
+        route.run(HttpRequest.POST("/v1/accounts")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"accountNumber\":\"133451\",\"name\":\"Pallavi Singh\",\"balance\":null}"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST)
+                .assertEntity("{\"code\":\"INVALID\",\"message\":\"" + ResultCode.INVALID.getDescription() + "\"}");
+        route.run(HttpRequest.POST("/v1/accounts")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"accountNumber\":\"133451\",\"name\":\"Pallavi Singh\",\"balance\":\"Infinity\"}"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+        route.run(HttpRequest.GET("/v1/accounts/133451"))
+                .assertStatusCode(StatusCodes.NOT_FOUND);
+    }
+    
+    @Test
+    public void testPostInvalidTransactionReturnsBadRequest() {
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"B1\",\"sourceAccountNumber\":\"1\",\"targetAccountNumber\":\"2\",\"amount\":null}"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST)
+                .assertEntity("{\"code\":\"INVALID\",\"message\":\"" + ResultCode.INVALID.getDescription() + "\"}");
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"B1\",\"sourceAccountNumber\":\"1\",\"targetAccountNumber\":\"2\",\"amount\":-5}"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"B1\",\"sourceAccountNumber\":\"1\",\"targetAccountNumber\":\"2\",\"amount\":0.001}"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"B1\",\"sourceAccountNumber\":\"1\",\"targetAccountNumber\":\"1\",\"amount\":5}"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+        String results = route.run(HttpRequest.POST("/v1/transactions/batch")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "[{\"transactionId\":\"B1\",\"sourceAccountNumber\":\"1\",\"targetAccountNumber\":\"2\"}]"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        assertTrue(results.startsWith("[{\"transactionId\":\"B1\",\"success\":false,\"code\":\"INVALID\""));
+    }
+    
+    @Test
+    public void testPostAccountImportStreamsRejectionsAndProgress() {
+        String progress = route.run(HttpRequest.POST("/v1/accounts/import")
+                .withEntity(ContentTypes.create(MediaTypes.TEXT_CSV, HttpCharsets.UTF_8),
+                        "accountNumber,name,balance\n" +
+                                "423451,\"Singh, Pallavi\",10\n" +
+                                "423452,Seema Singh,abc\n" +
+                                "423451,Pallavi Singh,10\n" +
+                                "423453,Seema Singh,5.5"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        
+        String[] lines = progress.split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{\"row\":3,\"accountNumber\":null,\"message\":\"Invalid balance abc\""));
+        assertTrue(lines[1].startsWith("{\"row\":4,\"accountNumber\":\"423451\""));
+        assertEquals("{\"rows\":4,\"created\":2,\"rejected\":2}", lines[2]);
+        route.run(HttpRequest.GET("/v1/accounts/423451"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"accountNumber\":\"423451\",\"balance\":10.0,\"name\":\"Singh, Pallavi\"}");
+    }
+    
+    @Test
+    public void testCborClientsSendAndReceiveCbor() {
+        route.run(HttpRequest.POST("/v1/accounts")
+                .withEntity(MediaTypes.APPLICATION_CBOR.toContentType(), ModelCodec.write(
+                        new Account("823451", "Cbor", 10.0), Format.CBOR).toArray()))
+                .assertStatusCode(StatusCodes.CREATED)
+                .assertMediaType(MediaTypes.APPLICATION_JSON);
+        
+        byte[] account = route.run(HttpRequest.GET("/v1/accounts/823451")
+                .addHeader(Accept.create(MediaTypes.APPLICATION_CBOR.toRange())))
+                .assertStatusCode(StatusCodes.OK)
+                .assertMediaType(MediaTypes.APPLICATION_CBOR)
+                .entityBytes().toArray();
+        assertEquals(ModelCodec.write(new Account("823451", "Cbor", 10.0), Format.CBOR),
+                ByteString.fromArray(account));
+        route.run(HttpRequest.GET("/v1/accounts/823451"))
+                .assertMediaType(MediaTypes.APPLICATION_JSON)
+                .assertEntity("{\"accountNumber\":\"823451\",\"balance\":10.0,\"name\":\"Cbor\"}");
+        
+        route.run(HttpRequest.POST("/v1/transactions")
+                .addHeader(Accept.create(MediaTypes.APPLICATION_CBOR.toRange()))
+                .withEntity(MediaTypes.APPLICATION_CBOR.toContentType(), ModelCodec.write(
+                        new Transaction("C1", "823451", "823452", 3.0), Format.CBOR).toArray()))
+                .assertStatusCode(StatusCodes.FORBIDDEN)
+                .assertMediaType(MediaTypes.APPLICATION_CBOR);
+    }
+    
+    @Test
+    public void testGetTransactionAndPagedAccountHistory() {
+        createAccount("523451", 10);
+        createAccount("523452", 10);
+        for (int i = 1; i <= 3; i++) {
+            route.run(HttpRequest.POST("/v1/transactions")
+                    .withEntity(MediaTypes.APPLICATION_JSON.toContentType(), String.format(
+                            "{\"transactionId\":\"H%d\",\"sourceAccountNumber\":\"523451\",\"targetAccountNumber\":\"523452\",\"amount\":%d}", i, i)))
+                    .assertStatusCode(StatusCodes.CREATED);
+        }
+        
+        String transaction = route.run(HttpRequest.GET("/v1/transactions/H2"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        assertTrue(transaction.startsWith("{\"amount\":2.0,\"committedAt\":1"));
+        assertTrue(transaction.endsWith("\"sourceAccountNumber\":\"523451\",\"targetAccountNumber\":\"523452\",\"transactionId\":\"H2\"}"));
+        route.run(HttpRequest.GET("/v1/transactions/H9"))
+                .assertStatusCode(StatusCodes.NOT_FOUND);
+        
+        String firstPage = route.run(HttpRequest.GET("/v1/accounts/523452/transactions?limit=2"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        assertTrue(firstPage.contains("\"transactionId\":\"H3\"},{"));
+        assertTrue(firstPage.contains("\"transactionId\":\"H2\"}]"));
+        assertTrue(firstPage.contains("\"nextCursor\":\"0\""));
+        
+        String lastPage = route.run(HttpRequest.GET("/v1/accounts/523452/transactions?limit=2&cursor=0"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        assertTrue(lastPage.contains("\"transactionId\":\"H1\"}]"));
+        assertTrue(lastPage.contains("\"nextCursor\":null"));
+        
+        route.run(HttpRequest.GET("/v1/accounts/523452/transactions?limit=0"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+    }
+    
+    @Test
+    public void testGetAccountStatementStreamsNdjsonOrCsv() {
+        createAccount("623451", 10);
+        createAccount("623452", 10);
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"S1\",\"sourceAccountNumber\":\"623451\",\"targetAccountNumber\":\"623452\",\"amount\":3}"))
+                .assertStatusCode(StatusCodes.CREATED);
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"S2\",\"sourceAccountNumber\":\"623452\",\"targetAccountNumber\":\"623451\",\"amount\":1.5}"))
+                .assertStatusCode(StatusCodes.CREATED);
+        
+        String[] lines = route.run(HttpRequest.GET("/v1/accounts/623451/statement"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertMediaType(MediaTypes.applicationWithFixedCharset("x-ndjson", HttpCharsets.UTF_8))
+                .entityString()
+                .split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"transactionId\":\"S1\",\"committedAt\":\"20"));
+        assertTrue(lines[0].endsWith("\"counterpartyAccountNumber\":\"623452\",\"amount\":-3.0}"));
+        assertTrue(lines[1].endsWith("\"counterpartyAccountNumber\":\"623452\",\"amount\":1.5}"));
+        
+        String[] rows = route.run(HttpRequest.GET("/v1/accounts/623452/statement?from=2000-01-01")
+                .addHeader(Accept.create(MediaRanges.create(MediaTypes.TEXT_CSV))))
+                .assertStatusCode(StatusCodes.OK)
+                .assertMediaType(MediaTypes.TEXT_CSV)
+                .entityString()
+                .split("\n");
+        assertEquals(3, rows.length);
+        assertEquals("transactionId,committedAt,counterpartyAccountNumber,amount", rows[0]);
+        route.run(HttpRequest.GET("/v1/accounts/623452/statement"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertHeaderKindNotExists("Statement-Truncated-Before");
+        assertTrue(rows[1].startsWith("S1,20") && rows[1].endsWith(",623451,3.0"));
+        assertTrue(rows[2].startsWith("S2,20") && rows[2].endsWith(",623451,-1.5"));
+        
+        route.run(HttpRequest.GET("/v1/accounts/623451/statement?to=2000-01-01T00:00:00Z"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("");
+        route.run(HttpRequest.GET("/v1/accounts/623451/statement")
+                .addHeader(AcceptEncoding.create(HttpEncodings.GZIP)))
+                .assertStatusCode(StatusCodes.OK)
+                .assertHeaderExists(ContentEncoding.create(HttpEncodings.GZIP));
+        route.run(HttpRequest.GET("/v1/accounts/623451/statement?from=yesterday"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+    }
+    
+    @Test
+    public void testGetAccountAnswersMatchingIfNoneMatchWithNotModified() {
+        createAccount("723451", 10);
+        createAccount("723452", 10);
+        
+        ETag etag = route.run(HttpRequest.GET("/v1/accounts/723451"))
+                .assertStatusCode(StatusCodes.OK)
+                .header(ETag.class);
+        route.run(HttpRequest.GET("/v1/accounts/723451")
+                .addHeader(IfNoneMatch.create(EntityTagRange.create(etag.etag()))))
+                .assertStatusCode(StatusCodes.NOT_MODIFIED)
+                .assertHeaderExists(etag)
+                .assertEntity("");
+        
+        route.run(HttpRequest.POST("/v1/transactions")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "{\"transactionId\":\"E1\",\"sourceAccountNumber\":\"723451\",\"targetAccountNumber\":\"723452\",\"amount\":4}"))
+                .assertStatusCode(StatusCodes.CREATED);
+        
+        ETag modified = route.run(HttpRequest.GET("/v1/accounts/723451")
+                .addHeader(IfNoneMatch.create(EntityTagRange.create(etag.etag()))))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"accountNumber\":\"723451\",\"balance\":6.0,\"name\":\"Batch\"}")
+                .header(ETag.class);
+        assertNotEquals(etag.etag().tag(), modified.etag().tag());
+    }
+    
+    @Test
+    public void testRequestsBeyondInFlightLimitAreRejectedWithServiceUnavailable() {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        AppServer server = new AppServer(system, system.deadLetters(), new AccountView(new AccountTable[]{new AccountTable()}),
+                system.deadLetters(), new TransactionHistory(10), limiter);
+        TestRoute limited = testRoute(server.createRoute());
+        
+        limited.run(HttpRequest.GET("/v1/accounts/823451"))
+                .assertStatusCode(StatusCodes.NOT_FOUND);
+        assertTrue(limiter.tryAcquire());
+        limited.run(HttpRequest.GET("/v1/accounts/823451"))
+                .assertStatusCode(StatusCodes.SERVICE_UNAVAILABLE)
+                .assertHeaderExists(RetryAfter.create(1L));
+        limiter.release();
+        limited.run(HttpRequest.GET("/v1/accounts/823451"))
+                .assertStatusCode(StatusCodes.NOT_FOUND);
+        assertEquals(0, limiter.inFlight());
+    }
+    
+    @Test
+    public void testLookupsAfterTheJournalFailedAreAnsweredServiceUnavailable() {
+        AccountTable accounts = new AccountTable();
+        accounts.add("833451", "Failed", 1000);
+        boolean[] failed = {false};
+        Journal journal = new Journal() {
+            @Override
+            public void append(JournalEvent event, ActorRef replyTo, Object reply, Object failureReply, ActorRef sender) {
+            }
+            
+            @Override
+            public <T> CompletionStage<T> append(JournalEvent event, T reply) {
+                return new CompletableFuture<>();
+            }
+            
+            @Override
+            public boolean isFailed() {
+                return failed[0];
+            }
+        };
+        AppServer server = new AppServer(system, system.deadLetters(), new AccountView(new AccountTable[]{accounts}, journal),
+                system.deadLetters(), new TransactionHistory(10));
+        TestRoute served = testRoute(server.createRoute());
+        
+        served.run(HttpRequest.GET("/v1/accounts/833451"))
+                .assertStatusCode(StatusCodes.OK);
+        failed[0] = true;
+        served.run(HttpRequest.GET("/v1/accounts/833451"))
+                .assertStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+    }
+    
+    @Test
+    public void testBatchAndImportItemsBeyondTheAdmissionQueuesAreAnsweredOverloaded() {
+        TestKit registry = new TestKit(system);
+        ActorAccountStore accountStore = new ActorAccountStore(registry.getRef());
+        TransactionRoutes transactionRoutes = new TransactionRoutes(system, registry.getRef(), new TransactionHistory(10));
+        for (int i = 0; i < ADMISSION_ACCOUNT_QUEUE_SIZE; i++) {
+            accountStore.accountQueue().ask("fill");
+        }
+        for (int i = 0; i < ADMISSION_TRANSACTION_QUEUE_SIZE; i++) {
+            transactionRoutes.transactionQueue().ask("fill");
+        }
+        
+        testRoute(transactionRoutes.routes()).run(HttpRequest.POST("/v1/transactions/batch")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(),
+                        "[{\"transactionId\":\"Q1\",\"sourceAccountNumber\":\"1\",\"targetAccountNumber\":\"2\",\"amount\":1}]"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("[{\"transactionId\":\"Q1\",\"success\":false,\"code\":\"OVERLOADED\"}]");
+        String progress = testRoute(new AccountRoutes(system, accountStore).routes()).run(HttpRequest.POST("/v1/accounts/import")
+                .withEntity(ContentTypes.create(MediaTypes.TEXT_CSV, HttpCharsets.UTF_8), "423461,Seema Singh,10"))
+                .assertStatusCode(StatusCodes.OK)
+                .entityString();
+        assertEquals("{\"row\":1,\"accountNumber\":\"423461\",\"message\":\"" + ResultCode.OVERLOADED.getDescription()
+                + "\"}\n{\"rows\":1,\"created\":0,\"rejected\":1}\n", progress);
+    }
+    
+    @Test
+    public void testResponsesAndRejectionsAreRecordedInTheAccessLog() {
+        List<String> recorded = new ArrayList<>();
+        AccessLog accessLog = (request, response, startNanos) ->
+                recorded.add(request.method().value() + " " + request.getUri().path() + " " + response.status().intValue());
+        AppServer server = new AppServer(system, new ActorAccountStore(system.deadLetters(),
+                new AccountView(new AccountTable[]{new AccountTable()})), system.deadLetters(),
+                new TransactionHistory(10), new InFlightLimiter(10), accessLog);
+        TestRoute logged = testRoute(server.createRoute());
+        
+        logged.run(HttpRequest.GET("/v1/accounts/823451"))
+                .assertStatusCode(StatusCodes.NOT_FOUND);
+        logged.run(HttpRequest.DELETE("/v1/accounts/823451"))
+                .assertStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
+        assertEquals(Arrays.asList("GET /v1/accounts/823451 404", "DELETE /v1/accounts/823451 405"), recorded);
+    }
+    
+    @Test
+    public void testGetMetricsExposesRouteAndActorLatencies() {
+        createAccount("923451", 10);
+        route.run(HttpRequest.GET("/v1/accounts/923451"))
+                .assertStatusCode(StatusCodes.OK);
+        
+        String metrics = route.run(HttpRequest.GET("/metrics"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertMediaType(MediaTypes.TEXT_PLAIN)
+                .entityString();
+        assertTrue(metrics.contains("# TYPE http_request_duration_seconds histogram\n"));
+        assertTrue(metrics.contains("http_request_duration_seconds_bucket{route=\"get_account\",le=\"+Inf\"} "));
+        assertTrue(metrics.contains("http_responses_total{route=\"post_account\",code=\"2xx\"} "));
+        assertTrue(metrics.contains("actor_message_duration_seconds_count{actor=\"account_shard\",message=\"CreateAccount\"} "));
+        assertTrue(metrics.contains("account_lookup_coalescing_ratio "));
+    }
+    
+    private void createAccount(String accountNumber, int balance) {
+        route.run(HttpRequest.POST("/v1/accounts")
+                .withEntity(MediaTypes.APPLICATION_JSON.toContentType(), String.format(
+                        "{\"accountNumber\":\"%s\",\"name\":\"Batch\",\"balance\":%d}", accountNumber, balance)))
+                .assertStatusCode(StatusCodes.CREATED);
+    }
 }
@@ -0,0 +1,212 @@
+package com.example.serialization;
+
+import akka.actor.ActorSystem;
+import akka.serialization.JavaSerializer;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.Serializers;
+import akka.testkit.javadsl.TestKit;
+import com.example.account.messages.AccountRegistryMessages;
+import com.example.account.messages.ResultCode;
+import com.example.account.models.Account;
+import com.example.transcaction.messages.TransactionRegistryMessages;
+import com.example.transcaction.models.Transaction;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MessageSerializerTest {
+    
+    private static ActorSystem system;
+    private static Serialization serialization;
+    
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("MessageSerializerTest", ConfigFactory.parseString("akka.remote.netty.tcp.port = 0")
+                .withFallback(ConfigFactory.load("cluster")));
+        serialization = SerializationExtension.get(system);
+    }
+    
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+    }
+    
+    @Test
+    public void testAccountMessagesRoundTrip() {
+        Account account = new Account("123451", "Pallavi Singh", 1234.56, 7);
+        
+        AccountRegistryMessages.CreateAccount create = roundTrip(new AccountRegistryMessages.CreateAccount(account));
+        assertEquals(account, create.getAccount());
+        assertEquals(7, create.getAccount().getVersion());
+        assertEquals("123451", roundTrip(new AccountRegistryMessages.GetAccount("123451")).getAccountNumber());
+        AccountRegistryMessages.Credit credit = roundTrip(new AccountRegistryMessages.Credit("1", -250L));
+        assertEquals("1", credit.getAccountNumber());
+        assertEquals(-250, credit.getAmount());
+        assertEquals(Long.MAX_VALUE, roundTrip(new AccountRegistryMessages.Debit("1", Long.MAX_VALUE)).getAmount());
+        AccountRegistryMessages.Transfer transfer = roundTrip(new AccountRegistryMessages.Transfer("T1", "1", "2", 300L));
+        assertEquals("T1", transfer.getTransactionId());
+        assertEquals("1", transfer.getSourceAccountNumber());
+        assertEquals("2", transfer.getTargetAccountNumber());
+        assertEquals(300, transfer.getAmount());
+        assertSame(AccountRegistryMessages.SuccessResponse.INSTANCE,
+                roundTrip(AccountRegistryMessages.SuccessResponse.INSTANCE));
+        for (ResultCode code : ResultCode.values()) {
+            assertEquals(code, roundTrip(AccountRegistryMessages.FailureResponse.of(code)).getCode());
+        }
+        
+        AccountRegistryMessages.CreateAccounts createAll = roundTrip(new AccountRegistryMessages.CreateAccounts(
+                Arrays.asList(account, new Account("2", null, null))));
+        assertEquals(Arrays.asList(account, new Account("2", null, null)), createAll.getAccounts());
+        String nonAscii = "D\u00e9j\u00e0 existant \u2713";
+        TreeMap<Integer, String> rejected = new TreeMap<>();
+        rejected.put(1, nonAscii);
+        AccountRegistryMessages.AccountsCreated created = roundTrip(new AccountRegistryMessages.AccountsCreated(2, rejected));
+        assertEquals(1, created.getCreated());
+        assertEquals(rejected, created.getRejected());
+        
+        Optional<Account> found = roundTrip(Optional.of(account));
+        assertEquals(account, found.get());
+        assertFalse(roundTrip(Optional.empty()).isPresent());
+    }
+    
+    @Test
+    public void testTransactionMessagesRoundTrip() {
+        Transaction transaction = roundTrip(new TransactionRegistryMessages.Transfer(
+                new Transaction("T1", "1", "2", 12.5, 1_700_000_000_000L))).getTransaction();
+        assertEquals("T1", transaction.getTransactionId());
+        assertEquals("1", transaction.getSourceAccountNumber());
+        assertEquals("2", transaction.getTargetAccountNumber());
+        assertEquals(12.5, transaction.getAmount(), 0.0);
+        assertEquals(Long.valueOf(1_700_000_000_000L), transaction.getCommittedAt());
+        assertNull(roundTrip(new TransactionRegistryMessages.Transfer(new Transaction("T2", "1", "2", 1.0)))
+                .getTransaction().getCommittedAt());
+        assertSame(TransactionRegistryMessages.SuccessResponse.INSTANCE,
+                roundTrip(TransactionRegistryMessages.SuccessResponse.INSTANCE));
+        assertEquals(ResultCode.DUPLICATE,
+                roundTrip(TransactionRegistryMessages.FailureResponse.of(ResultCode.DUPLICATE)).getCode());
+    }
+    
+    @Test
+    public void testEncodingIsStable() throws NotSerializableException {
+        MessageSerializer serializer = new MessageSerializer();
+        byte[] transfer = {1, 3, 'T', '1', 2, '1', 2, '2', (byte) 0xD8, 4};
+        byte[] failure = {3, 19, 'I', 'n', 's', 'u', 'f', 'f', 'i', 'c', 'i', 'e', 'n', 't', ' ', 'f', 'u', 'n', 'd', 's', 2};
+        
+        assertArrayEquals(transfer, serializer.toBinary(new AccountRegistryMessages.Transfer("T1", "1", "2", 300L)));
+        assertArrayEquals(failure, serializer.toBinary(
+                AccountRegistryMessages.FailureResponse.of(ResultCode.INSUFFICIENT_FUNDS)));
+        AccountRegistryMessages.Transfer read = (AccountRegistryMessages.Transfer) serializer.fromBinary(transfer, "TR");
+        assertEquals("T1", read.getTransactionId());
+        assertEquals(300, read.getAmount());
+    }
+    
+    @Test
+    public void testReadsVersionOne() throws NotSerializableException {
+        MessageSerializer serializer = new MessageSerializer();
+        byte[] transfer = {1, 3, 'T', '1', 2, '1', 2, '2', (byte) 0xD8, 4};
+        byte[] success = {1, 3, 'o', 'k'};
+        byte[] failure = {1, 3, 'n', 'o'};
+        
+        AccountRegistryMessages.Transfer read = (AccountRegistryMessages.Transfer) serializer.fromBinary(transfer, "TR");
+        assertEquals("T1", read.getTransactionId());
+        assertEquals(300, read.getAmount());
+        assertSame(AccountRegistryMessages.SuccessResponse.INSTANCE, serializer.fromBinary(success, "S"));
+        assertEquals(ResultCode.FAILED, ((AccountRegistryMessages.FailureResponse) serializer.fromBinary(failure, "F"))
+                .getCode());
+        assertEquals(ResultCode.FAILED, ((TransactionRegistryMessages.FailureResponse) serializer.fromBinary(failure,
+                "TF")).getCode());
+    }
+    
+    @Test
+    public void testReadsVersionTwoFailures() throws NotSerializableException {
+        MessageSerializer serializer = new MessageSerializer();
+        byte[] failure = {2, 2};
+        
+        assertEquals(ResultCode.INSUFFICIENT_FUNDS, ((AccountRegistryMessages.FailureResponse) serializer.fromBinary(
+                failure, "F")).getCode());
+        assertEquals(ResultCode.INSUFFICIENT_FUNDS, ((TransactionRegistryMessages.FailureResponse) serializer.fromBinary(
+                failure, "TF")).getCode());
+    }
+    
+    @Test
+    public void testReadsNewerVersionsIgnoringAppendedFields() throws NotSerializableException {
+        MessageSerializer serializer = new MessageSerializer();
+        byte[] getAccount = {9, 2, '1', 42, 0};
+        byte[] failure = {9, 3, 'n', 'o', 3, 7};
+        
+        assertEquals("1", ((AccountRegistryMessages.GetAccount) serializer.fromBinary(getAccount, "GA"))
+                .getAccountNumber());
+        assertEquals(ResultCode.NOT_FOUND, ((AccountRegistryMessages.FailureResponse) serializer.fromBinary(
+                failure, "F")).getCode());
+    }
+    
+    @Test
+    public void testRejectsInvalidVersionsAndUnknownManifests() {
+        MessageSerializer serializer = new MessageSerializer();
+        byte[] invalid = serializer.toBinary(new AccountRegistryMessages.GetAccount("1"));
+        invalid[0] = 0;
+        
+        assertRejected(serializer, invalid, "GA");
+        assertRejected(serializer, serializer.toBinary(new AccountRegistryMessages.GetAccount("1")), "XX");
+        assertRejected(serializer, new byte[]{1, 9, 'T'}, "GA");
+    }
+    
+    @Test
+    public void testIsSmallerThanJavaSerialization() throws IOException {
+        Object[] messages = {
+                new AccountRegistryMessages.CreateAccount(new Account("123451", "Pallavi Singh", 10.0)),
+                new AccountRegistryMessages.GetAccount("123451"),
+                new AccountRegistryMessages.Transfer("T1", "123451", "123452", 300L),
+                AccountRegistryMessages.FailureResponse.of(ResultCode.NOT_FOUND)
+        };
+        for (Object message : messages) {
+            assertTrue(message.getClass().getSimpleName(),
+                    serialization.serialize(message).get().length * 4 < javaSerialized(message).length);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T message) {
+        Serializer serializer = serialization.findSerializerFor(message);
+        assertFalse(message.getClass().getName(), serializer instanceof JavaSerializer);
+        byte[] bytes = serialization.serialize(message).get();
+        return (T) serialization.deserialize(bytes, serializer.identifier(),
+                Serializers.manifestFor(serializer, message)).get();
+    }
+    
+    private static void assertRejected(MessageSerializer serializer, byte[] bytes, String manifest) {
+        try {
+            serializer.fromBinary(bytes, manifest);
+            fail("Expected " + manifest + " to be rejected");
+        } catch (NotSerializableException expected) {
+            // rejected
+        }
+    }
+    
+    private static byte[] javaSerialized(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.serialization;
+
+import akka.http.javadsl.model.MediaRanges;
+import akka.http.javadsl.model.MediaTypes;
+import akka.http.javadsl.model.headers.Accept;
+import akka.util.ByteString;
+import com.example.account.models.Account;
+import com.example.serialization.ModelCodec.Format;
+import com.example.transcaction.models.Transaction;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModelCodecTest {
+    
+    /**
+     * The mapper of {@code Jackson.marshaller()} and {@code Jackson.unmarshaller()}.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    
+    @Test
+    public void testWritesTheSameJsonAsDatabinding() throws IOException {
+        Account[] accounts = {
+                new Account("123451", "Pallavi Singh", 1234.56),
+                new Account("2", "D\u00e9j\u00e0 \"quoted\"", null),
+                new Account(null, null, -0.5)
+        };
+        for (Account account : accounts) {
+            assertEquals(objectMapper.writeValueAsString(account),
+                    ModelCodec.write(account, Format.JSON).utf8String());
+        }
+        Transaction[] transactions = {
+                new Transaction("T1", "1", "2", 12.5, 1_700_000_000_000L),
+                new Transaction("T2", "1", "2", null)
+        };
+        for (Transaction transaction : transactions) {
+            assertEquals(objectMapper.writeValueAsString(transaction),
+                    ModelCodec.write(transaction, Format.JSON).utf8String());
+        }
+    }
+    
+    @Test
+    public void testReadsLikeDatabinding() throws IOException {
+        String[] accounts = {
+                "{\"accountNumber\":\"123451\",\"name\":\"Pallavi Singh\",\"balance\":10}",
+                "{\"balance\":\"10.5\",\"accountNumber\":123451,\"version\":4}",
+                "{\"name\":null,\"balance\":null}",
+                "{}"
+        };
+        for (String json : accounts) {
+            assertEquals(json, objectMapper.readValue(json, Account.class),
+                    ModelCodec.readAccount(ByteString.fromString(json), Format.JSON));
+        }
+        String[] transactions = {
+                "{\"transactionId\":\"1\",\"sourceAccountNumber\":\"123451\",\"targetAccountNumber\":\"123452\",\"amount\":3}",
+                "{\"transactionId\":\"1\",\"amount\":\"3\",\"committedAt\":1700000000000}",
+                "{\"sourceAccountNumber\":\"123451\"}"
+        };
+        for (String json : transactions) {
+            Transaction expected = objectMapper.readValue(json, Transaction.class);
+            Transaction read = ModelCodec.readTransaction(ByteString.fromString(json), Format.JSON);
+            assertEquals(objectMapper.writeValueAsString(expected), objectMapper.writeValueAsString(read));
+        }
+    }
+    
+    @Test
+    public void testRejectsWhatDatabindingRejects() {
+        String[] accounts = {
+                "{\"accountNumber\":\"1\",\"owner\":\"x\"}",
+                "{\"balance\":\"ten\"}",
+                "{\"accountNumber\":[\"1\"]}",
+                "[]",
+                "{\"accountNumber\":\"1\""
+        };
+        for (String json : accounts) {
+            try {
+                ModelCodec.readAccount(ByteString.fromString(json), Format.JSON);
+                fail("Expected " + json + " to be rejected");
+            } catch (IOException expected) {
+                // rejected
+            }
+        }
+    }
+    
+    @Test
+    public void testCborRoundTripIsSmallerThanJson() throws IOException {
+        Account account = new Account("123451", "Pallavi Singh", 1234.56);
+        ByteString cbor = ModelCodec.write(account, Format.CBOR);
+        assertEquals(account, ModelCodec.readAccount(cbor, Format.CBOR));
+        assertTrue(cbor.size() < ModelCodec.write(account, Format.JSON).size());
+        
+        Transaction transaction = ModelCodec.readTransaction(ModelCodec.write(
+                new Transaction("T1", "1", "2", 12.5, 1_700_000_000_000L), Format.CBOR), Format.CBOR);
+        assertEquals("T1", transaction.getTransactionId());
+        assertEquals(12.5, transaction.getAmount(), 0.0);
+        assertEquals(Long.valueOf(1_700_000_000_000L), transaction.getCommittedAt());
+        assertNull(ModelCodec.readTransaction(ModelCodec.write(new Transaction("T2", "1", "2", 1.0), Format.CBOR),
+                Format.CBOR).getCommittedAt());
+    }
+    
+    @Test
+    public void testNegotiatesCborOnlyWhenAskedForByName() {
+        assertEquals(Format.JSON, Format.accepted(Optional.empty()));
+        assertEquals(Format.JSON, Format.accepted(Optional.of(Accept.create(MediaRanges.ALL))));
+        assertEquals(Format.JSON, Format.accepted(Optional.of(Accept.create(MediaRanges.ALL_APPLICATION))));
+        assertEquals(Format.JSON, Format.accepted(Optional.of(Accept.create(
+                MediaTypes.APPLICATION_JSON.toRange()))));
+        assertEquals(Format.CBOR, Format.accepted(Optional.of(Accept.create(
+                MediaTypes.APPLICATION_CBOR.toRange(), MediaRanges.ALL))));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.transcation;
+
+import com.example.transcaction.models.Transaction;
+import com.example.transcaction.store.TransactionHistory;
+import com.example.transcaction.store.TransactionHistory.Page;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionHistoryTest {
+    
+    @Test
+    public void testRecordsTransactionForBothAccounts() {
+        TransactionHistory history = new TransactionHistory(100);
+        history.record(transfer(1, "A", "B"));
+        history.record(transfer(2, "B", "C"));
+        
+        assertEquals("T1", history.get("T1").get().getTransactionId());
+        assertFalse(history.get("T3").isPresent());
+        assertEquals(ids("T2", "T1"), ids(history.page("B", -1, 10)));
+        assertEquals(ids("T1"), ids(history.page("A", -1, 10)));
+        assertEquals(ids(), ids(history.page("D", -1, 10)));
+    }
+    
+    @Test
+    public void testPagesThroughLongHistoryNewestFirst() {
+        TransactionHistory history = new TransactionHistory(10_000);
+        for (int i = 0; i < 5000; i++) {
+            history.record(transfer(i, "HOT", "OTHER" + i));
+        }
+        
+        List<String> seen = new ArrayList<>();
+        long cursor = -1;
+        do {
+            Page page = history.page("HOT", cursor, 333);
+            seen.addAll(ids(page));
+            cursor = page.getNextCursor();
+        } while (cursor >= 0);
+        
+        assertEquals(5000, seen.size());
+        assertEquals("T4999", seen.get(0));
+        assertEquals("T0", seen.get(4999));
+        assertEquals(ids("T2500", "T2499"), ids(history.page("HOT", 2500, 2)));
+    }
+    
+    @Test
+    public void testDropsOldestTransactionsBeyondMaxEntries() {
+        TransactionHistory history = new TransactionHistory(1500);
+        for (int i = 0; i < 3000; i++) {
+            history.record(transfer(i, "HOT", i % 2 == 0 ? "EVEN" : "ODD"));
+        }
+        
+        assertEquals(1500, history.size());
+        assertFalse(history.get("T1499").isPresent());
+        assertTrue(history.get("T1500").isPresent());
+        assertEquals(750, ids(history.page("EVEN", -1, 1000)).size());
+        
+        Page oldest = history.page("HOT", 1501, 1000);
+        assertEquals(2, oldest.getTransactions().size());
+        assertEquals(-1, oldest.getNextCursor());
+        assertEquals(ids(), ids(history.page("HOT", 1000, 10)));
+    }
+    
+    @Test
+    public void testReportsWhenTransactionsWereDropped() {
+        TransactionHistory history = new TransactionHistory(2);
+        history.record(new Transaction("T1", "A", "B", 1.0, 1000L));
+        history.record(new Transaction("T2", "A", "B", 1.0, 2000L));
+        assertFalse(history.droppedBefore().isPresent());
+        
+        history.record(new Transaction("T3", "A", "B", 1.0, 3000L));
+        assertEquals(1001, history.droppedBefore().getAsLong());
+        history.record(new Transaction("T4", "A", "B", 1.0, 4000L));
+        assertEquals(2001, history.droppedBefore().getAsLong());
+    }
+    
+    @Test
+    public void testPagesOldestFirstFromOldestRetainedEntry() {
+        TransactionHistory history = new TransactionHistory(1500);
+        for (int i = 0; i < 3000; i++) {
+            history.record(transfer(i, "HOT", "OTHER"));
+        }
+        
+        Page first = history.pageOldestFirst("HOT", 0, 2);
+        assertEquals(ids("T1500", "T1501"), ids(first));
+        assertEquals(1502, first.getNextCursor());
+        
+        Page last = history.pageOldestFirst("HOT", 2998, 10);
+        assertEquals(ids("T2998", "T2999"), ids(last));
+        assertEquals(-1, last.getNextCursor());
+    }
+    
+    @Test
+    public void testConcurrentReadersSeeCompletePages() throws InterruptedException {
+        TransactionHistory history = new TransactionHistory(2000);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (history.size() < 2000 && failure.get() == null) {
+                Page page = history.page("HOT", -1, 50);
+                for (Transaction transaction : page.getTransactions()) {
+                    if (transaction == null) {
+                        failure.set("Page contained an unpublished entry");
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) {
+            history.record(transfer(i, "HOT", "OTHER"));
+        }
+        reader.join();
+        
+        assertNull(failure.get());
+    }
+    
+    @Test
+    public void testForgetsAccountsWhoseTransactionsAreAllDropped() {
+        TransactionHistory history = new TransactionHistory(1500);
+        for (int i = 0; i < 1500; i++) {
+            history.record(transfer(i, "OLD", "OTHER" + i));
+        }
+        long oldCursor = history.page("OLD", -1, 1).getNextCursor();
+        for (int i = 1500; i < 3000; i++) {
+            history.record(transfer(i, "HOT", "NEW" + i));
+        }
+        
+        assertEquals(1501, history.accounts());
+        assertEquals(ids(), ids(history.page("OLD", -1, 10)));
+        
+        history.record(transfer(3000, "OLD", "HOT"));
+        assertEquals(ids(), ids(history.page("OLD", oldCursor, 10)));
+        assertEquals(ids("T3000"), ids(history.page("OLD", -1, 10)));
+        assertEquals(ids("T3000"), ids(history.pageOldestFirst("OLD", 0, 10)));
+    }
+    
+    @Test
+    public void testKeepsPagingWhileTheHistoryRollsOver() throws InterruptedException {
+        TransactionHistory history = new TransactionHistory(3000);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && failure.get() == null) {
+                List<String> page = ids(history.page("HOT", -1, 2000));
+                for (int i = 1; i < page.size(); i++) {
+                    if (Integer.parseInt(page.get(i - 1).substring(1)) != Integer.parseInt(page.get(i).substring(1)) + 1) {
+                        failure.set("Page skipped from " + page.get(i - 1) + " to " + page.get(i));
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200_000; i++) {
+            history.record(transfer(i, "HOT", "HOT"));
+        }
+        done.set(true);
+        reader.join();
+        
+        assertNull(failure.get());
+        assertEquals(ids("T199999", "T199998"), ids(history.page("HOT", -1, 2)));
+        Page oldest = history.pageOldestFirst("HOT", 0, 2);
+        assertEquals(ids("T197000", "T197001"), ids(oldest));
+        assertEquals(ids("T197002"), ids(history.page("HOT", oldest.getNextCursor(), 1)));
+    }
+    
+    private static Transaction transfer(int id, String source, String target) {
+        return new Transaction("T" + id, source, target, 1.0);
+    }
+    
+    private static List<String> ids(Page page) {
+        List<String> ids = new ArrayList<>();
+        page.getTransactions().forEach(transaction -> ids.add(transaction.getTransactionId()));
+        return ids;
+    }
+    
+    private static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.transcation;
+
+import com.example.transcaction.store.TransactionIdIndex;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionIdIndexTest {
+    
+    private static final Duration WINDOW = Duration.ofMinutes(10);
+    
+    private long now;
+    
+    @Test
+    public void testRejectsDuplicatesInsideWindow() {
+        TransactionIdIndex index = new TransactionIdIndex(WINDOW, 100, () -> now);
+        
+        assertTrue(index.add("T1"));
+        now += WINDOW.toMillis() - 1;
+        
+        assertTrue(index.contains("T1"));
+        assertFalse(index.add("T1"));
+    }
+    
+    @Test
+    public void testForgetsIdsAfterWindow() {
+        TransactionIdIndex index = new TransactionIdIndex(WINDOW, 100, () -> now);
+        index.add("T1");
+        now += 1;
+        index.add("T2");
+        
+        now = WINDOW.toMillis();
+        
+        assertFalse(index.contains("T1"));
+        assertTrue(index.contains("T2"));
+        assertEquals(1, index.size());
+    }
+    
+    @Test
+    public void testStaysBoundedByForgettingOldestIds() {
+        TransactionIdIndex index = new TransactionIdIndex(WINDOW, 1000, () -> now);
+        
+        for (int i = 0; i < 5000; i++) {
+            index.add("T" + i);
+        }
+        
+        assertEquals(1000, index.size());
+        assertEquals(4000, index.evictedBeforeExpiry());
+        assertFalse(index.contains("T3999"));
+        assertTrue(index.contains("T4000"));
+        assertTrue(index.contains("T4999"));
+    }
+    
+    @Test
+    public void testMatchesReferenceModelUnderRandomExpiry() {
+        TransactionIdIndex index = new TransactionIdIndex(Duration.ofMillis(500), 3000, () -> now);
+        Deque<long[]> insertions = new ArrayDeque<>();
+        Set<String> remembered = new HashSet<>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 200_000; i++) {
+            now += random.nextInt(3);
+            while (!insertions.isEmpty() && now - insertions.peekFirst()[1] >= 500) {
+                remembered.remove("T" + insertions.pollFirst()[0]);
+            }
+            int id = random.nextInt(2000);
+            boolean added = index.add("T" + id);
+            
+            assertEquals(remembered.add("T" + id), added);
+            if (added) {
+                insertions.addLast(new long[]{id, now});
+            }
+        }
+        assertEquals(remembered.size(), index.size());
+        assertEquals(0, index.evictedBeforeExpiry());
+    }
+}
@@ -5,17 +5,31 @@ import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.javadsl.TestKit;
 import com.example.account.messages.AccountRegistryMessages;
+import com.example.account.messages.ResultCode;
 import com.example.account.models.Account;
 import com.example.account.service.AccountRegistryActor;
+import com.example.account.service.ActorAccountStore;
+import com.example.account.store.AccountStore;
 import com.example.transcaction.messages.TransactionRegistryMessages.FailureResponse;
 import com.example.transcaction.messages.TransactionRegistryMessages.SuccessResponse;
 import com.example.transcaction.messages.TransactionRegistryMessages.Transfer;
 import com.example.transcaction.models.Transaction;
 import com.example.transcaction.service.TransactionRegistryActor;
+import com.example.transcaction.store.TransactionHistory;
+import com.example.transcaction.store.TransactionIdIndex;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 public class TransactionRegistryActorTest {
     
     private static ActorSystem system;
@@ -109,6 +123,130 @@ public class TransactionRegistryActorTest {
         simulateOneAccountDoesNotExist(source);
     }
     
+    @Test
+    public void testDuplicateTransferInFlightIsRejected() {
+        new TestKit(system) {{
+            TestKit accountLayer = new TestKit(system);
+            Transaction transaction = new Transaction(TRANSACTION_NUMBER, SOURCE_ACCOUNT_NUMBER,
+                    TARGET_ACCOUNT_NUMBER, SUFFICIENT_AMOUNT);
+            ActorRef transactionRegistryActor = getTestTransactionRegistryActorTest(accountLayer.getRef());
+            
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            accountLayer.expectMsgClass(AccountRegistryMessages.Transfer.class);
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            expectMsgClass(FailureResponse.class);
+            
+            accountLayer.reply(AccountRegistryMessages.SuccessResponse.INSTANCE);
+            expectMsgClass(SuccessResponse.class);
+            
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            expectMsgClass(FailureResponse.class);
+            accountLayer.expectNoMessage(Duration.ofMillis(200));
+        }};
+    }
+    
+    @Test
+    public void testTransferAnsweredLateIsReportedAsTimedOutAndRecorded() {
+        new TestKit(system) {{
+            TestKit accountLayer = new TestKit(system);
+            TransactionHistory history = new TransactionHistory(10);
+            Transaction transaction = new Transaction(TRANSACTION_NUMBER, SOURCE_ACCOUNT_NUMBER,
+                    TARGET_ACCOUNT_NUMBER, SUFFICIENT_AMOUNT);
+            ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(
+                    new ActorAccountStore(accountLayer.getRef()), history,
+                    new TransactionIdIndex(Duration.ofMinutes(1), 10), Duration.ofMillis(100)));
+            
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            accountLayer.expectMsgClass(AccountRegistryMessages.Transfer.class);
+            FailureResponse timedOut = expectMsgClass(FailureResponse.class);
+            assertEquals(ResultCode.TIMED_OUT, timedOut.getCode());
+            
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            expectMsgClass(FailureResponse.class);
+            accountLayer.expectNoMessage(Duration.ofMillis(100));
+            
+            accountLayer.reply(AccountRegistryMessages.SuccessResponse.INSTANCE);
+            awaitAssert(() -> {
+                assertTrue(history.get(TRANSACTION_NUMBER).isPresent());
+                return null;
+            });
+            expectNoMessage(Duration.ofMillis(100));
+        }};
+    }
+    
+    @Test
+    public void testTransfersWaitForAccountLayerConcurrently() {
+        new TestKit(system) {{
+            TestKit accountLayer = new TestKit(system);
+            ActorRef transactionRegistryActor = getTestTransactionRegistryActorTest(accountLayer.getRef());
+            
+            for (int i = 0; i < 3; i++) {
+                transactionRegistryActor.tell(new Transfer(new Transaction("T" + i, SOURCE_ACCOUNT_NUMBER,
+                        TARGET_ACCOUNT_NUMBER, SUFFICIENT_AMOUNT)), getRef());
+            }
+            List<ActorRef> asks = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                accountLayer.expectMsgClass(AccountRegistryMessages.Transfer.class);
+                asks.add(accountLayer.getLastSender());
+            }
+            for (ActorRef ask : asks) {
+                ask.tell(AccountRegistryMessages.FailureResponse.of(ResultCode.INSUFFICIENT_FUNDS), ActorRef.noSender());
+            }
+            for (int i = 0; i < 3; i++) {
+                expectMsgClass(FailureResponse.class);
+            }
+        }};
+    }
+    
+    @Test
+    public void testInvalidTransferIsRejectedWithoutReachingTheAccountLayer() {
+        new TestKit(system) {{
+            TestKit accountLayer = new TestKit(system);
+            ActorRef transactionRegistryActor = getTestTransactionRegistryActorTest(accountLayer.getRef());
+            
+            for (Double amount : new Double[]{null, -1.0, 0.0, 0.001, Double.NaN}) {
+                transactionRegistryActor.tell(new Transfer(new Transaction(TRANSACTION_NUMBER, SOURCE_ACCOUNT_NUMBER,
+                        TARGET_ACCOUNT_NUMBER, amount)), getRef());
+                assertEquals(ResultCode.INVALID, expectMsgClass(FailureResponse.class).getCode());
+            }
+            transactionRegistryActor.tell(new Transfer(new Transaction(null, SOURCE_ACCOUNT_NUMBER,
+                    TARGET_ACCOUNT_NUMBER, SUFFICIENT_AMOUNT)), getRef());
+            assertEquals(ResultCode.INVALID, expectMsgClass(FailureResponse.class).getCode());
+            transactionRegistryActor.tell(new Transfer(new Transaction(TRANSACTION_NUMBER, SOURCE_ACCOUNT_NUMBER,
+                    SOURCE_ACCOUNT_NUMBER, SUFFICIENT_AMOUNT)), getRef());
+            assertEquals(ResultCode.INVALID, expectMsgClass(FailureResponse.class).getCode());
+            accountLayer.expectNoMessage(Duration.ofMillis(100));
+        }};
+    }
+    
+    @Test
+    public void testTransferWhoseCoordinatorFailsIsAnsweredAsFailedAndCanBeRetried() {
+        new TestKit(system) {{
+            TestKit accountLayer = new TestKit(system);
+            AccountStore accountStore = new ActorAccountStore(accountLayer.getRef());
+            AtomicInteger failures = new AtomicInteger(1);
+            AccountStore failingOnce = (AccountStore) Proxy.newProxyInstance(AccountStore.class.getClassLoader(),
+                    new Class<?>[]{AccountStore.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("transfer") && failures.getAndDecrement() > 0) {
+                            throw new IllegalStateException("The journal has failed");
+                        }
+                        return method.invoke(accountStore, args);
+                    });
+            ActorRef transactionRegistryActor = system.actorOf(TransactionRegistryActor.props(failingOnce,
+                    new TransactionHistory(10), new TransactionIdIndex(Duration.ofMinutes(1), 10)));
+            Transaction transaction = new Transaction(TRANSACTION_NUMBER, SOURCE_ACCOUNT_NUMBER,
+                    TARGET_ACCOUNT_NUMBER, SUFFICIENT_AMOUNT);
+            
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            assertEquals(ResultCode.FAILED, expectMsgClass(FailureResponse.class).getCode());
+            
+            transactionRegistryActor.tell(new Transfer(transaction), getRef());
+            accountLayer.expectMsgClass(AccountRegistryMessages.Transfer.class);
+            accountLayer.reply(AccountRegistryMessages.SuccessResponse.INSTANCE);
+            expectMsgClass(SuccessResponse.class);
+        }};
+    }
+    
     private void simulateOneAccountDoesNotExist(Account account) {
         new TestKit(system) {{
             ActorRef accountRegistryActor = getTestAccountRegistryActor();